@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link NoiseKernel}s for a 32<sup>3</sup> lattice. The forks are limited to the AVX2 instructions (8
+ * float lanes), the shape of the {@link NoiseKernels vector kernel}.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector", "-XX:UseAVX=2" })
+public class NoiseKernelBenchmark {
+
+  @Param({ "scalar", "vector" })
+  private String kernel;
+
+  private NoiseKernel noiseKernel;
+  private final PerlinNoise perlin = new PerlinNoise(42);
+  private final SimplexNoise3 simplex = new SimplexNoise3(42);
+  private final Lattice lattice = new Lattice(-16, 0, 16, 32, 32, 32).scale(0.0007f, 0.0009f, 0.0007f).frequency(
+      22.3f, 22.3f, 22.3f);
+  private final float[] xs = lattice.getXs();
+  private final float[] ys = lattice.getRowYs();
+  private final float[] zs = lattice.getRowZs();
+  private final float[] result = new float[lattice.size()];
+
+  @Benchmark
+  public float[] perlinNoise() {
+    noiseKernel.perlinNoise(perlin, xs, ys, zs, false, 1, result);
+    return result;
+  }
+
+  @Setup
+  public void setup() {
+    noiseKernel = NoiseKernels.select(kernel);
+    if (!noiseKernel.getName().startsWith(kernel)) {
+      throw new IllegalStateException(String.format("Kernel %s is not available", kernel));
+    }
+  }
+
+  @Benchmark
+  public float[] simplexNoise() {
+    noiseKernel.simplexNoise(simplex, xs, ys, zs, 2, result);
+    return result;
+  }
+}
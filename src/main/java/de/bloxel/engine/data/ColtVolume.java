@@ -19,7 +19,6 @@ package de.bloxel.engine.data;
 import static com.google.common.base.Objects.firstNonNull;
 import static com.google.common.base.Objects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
-import static java.lang.String.format;
 import cern.colt.matrix.ObjectFactory3D;
 import cern.colt.matrix.ObjectMatrix3D;
 
@@ -61,9 +60,9 @@ public class ColtVolume<T> implements Volume<T> {
     checkArgument(x >= 0);
     checkArgument(y >= 0);
     checkArgument(z >= 0);
-    checkArgument(x < sizeX, format("x must be lower then size-x %d but was %d", sizeX, x));
-    checkArgument(y < sizeY, format("y must be lower then size-y %d but was %d", sizeY, y));
-    checkArgument(z < sizeZ, format("z must be lower then size-z %d but was %d", sizeZ, z));
+    checkArgument(x < sizeX, "x must be lower then size-x %s but was %s", sizeX, x);
+    checkArgument(y < sizeY, "y must be lower then size-y %s but was %s", sizeY, y);
+    checkArgument(z < sizeZ, "z must be lower then size-z %s but was %s", sizeZ, z);
     return (T) firstNonNull(matrix3d.get(x, y, z), Bloxel.AIR);
   }
 
@@ -102,9 +101,9 @@ public class ColtVolume<T> implements Volume<T> {
     checkArgument(x >= 0);
     checkArgument(y >= 0);
     checkArgument(z >= 0);
-    checkArgument(x < sizeX, format("x must be lower then size-x %d but was %d", sizeX, x));
-    checkArgument(y < sizeY, format("y must be lower then size-y %d but was %d", sizeY, y));
-    checkArgument(z < sizeZ, format("z must be lower then size-z %d but was %d", sizeZ, z));
+    checkArgument(x < sizeX, "x must be lower then size-x %s but was %s", sizeX, x);
+    checkArgument(y < sizeY, "y must be lower then size-y %s but was %s", sizeY, y);
+    checkArgument(z < sizeZ, "z must be lower then size-z %s but was %s", sizeZ, z);
     matrix3d.set(x, y, z, bloxel);
   }
 
@@ -19,12 +19,22 @@ package de.bloxel.engine.data;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Ranges.range;
 import static java.lang.String.format;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import cern.colt.matrix.ObjectFactory3D;
 import cern.colt.matrix.ObjectMatrix3D;
 
 import com.google.common.collect.BoundType;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 
+import de.bloxel.engine.loader.BoundedLoader;
+import de.bloxel.engine.loader.BoundedLoader.Content;
+import de.bloxel.engine.loader.ColumnLoader;
 import de.bloxel.engine.loader.Loader;
 
 /**
@@ -53,6 +63,13 @@ import de.bloxel.engine.loader.Loader;
  * 
  * </pre>
  * 
+ * <p>
+ * With a {@link ColumnLoader} the first access to a volume creates all missing volumes of its column (all y of the
+ * grid) and fills them in one pass. The column is filled outside of the grid lock, other threads can access the grid
+ * meanwhile. Each volume is put into the grid as soon as it is filled, a thread which needs a volume of a column in
+ * progress waits only until this volume is there.
+ * </p>
+ * 
  * @author Andreas Höhmann
  * @since 1.0.0
  */
@@ -79,14 +96,32 @@ public class VolumeGrid<T> {
   private Range<Integer> rangeX;
   private Range<Integer> rangeY;
   private Range<Integer> rangeZ;
+  private final List<VolumeListener<T>> listeners = new CopyOnWriteArrayList<VolumeListener<T>>();
+  private long filledVolumes;
+  private long skippedVolumes;
+
+  /**
+   * Columns which are filled right now by a {@link ColumnLoader}, see {@link #column(int, int)}.
+   */
+  private final Set<Long> loadingColumns = Sets.newHashSet();
+
+  private static long column(final int x, final int z) {
+    return (long) x << 32 | z & 0xffffffffL;
+  }
+
+  public void addVolumeListener(final VolumeListener<T> listener) {
+    listeners.add(listener);
+  }
 
   public T get(final float x, final float y, final float z) {
     final Volume<T> volume = getVolumeForWorldPosition(x, y, z);
     final int vx = (int) Math.abs(x - volume.getX() - 1);
     final int vy = (int) Math.abs(y - volume.getY() - 1);
     final int vz = (int) Math.abs(z - volume.getZ() - 1);
-    LOG.trace(format("Transform global position (x:%f,y:%f,z:%f) into volume position (x:%d,y:%d,z:%d) for volume %s",
-        x, y, z, vx, vy, vz, volume));
+    if (LOG.isTraceEnabled()) {
+      LOG.trace(format("Transform global position (x:%f,y:%f,z:%f) into volume position (x:%d,y:%d,z:%d) for volume %s",
+          x, y, z, vx, vy, vz, volume));
+    }
     return volume.get(vx, vy, vz);
   }
 
@@ -94,27 +129,153 @@ public class VolumeGrid<T> {
     final int vx = (int) (x / volumeSize) - (x < 0 ? 1 : 0);
     final int vy = (int) (y / volumeSize) - (y < 0 ? 1 : 0);
     final int vz = (int) (z / volumeSize) - (z < 0 ? 1 : 0);
-    LOG.trace(format("Transform global position (x:%f,y:%f,z:%f) into local volume position (x:%d,y:%d,z:%d)", x, y, z,
-        vx, vy, vz));
+    if (LOG.isTraceEnabled()) {
+      LOG.trace(format("Transform global position (x:%f,y:%f,z:%f) into local volume position (x:%d,y:%d,z:%d)", x, y,
+          z, vx, vy, vz));
+    }
     return getVolumeWithIndex(vx, vy, vz);
   }
 
-  public synchronized Volume<T> getVolumeWithIndex(final int x, final int y, final int z) {
-    checkArgument(rangeX.contains(x), format("volume position x %d must be in range %s", x, rangeX));
-    checkArgument(rangeY.contains(y), format("volume position y %d must be in range %s", y, rangeY));
-    checkArgument(rangeZ.contains(z), format("volume position z %d must be in range %s", z, rangeZ));
+  public Volume<T> getVolumeWithIndex(final int x, final int y, final int z) {
+    checkArgument(rangeX.contains(x), "volume position x %s must be in range %s", x, rangeX);
+    checkArgument(rangeY.contains(y), "volume position y %s must be in range %s", y, rangeY);
+    checkArgument(rangeZ.contains(z), "volume position z %s must be in range %s", z, rangeZ);
     final int gx = (gridSizeX >> 1) - x;
     final int gy = (gridSizeY >> 1) - y;
     final int gz = (gridSizeZ >> 1) - z;
-    LOG.trace(format("Transform local position (x:%d,y:%d,z:%d) into grid position (x:%d,y:%d,z:%d)", x, y, z, gx, gy,
-        gz));
-    Volume<T> v = (Volume<T>) grid.get(gx, gy, gz);
-    if (v == null) {
-      v = volumeFactory.create(x * volumeSize, y * volumeSize, z * volumeSize, volumeSize, volumeSize, volumeSize);
-      volumeLoader.fill(v);
-      grid.set(gx, gy, gz, v);
+    if (LOG.isTraceEnabled()) {
+      LOG.trace(format("Transform local position (x:%d,y:%d,z:%d) into grid position (x:%d,y:%d,z:%d)", x, y, z, gx,
+          gy, gz));
+    }
+    if (volumeLoader instanceof ColumnLoader) {
+      return getColumnVolume(x, z, gx, gy, gz);
+    }
+    synchronized (this) {
+      Volume<T> v = (Volume<T>) grid.get(gx, gy, gz);
+      if (v == null) {
+        v = volumeFactory.create(x * volumeSize, y * volumeSize, z * volumeSize, volumeSize, volumeSize, volumeSize);
+        if (isAir(v)) {
+          // the loader would not set anything
+          skippedVolumes++;
+        } else {
+          volumeLoader.fill(v);
+          filledVolumes++;
+        }
+        grid.set(gx, gy, gz, v);
+      }
+      return v;
+    }
+  }
+
+  /**
+   * Return the volume, load its column if necessary or wait for the thread which loads the column.
+   */
+  private Volume<T> getColumnVolume(final int x, final int z, final int gx, final int gy, final int gz) {
+    final Long column = column(x, z);
+    synchronized (this) {
+      while (true) {
+        final Volume<T> v = (Volume<T>) grid.get(gx, gy, gz);
+        if (v != null) {
+          return v;
+        }
+        if (loadingColumns.add(column)) {
+          break;
+        }
+        try {
+          // notified for each published volume
+          wait();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(format("Interrupted while waiting for column (x:%d,z:%d)", x, z), e);
+        }
+      }
+    }
+    try {
+      loadColumn(x, z);
+    } finally {
+      synchronized (this) {
+        loadingColumns.remove(column);
+        notifyAll();
+      }
+    }
+    synchronized (this) {
+      return (Volume<T>) grid.get(gx, gy, gz);
+    }
+  }
+
+  private boolean isAir(final Volume<T> volume) {
+    return volumeLoader instanceof BoundedLoader
+        && ((BoundedLoader<T>) volumeLoader).classify(volume.getX(), volume.getY(), volume.getZ(), volumeSize,
+            volumeSize, volumeSize) == Content.AIR;
+  }
+
+  /**
+   * Creates all missing volumes of the column and fills them with the {@link ColumnLoader}, must be called without the
+   * grid lock. Only the access to the grid is synchronized, each filled volume is published under the grid lock.
+   */
+  private void loadColumn(final int x, final int z) {
+    final int gx = (gridSizeX >> 1) - x;
+    final int gz = (gridSizeZ >> 1) - z;
+    final List<Volume<T>> volumes = Lists.newArrayList();
+    synchronized (this) {
+      for (int y = rangeY.upperEndpoint(); y >= rangeY.lowerEndpoint(); y--) {
+        final int gy = (gridSizeY >> 1) - y;
+        if (grid.get(gx, gy, gz) != null) {
+          continue;
+        }
+        final Volume<T> v = volumeFactory.create(x * volumeSize, y * volumeSize, z * volumeSize, volumeSize,
+            volumeSize, volumeSize);
+        if (isAir(v)) {
+          skippedVolumes++;
+          grid.set(gx, gy, gz, v);
+        } else {
+          volumes.add(v);
+        }
+      }
+    }
+    LOG.debug(format("Load column (x:%d,z:%d) with %d volumes", x, z, volumes.size()));
+    ((ColumnLoader<T>) volumeLoader).fillColumn(volumes, new ColumnLoader.Callback<T>() {
+
+      @Override
+      public void filled(final Volume<T> volume) {
+        synchronized (VolumeGrid.this) {
+          grid.set(gx, (gridSizeY >> 1) - volume.getY() / volumeSize, gz, volume);
+          filledVolumes++;
+          VolumeGrid.this.notifyAll();
+        }
+      }
+    });
+  }
+
+  /**
+   * @return number of volumes filled by the loader
+   */
+  public synchronized long getFilledVolumes() {
+    return filledVolumes;
+  }
+
+  /**
+   * @param volume
+   *          a volume of this grid
+   * @param dx
+   *          offset in volumes, i.e. <code>-1</code> for the left neighbor
+   * @return the neighbor volume (loaded if necessary) or <code>null</code> if the neighbor is outside of the grid
+   */
+  public Volume<T> getNeighbor(final Volume<T> volume, final int dx, final int dy, final int dz) {
+    final int x = volume.getX() / volumeSize + dx;
+    final int y = volume.getY() / volumeSize + dy;
+    final int z = volume.getZ() / volumeSize + dz;
+    if (!rangeX.contains(x) || !rangeY.contains(y) || !rangeZ.contains(z)) {
+      return null;
     }
-    return v;
+    return getVolumeWithIndex(x, y, z);
+  }
+
+  /**
+   * @return number of volumes which a {@link BoundedLoader} classified as {@link Content#AIR air}, they are not filled
+   */
+  public synchronized long getSkippedVolumes() {
+    return skippedVolumes;
   }
 
   public void init() {
@@ -131,6 +292,32 @@ public class VolumeGrid<T> {
     LOG.debug(format("Init volume grid (x:%s,y:%s,z:%s)", rangeX, rangeY, rangeZ));
   }
 
+  public void removeVolumeListener(final VolumeListener<T> listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Change an element of a volume of this grid and inform all {@link VolumeListener listeners}. All edits (i.e. not
+   * the initial filling by the loader) should use this method.
+   * 
+   * @param volume
+   *          of this grid
+   * @param x
+   *          position in the volume
+   * @param y
+   *          position in the volume
+   * @param z
+   *          position in the volume
+   * @param value
+   *          the new element
+   */
+  public void set(final Volume<T> volume, final int x, final int y, final int z, final T value) {
+    volume.set(x, y, z, value);
+    for (final VolumeListener<T> listener : listeners) {
+      listener.onSet(volume, x, y, z, value);
+    }
+  }
+
   public void setGridSize(final int x, final int y, final int z) {
     this.gridSizeX = x;
     this.gridSizeY = y;
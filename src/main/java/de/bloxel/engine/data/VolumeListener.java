@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.data;
+
+/**
+ * Will be informed about changes of elements in the {@link Volume volumes} of a {@link VolumeGrid}.
+ * 
+ * @param <T>
+ *          type of elements in the volume
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public interface VolumeListener<T> {
+
+  /**
+   * Called after an element was changed with {@link VolumeGrid#set(Volume, int, int, int, Object)}.
+   * 
+   * @param volume
+   *          the changed volume
+   * @param x
+   *          position in the volume
+   * @param y
+   *          position in the volume
+   * @param z
+   *          position in the volume
+   * @param value
+   *          the new element
+   */
+  void onSet(Volume<T> volume, int x, int y, int z, T value);
+}
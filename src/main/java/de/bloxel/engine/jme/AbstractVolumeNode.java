@@ -1,17 +1,29 @@
 package de.bloxel.engine.jme;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.debug.WireBox;
 
 import de.bloxel.engine.data.Bloxel;
@@ -36,6 +48,11 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
   static final Vector3f NORMAL_FRONT = new Vector3f(0, 0, 1);
   static final Vector3f NORMAL_BACK = new Vector3f(0, 0, -1);
 
+  /**
+   * Name of the user data which contains the mesh id of a created {@link Geometry}.
+   */
+  static final String MESH_ID = "bloxel-mesh-id";
+
   private static final Logger LOG = Logger.getLogger(AbstractVolumeNode.class);
 
   private final Volume<Bloxel> volume;
@@ -45,6 +62,8 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
 
   protected final BloxelAssetManager bloxelAssetManager;
   private final AssetManager assetManager;
+  private MeshCache meshCache;
+  private BufferPool bufferPool = BufferPool.UNPOOLED;
 
   AbstractVolumeNode(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume, final AssetManager assetManager,
       final BloxelAssetManager bloxelAssetManager) {
@@ -57,6 +76,17 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
     this.state = State.DIRTY;
   }
 
+  String cacheKey() {
+    final Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putString(getMesherId(), Charsets.UTF_8);
+    // sorted, the asset hash must not depend on the order the types are found
+    final Set<Integer> types = Sets.newTreeSet();
+    MeshCache.hashVolume(hasher, volume, types);
+    hashNeighbors(hasher, grid, volume, types);
+    MeshCache.hashAssets(hasher, bloxelAssetManager, types);
+    return hasher.hash().toString();
+  }
+
   @Override
   public boolean calculate() {
     if (state != State.DIRTY) {
@@ -66,7 +96,25 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
     LOG.debug(String.format("Calculate geometries for '%s'", this));
     final long startTime = System.currentTimeMillis();
     geometries.clear();
-    geometries.addAll(createGeometries(grid, volume));
+    if (meshCache == null) {
+      geometries.addAll(createGeometries(grid, volume));
+    } else {
+      final String key = cacheKey();
+      final Map<Integer, Mesh> cached = meshCache.get(key);
+      if (cached != null) {
+        LOG.debug(String.format("Use cached meshes '%s' for '%s'", key, this));
+        for (final Entry<Integer, Mesh> e : cached.entrySet()) {
+          geometries.add(createGeometry(volume, e.getKey(), e.getValue()));
+        }
+      } else {
+        geometries.addAll(createGeometries(grid, volume));
+        final Map<Integer, Mesh> meshes = Maps.newLinkedHashMap();
+        for (final Geometry g : geometries) {
+          meshes.put(g.<Integer> getUserData(MESH_ID), g.getMesh());
+        }
+        meshCache.put(key, meshes);
+      }
+    }
     state = State.NEEDUPDATE;
     final float duration = System.currentTimeMillis() - startTime;
     LOG.debug("Calculate time was " + duration + "ms");
@@ -84,6 +132,20 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
    */
   abstract List<Geometry> createGeometries(VolumeGrid<Bloxel> grid, Volume<Bloxel> volume);
 
+  /**
+   * Subclasses have to implement this method. Here you must create the {@link Geometry} (material, render bucket etc.)
+   * for a {@link Mesh} which was created for the given volume. The mesh id must be stored as user data
+   * {@link #MESH_ID} in the geometry.
+   * 
+   * @param volume
+   *          never <code>null</code>
+   * @param meshId
+   *          the id of the mesh, i.e. the bloxel type
+   * @param mesh
+   *          never <code>null</code>
+   */
+  abstract Geometry createGeometry(Volume<Bloxel> volume, int meshId, Mesh mesh);
+
   public void debug(final boolean b) {
     detachChildNamed("debug");
     if (b) {
@@ -99,6 +161,94 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
     }
   }
 
+  /**
+   * Detach all geometries and give their buffers back to the {@link BufferPool}. Call this if the node is removed from
+   * the scene, the node must not be used anymore.
+   */
+  public void dispose() {
+    releaseGeometries();
+    geometries.clear();
+  }
+
+  BufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  State getState() {
+    return state;
+  }
+
+  Volume<Bloxel> getVolume() {
+    return volume;
+  }
+
+  /**
+   * @return a id which describe the tesselation algorithm and all its settings, two nodes with the same mesher id must
+   *         create the same geometries for the same volume
+   */
+  String getMesherId() {
+    return getClass().getName();
+  }
+
+  /**
+   * Feed all neighbor bloxels (outside of the volume) into the given hasher which are used by
+   * {@link #createGeometries(VolumeGrid, Volume)}. The default implementation use the planes behind the upper bounds
+   * of the volume.
+   *
+   * @param types
+   *          collects the bloxel types
+   */
+  void hashNeighbors(final Hasher hasher, final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
+      final Set<Integer> types) {
+    final int sizeX = volume.getSizeX();
+    final int sizeY = volume.getSizeY();
+    final int sizeZ = volume.getSizeZ();
+    MeshCache.hashPlane(hasher, grid, volume, 0, sizeX, sizeY + 1, sizeZ + 1, types);
+    MeshCache.hashPlane(hasher, grid, volume, 1, sizeY, sizeX + 1, sizeZ + 1, types);
+    MeshCache.hashPlane(hasher, grid, volume, 2, sizeZ, sizeX + 1, sizeY + 1, types);
+  }
+
+  /**
+   * The volume was changed, the next {@link #calculate()} creates new geometries.
+   */
+  void invalidate() {
+    state = State.DIRTY;
+  }
+
+  /**
+   * Detach the current geometries and release their buffers, they are not rendered anymore.
+   */
+  private void releaseGeometries() {
+    final Node node = (Node) getChild("volume");
+    final List<Spatial> children = Lists.newArrayList(node.getChildren());
+    node.detachAllChildren();
+    for (final Spatial child : children) {
+      if (child instanceof Geometry) {
+        bufferPool.release(((Geometry) child).getMesh());
+      }
+    }
+  }
+
+  /**
+   * Borrow the vertex buffers of new meshes from this pool, the buffers of replaced geometries are given back.
+   * 
+   * @param bufferPool
+   *          never <code>null</code>, {@link BufferPool#UNPOOLED} (default) allocates new buffers for each mesh
+   */
+  public void setBufferPool(final BufferPool bufferPool) {
+    this.bufferPool = checkNotNull(bufferPool);
+  }
+
+  /**
+   * Use a persistent cache for the created meshes.
+   * 
+   * @param meshCache
+   *          maybe <code>null</code> to disable caching
+   */
+  public void setMeshCache(final MeshCache meshCache) {
+    this.meshCache = meshCache;
+  }
+
   @Override
   public boolean update() {
     if (state != State.NEEDUPDATE) {
@@ -107,7 +257,7 @@ public abstract class AbstractVolumeNode extends Node implements VolumeNode {
     }
     LOG.debug(String.format("Update geometries for '%s'", this));
     final long startTime = System.currentTimeMillis();
-    ((Node) getChild("volume")).detachAllChildren();
+    releaseGeometries();
     for (final Geometry g : geometries) {
       ((Node) getChild("volume")).attachChild(g);
     }
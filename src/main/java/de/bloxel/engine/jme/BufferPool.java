@@ -0,0 +1,234 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+
+/**
+ * A pool of direct buffers for the vertex buffers of {@link Mesh meshes}. Each remesh would otherwise allocate new
+ * direct memory which is only freed when the garbage collector finds the old buffers.
+ *
+ * The buffers are pooled in size classes (powers of two elements), a borrowed buffer has the capacity of its size
+ * class and the limit of the requested size. Released buffers are kept until the pool holds
+ * <code>maxPooledBytes</code>, further buffers are left to the garbage collector. Only buffers borrowed from the pool
+ * are accepted by {@link #release(Buffer)}, all other buffers (i.e. from the {@link MeshCache}) are ignored.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class BufferPool {
+
+  /**
+   * Allocates every buffer, keeps nothing.
+   */
+  public static final BufferPool UNPOOLED = new BufferPool(0);
+
+  private static final Logger LOG = Logger.getLogger(BufferPool.class);
+
+  private static final int MIN_CLASS = 6;
+  private static final int MAX_CLASS = 24;
+
+  private static final int FLOAT = 0;
+  private static final int INT = 1;
+  private static final int SHORT = 2;
+  private static final int BYTE = 3;
+
+  private final long maxPooledBytes;
+  private final ListMultimap<Integer, Buffer> free = ArrayListMultimap.create();
+  private final Set<Buffer> borrowed = Sets.newSetFromMap(new MapMaker().weakKeys().<Buffer, Boolean> makeMap());
+  private long pooledBytes;
+  private long hits;
+  private long misses;
+  private long releases;
+  private long drops;
+
+  /**
+   * @param maxPooledBytes
+   *          maximal size of all released buffers which are kept for reuse
+   */
+  public BufferPool(final long maxPooledBytes) {
+    checkArgument(maxPooledBytes >= 0);
+    this.maxPooledBytes = maxPooledBytes;
+  }
+
+  private static int bytes(final int kind, final int capacity) {
+    switch (kind) {
+    case BYTE:
+      return capacity;
+    case SHORT:
+      return 2 * capacity;
+    default:
+      return 4 * capacity;
+    }
+  }
+
+  private static int kind(final Buffer buffer) {
+    if (buffer instanceof FloatBuffer) {
+      return FLOAT;
+    }
+    if (buffer instanceof IntBuffer) {
+      return INT;
+    }
+    if (buffer instanceof ShortBuffer) {
+      return SHORT;
+    }
+    if (buffer instanceof ByteBuffer) {
+      return BYTE;
+    }
+    return -1;
+  }
+
+  private static int sizeClass(final int size) {
+    return Math.max(MIN_CLASS, 32 - Integer.numberOfLeadingZeros(size - 1));
+  }
+
+  private synchronized Buffer borrow(final int kind, final int size) {
+    checkArgument(size >= 0);
+    final int sizeClass = sizeClass(size);
+    if (sizeClass > MAX_CLASS) {
+      misses++;
+      return allocate(kind, size);
+    }
+    final List<Buffer> buffers = free.get(kind << 5 | sizeClass);
+    final Buffer buffer;
+    if (buffers.isEmpty()) {
+      misses++;
+      buffer = allocate(kind, 1 << sizeClass);
+    } else {
+      hits++;
+      buffer = buffers.remove(buffers.size() - 1);
+      pooledBytes -= bytes(kind, buffer.capacity());
+    }
+    buffer.clear().limit(size);
+    borrowed.add(buffer);
+    return buffer;
+  }
+
+  private Buffer allocate(final int kind, final int capacity) {
+    switch (kind) {
+    case FLOAT:
+      return BufferUtils.createFloatBuffer(capacity);
+    case INT:
+      return BufferUtils.createIntBuffer(capacity);
+    case BYTE:
+      return BufferUtils.createByteBuffer(capacity);
+    default:
+      return BufferUtils.createShortBuffer(capacity);
+    }
+  }
+
+  /**
+   * @return a direct buffer with position 0 and limit <code>size</code>, native byte order
+   */
+  public ByteBuffer byteBuffer(final int size) {
+    return (ByteBuffer) borrow(BYTE, size);
+  }
+
+  /**
+   * @return a direct buffer with position 0 and limit <code>size</code>
+   */
+  public FloatBuffer floatBuffer(final int size) {
+    return (FloatBuffer) borrow(FLOAT, size);
+  }
+
+  /**
+   * @return a direct buffer with position 0 and limit <code>size</code>
+   */
+  public IntBuffer intBuffer(final int size) {
+    return (IntBuffer) borrow(INT, size);
+  }
+
+  /**
+   * @return a direct buffer with position 0 and limit <code>size</code>
+   */
+  public ShortBuffer shortBuffer(final int size) {
+    return (ShortBuffer) borrow(SHORT, size);
+  }
+
+  /**
+   * @return a direct buffer filled with the first <code>size</code> values of the array
+   */
+  public FloatBuffer floatBuffer(final float[] values, final int size) {
+    final FloatBuffer buffer = floatBuffer(size);
+    buffer.put(values, 0, size).flip();
+    return buffer;
+  }
+
+  /**
+   * @return a direct buffer filled with the first <code>size</code> values of the array
+   */
+  public IntBuffer intBuffer(final int[] values, final int size) {
+    final IntBuffer buffer = intBuffer(size);
+    buffer.put(values, 0, size).flip();
+    return buffer;
+  }
+
+  /**
+   * Give a borrowed buffer back, the buffer must not be used anymore. Buffers which are not borrowed from this pool are
+   * ignored.
+   */
+  public synchronized void release(final Buffer buffer) {
+    if (buffer == null || !borrowed.remove(buffer)) {
+      return;
+    }
+    releases++;
+    final int kind = kind(buffer);
+    final int bytes = bytes(kind, buffer.capacity());
+    if (pooledBytes + bytes > maxPooledBytes) {
+      drops++;
+      return;
+    }
+    pooledBytes += bytes;
+    free.put(kind << 5 | sizeClass(buffer.capacity()), buffer);
+  }
+
+  /**
+   * Give all vertex buffers of the mesh back, the mesh must not be rendered anymore.
+   */
+  public void release(final Mesh mesh) {
+    for (final Type type : Type.values()) {
+      if (mesh.getBuffer(type) != null) {
+        release(mesh.getBuffer(type).getData());
+      }
+    }
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getPooledBytes() {
+    return pooledBytes;
+  }
+
+  public synchronized void logStatistics() {
+    LOG.info(toString());
+  }
+
+  @Override
+  public synchronized String toString() {
+    return format("BufferPool %d borrowed, %d pooled (%d of %d KB), %d hits, %d misses, %d releases, %d dropped",
+        borrowed.size(), free.size(), pooledBytes >> 10, maxPooledBytes >> 10, hits, misses, releases, drops);
+  }
+}
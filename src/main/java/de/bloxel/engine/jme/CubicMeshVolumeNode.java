@@ -1,28 +1,19 @@
 package de.bloxel.engine.jme;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayList;
-import static com.jme3.scene.VertexBuffer.Type.Index;
-import static com.jme3.scene.VertexBuffer.Type.Normal;
-import static com.jme3.scene.VertexBuffer.Type.Position;
-import static com.jme3.scene.VertexBuffer.Type.TexCoord;
-import static com.jme3.util.BufferUtils.createFloatBuffer;
-import static com.jme3.util.BufferUtils.createIntBuffer;
 import static de.bloxel.engine.jme.GeometryBuilder.geometry;
-import static org.apache.commons.lang3.ArrayUtils.toPrimitive;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
-import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
 import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
 import com.jme3.math.Vector2f;
@@ -31,6 +22,8 @@ import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 
 import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.Volume;
@@ -42,303 +35,627 @@ import de.bloxel.engine.material.BloxelAssetManager.BloxelSide;
  * This {@link VolumeNode} create a {@link Mesh}. The tesselation algorithm creates one mesh per
  * {@link de.bloxel.engine.data.Bloxel#getType()} in the {@link Volume bloxel volume}.
  * 
+ * <p>
+ * In {@link Mode#PER_FACE} each visible face is one quad with the texture coordinates of the
+ * {@link BloxelAssetManager}. {@link Mode#GREEDY} merges adjacent faces of the same type and side into rectangles (see
+ * {@link GreedyMesher}), the texture must be repeated across the merged quad: <code>TexCoord</code> contains the face
+ * coordinates in bloxels (0..width, 0..height) and <code>TexCoord2</code> the atlas tile (u, v, width, height) of the
+ * face. The materials must use the tiled atlas shader (see
+ * {@link de.bloxel.engine.material.ImageAtlasBloxelAssetManager#setTiling(boolean)}), colored materials don't need
+ * texture coordinates.
+ * </p>
+ * 
+ * <p>
+ * With {@link #setSingleMesh(boolean)} all opaque bloxels are one mesh and all transparent bloxels another, they use
+ * the {@link BloxelAssetManager#getAtlasMaterial(boolean) atlas material}. The bloxel type of a face is only encoded
+ * in its texture coordinates (the atlas tile), so a volume needs at most two draw calls.
+ * </p>
+ * 
+ * <p>
+ * The volume is tesselated in sections of {@link #setSectionHeight(int)} layers, each section has its own range in the
+ * vertex buffers (see {@link MeshSections}). Edits forwarded by a {@link SectionRemesher} tesselate only the sections
+ * around the changed bloxels again and patch the buffers of the geometries in place. The vertex data of the last
+ * tesselation and a copy of the volume are kept for this.
+ * </p>
+ * 
+ * <p>
+ * With {@link #setPacked(boolean)} the vertices are stored in the {@link PackedVertexFormat} (8 bytes per vertex),
+ * both modes use the face coordinates and the atlas tile then. The materials must use the packed atlas shader (see
+ * {@link de.bloxel.engine.material.ImageAtlasBloxelAssetManager#setPacked(boolean)}).
+ * </p>
+ * 
  * @author Andreas Höhmann
  * @since 1.0.0
  */
 public class CubicMeshVolumeNode extends AbstractVolumeNode {
 
+  public enum Mode {
+    PER_FACE, GREEDY;
+  }
+
   private static final Logger LOG = Logger.getLogger(CubicMeshVolumeNode.class);
 
-  private static final ArrayList<Vector3f> NORMALS_DOWNFACE = newArrayList(NORMAL_DOWN, NORMAL_DOWN, NORMAL_DOWN,
-      NORMAL_DOWN);
-  private static final ArrayList<Vector3f> NORMALS_UPFACE = newArrayList(NORMAL_UP, NORMAL_UP, NORMAL_UP, NORMAL_UP);
-  private static final ArrayList<Vector3f> NORMALS_LEFTFACE = newArrayList(NORMAL_LEFT, NORMAL_LEFT, NORMAL_LEFT,
-      NORMAL_LEFT);
-  private static final ArrayList<Vector3f> NORMALS_RIGHTFACE = newArrayList(NORMAL_RIGHT, NORMAL_RIGHT, NORMAL_RIGHT,
-      NORMAL_RIGHT);
-  private static final ArrayList<Vector3f> NORMALS_FRONTFACE = newArrayList(NORMAL_FRONT, NORMAL_FRONT, NORMAL_FRONT,
-      NORMAL_FRONT);
-  private static final ArrayList<Vector3f> NORMALS_BACKFACE = newArrayList(NORMAL_BACK, NORMAL_BACK, NORMAL_BACK,
-      NORMAL_BACK);
-
-  private static final int FACE_NO = 0;
-  private static final int FACE_RIGHT = 1;
-  private static final int FACE_LEFT = 2;
-  private static final int FACE_UP = 4;
-  private static final int FACE_DOWN = 8;
-  private static final int FACE_FRONT = 16;
-  private static final int FACE_BACK = 32;
+  /**
+   * Mesh id of the opaque mesh in single mesh mode.
+   */
+  static final int OPAQUE_MESH = -2;
 
   /**
-   * <pre>
-   *     pg-----ph
-   *    /|      /|
-   *   pc-----pd |
-   *   | pe----|pf
-   *   |/      | /  
-   *   pa-----pb
-   *   
-   *   2\2--3
-   *   | \  | Counter-clockwise -> then this is the front of the polygon
-   *   |  \ |
-   *   0--1\1
-   * 
-   * </pre>
+   * Mesh id of the transparent mesh in single mesh mode.
+   */
+  static final int TRANSPARENT_MESH = -3;
+
+  /**
+   * Default number of layers per section, see {@link #setSectionHeight(int)}.
    */
-  private static final ArrayList<Integer> TRIANGLE_INDIZES = Lists.newArrayList(2, 0, 1, 1, 3, 2);
+  public static final int DEFAULT_SECTION_HEIGHT = 4;
+
+  static final int FACE_NO = 0;
+  static final int FACE_RIGHT = 1;
+  static final int FACE_LEFT = 2;
+  static final int FACE_UP = 4;
+  static final int FACE_DOWN = 8;
+  static final int FACE_FRONT = 16;
+  static final int FACE_BACK = 32;
 
-  private final Multimap<Integer, Vector3f> vertices = ArrayListMultimap.create();
-  private final Multimap<Integer, Vector3f> normals = ArrayListMultimap.create();
-  private final Multimap<Integer, Vector2f> textureCoord = ArrayListMultimap.create();
-  private final Multimap<Integer, Integer> indexes = ArrayListMultimap.create();
+  private static final int[] FACES = { FACE_BACK, FACE_FRONT, FACE_RIGHT, FACE_LEFT, FACE_UP, FACE_DOWN };
+
+  /**
+   * Vertex data of the last tesselation, one builder per section and mesh id.
+   */
+  private MeshSections sections;
+  private Mode mode = Mode.PER_FACE;
+  private boolean singleMesh;
+  private boolean atlasMeshes;
+  private int sectionHeight = DEFAULT_SECTION_HEIGHT;
+  private boolean packed;
+
+  /**
+   * Copy of the volume of the last tesselation, the edits are applied to it.
+   */
+  private PaddedChunk chunk;
+
+  /**
+   * Edits since the last calculation: x, y, z and new type.
+   */
+  private final List<int[]> edits = newArrayList();
+
+  /**
+   * First section whose buffer range must be patched in {@link #update()}, -1 if nothing was remeshed.
+   */
+  private int patchFrom = -1;
+
+  /**
+   * The mesh ids of the remeshed sections, only their geometries must be patched.
+   */
+  private final Set<Integer> patchMeshes = Sets.newHashSet();
+
+  /**
+   * Translucency of the bloxel types 0..255 (0 unknown, 1 opaque, 2 translucent), asked once per tesselation.
+   */
+  private final byte[] translucent = new byte[256];
+
+  /**
+   * Face bits of the remeshed sections, reused for all edits.
+   */
+  private int[] sectionFaces;
 
   public CubicMeshVolumeNode(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
       final AssetManager assetManager, final BloxelAssetManager bloxelAssetManager) {
     super(grid, volume, assetManager, bloxelAssetManager);
   }
 
-  private int checkFaces(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume, final Bloxel data, final int x,
-      final int y, final int z) {
-    int faces = FACE_NO;
-    if (needFace(grid, volume, data, x + 1, y, z)) {
-      faces |= FACE_RIGHT;
+  @Override
+  public boolean calculate() {
+    final List<int[]> pending;
+    synchronized (edits) {
+      pending = newArrayList(edits);
+      edits.clear();
     }
-    if (needFace(grid, volume, data, x - 1, y, z)) {
-      faces |= FACE_LEFT;
+    if (!pending.isEmpty() && chunk != null && getState() == State.UP2DATE) {
+      final long start = System.nanoTime();
+      remesh(pending);
+      LOG.debug(String.format("Remesh %d edits of '%s' in %.3fms", pending.size(), this,
+          (System.nanoTime() - start) / 1e6));
+      return true;
     }
-    if (needFace(grid, volume, data, x, y + 1, z)) {
-      faces |= FACE_UP;
+    if (!pending.isEmpty()) {
+      // nothing to patch, the volume contains the edits already
+      invalidate();
     }
-    if (needFace(grid, volume, data, x, y - 1, z)) {
-      faces |= FACE_DOWN;
+    if (getState() == State.DIRTY) {
+      // a cached mesh has no snapshot
+      chunk = null;
+      patchFrom = -1;
+      patchMeshes.clear();
     }
-    if (needFace(grid, volume, data, x, y, z + 1)) {
-      faces |= FACE_BACK;
+    return super.calculate();
+  }
+
+  /**
+   * Check the faces of all bloxels one by one.
+   * 
+   * @return the face bits of all bloxels, index <code>x + sizeX * (y + sizeY * z)</code>
+   */
+  int[] checkFaces(final PaddedChunk chunk) {
+    final int[] faces = new int[chunk.sizeX * chunk.sizeY * chunk.sizeZ];
+    checkFaces(chunk, 0, chunk.sizeY, faces);
+    return faces;
+  }
+
+  /**
+   * Check the faces of the bloxels in the layers <code>y0</code> (inclusive) to <code>y1</code> (exclusive).
+   * 
+   * @param faces
+   *          receives the face bits of the bloxels in the layers, index <code>x + sizeX * (y + sizeY * z)</code>
+   */
+  private void checkFaces(final PaddedChunk chunk, final int y0, final int y1, final int[] faces) {
+    final int[] offsets = { chunk.offset(1, 0, 0), chunk.offset(-1, 0, 0), chunk.offset(0, 1, 0),
+        chunk.offset(0, -1, 0), chunk.offset(0, 0, 1), chunk.offset(0, 0, -1) };
+    final int[] neighborFaces = { FACE_RIGHT, FACE_LEFT, FACE_UP, FACE_DOWN, FACE_BACK, FACE_FRONT };
+    for (int z = 0; z < chunk.sizeZ; z++) {
+      for (int y = y0; y < y1; y++) {
+        for (int x = 0; x < chunk.sizeX; x++) {
+          final int p = chunk.index(x, y, z);
+          final int type = chunk.types[p];
+          if (type == PaddedChunk.AIR) {
+            faces[x + chunk.sizeX * (y + chunk.sizeY * z)] = FACE_NO;
+            continue;
+          }
+          int bits = FACE_NO;
+          for (int i = 0; i < offsets.length; i++) {
+            if (needFace(type, chunk.types[p + offsets[i]])) {
+              bits |= neighborFaces[i];
+            }
+          }
+          faces[x + chunk.sizeX * (y + chunk.sizeY * z)] = bits;
+        }
+      }
     }
-    if (needFace(grid, volume, data, x, y, z - 1)) {
-      faces |= FACE_FRONT;
+  }
+
+  /**
+   * Check the faces of all bloxels with {@link FaceCulling}. Same result as {@link #checkFaces(PaddedChunk)}.
+   * 
+   * @return the face bits of all bloxels, index <code>x + sizeX * (y + sizeY * z)</code>
+   */
+  int[] cullFaces(final PaddedChunk chunk) {
+    final int[] kinds = new int[chunk.types.length];
+    final Map<Integer, Integer> kindOfType = Maps.newHashMap();
+    for (int i = 0; i < kinds.length; i++) {
+      final int type = chunk.types[i];
+      if (type == PaddedChunk.AIR) {
+        continue;
+      }
+      Integer kind = kindOfType.get(type);
+      if (kind == null) {
+        kind = bloxelAssetManager.isTransparent(type) ? FaceCulling.OPAQUE + kindOfType.size() + 1
+            : FaceCulling.OPAQUE;
+        kindOfType.put(type, kind);
+      }
+      kinds[i] = kind;
     }
+    final int[] faces = new int[chunk.sizeX * chunk.sizeY * chunk.sizeZ];
+    FaceCulling.cull(chunk, kinds, FaceCulling.OPAQUE + kindOfType.size() + 1, faces);
     return faces;
   }
 
-  private void clear() {
-    vertices.clear();
-    normals.clear();
-    textureCoord.clear();
-    indexes.clear();
+  /**
+   * Add the quad of one side of the box <code>(x,y,z)-(x+xdelta,y+ydelta,z+zdelta)</code>.
+   * 
+   * <pre>
+   *     pg-----ph
+   *    /|      /|
+   *   pc-----pd |
+   *   | pe----|pf
+   *   |/      | /  
+   *   pa-----pb
+   * </pre>
+   */
+  private void createQuad(final int section, final int bloxelType, final int face, final int x, final int y,
+      final int z, final float xdelta, final float ydelta, final float zdelta) {
+    final MeshBuilder builder = sections.builder(section, meshId(bloxelType));
+    final float x1 = x + xdelta;
+    final float y1 = y + ydelta;
+    final float z1 = z + zdelta;
+    switch (face) {
+    case FACE_BACK:
+      // pa, pb, pc, pd
+      builder.position(x, y, z1);
+      builder.position(x1, y, z1);
+      builder.position(x, y1, z1);
+      builder.position(x1, y1, z1);
+      createNormals(builder, NORMAL_BACK);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.BACK, xdelta, ydelta);
+      break;
+    case FACE_FRONT:
+      // pf, pe, ph, pg
+      builder.position(x1, y, z);
+      builder.position(x, y, z);
+      builder.position(x1, y1, z);
+      builder.position(x, y1, z);
+      createNormals(builder, NORMAL_FRONT);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.FRONT, xdelta, ydelta);
+      break;
+    case FACE_RIGHT:
+      // pb, pf, pd, ph
+      builder.position(x1, y, z1);
+      builder.position(x1, y, z);
+      builder.position(x1, y1, z1);
+      builder.position(x1, y1, z);
+      createNormals(builder, NORMAL_RIGHT);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.RIGHT, zdelta, ydelta);
+      break;
+    case FACE_LEFT:
+      // pe, pa, pg, pc
+      builder.position(x, y, z);
+      builder.position(x, y, z1);
+      builder.position(x, y1, z);
+      builder.position(x, y1, z1);
+      createNormals(builder, NORMAL_LEFT);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.LEFT, zdelta, ydelta);
+      break;
+    case FACE_UP:
+      // pc, pd, pg, ph
+      builder.position(x, y1, z1);
+      builder.position(x1, y1, z1);
+      builder.position(x, y1, z);
+      builder.position(x1, y1, z);
+      createNormals(builder, NORMAL_UP);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.UP, xdelta, zdelta);
+      break;
+    case FACE_DOWN:
+      // pe, pf, pa, pb
+      builder.position(x, y, z);
+      builder.position(x1, y, z);
+      builder.position(x, y, z1);
+      builder.position(x1, y, z1);
+      createNormals(builder, NORMAL_DOWN);
+      createTextureCoordinates(builder, bloxelType, BloxelSide.DOWN, xdelta, zdelta);
+      break;
+    default:
+      throw new IllegalArgumentException(String.format("Invalid face %d", face));
+    }
   }
 
-  private boolean createFaces(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume, final Bloxel data,
-      final int x, final int y, final int z) {
-    final int faces = checkFaces(grid, volume, data, x, y, z);
-    if ((faces & FACE_NO) > 0) {
-      return false;
+  private void createNormals(final MeshBuilder builder, final Vector3f normal) {
+    for (int i = 0; i < 4; i++) {
+      builder.normal(normal);
     }
-    final float zdelta = 1f;
-    final float xdelta = 1f;
-    final float ydelta = 1f;
-    final int bloxelType = data.getType();
-    final Vector3f pa = new Vector3f(x, y, z + zdelta);
-    final Vector3f pb = new Vector3f(x + xdelta, y, z + zdelta);
-    final Vector3f pc = new Vector3f(x, y + ydelta, z + zdelta);
-    final Vector3f pd = new Vector3f(x + xdelta, y + ydelta, z + zdelta);
-    final Vector3f pe = new Vector3f(x, y, z);
-    final Vector3f pf = new Vector3f(x + xdelta, y, z);
-    final Vector3f pg = new Vector3f(x, y + ydelta, z);
-    final Vector3f ph = new Vector3f(x + xdelta, y + ydelta, z);
-    boolean materialUsed = false;
-    if ((faces & FACE_BACK) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pa, pb, pc, pd));
-      normals.get(bloxelType).addAll(NORMALS_BACKFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.BACK));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    if ((faces & FACE_FRONT) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pf, pe, ph, pg));
-      normals.get(bloxelType).addAll(NORMALS_FRONTFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.FRONT));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    if ((faces & FACE_RIGHT) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pb, pf, pd, ph));
-      normals.get(bloxelType).addAll(NORMALS_RIGHTFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.RIGHT));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    if ((faces & FACE_LEFT) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pe, pa, pg, pc));
-      normals.get(bloxelType).addAll(NORMALS_LEFTFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.LEFT));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    if ((faces & FACE_UP) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pc, pd, pg, ph));
-      normals.get(bloxelType).addAll(NORMALS_UPFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.UP));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    if ((faces & FACE_DOWN) > 0) {
-      final int verticesSize = vertices.get(bloxelType).size();
-      vertices.get(bloxelType).addAll(Lists.newArrayList(pe, pf, pa, pb));
-      normals.get(bloxelType).addAll(NORMALS_DOWNFACE);
-      textureCoord.get(bloxelType).addAll(bloxelAssetManager.getTextureCoordinates(bloxelType, BloxelSide.DOWN));
-      indexes.get(bloxelType).addAll(verticesIndex(verticesSize, TRIANGLE_INDIZES));
-      materialUsed = true;
-    }
-    return materialUsed;
   }
 
-  @Override
-  List<Geometry> createGeometries(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
-    LOG.debug(String.format("Tesselate volume %s", volume));
-    clear();
+  /**
+   * Per face the atlas coordinates of the side texture, greedy or packed the coordinates in bloxels and the atlas tile.
+   */
+  private void createTextureCoordinates(final MeshBuilder builder, final int bloxelType, final BloxelSide side,
+      final float width, final float height) {
+    final List<Vector2f> atlas = bloxelAssetManager.getTextureCoordinates(bloxelType, side);
+    if (mode == Mode.PER_FACE && !packed) {
+      for (int i = 0; i < 4; i++) {
+        builder.texCoord(atlas.get(i).x, atlas.get(i).y);
+      }
+      return;
+    }
+    builder.texCoord(0, 0);
+    builder.texCoord(width, 0);
+    builder.texCoord(0, height);
+    builder.texCoord(width, height);
+    final Vector2f origin = atlas.get(0);
+    final Vector2f opposite = atlas.get(3);
+    for (int i = 0; i < 4; i++) {
+      builder.tile(origin.x, origin.y, opposite.x - origin.x, opposite.y - origin.y);
+    }
+  }
+
+  /**
+   * Merge the faces of the bloxels of one section with {@link GreedyMesher}, the quads don't reach into other
+   * sections.
+   * 
+   * @return number of quads
+   */
+  private int createGreedyQuads(final PaddedChunk chunk, final int[] faces, final int section, final int y0,
+      final int y1) {
+    final int height = y1 - y0;
+    final int[] sectionTypes = new int[chunk.sizeX * height * chunk.sizeZ];
+    final int[] sectionFaces = new int[sectionTypes.length];
+    for (int z = 0; z < chunk.sizeZ; z++) {
+      for (int y = y0; y < y1; y++) {
+        for (int x = 0; x < chunk.sizeX; x++) {
+          final int index = x + chunk.sizeX * (y - y0 + height * z);
+          sectionTypes[index] = chunk.get(x, y, z);
+          sectionFaces[index] = faces[x + chunk.sizeX * (y + chunk.sizeY * z)];
+        }
+      }
+    }
+    final int[] quads = new int[1];
+    GreedyMesher.mesh(chunk.sizeX, height, chunk.sizeZ, sectionTypes, sectionFaces, new GreedyMesher.Quads() {
+
+      @Override
+      public void quad(final int type, final int face, final int x, final int y, final int z, final int qx,
+          final int qy, final int qz) {
+        createQuad(section, type, face, x, y0 + y, z, qx, qy, qz);
+        quads[0]++;
+      }
+    });
+    return quads[0];
+  }
+
+  /**
+   * Tesselate the bloxels of one section into its builders.
+   * 
+   * @return number of quads (greedy) or boxes (per face)
+   */
+  private int createSection(final PaddedChunk chunk, final int[] faces, final int section) {
+    final int y0 = section * sectionHeight;
+    final int y1 = Math.min(chunk.sizeY, y0 + sectionHeight);
+    sections.reset(section);
+    if (mode == Mode.GREEDY) {
+      return createGreedyQuads(chunk, faces, section, y0, y1);
+    }
+    final int sizeX = chunk.sizeX;
+    final int sizeY = chunk.sizeY;
     int c = 0;
-    final Set<Integer> usedBloxeTypes = Sets.newHashSet();
-    for (int x = 0; x < volume.getSizeX(); x++) {
-      for (int z = 0; z < volume.getSizeZ(); z++) {
-        for (int y = 0; y < volume.getSizeY(); y++) {
-          final Bloxel data = volume.get(x, y, z);
-          Preconditions.checkNotNull(data);
-          if (data == Bloxel.AIR) {
+    for (int x = 0; x < sizeX; x++) {
+      for (int z = 0; z < chunk.sizeZ; z++) {
+        for (int y = y0; y < y1; y++) {
+          final int index = x + sizeX * (y + sizeY * z);
+          if (faces[index] == FACE_NO) {
             continue;
           }
-          if (createFaces(grid, volume, data, x, y, z)) {
-            c++;
-            usedBloxeTypes.add(data.getType());
+          for (final int face : FACES) {
+            if ((faces[index] & face) > 0) {
+              createQuad(section, chunk.get(x, y, z), face, x, y, z, 1, 1, 1);
+            }
           }
+          c++;
         }
       }
     }
-    LOG.debug("Found " + c + " boxes with " + usedBloxeTypes.size() + " different types");
+    return c;
+  }
+
+  @Override
+  List<Geometry> createGeometries(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
+    LOG.debug(String.format("Tesselate volume %s", volume));
+    synchronized (edits) {
+      // the snapshot contains them
+      edits.clear();
+    }
+    atlasMeshes = useAtlasMeshes();
+    if (singleMesh && !atlasMeshes) {
+      LOG.debug("No atlas material - create one mesh per bloxel type");
+    }
+    Arrays.fill(translucent, (byte) 0);
+    final PaddedChunk snapshot = PaddedChunk.snapshot(grid, volume);
+    final int sectionCount = (snapshot.sizeY + sectionHeight - 1) / sectionHeight;
+    if (sections == null || sections.size() != sectionCount || sections.isPacked() != packed) {
+      sections = new MeshSections(sectionCount, packed);
+    }
+    final int[] faces = snapshot.sizeY > Long.SIZE ? checkFaces(snapshot) : cullFaces(snapshot);
+    int c = 0;
+    for (int s = 0; s < sectionCount; s++) {
+      c += createSection(snapshot, faces, s);
+    }
     final List<Geometry> result = newArrayList();
-    for (final Integer bloxelType : usedBloxeTypes) {
-      LOG.debug("Build mesh for material " + bloxelType + " ...");
-      final Mesh mesh = new Mesh();
-      mesh.setBuffer(Position, 3, createFloatBuffer(vertices.get(bloxelType).toArray(new Vector3f[vertices.size()])));
-      LOG.debug("Material " + bloxelType + " have " + vertices.get(bloxelType).size() + " vertices");
-      mesh.setBuffer(Normal, 3, createFloatBuffer(normals.get(bloxelType).toArray(new Vector3f[normals.size()])));
-      LOG.debug("Material " + bloxelType + " have " + normals.get(bloxelType).size() + " normals");
-      mesh.setBuffer(TexCoord, 2,
-          createFloatBuffer(textureCoord.get(bloxelType).toArray(new Vector2f[textureCoord.size()])));
-      LOG.debug("Material " + bloxelType + " have " + textureCoord.get(bloxelType).size() + " texCoord");
-      mesh.setBuffer(Index, 1, createIntBuffer(toPrimitive(indexes.get(bloxelType).toArray(new Integer[0]))));
-      LOG.debug("Material " + bloxelType + " have " + indexes.get(bloxelType).size() + " indexes");
-      mesh.updateBound();
-      mesh.updateCounts();
-      if (mesh.getVertexCount() != 0) {
-        final Material material = bloxelAssetManager.getMaterial(bloxelType, BloxelSide.DOWN);
-        final Geometry geometry = geometry("bloxel-" + bloxelType).mesh(mesh).material(material).get();
-        geometry.setQueueBucket(RenderQueue.Bucket.Opaque);
-        geometry.setShadowMode(ShadowMode.CastAndReceive);
-        if (bloxelAssetManager.isTransparent(bloxelType)) {
-          // geometry.setQueueBucket(RenderQueue.Bucket.Translucent);
-          geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
-          geometry.setShadowMode(ShadowMode.Receive);
-        }
-        geometry.setLocalTranslation(new Vector3f(volume.getX(), volume.getY(), volume.getZ()));
-        result.add(geometry);
+    for (final Integer meshId : sections.meshIds()) {
+      if (!sections.isEmpty(meshId)) {
+        result.add(createGeometry(volume, meshId, sections.build(meshId, getBufferPool())));
       }
     }
-    clear();
+    LOG.debug("Found " + c + (mode == Mode.GREEDY ? " quads" : " boxes") + " in " + result.size() + " meshes");
+    chunk = snapshot;
     return result;
   }
 
-  private boolean isTranslucentBloxel(final Bloxel checkBloxel) {
-    return checkBloxel == Bloxel.AIR || bloxelAssetManager.isTransparent(checkBloxel.getType());
+  /**
+   * Remember the change of a bloxel, the next {@link #calculate()} tesselates only the sections around the bloxel
+   * again and {@link #update()} patches the geometries.
+   * 
+   * @param x
+   *          position in the volume, -1 or size for a bloxel of the neighbor volume next to this volume
+   * @param type
+   *          the new bloxel type
+   */
+  void edit(final int x, final int y, final int z, final int type) {
+    synchronized (edits) {
+      edits.add(new int[] { x, y, z, type });
+    }
+  }
+
+  @Override
+  Geometry createGeometry(final Volume<Bloxel> volume, final int meshId, final Mesh mesh) {
+    final Material material;
+    final boolean transparent;
+    if (meshId == OPAQUE_MESH || meshId == TRANSPARENT_MESH) {
+      transparent = meshId == TRANSPARENT_MESH;
+      material = bloxelAssetManager.getAtlasMaterial(transparent);
+    } else {
+      transparent = bloxelAssetManager.isTransparent(meshId);
+      material = bloxelAssetManager.getMaterial(meshId, BloxelSide.DOWN);
+    }
+    final Geometry geometry = geometry("bloxel-" + meshId).mesh(mesh).material(material).get();
+    geometry.setUserData(MESH_ID, meshId);
+    geometry.setQueueBucket(RenderQueue.Bucket.Opaque);
+    geometry.setShadowMode(ShadowMode.CastAndReceive);
+    if (transparent) {
+      // geometry.setQueueBucket(RenderQueue.Bucket.Translucent);
+      geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
+      geometry.setShadowMode(ShadowMode.Receive);
+    }
+    geometry.setLocalTranslation(new Vector3f(volume.getX(), volume.getY(), volume.getZ()));
+    return geometry;
+  }
+
+  @Override
+  public boolean update() {
+    if (patchFrom < 0) {
+      return super.update();
+    }
+    patch();
+    return true;
+  }
+
+  @Override
+  String getMesherId() {
+    // the effective mode, cached atlas meshes need an atlas material
+    return super.getMesherId() + ":" + mode + (useAtlasMeshes() ? ":single" : "") + (packed ? ":packed" : "") + ":"
+        + sectionHeight;
   }
 
   /**
-   * @param currentBloxel
-   * @param neighborBloxel
-   * @return <code>true</code> if a face is needed between currentBloxel and neighborBloxel
+   * The tesselation looks at the halo of the {@link PaddedChunk}.
    */
-  private boolean needFace(final Bloxel currentBloxel, final Bloxel neighborBloxel) {
-    checkNotNull(currentBloxel);
-    checkNotNull(neighborBloxel);
-    checkArgument(currentBloxel != Bloxel.AIR);
-    if (currentBloxel.getType() == neighborBloxel.getType()) {
-      // same type
-      return false;
+  @Override
+  void hashNeighbors(final Hasher hasher, final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
+      final Set<Integer> types) {
+    PaddedChunk.hashHalo(hasher, grid, volume, types);
+  }
+
+  /**
+   * @return the id of the mesh which contains the faces of the bloxel type
+   */
+  private int meshId(final int bloxelType) {
+    if (!atlasMeshes) {
+      return bloxelType;
+    }
+    return bloxelAssetManager.isTransparent(bloxelType) ? TRANSPARENT_MESH : OPAQUE_MESH;
+  }
+
+  /**
+   * Write the remeshed sections into the geometries, in the render thread.
+   */
+  private void patch() {
+    final Node node = (Node) getChild("volume");
+    final Map<Integer, Geometry> current = Maps.newHashMap();
+    for (final Spatial child : node.getChildren()) {
+      if (child instanceof Geometry) {
+        current.put(child.<Integer> getUserData(MESH_ID), (Geometry) child);
+      }
     }
-    // if (neighborBloxel == Bloxel.AIR) {
-    // // neighbor bloxel is air then it doesn't matter if current bloxel is translucent we always need a face here
-    // return true;
-    // }
-    if (isTranslucentBloxel(currentBloxel)) {
-      // current bloxel is translucent
-      if (isTranslucentBloxel(neighborBloxel)) {
-        // we need a face if the neighbor bloxel is also translucent but with a different type
-        return currentBloxel.getType() != neighborBloxel.getType();
+    for (final Integer meshId : patchMeshes) {
+      final Geometry geometry = current.get(meshId);
+      if (sections.isEmpty(meshId)) {
+        if (geometry != null) {
+          node.detachChild(geometry);
+          getBufferPool().release(geometry.getMesh());
+        }
+      } else if (geometry == null) {
+        node.attachChild(createGeometry(getVolume(), meshId, sections.build(meshId, getBufferPool())));
+      } else if (sections.patch(meshId, geometry.getMesh(), patchFrom)) {
+        geometry.updateModelBound();
+      } else {
+        final Mesh old = geometry.getMesh();
+        geometry.setMesh(sections.build(meshId, getBufferPool()));
+        getBufferPool().release(old);
       }
-      // we need a face if the neighbor bloxel is not translucent
-      return true;
     }
-    // normal current bloxel
-    // we need a face if the neighbor bloxel is translucent
-    return isTranslucentBloxel(neighborBloxel);
+    patchFrom = -1;
+    patchMeshes.clear();
   }
 
   /**
-   * Check joint face for <code>currentBloxel</code> with neighborBloxel (defined by position x, y and z). If this
-   * method return <code>true</code> the the <code>currentBloxel</code> need a (solid) face to separate currentBloxel
-   * from the neighborBloxel.
-   * 
-   * @param grid
-   *          the grid
-   * @param v
-   *          the volume
-   * @param currentBloxel
-   *          never <code>null</code>, never {@link Bloxel#AIR}
-   * @param x
-   * @param y
-   * @param z
-   * @return
+   * Apply the edits to the snapshot and tesselate the sections which contain the changed bloxels or their neighbors.
    */
-  private boolean needFace(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> v, final Bloxel currentBloxel,
-      final int x, final int y, final int z) {
-    checkNotNull(currentBloxel);
-    checkArgument(currentBloxel != Bloxel.AIR);
-    final int gx = v.getX() + x;
-    final int gy = v.getY() + y;
-    final int gz = v.getZ() + z;
-    if (x < 0 || x >= v.getSizeX()) {
-      System.out.println(String.format("x out of volume: %d,%d,%d->%d,%d,%d", x, y, z, gx, gy, gz));
-      final Bloxel bloxel = grid.get(gx, gy, gz);
-      if (currentBloxel.getType() != bloxel.getType()) {
-        return true;
+  private void remesh(final List<int[]> pending) {
+    final boolean[] dirty = new boolean[sections.size()];
+    final int size = chunk.sizeX * chunk.sizeY * chunk.sizeZ;
+    if (sectionFaces == null || sectionFaces.length != size) {
+      sectionFaces = new int[size];
+    }
+    for (final int[] edit : pending) {
+      chunk.types[chunk.index(edit[0], edit[1], edit[2])] = edit[3];
+      // the faces of the bloxels above and below change too
+      for (int y = Math.max(0, edit[1] - 1); y <= Math.min(chunk.sizeY - 1, edit[1] + 1); y++) {
+        dirty[y / sectionHeight] = true;
       }
-      System.out.println("current:" + currentBloxel + " / " + v);
-      System.out.println("neigbor:" + bloxel + " / " + grid.getVolumeForWorldPosition(gx, gy, gz));
-      return false;
     }
-    if (y < 0 || y >= v.getSizeY()) {
-      // System.out.println("y out of volume");
-      // return needFace(currentBloxel, grid.get(gx, gy, gz));
-      return false;
+    for (int s = 0; s < dirty.length; s++) {
+      if (dirty[s]) {
+        final int y0 = s * sectionHeight;
+        // the builders of the section are kept, also the ones which are empty now
+        checkFaces(chunk, y0, Math.min(chunk.sizeY, y0 + sectionHeight), sectionFaces);
+        createSection(chunk, sectionFaces, s);
+        patchMeshes.addAll(sections.meshIds(s));
+        patchFrom = patchFrom < 0 ? s : Math.min(patchFrom, s);
+      }
     }
-    if (z < 0 || z >= v.getSizeZ()) {
-      // System.out.println("z out of volume");
-      // return needFace(currentBloxel, grid.get(gx, gy, gz));
-      return false;
+  }
+
+  private boolean isTranslucentBloxel(final int type) {
+    if (type == PaddedChunk.AIR) {
+      return true;
     }
-    return needFace(currentBloxel, v.get(x, y, z));
+    if (type < 0 || type >= translucent.length) {
+      return bloxelAssetManager.isTransparent(type);
+    }
+    if (translucent[type] == 0) {
+      translucent[type] = (byte) (bloxelAssetManager.isTransparent(type) ? 2 : 1);
+    }
+    return translucent[type] == 2;
+  }
+
+  public void setMode(final Mode mode) {
+    this.mode = mode;
+    // the sections of the last tesselation were created by the other mode
+    invalidate();
   }
 
-  private ArrayList<Integer> verticesIndex(final int verticesSize, final ArrayList<Integer> indexes) {
-    final ArrayList<Integer> result = Lists.newArrayList();
-    for (final Integer i : indexes) {
-      result.add(i + verticesSize);
+  /**
+   * @param packed
+   *          <code>true</code> store the vertices in the {@link PackedVertexFormat}, the volume must not be larger than
+   *          255 bloxels and the atlas tiles must have the same size
+   */
+  public void setPacked(final boolean packed) {
+    this.packed = packed;
+    invalidate();
+  }
+
+  /**
+   * @param sectionHeight
+   *          number of layers per section, an edit tesselates only one section (two if the bloxel is next to another
+   *          section) again. Greedy quads don't reach across sections, smaller sections create more triangles.
+   */
+  public void setSectionHeight(final int sectionHeight) {
+    checkArgument(sectionHeight > 0);
+    this.sectionHeight = sectionHeight;
+    // the sections of the last tesselation don't fit anymore
+    invalidate();
+  }
+
+  /**
+   * @param singleMesh
+   *          <code>true</code> one mesh for all opaque and one for all transparent bloxels, only if the
+   *          {@link BloxelAssetManager} has an atlas material
+   */
+  public void setSingleMesh(final boolean singleMesh) {
+    this.singleMesh = singleMesh;
+    invalidate();
+  }
+
+  /**
+   * @return <code>true</code> if the faces are collected in the opaque and the transparent atlas mesh
+   */
+  private boolean useAtlasMeshes() {
+    return singleMesh && bloxelAssetManager.getAtlasMaterial(false) != null;
+  }
+
+  /**
+   * @param currentType
+   *          never {@link Bloxel#AIR}
+   * @param neighborType
+   * @return <code>true</code> if a face is needed between the current and the neighbor bloxel
+   */
+  private boolean needFace(final int currentType, final int neighborType) {
+    if (currentType == neighborType) {
+      // same type
+      return false;
     }
-    return result;
+    if (isTranslucentBloxel(currentType)) {
+      // current bloxel is translucent, we need a face if the neighbor is not translucent or has a different type
+      return true;
+    }
+    // normal current bloxel
+    // we need a face if the neighbor bloxel is translucent
+    return isTranslucentBloxel(neighborType);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Computes the visible faces of a whole volume with bit operations. Each column along the y axis is one
+ * <code>long</code> per kind of bloxel, a face is visible where the column has a bit and the neighbor column (or the
+ * shifted column for up and down) has none:
+ *
+ * <ul>
+ * <li>all opaque bloxels are one kind, they hide each other independent of the type</li>
+ * <li>each transparent type is its own kind, it is only hidden by the same type</li>
+ * </ul>
+ *
+ * This is the same rule as the per bloxel check of {@link CubicMeshVolumeNode} but needs no lookups per face. The
+ * neighbors at the volume bounds are taken from the halo of the {@link PaddedChunk}. Volumes must not be higher than
+ * 64 bloxels.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class FaceCulling {
+
+  /**
+   * Kind of empty cells.
+   */
+  static final int AIR = 0;
+
+  /**
+   * Kind of all opaque cells, transparent types use the kinds after this.
+   */
+  static final int OPAQUE = 1;
+
+  /**
+   * @param kinds
+   *          the kind of each cell of the chunk (including the halo), same index as the chunk
+   * @param kindCount
+   *          all kinds are smaller than this
+   * @param faces
+   *          receives the face bits of {@link CubicMeshVolumeNode}, index <code>x + sizeX * (y + sizeY * z)</code>
+   */
+  static void cull(final PaddedChunk chunk, final int[] kinds, final int kindCount, final int[] faces) {
+    final int sizeX = chunk.sizeX;
+    final int sizeY = chunk.sizeY;
+    final int sizeZ = chunk.sizeZ;
+    checkArgument(sizeY <= Long.SIZE, "volume is higher than %s", Long.SIZE);
+    checkArgument(kinds.length == chunk.types.length && faces.length == sizeX * sizeY * sizeZ);
+    // columns including the halo in x and z, the halo above and below is kept separately
+    final int paddedX = sizeX + 2;
+    final int columns = paddedX * (sizeZ + 2);
+    final long[][] masks = new long[kindCount][columns];
+    final long[][] above = new long[kindCount][columns];
+    final long[][] below = new long[kindCount][columns];
+    for (int z = -1; z <= sizeZ; z++) {
+      for (int x = -1; x <= sizeX; x++) {
+        final int c = x + 1 + paddedX * (z + 1);
+        for (int y = 0; y < sizeY; y++) {
+          masks[kinds[chunk.index(x, y, z)]][c] |= 1L << y;
+        }
+        above[kinds[chunk.index(x, sizeY, z)]][c] = 1L << sizeY - 1;
+        below[kinds[chunk.index(x, -1, z)]][c] = 1L;
+      }
+    }
+    for (int kind = OPAQUE; kind < kindCount; kind++) {
+      final long[] mask = masks[kind];
+      for (int z = 0; z < sizeZ; z++) {
+        for (int x = 0; x < sizeX; x++) {
+          final int c = x + 1 + paddedX * (z + 1);
+          final long m = mask[c];
+          if (m == 0) {
+            continue;
+          }
+          final long up = m & ~(m >>> 1 | above[kind][c]);
+          final long down = m & ~(m << 1 | below[kind][c]);
+          final long right = m & ~mask[c + 1];
+          final long left = m & ~mask[c - 1];
+          final long back = m & ~mask[c + paddedX];
+          final long front = m & ~mask[c - paddedX];
+          long visible = up | down | right | left | back | front;
+          while (visible != 0) {
+            final int y = Long.numberOfTrailingZeros(visible);
+            final long bit = 1L << y;
+            visible &= ~bit;
+            int face = 0;
+            if ((up & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_UP;
+            }
+            if ((down & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_DOWN;
+            }
+            if ((right & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_RIGHT;
+            }
+            if ((left & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_LEFT;
+            }
+            if ((back & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_BACK;
+            }
+            if ((front & bit) != 0) {
+              face |= CubicMeshVolumeNode.FACE_FRONT;
+            }
+            faces[x + sizeX * (y + sizeY * z)] |= face;
+          }
+        }
+      }
+    }
+  }
+
+  private FaceCulling() {
+  }
+}
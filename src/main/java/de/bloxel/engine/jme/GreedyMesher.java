@@ -0,0 +1,123 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Merges the faces of a volume into rectangles: per side and slice all adjacent faces with the same bloxel type are
+ * combined into maximal rectangles, first along the u axis of the side, then along the v axis. A flat 16x16 surface
+ * becomes one quad instead of 256.
+ *
+ * <p>
+ * The u/v axes of the sides are the texture axes of the faces created by {@link CubicMeshVolumeNode}: x/y for front
+ * and back, z/y for left and right, x/z for up and down.
+ * </p>
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class GreedyMesher {
+
+  /**
+   * Receives the merged faces.
+   */
+  interface Quads {
+
+    /**
+     * @param type
+     *          bloxel type of the merged faces
+     * @param face
+     *          the side, one of the face bits of {@link CubicMeshVolumeNode}
+     * @param x
+     *          lower corner of the box whose side is the quad
+     * @param sizeX
+     *          size of the box, 1 along the normal of the side
+     */
+    void quad(int type, int face, int x, int y, int z, int sizeX, int sizeY, int sizeZ);
+  }
+
+  private static final int NONE = Integer.MIN_VALUE;
+  private static final int X = 0;
+  private static final int Y = 1;
+  private static final int Z = 2;
+
+  /**
+   * Face bit, normal axis, u axis and v axis of each side (in the order of {@link CubicMeshVolumeNode}).
+   */
+  private static final int[][] SIDES = { { CubicMeshVolumeNode.FACE_BACK, Z, X, Y },
+      { CubicMeshVolumeNode.FACE_FRONT, Z, X, Y }, { CubicMeshVolumeNode.FACE_RIGHT, X, Z, Y },
+      { CubicMeshVolumeNode.FACE_LEFT, X, Z, Y }, { CubicMeshVolumeNode.FACE_UP, Y, X, Z },
+      { CubicMeshVolumeNode.FACE_DOWN, Y, X, Z } };
+
+  /**
+   * @param types
+   *          bloxel type of each cell, index <code>x + sizeX * (y + sizeY * z)</code>
+   * @param faces
+   *          face bits of each cell (same index)
+   * @param quads
+   *          receives the merged faces
+   */
+  static void mesh(final int sizeX, final int sizeY, final int sizeZ, final int[] types, final int[] faces,
+      final Quads quads) {
+    checkArgument(types.length == sizeX * sizeY * sizeZ && faces.length == types.length);
+    final int[] size = { sizeX, sizeY, sizeZ };
+    final int[] position = new int[3];
+    final int[] extent = new int[3];
+    for (final int[] side : SIDES) {
+      final int face = side[0];
+      final int d = side[1];
+      final int u = side[2];
+      final int v = side[3];
+      final int[] mask = new int[size[u] * size[v]];
+      for (int s = 0; s < size[d]; s++) {
+        position[d] = s;
+        for (int j = 0; j < size[v]; j++) {
+          position[v] = j;
+          for (int i = 0; i < size[u]; i++) {
+            position[u] = i;
+            final int index = position[X] + sizeX * (position[Y] + sizeY * position[Z]);
+            mask[i + size[u] * j] = (faces[index] & face) != 0 ? types[index] : NONE;
+          }
+        }
+        for (int j = 0; j < size[v]; j++) {
+          for (int i = 0; i < size[u]; i++) {
+            final int type = mask[i + size[u] * j];
+            if (type == NONE) {
+              continue;
+            }
+            int width = 1;
+            while (i + width < size[u] && mask[i + width + size[u] * j] == type) {
+              width++;
+            }
+            int height = 1;
+            while (j + height < size[v] && isRow(mask, type, i + size[u] * (j + height), width)) {
+              height++;
+            }
+            for (int h = 0; h < height; h++) {
+              for (int w = 0; w < width; w++) {
+                mask[i + w + size[u] * (j + h)] = NONE;
+              }
+            }
+            position[u] = i;
+            position[v] = j;
+            extent[d] = 1;
+            extent[u] = width;
+            extent[v] = height;
+            quads.quad(type, face, position[X], position[Y], position[Z], extent[X], extent[Y], extent[Z]);
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean isRow(final int[] mask, final int type, final int start, final int width) {
+    for (int w = 0; w < width; w++) {
+      if (mask[start + w] != type) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private GreedyMesher() {
+  }
+}
@@ -0,0 +1,189 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.jme3.math.Vector3f;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.DownsamplingLoader;
+
+/**
+ * Chooses the level of detail of the volumes by their distance to the camera. Level 0 is the source grid, level
+ * <code>l</code> a grid downsampled by <code>2^l</code> (see {@link DownsamplingLoader}). The distance is measured from
+ * the camera to the nearest bloxel of a volume (maximum over the axes), level <code>l</code> is used from the
+ * <code>l</code>th distance on. If every distance doubles the previous one, each ring of levels has about the same
+ * number of triangles, the triangles of a view grow with the number of rings instead of the area.
+ *
+ * A volume changes its level only if the distance is more than the hysteresis beyond the threshold, a camera moving
+ * back and forth over a threshold doesn't tesselate the volumes again and again.
+ *
+ * The nodes of downsampled volumes are created for the coarse grid and scaled by the factor, this works with every
+ * {@link AbstractVolumeNode}. Neighbors of different levels don't fit exactly, there are small gaps between the rings.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class LevelOfDetail {
+
+  /**
+   * Creates the node of a volume for a (maybe downsampled) grid.
+   */
+  public interface NodeFactory {
+
+    AbstractVolumeNode create(VolumeGrid<Bloxel> grid, Volume<Bloxel> volume);
+  }
+
+  private final List<VolumeGrid<Bloxel>> grids = Lists.newArrayList();
+  private final int[] distances;
+  private final Map<Volume<Bloxel>, Integer> levels = new MapMaker().weakKeys().makeMap();
+  private float hysteresis;
+
+  /**
+   * @param source
+   *          the grid with the full resolution (level 0)
+   * @param volumeSize
+   *          size of the source volumes, must be a multiple of the factor of the coarsest level
+   * @param distances
+   *          ascending distances in bloxels from which the levels 1, 2 ... are used
+   */
+  public LevelOfDetail(final VolumeGrid<Bloxel> source, final int gridSizeX, final int gridSizeY, final int gridSizeZ,
+      final int volumeSize, final VolumeFactory<Bloxel> volumeFactory, final int... distances) {
+    for (int i = 1; i < distances.length; i++) {
+      checkArgument(distances[i - 1] < distances[i], "distances must be ascending");
+    }
+    this.distances = distances.clone();
+    grids.add(checkNotNull(source));
+    for (int level = 1; level <= distances.length; level++) {
+      grids.add(DownsamplingLoader.createGrid(source, getFactor(level), gridSizeX, gridSizeY, gridSizeZ, volumeSize,
+          volumeFactory));
+    }
+  }
+
+  /**
+   * @return the distance of the camera to the nearest bloxel of the volume, the maximum over the axes
+   */
+  static float distance(final Volume<Bloxel> volume, final Vector3f camera) {
+    final float dx = distance(volume.getX(), volume.getSizeX(), camera.x);
+    final float dy = distance(volume.getY(), volume.getSizeY(), camera.y);
+    final float dz = distance(volume.getZ(), volume.getSizeZ(), camera.z);
+    return Math.max(dx, Math.max(dy, dz));
+  }
+
+  private static float distance(final int position, final int size, final float camera) {
+    return Math.max(0, Math.max(position - camera, camera - position - size));
+  }
+
+  /**
+   * @return the downsampling factor of the level
+   */
+  public static int getFactor(final int level) {
+    return 1 << level;
+  }
+
+  /**
+   * @return the grid of the level, the source grid for level 0
+   */
+  public VolumeGrid<Bloxel> getGrid(final int level) {
+    return grids.get(level);
+  }
+
+  /**
+   * @return the level of the volume of the source grid, <code>-1</code> if no level was selected
+   */
+  public int getLevel(final Volume<Bloxel> volume) {
+    final Integer level = levels.get(volume);
+    return level == null ? -1 : level;
+  }
+
+  /**
+   * @return number of levels including the full resolution
+   */
+  public int getLevelCount() {
+    return grids.size();
+  }
+
+  /**
+   * @return the volume of the level which summarizes the volume of the source grid
+   */
+  public Volume<Bloxel> getVolume(final Volume<Bloxel> volume, final int level) {
+    if (level == 0) {
+      return volume;
+    }
+    return grids.get(level).getVolumeWithIndex(volume.getX() / volume.getSizeX(), volume.getY() / volume.getSizeY(),
+        volume.getZ() / volume.getSizeZ());
+  }
+
+  /**
+   * @return the level for the distance without hysteresis
+   */
+  int level(final float distance) {
+    int level = 0;
+    while (level < distances.length && distance >= distances[level]) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @param current
+   *          the current level or <code>-1</code>
+   * @return the level for the distance, changes from the current level only beyond the hysteresis
+   */
+  int level(final float distance, final int current) {
+    if (current < 0) {
+      return level(distance);
+    }
+    final int coarser = level(distance - hysteresis);
+    if (coarser > current) {
+      return coarser;
+    }
+    final int finer = level(distance + hysteresis);
+    return finer < current ? finer : current;
+  }
+
+  /**
+   * Select the level of the volume for the camera position.
+   *
+   * @param volume
+   *          a volume of the source grid
+   * @return a new node for the volume if its level changed (the node of the previous level should be
+   *         {@link AbstractVolumeNode#dispose() disposed}), <code>null</code> if the level is unchanged
+   */
+  public AbstractVolumeNode update(final Volume<Bloxel> volume, final Vector3f camera, final NodeFactory factory) {
+    final int current = getLevel(volume);
+    final int level = level(distance(volume, camera), current);
+    if (level == current) {
+      return null;
+    }
+    levels.put(volume, level);
+    final AbstractVolumeNode node = factory.create(grids.get(level), getVolume(volume, level));
+    // the geometries are placed in the coarse grid, the scale brings them back to the world positions
+    node.setLocalScale(getFactor(level));
+    return node;
+  }
+
+  /**
+   * Forget the level of the volume, i.e. its node was removed from the scene.
+   */
+  public void remove(final Volume<Bloxel> volume) {
+    levels.remove(volume);
+  }
+
+  /**
+   * @param hysteresis
+   *          bloxels a volume must be beyond a distance before its level changes
+   */
+  public void setHysteresis(final float hysteresis) {
+    checkArgument(hysteresis >= 0);
+    this.hysteresis = hysteresis;
+  }
+}
@@ -0,0 +1,124 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+
+/**
+ * Collects the vertex data of one {@link Mesh} in growable primitive arrays. The mesher writes every vertex
+ * attribute directly, no objects are created per face. {@link MeshSections} copies the arrays once into the
+ * direct buffers of the mesh, after {@link #reset()} the arrays are reused for the next mesh. The mesh consists only of
+ * quads (4 vertices each), the indexes are not collected but taken from {@link QuadIndexes}.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class MeshBuilder {
+
+  private static final int INITIAL_VERTICES = 256;
+
+  private float[] positions = new float[3 * INITIAL_VERTICES];
+  private float[] normals = new float[3 * INITIAL_VERTICES];
+  private float[] texCoords = new float[2 * INITIAL_VERTICES];
+  private float[] tiles = new float[4 * INITIAL_VERTICES];
+  private int vertexCount;
+  private int normalCount;
+  private int texCoordCount;
+  private int tileCount;
+
+  private static float[] ensure(final float[] array, final int size) {
+    return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length << 1));
+  }
+
+  int getQuadCount() {
+    return vertexCount / 4;
+  }
+
+  int getVertexCount() {
+    return vertexCount;
+  }
+
+  boolean hasTiles() {
+    return tileCount > 0;
+  }
+
+  boolean isEmpty() {
+    return vertexCount == 0;
+  }
+
+  void normal(final Vector3f normal) {
+    normals = ensure(normals, 3 * normalCount + 3);
+    final int i = 3 * normalCount++;
+    normals[i] = normal.x;
+    normals[i + 1] = normal.y;
+    normals[i + 2] = normal.z;
+  }
+
+  void position(final float x, final float y, final float z) {
+    positions = ensure(positions, 3 * vertexCount + 3);
+    final int i = 3 * vertexCount++;
+    positions[i] = x;
+    positions[i + 1] = y;
+    positions[i + 2] = z;
+  }
+
+  /**
+   * Append the collected vertex attributes at the current positions of the buffers.
+   * 
+   * @param tileBuffer
+   *          maybe <code>null</code> if the mesh has no texture tiles
+   */
+  void put(final FloatBuffer positionBuffer, final FloatBuffer normalBuffer, final FloatBuffer texCoordBuffer,
+      final FloatBuffer tileBuffer) {
+    positionBuffer.put(positions, 0, 3 * vertexCount);
+    normalBuffer.put(normals, 0, 3 * normalCount);
+    texCoordBuffer.put(texCoords, 0, 2 * texCoordCount);
+    if (tileBuffer != null) {
+      tileBuffer.put(tiles, 0, 4 * tileCount);
+    }
+  }
+
+  /**
+   * Append the collected vertices in the {@link PackedVertexFormat}, every vertex needs a texture tile.
+   */
+  void putPacked(final ByteBuffer positionBuffer, final ByteBuffer texCoordBuffer) {
+    checkState(tileCount == vertexCount, "packed vertices need texture tiles");
+    for (int i = 0; i < vertexCount; i++) {
+      final int p = 3 * i;
+      PackedVertexFormat.put(positionBuffer, texCoordBuffer, positions[p], positions[p + 1], positions[p + 2],
+          PackedVertexFormat.normalIndex(normals[p], normals[p + 1], normals[p + 2]), texCoords[2 * i],
+          texCoords[2 * i + 1], tiles, 4 * i);
+    }
+  }
+
+  /**
+   * Forget the collected data, the arrays are kept.
+   */
+  void reset() {
+    vertexCount = 0;
+    normalCount = 0;
+    texCoordCount = 0;
+    tileCount = 0;
+  }
+
+  void texCoord(final float u, final float v) {
+    texCoords = ensure(texCoords, 2 * texCoordCount + 2);
+    final int i = 2 * texCoordCount++;
+    texCoords[i] = u;
+    texCoords[i + 1] = v;
+  }
+
+  void tile(final float u, final float v, final float width, final float height) {
+    tiles = ensure(tiles, 4 * tileCount + 4);
+    final int i = 4 * tileCount++;
+    tiles[i] = u;
+    tiles[i + 1] = v;
+    tiles[i + 2] = width;
+    tiles[i + 3] = height;
+  }
+}
@@ -0,0 +1,421 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.io.Closeables.closeQuietly;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.material.BloxelAssetManager;
+import de.bloxel.engine.material.BloxelAssetManager.BloxelSide;
+
+/**
+ * A persistent cache for tesselated volumes. Each entry is one file which contains all vertex buffers of the
+ * {@link Mesh meshes} of a volume. The entry key is a hash over the volume content, the neighbor bloxels the mesher
+ * looks at, the mesher settings (see {@link AbstractVolumeNode#getMesherId()}) and the texture coordinates and
+ * transparency of the bloxel types (see {@link #hashAssets(Hasher, BloxelAssetManager, Set)}). The buffer types and
+ * formats are stored by name, a changed order of the jME enums doesn't break the entries.
+ *
+ * On a cache hit the file is memory mapped and the buffers are handed to jME as direct views on the mapped file, no
+ * tesselation and no copying is necessary. The cache directory is kept below a disk quota, the least recently used
+ * entries are deleted first.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class MeshCache {
+
+  private static final Logger LOG = Logger.getLogger(MeshCache.class);
+
+  private static final int MAGIC = 0x42584d43; // BXMC
+  private static final int VERSION = 2;
+  private static final String SUFFIX = ".mesh";
+  private static final Type[] CACHED_BUFFERS = { Type.Position, Type.Normal, Type.TexCoord, Type.TexCoord2, Type.Index };
+
+  /**
+   * Feed the asset configuration of the bloxel types into the hasher, the texture coordinates are part of the meshes.
+   *
+   * @param types
+   *          the bloxel types of the volume and its neighbors
+   */
+  static void hashAssets(final Hasher hasher, final BloxelAssetManager assets, final Set<Integer> types) {
+    for (final Integer type : types) {
+      if (type == Bloxel.AIR.getType()) {
+        continue;
+      }
+      hasher.putInt(type).putBoolean(assets.isTransparent(type));
+      for (final BloxelSide side : BloxelSide.values()) {
+        for (final Vector2f coordinate : assets.getTextureCoordinates(type, side)) {
+          hasher.putFloat(coordinate.x).putFloat(coordinate.y);
+        }
+      }
+    }
+  }
+
+  /**
+   * Feed all bloxels of the given volume into the hasher.
+   *
+   * @param types
+   *          collects the bloxel types
+   */
+  static void hashVolume(final Hasher hasher, final Volume<Bloxel> volume, final Set<Integer> types) {
+    hasher.putInt(volume.getSizeX()).putInt(volume.getSizeY()).putInt(volume.getSizeZ());
+    for (int x = 0; x < volume.getSizeX(); x++) {
+      for (int z = 0; z < volume.getSizeZ(); z++) {
+        for (int y = 0; y < volume.getSizeY(); y++) {
+          hashBloxel(hasher, volume.get(x, y, z), types);
+        }
+      }
+    }
+  }
+
+  static void hashBloxel(final Hasher hasher, final Bloxel bloxel, final Set<Integer> types) {
+    hasher.putInt(bloxel.getType()).putFloat(bloxel.getDensity());
+    types.add(bloxel.getType());
+  }
+
+  /**
+   * Feed a plane of neighbor bloxels into the hasher. The plane is defined by the fixed local coordinate
+   * <code>fixed</code> on the given <code>axis</code> (0=x, 1=y, 2=z) and could be outside of the volume.
+   */
+  static void hashPlane(final Hasher hasher, final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
+      final int axis, final int fixed, final int sizeA, final int sizeB, final Set<Integer> types) {
+    hasher.putInt(axis).putInt(fixed);
+    for (int a = 0; a < sizeA; a++) {
+      for (int b = 0; b < sizeB; b++) {
+        final int x = axis == 0 ? fixed : a;
+        final int y = axis == 1 ? fixed : axis == 0 ? a : b;
+        final int z = axis == 2 ? fixed : b;
+        hashBloxel(hasher, grid.get(volume.getX() + x, volume.getY() + y, volume.getZ() + z), types);
+      }
+    }
+  }
+
+  private final File directory;
+  private final long quota;
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+  private long size;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param directory
+   *          cache directory, would be created if necessary
+   * @param quota
+   *          maximum number of bytes the cache files may use
+   */
+  public MeshCache(final File directory, final long quota) {
+    checkArgument(quota > 0, "quota must be positive");
+    this.directory = checkNotNull(directory);
+    this.quota = quota;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException(format("Can't create mesh cache directory '%s'", directory));
+    }
+    final File[] files = directory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(final File f) {
+        return f.isFile() && f.getName().endsWith(SUFFIX);
+      }
+    });
+    // oldest first, so the access order of the map is the LRU order of the previous run
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(final File f1, final File f2) {
+        final long m1 = f1.lastModified();
+        final long m2 = f2.lastModified();
+        return m1 < m2 ? -1 : m1 == m2 ? 0 : 1;
+      }
+    });
+    for (final File f : files) {
+      final String key = f.getName().substring(0, f.getName().length() - SUFFIX.length());
+      entries.put(key, f.length());
+      size += f.length();
+    }
+    evict(null);
+    LOG.info(format("Mesh cache '%s' contains %d entries with %d bytes (quota %d bytes)", directory, entries.size(),
+        size, quota));
+  }
+
+  private void evict(final String keep) {
+    final Iterator<Entry<String, Long>> it = entries.entrySet().iterator();
+    while (size > quota && it.hasNext()) {
+      final Entry<String, Long> eldest = it.next();
+      if (eldest.getKey().equals(keep)) {
+        continue;
+      }
+      it.remove();
+      size -= eldest.getValue();
+      if (!file(eldest.getKey()).delete()) {
+        LOG.debug(format("Can't delete evicted mesh cache entry '%s'", eldest.getKey()));
+      }
+    }
+  }
+
+  private File file(final String key) {
+    return new File(directory, key + SUFFIX);
+  }
+
+  /**
+   * @param key
+   *          the entry key
+   * @return the cached meshes (key is the mesh id used by the {@link AbstractVolumeNode}) or <code>null</code> if there
+   *         is no entry for the key
+   */
+  public Map<Integer, Mesh> get(final String key) {
+    synchronized (this) {
+      if (entries.get(key) == null) {
+        misses++;
+        return null;
+      }
+      hits++;
+    }
+    final File file = file(key);
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      final MappedByteBuffer mapped = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+      file.setLastModified(System.currentTimeMillis());
+      return read(mapped);
+    } catch (final IOException e) {
+      LOG.warn(format("Can't read mesh cache entry '%s', drop it", file), e);
+      remove(key);
+      return null;
+    } catch (final RuntimeException e) {
+      LOG.warn(format("Corrupt mesh cache entry '%s', drop it", file), e);
+      remove(key);
+      return null;
+    } finally {
+      // the mapping stays valid after the channel was closed
+      closeQuietly(raf);
+    }
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Store the given meshes, replaces an existing entry with the same key.
+   *
+   * @param key
+   *          the entry key
+   * @param meshes
+   *          mesh id to mesh
+   */
+  public void put(final String key, final Map<Integer, Mesh> meshes) {
+    final File file = file(key);
+    final File tmp = new File(directory, key + ".tmp" + Thread.currentThread().getId());
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(tmp, "rw");
+      raf.setLength(0);
+      write(raf.getChannel(), meshes);
+      raf.close();
+      raf = null;
+      if (!tmp.renameTo(file)) {
+        // windows can't rename onto an existing file
+        file.delete();
+        if (!tmp.renameTo(file)) {
+          throw new IOException(format("Can't rename '%s' to '%s'", tmp, file));
+        }
+      }
+    } catch (final IOException e) {
+      LOG.warn(format("Can't write mesh cache entry '%s'", file), e);
+      tmp.delete();
+      return;
+    } finally {
+      closeQuietly(raf);
+    }
+    synchronized (this) {
+      final Long old = entries.put(key, file.length());
+      size += file.length() - (old == null ? 0 : old);
+      evict(key);
+    }
+  }
+
+  private Map<Integer, Mesh> read(final ByteBuffer data) {
+    data.order(ByteOrder.nativeOrder());
+    checkArgument(data.getInt() == MAGIC, "wrong magic number");
+    checkArgument(data.getInt() == VERSION, "unsupported version");
+    checkArgument(data.getInt() == (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0), "wrong byte order");
+    final int meshCount = data.getInt();
+    final Map<Integer, Mesh> result = Maps.newLinkedHashMap();
+    for (int m = 0; m < meshCount; m++) {
+      final int meshId = data.getInt();
+      final int bufferCount = data.getInt();
+      final Mesh mesh = new Mesh();
+      for (int b = 0; b < bufferCount; b++) {
+        final Type type = Type.valueOf(readName(data));
+        final Format bufferFormat = Format.valueOf(readName(data));
+        final int components = data.getInt();
+        final int length = data.getInt();
+        final int start = data.position();
+        data.limit(start + length);
+        final ByteBuffer slice = data.slice().order(ByteOrder.nativeOrder());
+        data.limit(data.capacity());
+        data.position(start + padded(length));
+        mesh.setBuffer(type, components, bufferFormat, view(slice, bufferFormat));
+      }
+      mesh.updateCounts();
+      mesh.updateBound();
+      mesh.setStatic();
+      result.put(meshId, mesh);
+    }
+    return result;
+  }
+
+  private static String readName(final ByteBuffer data) {
+    final int length = data.getInt();
+    checkArgument(length >= 0 && length <= data.remaining(), "wrong name length");
+    final byte[] bytes = new byte[length];
+    final int start = data.position();
+    data.get(bytes);
+    data.position(start + padded(bytes.length));
+    return new String(bytes, Charsets.US_ASCII);
+  }
+
+  private static int padded(final int length) {
+    return length + 3 & ~3;
+  }
+
+  private static Buffer view(final ByteBuffer bytes, final Format bufferFormat) {
+    switch (bufferFormat) {
+    case Float:
+      return bytes.asFloatBuffer();
+    case Int:
+    case UnsignedInt:
+      return bytes.asIntBuffer();
+    case Short:
+    case UnsignedShort:
+      return bytes.asShortBuffer();
+    case Byte:
+    case UnsignedByte:
+      return bytes;
+    default:
+      throw new IllegalArgumentException("Unsupported buffer format " + bufferFormat);
+    }
+  }
+
+  private static ByteBuffer bytes(final Buffer data) {
+    final ByteBuffer result;
+    if (data instanceof FloatBuffer) {
+      final FloatBuffer b = (FloatBuffer) ((FloatBuffer) data).duplicate().rewind();
+      result = ByteBuffer.allocate(b.remaining() * 4).order(ByteOrder.nativeOrder());
+      result.asFloatBuffer().put(b);
+    } else if (data instanceof IntBuffer) {
+      final IntBuffer b = (IntBuffer) ((IntBuffer) data).duplicate().rewind();
+      result = ByteBuffer.allocate(b.remaining() * 4).order(ByteOrder.nativeOrder());
+      result.asIntBuffer().put(b);
+    } else if (data instanceof ShortBuffer) {
+      final ShortBuffer b = (ShortBuffer) ((ShortBuffer) data).duplicate().rewind();
+      result = ByteBuffer.allocate(b.remaining() * 2).order(ByteOrder.nativeOrder());
+      result.asShortBuffer().put(b);
+    } else if (data instanceof ByteBuffer) {
+      final ByteBuffer b = (ByteBuffer) ((ByteBuffer) data).duplicate().rewind();
+      result = ByteBuffer.allocate(b.remaining());
+      result.put(b);
+      result.flip();
+    } else {
+      throw new IllegalArgumentException("Unsupported buffer " + data);
+    }
+    return result;
+  }
+
+  private synchronized void remove(final String key) {
+    final Long old = entries.remove(key);
+    if (old != null) {
+      size -= old;
+    }
+    file(key).delete();
+  }
+
+  private static void writeName(final FileChannel channel, final String name) throws IOException {
+    final byte[] bytes = name.getBytes(Charsets.US_ASCII);
+    final ByteBuffer buffer = ByteBuffer.allocate(4 + padded(bytes.length)).order(ByteOrder.nativeOrder());
+    buffer.putInt(bytes.length).put(bytes);
+    buffer.clear();
+    channel.write(buffer);
+  }
+
+  private void write(final FileChannel channel, final Map<Integer, Mesh> meshes) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+    header.putInt(MAGIC).putInt(VERSION).putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)
+        .putInt(meshes.size());
+    header.flip();
+    channel.write(header);
+    final ByteBuffer meta = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+    final ByteBuffer padding = ByteBuffer.allocate(4);
+    for (final Entry<Integer, Mesh> e : meshes.entrySet()) {
+      int bufferCount = 0;
+      for (final Type t : CACHED_BUFFERS) {
+        if (e.getValue().getBuffer(t) != null) {
+          bufferCount++;
+        }
+      }
+      meta.clear();
+      meta.putInt(e.getKey()).putInt(bufferCount);
+      meta.flip();
+      channel.write(meta);
+      for (final Type t : CACHED_BUFFERS) {
+        final VertexBuffer vb = e.getValue().getBuffer(t);
+        if (vb == null) {
+          continue;
+        }
+        final ByteBuffer data = bytes(vb.getData());
+        writeName(channel, t.name());
+        writeName(channel, vb.getFormat().name());
+        meta.clear();
+        meta.putInt(vb.getNumComponents()).putInt(data.remaining());
+        meta.flip();
+        channel.write(meta);
+        final int length = data.remaining();
+        channel.write(data);
+        padding.clear();
+        padding.limit(padded(length) - length);
+        channel.write(padding);
+      }
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package de.bloxel.engine.jme;
+
+import static com.jme3.scene.VertexBuffer.Type.Index;
+import static com.jme3.scene.VertexBuffer.Type.Normal;
+import static com.jme3.scene.VertexBuffer.Type.Position;
+import static com.jme3.scene.VertexBuffer.Type.TexCoord;
+import static com.jme3.scene.VertexBuffer.Type.TexCoord2;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+
+/**
+ * The vertex data of a volume split into sections (slices along the y axis), one {@link MeshBuilder} per section and
+ * mesh id. The sections of a mesh id are stored one after the other in the buffers of its {@link Mesh}, each section
+ * has its own range in the buffers. After an edit only the changed sections are tesselated again, the mesh is patched
+ * from the first changed section on (see {@link #patch(int, Mesh, int)}).
+ *
+ * The meshes contain float vertex attributes or, if packed, the {@link PackedVertexFormat}. Meshes with less than 65536
+ * vertices use the shared short indexes of {@link QuadIndexes}, larger meshes int indexes.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class MeshSections {
+
+  private final Map<Integer, MeshBuilder>[] builders;
+  private final boolean packed;
+
+  @SuppressWarnings("unchecked")
+  MeshSections(final int sectionCount, final boolean packed) {
+    this.packed = packed;
+    builders = new Map[sectionCount];
+    for (int s = 0; s < sectionCount; s++) {
+      builders[s] = Maps.newHashMap();
+    }
+  }
+
+  private static boolean fits(final Mesh mesh, final VertexBuffer.Type type, final int size,
+      final Class<? extends Buffer> bufferType) {
+    final VertexBuffer buffer = mesh.getBuffer(type);
+    if (buffer == null) {
+      return size == 0 && type == TexCoord2;
+    }
+    final Buffer data = buffer.getData();
+    return bufferType.isInstance(data) && data.isDirect() && !data.isReadOnly() && data.capacity() >= size;
+  }
+
+  /**
+   * @return the builder of the mesh id in the section, created on demand
+   */
+  MeshBuilder builder(final int section, final int meshId) {
+    MeshBuilder builder = builders[section].get(meshId);
+    if (builder == null) {
+      builder = new MeshBuilder();
+      builders[section].put(meshId, builder);
+    }
+    return builder;
+  }
+
+  /**
+   * @return a new mesh with the data of all sections of the mesh id
+   */
+  Mesh build(final int meshId, final BufferPool pool) {
+    final int vertices = count(meshId, builders.length);
+    final int quads = vertices / 4;
+    final Mesh mesh = new Mesh();
+    if (packed) {
+      mesh.setBuffer(Position, 4, Format.UnsignedByte, pool.byteBuffer(4 * vertices));
+      mesh.setBuffer(TexCoord, 4, Format.UnsignedByte, pool.byteBuffer(4 * vertices));
+    } else {
+      mesh.setBuffer(Position, 3, pool.floatBuffer(3 * vertices));
+      mesh.setBuffer(Normal, 3, pool.floatBuffer(3 * vertices));
+      mesh.setBuffer(TexCoord, 2, pool.floatBuffer(2 * vertices));
+      if (hasTiles(meshId)) {
+        mesh.setBuffer(TexCoord2, 4, pool.floatBuffer(4 * vertices));
+      }
+    }
+    if (quads <= QuadIndexes.MAX_QUADS) {
+      mesh.setBuffer(Index, 1, Format.UnsignedShort, QuadIndexes.shortBuffer(quads));
+    } else {
+      mesh.setBuffer(Index, 1, pool.intBuffer(QuadIndexes.indexCount(quads)));
+    }
+    fill(meshId, mesh, 0);
+    return mesh;
+  }
+
+  /**
+   * @param to
+   *          exclusive
+   * @return number of vertices of the mesh id in the sections before <code>to</code>
+   */
+  private int count(final int meshId, final int to) {
+    int count = 0;
+    for (int s = 0; s < to; s++) {
+      final MeshBuilder builder = builders[s].get(meshId);
+      if (builder != null) {
+        count += builder.getVertexCount();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Write the sections from <code>from</code> on into the buffers of the mesh, the buffers must be large enough.
+   */
+  private void fill(final int meshId, final Mesh mesh, final int from) {
+    final int vertexOffset = count(meshId, from);
+    if (packed) {
+      final ByteBuffer positions = (ByteBuffer) prepare(mesh, Position, 4 * vertexOffset);
+      final ByteBuffer texCoords = (ByteBuffer) prepare(mesh, TexCoord, 4 * vertexOffset);
+      for (int s = from; s < builders.length; s++) {
+        final MeshBuilder builder = builders[s].get(meshId);
+        if (builder != null) {
+          builder.putPacked(positions, texCoords);
+        }
+      }
+    } else {
+      final FloatBuffer positions = (FloatBuffer) prepare(mesh, Position, 3 * vertexOffset);
+      final FloatBuffer normals = (FloatBuffer) prepare(mesh, Normal, 3 * vertexOffset);
+      final FloatBuffer texCoords = (FloatBuffer) prepare(mesh, TexCoord, 2 * vertexOffset);
+      final FloatBuffer tiles = mesh.getBuffer(TexCoord2) == null ? null : (FloatBuffer) prepare(mesh, TexCoord2,
+          4 * vertexOffset);
+      for (int s = from; s < builders.length; s++) {
+        final MeshBuilder builder = builders[s].get(meshId);
+        if (builder != null) {
+          builder.put(positions, normals, texCoords, tiles);
+        }
+      }
+    }
+    for (final VertexBuffer buffer : mesh.getBufferList()) {
+      if (buffer.getBufferType() != Index) {
+        buffer.getData().flip();
+        buffer.updateData(buffer.getData());
+      }
+    }
+    final VertexBuffer indexes = mesh.getBuffer(Index);
+    final int quads = count(meshId, builders.length) / 4;
+    if (indexes.getData() instanceof ShortBuffer) {
+      // a new view, the shared data is never written
+      indexes.updateData(QuadIndexes.shortBuffer(quads));
+    } else {
+      final IntBuffer ints = (IntBuffer) prepare(mesh, Index, QuadIndexes.indexCount(vertexOffset / 4));
+      QuadIndexes.put(ints, vertexOffset / 4, quads);
+      ints.flip();
+      indexes.updateData(ints);
+    }
+    mesh.updateBound();
+    mesh.updateCounts();
+  }
+
+  private boolean hasTiles(final int meshId) {
+    for (final Map<Integer, MeshBuilder> section : builders) {
+      final MeshBuilder builder = section.get(meshId);
+      if (builder != null && builder.hasTiles()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isPacked() {
+    return packed;
+  }
+
+  boolean isEmpty(final int meshId) {
+    return count(meshId, builders.length) == 0;
+  }
+
+  /**
+   * @return all mesh ids with a builder in any section (maybe empty)
+   */
+  Set<Integer> meshIds() {
+    final Set<Integer> result = Sets.newHashSet();
+    for (final Map<Integer, MeshBuilder> section : builders) {
+      result.addAll(section.keySet());
+    }
+    return result;
+  }
+
+  /**
+   * @return the mesh ids with a builder in the section (maybe empty)
+   */
+  Set<Integer> meshIds(final int section) {
+    return builders[section].keySet();
+  }
+
+  /**
+   * Overwrite the buffers of the mesh from the range of section <code>from</code> on, the ranges of the sections before
+   * are unchanged. This works only if the buffers of the mesh have enough capacity and are writable (i.e. not from the
+   * {@link MeshCache}).
+   *
+   * @return <code>false</code> if the mesh can't be patched, a new mesh must be {@link #build(int, BufferPool) built}
+   */
+  boolean patch(final int meshId, final Mesh mesh, final int from) {
+    final int vertices = count(meshId, builders.length);
+    final int quads = vertices / 4;
+    // the shared short indexes fit any number of quads up to the maximum, int indexes are written
+    boolean fits = quads <= QuadIndexes.MAX_QUADS ? mesh.getBuffer(Index).getData() instanceof ShortBuffer : fits(
+        mesh, Index, QuadIndexes.indexCount(quads), IntBuffer.class);
+    if (packed) {
+      fits &= fits(mesh, Position, 4 * vertices, ByteBuffer.class)
+          && fits(mesh, TexCoord, 4 * vertices, ByteBuffer.class);
+    } else {
+      final boolean tiles = hasTiles(meshId);
+      fits &= tiles == (mesh.getBuffer(TexCoord2) != null) && fits(mesh, Position, 3 * vertices, FloatBuffer.class)
+          && fits(mesh, Normal, 3 * vertices, FloatBuffer.class)
+          && fits(mesh, TexCoord, 2 * vertices, FloatBuffer.class)
+          && fits(mesh, TexCoord2, tiles ? 4 * vertices : 0, FloatBuffer.class);
+    }
+    if (fits) {
+      fill(meshId, mesh, from);
+    }
+    return fits;
+  }
+
+  /**
+   * @return the buffer of the mesh with the position set
+   */
+  private Buffer prepare(final Mesh mesh, final VertexBuffer.Type type, final int position) {
+    final Buffer buffer = mesh.getBuffer(type).getData();
+    buffer.clear().position(position);
+    return buffer;
+  }
+
+  /**
+   * Forget the data of the section, the builders are kept.
+   */
+  void reset(final int section) {
+    for (final MeshBuilder builder : builders[section].values()) {
+      builder.reset();
+    }
+  }
+
+  int size() {
+    return builders.length;
+  }
+}
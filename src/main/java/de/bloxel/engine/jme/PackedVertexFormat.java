@@ -0,0 +1,118 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.jme3.scene.VertexBuffer.Type.Position;
+import static com.jme3.scene.VertexBuffer.Type.TexCoord;
+
+import java.nio.ByteBuffer;
+
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+/**
+ * The packed vertex layout of {@link CubicMeshVolumeNode#setPacked(boolean)}, 8 bytes per vertex instead of 32 (per
+ * face) or 48 (greedy) bytes:
+ *
+ * <ul>
+ * <li><code>Position</code>: 4 unsigned bytes, the position x, y, z in the volume and the index of the normal in
+ * {@link #NORMALS}</li>
+ * <li><code>TexCoord</code>: 4 unsigned bytes, the face coordinates in bloxels (u, v) and the column and row of the
+ * atlas tile</li>
+ * </ul>
+ *
+ * The atlas must be a grid of tiles with the same size, the material gets the tile size (see
+ * <code>shader/PackedAtlas.j3md</code>). Volumes can't be larger than 255 bloxels. The methods <code>get*</code>
+ * decode the vertices of a packed mesh, i.e. for tests without a GPU.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class PackedVertexFormat {
+
+  /**
+   * Bytes per vertex in the packed layout (without indexes).
+   */
+  public static final int VERTEX_SIZE = 8;
+
+  /**
+   * The normals by their packed index.
+   */
+  public static final Vector3f[] NORMALS = { new Vector3f(1, 0, 0), new Vector3f(-1, 0, 0), new Vector3f(0, 1, 0),
+      new Vector3f(0, -1, 0), new Vector3f(0, 0, 1), new Vector3f(0, 0, -1) };
+
+  private static final int MAX = 255;
+
+  /**
+   * @return the normal of the vertex
+   */
+  public static Vector3f getNormal(final Mesh mesh, final int vertex) {
+    return NORMALS[unsigned(mesh, Position, 4 * vertex + 3)];
+  }
+
+  /**
+   * @return the position of the vertex in the volume
+   */
+  public static Vector3f getPosition(final Mesh mesh, final int vertex) {
+    return new Vector3f(unsigned(mesh, Position, 4 * vertex), unsigned(mesh, Position, 4 * vertex + 1), unsigned(
+        mesh, Position, 4 * vertex + 2));
+  }
+
+  /**
+   * @return the face coordinates of the vertex in bloxels
+   */
+  public static Vector2f getTexCoord(final Mesh mesh, final int vertex) {
+    return new Vector2f(unsigned(mesh, TexCoord, 4 * vertex), unsigned(mesh, TexCoord, 4 * vertex + 1));
+  }
+
+  /**
+   * @param tileSize
+   *          width and height of an atlas tile in texture coordinates
+   * @return the atlas tile of the vertex: u, v, width, height (the <code>TexCoord2</code> of the unpacked greedy layout)
+   */
+  public static float[] getTile(final Mesh mesh, final int vertex, final Vector2f tileSize) {
+    return new float[] { unsigned(mesh, TexCoord, 4 * vertex + 2) * tileSize.x,
+        unsigned(mesh, TexCoord, 4 * vertex + 3) * tileSize.y, tileSize.x, tileSize.y };
+  }
+
+  /**
+   * @return the index of the normal in {@link #NORMALS}
+   */
+  static int normalIndex(final float x, final float y, final float z) {
+    if (x != 0) {
+      return x > 0 ? 0 : 1;
+    }
+    if (y != 0) {
+      return y > 0 ? 2 : 3;
+    }
+    return z > 0 ? 4 : 5;
+  }
+
+  /**
+   * Append one packed vertex, the position and face coordinates must be whole numbers.
+   *
+   * @param tile
+   *          u, v, width, height of the atlas tile
+   */
+  static void put(final ByteBuffer positions, final ByteBuffer texCoords, final float x, final float y,
+      final float z, final int normal, final float u, final float v, final float[] tile, final int tileOffset) {
+    positions.put(toByte(x)).put(toByte(y)).put(toByte(z)).put((byte) normal);
+    texCoords.put(toByte(u)).put(toByte(v));
+    texCoords.put(toByte(tile[tileOffset] / tile[tileOffset + 2]));
+    texCoords.put(toByte(tile[tileOffset + 1] / tile[tileOffset + 3]));
+  }
+
+  private static byte toByte(final float value) {
+    final int i = Math.round(value);
+    checkArgument(i >= 0 && i <= MAX && Math.abs(value - i) < 1e-3f, "%s can't be packed into a byte", value);
+    return (byte) i;
+  }
+
+  private static int unsigned(final Mesh mesh, final VertexBuffer.Type type, final int index) {
+    return ((ByteBuffer) mesh.getBuffer(type).getData()).get(index) & MAX;
+  }
+
+  private PackedVertexFormat() {
+  }
+}
@@ -0,0 +1,143 @@
+package de.bloxel.engine.jme;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.hash.Hasher;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+
+/**
+ * A copy of the bloxel types of a volume with a border of one bloxel (the halo) from the six neighbor volumes. The
+ * mesher works only on this array, it needs no bounds checks and no grid lookups. Neighbors outside of the grid and
+ * the edges and corners of the halo are {@link Bloxel#AIR air}.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class PaddedChunk {
+
+  static final int AIR = Bloxel.AIR.getType();
+
+  /**
+   * Directions of the six neighbor volumes.
+   */
+  private static final int[][] NEIGHBORS = { { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 },
+      { 0, 0, -1 } };
+
+  /**
+   * Copy the volume and the halo of its neighbors.
+   */
+  static PaddedChunk snapshot(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
+    final PaddedChunk chunk = new PaddedChunk(volume.getSizeX(), volume.getSizeY(), volume.getSizeZ());
+    for (int z = 0; z < chunk.sizeZ; z++) {
+      for (int y = 0; y < chunk.sizeY; y++) {
+        for (int x = 0; x < chunk.sizeX; x++) {
+          chunk.types[chunk.index(x, y, z)] = volume.get(x, y, z).getType();
+        }
+      }
+    }
+    for (final int[] n : NEIGHBORS) {
+      final Volume<Bloxel> neighbor = grid.getNeighbor(volume, n[0], n[1], n[2]);
+      if (neighbor != null) {
+        chunk.copyHalo(neighbor, n[0], n[1], n[2]);
+      }
+    }
+    return chunk;
+  }
+
+  final int sizeX;
+  final int sizeY;
+  final int sizeZ;
+
+  /**
+   * Bloxel types, index see {@link #index(int, int, int)}.
+   */
+  final int[] types;
+
+  private PaddedChunk(final int sizeX, final int sizeY, final int sizeZ) {
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    this.types = new int[(sizeX + 2) * (sizeY + 2) * (sizeZ + 2)];
+    Arrays.fill(types, AIR);
+  }
+
+  /**
+   * Copy the plane of the neighbor which touches this volume into the halo.
+   */
+  private void copyHalo(final Volume<Bloxel> neighbor, final int dx, final int dy, final int dz) {
+    final int x0 = dx < 0 ? -1 : dx > 0 ? sizeX : 0;
+    final int y0 = dy < 0 ? -1 : dy > 0 ? sizeY : 0;
+    final int z0 = dz < 0 ? -1 : dz > 0 ? sizeZ : 0;
+    final int x1 = dx == 0 ? sizeX : x0 + 1;
+    final int y1 = dy == 0 ? sizeY : y0 + 1;
+    final int z1 = dz == 0 ? sizeZ : z0 + 1;
+    for (int z = z0; z < z1; z++) {
+      for (int y = y0; y < y1; y++) {
+        for (int x = x0; x < x1; x++) {
+          // position in the neighbor: the halo at -1 is the last plane of the neighbor, at size the first
+          final int nx = x < 0 ? neighbor.getSizeX() - 1 : x == sizeX ? 0 : x;
+          final int ny = y < 0 ? neighbor.getSizeY() - 1 : y == sizeY ? 0 : y;
+          final int nz = z < 0 ? neighbor.getSizeZ() - 1 : z == sizeZ ? 0 : z;
+          types[index(x, y, z)] = neighbor.get(nx, ny, nz).getType();
+        }
+      }
+    }
+  }
+
+  int get(final int x, final int y, final int z) {
+    return types[index(x, y, z)];
+  }
+
+  /**
+   * Feed the halo into the hasher, these are all neighbor bloxels the mesher looks at. The planes are read from the
+   * neighbors directly, without a snapshot of the volume.
+   *
+   * @param types
+   *          collects the bloxel types of the halo
+   */
+  static void hashHalo(final Hasher hasher, final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
+      final Set<Integer> types) {
+    for (final int[] n : NEIGHBORS) {
+      final Volume<Bloxel> neighbor = grid.getNeighbor(volume, n[0], n[1], n[2]);
+      hasher.putBoolean(neighbor != null);
+      if (neighbor == null) {
+        continue;
+      }
+      // the plane of the neighbor which touches the volume
+      final int x0 = n[0] < 0 ? neighbor.getSizeX() - 1 : 0;
+      final int y0 = n[1] < 0 ? neighbor.getSizeY() - 1 : 0;
+      final int z0 = n[2] < 0 ? neighbor.getSizeZ() - 1 : 0;
+      final int x1 = n[0] == 0 ? volume.getSizeX() : x0 + 1;
+      final int y1 = n[1] == 0 ? volume.getSizeY() : y0 + 1;
+      final int z1 = n[2] == 0 ? volume.getSizeZ() : z0 + 1;
+      for (int z = z0; z < z1; z++) {
+        for (int y = y0; y < y1; y++) {
+          for (int x = x0; x < x1; x++) {
+            final int type = neighbor.get(x, y, z).getType();
+            hasher.putInt(type);
+            types.add(type);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @param x
+   *          from -1 (halo) to sizeX (halo)
+   */
+  int index(final int x, final int y, final int z) {
+    return x + 1 + (sizeX + 2) * (y + 1 + (sizeY + 2) * (z + 1));
+  }
+
+  /**
+   * Index offset of the neighbor in the given direction.
+   */
+  int offset(final int dx, final int dy, final int dz) {
+    return dx + (sizeX + 2) * (dy + (sizeY + 2) * dz);
+  }
+}
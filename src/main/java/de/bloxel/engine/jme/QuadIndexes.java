@@ -0,0 +1,84 @@
+package de.bloxel.engine.jme;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import com.jme3.util.BufferUtils;
+
+/**
+ * The indexes of meshes which consist only of quads, 4 vertices and 2 triangles per quad. The index pattern of all
+ * quads is the same, the indexes of a mesh depend only on its number of quads. Meshes with up to {@link #MAX_QUADS}
+ * quads share the data of one pre-built short buffer (a view with the limit of the mesh), no indexes are generated or
+ * allocated per mesh. Larger meshes need int indexes, see {@link #put(IntBuffer, int, int)}.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class QuadIndexes {
+
+  /**
+   * The quads with less than 65536 vertices (the range of an unsigned short).
+   */
+  static final int MAX_QUADS = (1 << 16) / 4;
+
+  /**
+   * Indexes of the two triangles of a quad, relative to the first vertex of the quad.
+   *
+   * <pre>
+   *   2\2--3
+   *   | \  | Counter-clockwise -> then this is the front of the polygon
+   *   |  \ |
+   *   0--1\1
+   * </pre>
+   */
+  private static final int[] TRIANGLE_INDIZES = { 2, 0, 1, 1, 3, 2 };
+
+  private static final ShortBuffer SHARED = createShared();
+
+  private static ShortBuffer createShared() {
+    final ShortBuffer buffer = BufferUtils.createShortBuffer(TRIANGLE_INDIZES.length * MAX_QUADS);
+    for (int quad = 0; quad < MAX_QUADS; quad++) {
+      for (final int i : TRIANGLE_INDIZES) {
+        buffer.put((short) (4 * quad + i));
+      }
+    }
+    buffer.rewind();
+    return buffer;
+  }
+
+  /**
+   * @return the number of indexes of the quads
+   */
+  static int indexCount(final int quads) {
+    return TRIANGLE_INDIZES.length * quads;
+  }
+
+  /**
+   * Write the indexes of the quads <code>from</code> (inclusive) to <code>to</code> (exclusive) at the current position
+   * of the buffer.
+   */
+  static void put(final IntBuffer buffer, final int from, final int to) {
+    for (int quad = from; quad < to; quad++) {
+      for (final int i : TRIANGLE_INDIZES) {
+        buffer.put(4 * quad + i);
+      }
+    }
+  }
+
+  /**
+   * @param quads
+   *          at most {@link #MAX_QUADS}
+   * @return a view on the shared index data with position 0 and the limit of the quads, unsigned shorts
+   */
+  static ShortBuffer shortBuffer(final int quads) {
+    checkArgument(quads >= 0 && quads <= MAX_QUADS, "%s quads need int indexes", quads);
+    final ShortBuffer buffer = SHARED.duplicate();
+    buffer.limit(indexCount(quads));
+    return buffer;
+  }
+
+  private QuadIndexes() {
+  }
+}
@@ -0,0 +1,112 @@
+package de.bloxel.engine.jme;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.data.VolumeListener;
+
+/**
+ * Forwards the edits of a {@link VolumeGrid} to the {@link CubicMeshVolumeNode nodes} of the changed volumes, the nodes
+ * tesselate only the sections around the changed bloxels again. An edit on the border of a volume is forwarded to the
+ * neighbor volume too, the faces of its bloxels next to the changed bloxel change.
+ *
+ * Register this listener with {@link VolumeGrid#addVolumeListener(VolumeListener)} and call {@link #remesh()} in the
+ * render thread after the edits. The nodes are found by the position of their volume, only
+ * {@link #add(CubicMeshVolumeNode) added} nodes get edits and a neighbor without node is never loaded. Call
+ * {@link #remove(CubicMeshVolumeNode)} for each detached node, the remesher holds the nodes until then.
+ *
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class SectionRemesher implements VolumeListener<Bloxel> {
+
+  private static List<Integer> position(final int x, final int y, final int z) {
+    return Arrays.asList(x, y, z);
+  }
+
+  private final ConcurrentMap<List<Integer>, CubicMeshVolumeNode> nodes = Maps.newConcurrentMap();
+  private final Set<CubicMeshVolumeNode> changed = Sets.newLinkedHashSet();
+
+  public void add(final CubicMeshVolumeNode node) {
+    final Volume<Bloxel> volume = node.getVolume();
+    nodes.put(position(volume.getX(), volume.getY(), volume.getZ()), node);
+  }
+
+  /**
+   * @param dx
+   *          offset in volumes, i.e. <code>-1</code> for the node of the left neighbor
+   */
+  private void edit(final Volume<Bloxel> volume, final int dx, final int dy, final int dz, final int x, final int y,
+      final int z, final int type) {
+    final CubicMeshVolumeNode node = nodes.get(position(volume.getX() + dx * volume.getSizeX(), volume.getY() + dy
+        * volume.getSizeY(), volume.getZ() + dz * volume.getSizeZ()));
+    if (node != null) {
+      node.edit(x, y, z, type);
+      synchronized (changed) {
+        changed.add(node);
+      }
+    }
+  }
+
+  @Override
+  public void onSet(final Volume<Bloxel> volume, final int x, final int y, final int z, final Bloxel value) {
+    final int type = value.getType();
+    final int sizeX = volume.getSizeX();
+    final int sizeY = volume.getSizeY();
+    final int sizeZ = volume.getSizeZ();
+    edit(volume, 0, 0, 0, x, y, z, type);
+    // the bloxel is in the halo of the neighbor, -1 or the size of the neighbor (all volumes have the same size)
+    if (x == 0) {
+      edit(volume, -1, 0, 0, sizeX, y, z, type);
+    }
+    if (x == sizeX - 1) {
+      edit(volume, 1, 0, 0, -1, y, z, type);
+    }
+    if (y == 0) {
+      edit(volume, 0, -1, 0, x, sizeY, z, type);
+    }
+    if (y == sizeY - 1) {
+      edit(volume, 0, 1, 0, x, -1, z, type);
+    }
+    if (z == 0) {
+      edit(volume, 0, 0, -1, x, y, sizeZ, type);
+    }
+    if (z == sizeZ - 1) {
+      edit(volume, 0, 0, 1, x, y, -1, type);
+    }
+  }
+
+  /**
+   * Calculate and update all nodes with edits since the last call, must be called in the render thread.
+   *
+   * @return number of updated nodes
+   */
+  public int remesh() {
+    final List<CubicMeshVolumeNode> nodesToUpdate;
+    synchronized (changed) {
+      nodesToUpdate = Lists.newArrayList(changed);
+      changed.clear();
+    }
+    int updated = 0;
+    for (final CubicMeshVolumeNode node : nodesToUpdate) {
+      if (node.calculate() && node.update()) {
+        updated++;
+      }
+    }
+    return updated;
+  }
+
+  public void remove(final CubicMeshVolumeNode node) {
+    final Volume<Bloxel> volume = node.getVolume();
+    nodes.remove(position(volume.getX(), volume.getY(), volume.getZ()), node);
+  }
+}
@@ -19,6 +19,7 @@ import com.jme3.material.RenderState.FaceCullMode;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
 
 import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.Volume;
@@ -1027,20 +1028,25 @@ public class SmoothSurfaceVolumeNode extends AbstractVolumeNode {
     final List<Geometry> result = newArrayList();
     for (final Integer bloxelType : usedBloxeTypes) {
       LOG.debug("Build mesh for material " + bloxelType + " ...");
-      final Material material = bloxelAssetManager.getMaterial(bloxelType, null);
-      material.getAdditionalRenderState().setFaceCullMode(FaceCullMode.Off);
-      final Geometry geometry = geometry("bloxel-" + 1).mesh(mesh.get(bloxelType).createMesh()).material(material)
-          .get();
-      if (material.isTransparent()) {
-        geometry.setQueueBucket(Transparent);
-      }
-      geometry.setLocalTranslation(new Vector3f(volume.getX(), volume.getY(), volume.getZ()));
-      result.add(geometry);
+      result.add(createGeometry(volume, bloxelType, mesh.get(bloxelType).createMesh(getBufferPool())));
     }
     mesh.clear();
     return result;
   }
 
+  @Override
+  Geometry createGeometry(final Volume<Bloxel> volume, final int bloxelType, final Mesh mesh) {
+    final Material material = bloxelAssetManager.getMaterial(bloxelType, null);
+    material.getAdditionalRenderState().setFaceCullMode(FaceCullMode.Off);
+    final Geometry geometry = geometry("bloxel-" + bloxelType).mesh(mesh).material(material).get();
+    geometry.setUserData(MESH_ID, bloxelType);
+    if (material.isTransparent()) {
+      geometry.setQueueBucket(Transparent);
+    }
+    geometry.setLocalTranslation(new Vector3f(volume.getX(), volume.getY(), volume.getZ()));
+    return geometry;
+  }
+
   private Bloxel getBloxel(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> v, final int x, final int y, final int z) {
     final int gx = v.getX() + x;
     final int gy = v.getY() + y;
@@ -1051,6 +1057,11 @@ public class SmoothSurfaceVolumeNode extends AbstractVolumeNode {
     return v.get(x, y, z);
   }
 
+  @Override
+  String getMesherId() {
+    return super.getMesherId() + ":" + mode;
+  }
+
   public void setMode(final Mode mode) {
     this.mode = mode;
   }
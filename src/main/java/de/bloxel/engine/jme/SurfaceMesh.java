@@ -1,5 +1,7 @@
 package de.bloxel.engine.jme;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -54,54 +56,35 @@ public class SurfaceMesh {
   }
 
   public Mesh createMesh() {
-    final Mesh mesh = new Mesh();
-    float[] vertices = null;
-    float[] normals = null;
-    float[] texCoords = null;
-    float[] binormals = null;
-    float[] tangents = null;
-    int[] indices = null;
+    return createMesh(BufferPool.UNPOOLED);
+  }
 
-    vertices = new float[vertex.size() * 3];
-    indices = new int[index.size()];
-    normals = new float[vertex.size() * 3];
-    texCoords = new float[vertex.size() * 3];
-    tangents = new float[vertex.size() * 3];
-    binormals = new float[vertex.size() * 3];
-    for (int i = 0; i < vertex.size(); i++) {
-      vertices[i * 3 + 0] = vertex.get(i).position.x;
-      vertices[i * 3 + 1] = vertex.get(i).position.y;
-      vertices[i * 3 + 2] = vertex.get(i).position.z;
-    }
-    for (int i = 0; i < index.size(); i++) {
-      indices[i] = index.get(i);
-    }
-    for (int i = 0; i < vertex.size(); i++) {
-      normals[i * 3 + 0] = vertex.get(i).normal.x;
-      normals[i * 3 + 1] = vertex.get(i).normal.y;
-      normals[i * 3 + 2] = vertex.get(i).normal.z;
+  /**
+   * @param pool
+   *          the vertex buffers are borrowed from this pool
+   */
+  public Mesh createMesh(final BufferPool pool) {
+    final Mesh mesh = new Mesh();
+    final FloatBuffer vertices = pool.floatBuffer(vertex.size() * 3);
+    final FloatBuffer normals = pool.floatBuffer(vertex.size() * 3);
+    final FloatBuffer texCoords = pool.floatBuffer(vertex.size() * 3);
+    final IntBuffer indices = pool.intBuffer(index.size());
+    for (final Vertex v : vertex) {
+      vertices.put(v.position.x).put(v.position.y).put(v.position.z);
+      normals.put(v.normal.x).put(v.normal.y).put(v.normal.z);
+      // binormals and tangents are not used
+      texCoords.put(v.texCoord.x).put(v.texCoord.y).put(v.material);
     }
-    // for (int i = 0; i < vertex.size(); i++) {
-    // binormals[i * 3 + 0] = vertex.get(i).binormal.x;
-    // binormals[i * 3 + 1] = vertex.get(i).binormal.y;
-    // binormals[i * 3 + 2] = vertex.get(i).binormal.z;
-    // }
-    // for (int i = 0; i < vertex.size(); i++) {
-    // tangents[i * 3 + 0] = vertex.get(i).tangent.x;
-    // tangents[i * 3 + 1] = vertex.get(i).tangent.y;
-    // tangents[i * 3 + 2] = vertex.get(i).tangent.z;
-    // }
-    for (int i = 0; i < vertex.size(); i++) {
-      texCoords[i * 3 + 0] = vertex.get(i).texCoord.x;
-      texCoords[i * 3 + 1] = vertex.get(i).texCoord.y;
-      texCoords[i * 3 + 2] = vertex.get(i).material;
+    for (final Integer i : index) {
+      indices.put(i);
     }
+    vertices.flip();
+    normals.flip();
+    texCoords.flip();
+    indices.flip();
     mesh.setBuffer(Type.Position, 3, vertices);
     mesh.setBuffer(Type.Index, 1, indices);
     mesh.setBuffer(Type.Normal, 3, normals);
-    // mesh.setBuffer(Type.Tangent, 3, tangents);
-    // mesh.setBuffer(Type.Binormal, 3, binormals);
-    mesh.setBuffer(Type.Normal, 3, normals);
     mesh.setBuffer(Type.TexCoord, 3, texCoords);
     mesh.updateBound();
     mesh.updateCounts();
@@ -16,40 +16,306 @@
  *******************************************************************************/
 package de.bloxel.engine.loader;
 
+import static de.bloxel.engine.loader.DensitySampler.sampleCount;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.jme3.math.FastMath;
 
 import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.Volume;
-import de.bloxel.engine.math.MathHelper;
+import de.bloxel.engine.math.Interval;
+import de.bloxel.engine.math.Lattice;
 import de.bloxel.engine.math.PerlinNoise;
 
 /**
  * Based on the terrain generator of "block mania".
  * 
+ * <p>
+ * Filled as {@link ColumnLoader column} the surface layers continue across the chunk borders, a single chunk starts
+ * the layering at its first solid cell from the top.
+ * </p>
+ * 
  * @see http://blog.movingblocks.net/blockmania/
  */
-public class BlockmaniaTerrainLoader implements Loader<Bloxel> {
+public class BlockmaniaTerrainLoader implements BloxelLoader, BoundedLoader<Bloxel>, ColumnLoader<Bloxel> {
+
+  /**
+   * The x/z dependent terrain data of a column of chunks, shared by all chunks stacked in this column.
+   */
+  final class Column {
+
+    private final Lattice samples;
+    private final float[] height;
+    private final Lattice cells;
+    private float[] lakeIntensity;
+
+    Column(final ColumnKey key) {
+      samples = new Lattice(key.x, 0, key.z, sampleCount(key.sizeX, SAMPLE_RATE_3D_HOR), 1, sampleCount(key.sizeZ,
+          SAMPLE_RATE_3D_HOR), SAMPLE_RATE_3D_HOR, 1, SAMPLE_RATE_3D_HOR);
+      cells = new Lattice(key.x, 0, key.z, key.sizeX, 1, key.sizeZ);
+      final float[] elevation = new float[samples.size()];
+      final float[] roughness = new float[samples.size()];
+      _pGen1.noise(samples.scale(0.0008f, 0, 0.0008f), elevation);
+      _pGen2.multiFractalNoise(samples.scale(0.001f, 0, 0.001f), 7, 2.151421f, roughness);
+      height = new float[samples.size()];
+      for (int i = 0; i < height.length; i++) {
+        height[i] = (elevation[i] + 1) / 2 + (roughness[i] + 1) / 2;
+      }
+      columnCount.incrementAndGet();
+    }
+
+    /**
+     * @return the terrain height of the density sample column (i,k)
+     */
+    float getHeight(final int i, final int k) {
+      return height[samples.index(i, 0, k)];
+    }
+
+    /**
+     * @return the lake intensity of the cell column (x,z), computed on first access
+     */
+    synchronized float getLakeIntensity(final int x, final int z) {
+      if (lakeIntensity == null) {
+        lakeIntensity = new float[cells.size()];
+        calcLakeIntensity(cells, lakeIntensity);
+      }
+      return lakeIntensity[cells.index(x, 0, z)];
+    }
+  }
+
+  static final class ColumnKey {
+
+    final int x;
+    final int z;
+    final int sizeX;
+    final int sizeZ;
+
+    ColumnKey(final int x, final int z, final int sizeX, final int sizeZ) {
+      this.x = x;
+      this.z = z;
+      this.sizeX = sizeX;
+      this.sizeZ = sizeZ;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof ColumnKey)) {
+        return false;
+      }
+      final ColumnKey other = (ColumnKey) obj;
+      return x == other.x && z == other.z && sizeX == other.sizeX && sizeZ == other.sizeZ;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(x, z, sizeX, sizeZ);
+    }
+  }
+
+  /**
+   * Density of the chunk cells above y = 0, sampled at a lower rate and interpolated. Layers without any surface
+   * density are marked empty, the column data is attached to the buffer (and kept for the chunks below in a column
+   * fill).
+   */
+  private final class DensityStage implements TerrainStage {
+
+    @Override
+    public void apply(final ChunkBuffer buffer) {
+      final int vy = buffer.getY();
+      if (vy + buffer.getSizeY() - 1 <= 0) {
+        return;
+      }
+      final Column column = buffer.getAttachment() != null ? (Column) buffer.getAttachment() : getColumn(buffer.getX(),
+          buffer.getZ(), buffer.getSizeX(), buffer.getSizeZ());
+      SAMPLER.sample(new DensitySampler.Source() {
+
+        @Override
+        public void sample(final Lattice samples, final float[] result) {
+          calcMountainDensity(samples, result);
+          for (int k = 0; k < samples.getSizeZ(); k++) {
+            for (int j = 0; j < samples.getSizeY(); j++) {
+              for (int i = 0; i < samples.getSizeX(); i++) {
+                final int index = samples.index(i, j, k);
+                result[index] = density(column.getHeight(i, k), result[index], j * SAMPLE_RATE_3D_VERT + vy);
+              }
+            }
+          }
+        }
+      }, buffer.getX(), vy, buffer.getZ(), buffer.getSizeX(), buffer.getSizeY(), buffer.getSizeZ(),
+          buffer.getDensity());
+      buffer.setDensity();
+      buffer.setAttachment(column);
+      final float[] density = buffer.getDensity();
+      for (int j = Math.max(0, 1 - vy); j < buffer.getSizeY(); j++) {
+        boolean empty = true;
+        for (int k = 0; k < buffer.getSizeZ() && empty; k++) {
+          for (int i = 0; i < buffer.getSizeX() && empty; i++) {
+            empty = density[buffer.index(i, j, k)] < 0.01f;
+          }
+        }
+        if (empty) {
+          buffer.markEmpty(j);
+        }
+      }
+    }
+
+    @Override
+    public String getName() {
+      return "density";
+    }
+  }
+
+  /**
+   * Stone ground layer with caves up to y = 0.
+   */
+  private final class CaveStage implements TerrainStage {
+
+    @Override
+    public void apply(final ChunkBuffer buffer) {
+      final int vy = buffer.getY();
+      if (vy > 0) {
+        return;
+      }
+      // all cells up to y = 0
+      final Lattice caveLattice = new Lattice(buffer.getX(), vy, buffer.getZ(), buffer.getSizeX(), Math.min(
+          buffer.getSizeY(), 1 - vy), buffer.getSizeZ());
+      final float[] caveData = new float[caveLattice.size()];
+      calcCaveNoise(caveLattice, caveData);
+      for (int k = 0; k < caveLattice.getSizeZ(); k++) {
+        for (int j = 0; j < caveLattice.getSizeY(); j++) {
+          for (int i = 0; i < caveLattice.getSizeX(); i++) {
+            if (caveData[caveLattice.index(i, j, k)] > 0.24f) {
+              buffer.set(i, j, k, 4, 0);
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    public String getName() {
+      return "caves";
+    }
+  }
+
+  /**
+   * Ocean up to the water level, the surface rules replace the water with the ground.
+   */
+  private static final class FluidStage implements TerrainStage {
+
+    @Override
+    public void apply(final ChunkBuffer buffer) {
+      final int vy = buffer.getY();
+      for (int j = Math.max(0, 1 - vy); j < Math.min(buffer.getSizeY(), WATER_LEVEL_Y - vy); j++) {
+        for (int k = 0; k < buffer.getSizeZ(); k++) {
+          for (int i = 0; i < buffer.getSizeX(); i++) {
+            buffer.set(i, j, k, 6, 0);
+          }
+        }
+      }
+    }
+
+    @Override
+    public String getName() {
+      return "fluids";
+    }
+  }
+
+  /**
+   * Material from the density, top down per column: the outer layer is made of dirt and grass (or a lake), the ground
+   * below of stone. The y of the outer layer is stored as column surface. The depth of the layers is measured from
+   * the {@link ChunkBuffer#getTop(int, int) top} of the column, which includes the chunks above in a column fill.
+   */
+  private final class SurfaceStage implements TerrainStage {
+
+    @Override
+    public void apply(final ChunkBuffer buffer) {
+      if (!buffer.hasDensity()) {
+        return;
+      }
+      final Column column = (Column) buffer.getAttachment();
+      final float[] density = buffer.getDensity();
+      final int vy = buffer.getY();
+      final int bottom = Math.max(0, 1 - vy);
+      for (int x = 0; x < buffer.getSizeX(); x++) {
+        for (int z = 0; z < buffer.getSizeZ(); z++) {
+          final int top = buffer.getTop(x, z);
+          float firstBlockHeight = top == ChunkBuffer.NO_SURFACE ? -1 : top;
+          for (int y = buffer.getSizeY() - 1; y >= bottom; y--) {
+            if (buffer.isEmpty(y)) {
+              continue;
+            }
+            final int globalY = vy + y;
+            final float dens = density[buffer.index(x, y, z)];
+            if (dens >= 0.01f && dens < 0.012f) {
+              // The outer layer is made of dirt and grass.
+              if (firstBlockHeight == -1) {
+                buffer.set(x, y, z, getBlockTailpiece(getBlockTypeForPosition(globalY, 1.0f), globalY), dens);
+                // Generate lakes
+                if (column.getLakeIntensity(x, z) < 0.1) {
+                  buffer.set(x, y, z, 7, dens);
+                }
+                buffer.setSurface(x, z, globalY);
+                firstBlockHeight = globalY;
+              } else {
+                buffer.set(x, y, z,
+                    getBlockTypeForPosition(globalY, 1.0f - (firstBlockHeight - globalY) / SAMPLE_RATE_3D_VERT), dens);
+              }
+            } else if (dens >= 0.012f) {
+              buffer.set(x, y, z, getBlockTailpiece(getBlockTypeForPosition(globalY, 0.2f), globalY), dens);
+              if (firstBlockHeight == -1) {
+                firstBlockHeight = globalY;
+              }
+            }
+          }
+          if (firstBlockHeight != -1) {
+            buffer.setTop(x, z, (int) firstBlockHeight);
+          }
+        }
+      }
+    }
+
+    @Override
+    public String getName() {
+      return "surface";
+    }
+  }
+
+  /**
+   * Number of chunk columns kept in the column cache by default.
+   */
+  public static final int DEFAULT_COLUMN_CACHE_SIZE = 1024;
 
   private static final Logger LOG = Logger.getLogger(BlockmaniaTerrainLoader.class);
 
   private static final int SAMPLE_RATE_3D_HOR = 8; // 8->16
   private static final int SAMPLE_RATE_3D_VERT = 8; // 16->128
   private static final int WATER_LEVEL_Y = 30;
+  private static final DensitySampler SAMPLER = new DensitySampler(SAMPLE_RATE_3D_HOR, SAMPLE_RATE_3D_VERT,
+      SAMPLE_RATE_3D_HOR);
+
+  private static final float[] MOUNTAIN_OCTAVES = { 64.47381f, 53.47381f, 44.47381f, 22.3672891f, 14.62819f,
+      11.463819f, 7.371f, 4.4281f, 1.432f };
+  private static final double[] MOUNTAIN_WEIGHTS = { 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 1.0 };
 
-  private static Bloxel bloxel(final byte blockTailpiece, final float dens) {
-    switch (blockTailpiece) {
-    case 1:
-      return new Bloxel(1, dens);
-    case 2:
-      return new Bloxel(2, dens);
-    case 4:
-      return new Bloxel(4, dens);
-    case 5:
-      return new Bloxel(5, dens);
+  private static float density(final float height, final float mountainDensity, final float y) {
+    float density = height - mountainDensity;
+    if (y < 120) {
+      density /= (y + 1) * 1.7f;
+    } else {
+      density /= (y + 1) * 2.0f;
     }
-    throw new IllegalArgumentException("Unsupported material " + blockTailpiece);
+    return FastMath.abs(density);
   }
 
   private final PerlinNoise _pGen1;
@@ -58,23 +324,54 @@ public class BlockmaniaTerrainLoader implements Loader<Bloxel> {
 
   private final PerlinNoise _pGen4;
 
+  private final LoadingCache<ColumnKey, Column> columns;
+  private final TerrainPipeline pipeline;
+  private final AtomicLong columnCount = new AtomicLong();
+
   public BlockmaniaTerrainLoader(final int seed) {
+    this(seed, DEFAULT_COLUMN_CACHE_SIZE);
+  }
+
+  /**
+   * @param columnCacheSize
+   *          maximum number of chunk columns whose height and lake data are cached
+   */
+  public BlockmaniaTerrainLoader(final int seed, final int columnCacheSize) {
     _pGen1 = new PerlinNoise(seed);
     _pGen2 = new PerlinNoise(seed + 1);
     _pGen3 = new PerlinNoise(seed + 2);
     _pGen4 = new PerlinNoise(seed + 3);
+    columns = CacheBuilder.newBuilder().maximumSize(columnCacheSize).build(new CacheLoader<ColumnKey, Column>() {
+
+      @Override
+      public Column load(final ColumnKey key) {
+        return new Column(key);
+      }
+    });
+    pipeline = new TerrainPipeline(ImmutableList.of(new DensityStage(), new CaveStage(), new FluidStage(),
+        new SurfaceStage()));
+  }
+
+  /**
+   * Noise for the stone ground layer, batch computed for all cells of the lattice.
+   */
+  void calcCaveNoise(final Lattice lattice, final float[] result) {
+    final float[] noise1 = new float[lattice.size()];
+    final float[] noise2 = new float[lattice.size()];
+    _pGen4.noise(lattice.scale(0.009f, 0.009f, 0.009f), result);
+    _pGen4.noise(lattice.scale(0.04f, 0.04f, 0.04f), noise1);
+    _pGen4.noise(lattice.scale(0.08f, 0.08f, 0.08f), noise2);
+    for (int i = 0; i < lattice.size(); i++) {
+      float caveNoise = result[i] * 0.25f;
+      caveNoise += noise1[i] * 0.15f;
+      caveNoise += noise2[i] * 0.05f;
+      result[i] = caveNoise;
+    }
   }
 
   float calcDensity(final float x, final float y, final float z) {
     final float height = (calcTerrainElevation(x, z) + 1) / 2 + (calcTerrainRoughness(x, z) + 1) / 2;
-    float density = calcMountainDensity(x, y, z);
-    density = height - density;
-    if (y < 120) {
-      density /= (y + 1) * 1.7f;
-    } else {
-      density /= (y + 1) * 2.0f;
-    }
-    return FastMath.abs(density);
+    return density(height, calcMountainDensity(x, y, z), y);
   }
 
   float calcLakeIntensity(final float x, final float z) {
@@ -84,30 +381,44 @@ public class BlockmaniaTerrainLoader implements Loader<Bloxel> {
     return (float) Math.sqrt(Math.abs(result));
   }
 
+  /**
+   * Batch version of {@link #calcLakeIntensity(float, float)} for a 2d lattice.
+   */
+  void calcLakeIntensity(final Lattice lattice, final float[] result) {
+    _pGen3.multiFractalNoise(lattice.scale(0.01f, 0, 0.01f).offset(0, 0.01f, 0), 8, 2.1836171f, result);
+    for (int i = 0; i < lattice.size(); i++) {
+      result[i] = (float) Math.sqrt(Math.abs(result[i]));
+    }
+  }
+
   float calcMountainDensity(final float x, final float y, final float z) {
+    final float x1 = x * 0.0007f;
+    final float y1 = y * 0.0009f;
+    final float z1 = z * 0.0007f;
     float result = 0.0f;
-
-    float x1, y1, z1;
-
-    x1 = x * 0.0007f;
-    y1 = y * 0.0009f;
-    z1 = z * 0.0007f;
-
-    final float oct1 = 1.432f, oct2 = 4.4281f, oct3 = 7.371f, oct4 = 11.463819f, oct5 = 14.62819f, oct6 = 22.3672891f, oct7 = 44.47381f, oct8 = 53.47381f, oct9 = 64.47381f;
-
-    result += _pGen2.noise(x1 * oct9, y1 * oct9, z1 * oct9) * 0.2;
-    result += _pGen2.noise(x1 * oct8, y1 * oct8, z1 * oct8) * 0.3;
-    result += _pGen2.noise(x1 * oct7, y1 * oct7, z1 * oct7) * 0.4;
-    result += _pGen2.noise(x1 * oct6, y1 * oct6, z1 * oct6) * 0.5;
-    result += _pGen2.noise(x1 * oct5, y1 * oct5, z1 * oct5) * 0.6;
-    result += _pGen2.noise(x1 * oct4, y1 * oct4, z1 * oct4) * 0.7;
-    result += _pGen2.noise(x1 * oct3, y1 * oct3, z1 * oct3) * 0.8;
-    result += _pGen2.noise(x1 * oct2, y1 * oct2, z1 * oct2) * 0.9;
-    result += _pGen2.noise(x1 * oct1, y1 * oct1, z1 * oct1) * 1.0;
-
+    for (int i = 0; i < MOUNTAIN_OCTAVES.length; i++) {
+      final float octave = MOUNTAIN_OCTAVES[i];
+      result += _pGen2.noise(x1 * octave, y1 * octave, z1 * octave) * MOUNTAIN_WEIGHTS[i];
+    }
     return result;
   }
 
+  /**
+   * Batch version of {@link #calcMountainDensity(float, float, float)}.
+   */
+  void calcMountainDensity(final Lattice lattice, final float[] result) {
+    final Lattice scaled = lattice.scale(0.0007f, 0.0009f, 0.0007f);
+    final float[] noise = new float[lattice.size()];
+    Arrays.fill(result, 0, lattice.size(), 0f);
+    for (int o = 0; o < MOUNTAIN_OCTAVES.length; o++) {
+      final float octave = MOUNTAIN_OCTAVES[o];
+      _pGen2.noise(scaled.frequency(octave, octave, octave), noise);
+      for (int i = 0; i < lattice.size(); i++) {
+        result[i] += noise[i] * MOUNTAIN_WEIGHTS[o];
+      }
+    }
+  }
+
   /**
    * Returns the detail level for the base terrain.
    * 
@@ -147,102 +458,81 @@ public class BlockmaniaTerrainLoader implements Loader<Bloxel> {
     return result;
   }
 
-  private float[][][] createDensityData(final int dimX, final int dimY, final int dimZ, final float offsetX,
-      final float offsetY, final float offsetZ) {
-    final float[][][] densityMap = new float[dimX + 1][dimY + 1][dimZ + 1];
-    // Create the density map at a lower sample rate.
-    final int rateX = SAMPLE_RATE_3D_HOR; // / (16 * dimX);
-    final int rateZ = SAMPLE_RATE_3D_HOR; // / (16 * dimZ);
-    final int rateY = SAMPLE_RATE_3D_VERT; // / (128 * dimY);
-    for (int x = 0; x <= dimX; x += rateX) {
-      for (int z = 0; z <= dimZ; z += rateZ) {
-        for (int y = 0; y <= dimY; y += rateY) {
-          densityMap[x][y][z] = calcDensity(x + offsetX, y + offsetY, z + offsetZ);
-        }
-      }
+  /**
+   * The box is air if it is above the water level and the density bounds are below the surface density, it is solid
+   * if it is between the ground and the water level (all cells are water or ground).
+   */
+  @Override
+  public Content classify(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ) {
+    if (y > 0 && y + sizeY - 1 < WATER_LEVEL_Y) {
+      return Content.SOLID;
     }
-    // Trilinear interpolate the missing values.
-    triLerpDensityMap(densityMap, dimX, dimY, dimZ);
-    return densityMap;
+    if (y >= WATER_LEVEL_Y && getDensityBounds(x, y, z, sizeX, sizeY, sizeZ).getMax() < 0.01f) {
+      return Content.AIR;
+    }
+    return Content.MIXED;
   }
 
   @Override
   public void fill(final Volume<Bloxel> volume) {
-
     LOG.debug(String.format("Fill volume %s", volume));
+    final long startTime = System.currentTimeMillis();
+    pipeline.fill(volume);
+    final float duration = System.currentTimeMillis() - startTime;
+    LOG.debug("Fill time was " + duration + "ms");
+  }
 
+  @Override
+  public void fillColumn(final List<Volume<Bloxel>> volumes, final Callback<Bloxel> callback) {
+    LOG.debug(String.format("Fill column of %d volumes", volumes.size()));
     final long startTime = System.currentTimeMillis();
+    pipeline.fillColumn(volumes, callback);
+    final float duration = System.currentTimeMillis() - startTime;
+    LOG.debug("Fill time was " + duration + "ms");
+  }
 
-    final int sizeX = volume.getSizeX();
-    final int sizeY = volume.getSizeY();
-    final int sizeZ = volume.getSizeZ();
-    final int vx = volume.getX();
-    final int vy = volume.getY();
-    final int vz = volume.getZ();
-
-    boolean densityDataInitialized = false;
-    float[][][] densityData = null;
-
-    // Generate the chunk from the density map.30
-    for (int x = 0; x < sizeX; x++) {
-      for (int z = 0; z < sizeZ; z++) {
-        float firstBlockHeight = -1;
-        for (int y = sizeY - 1; y >= 0; y--) {
-          // local to global location mapping
-          final int globalX = vx + x;
-          final int globalY = vy + y;
-          final int globalZ = vz + z;
-          // some density independent rules ...
-          if (globalY <= 0) {
-            // Stone ground layer with caves
-            float caveNoise = _pGen4.noise(globalX * 0.009f, globalY * 0.009f, globalZ * 0.009f) * 0.25f;
-            caveNoise += _pGen4.noise(globalX * 0.04f, globalY * 0.04f, globalZ * 0.04f) * 0.15f;
-            caveNoise += _pGen4.noise(globalX * 0.08f, globalY * 0.08f, globalZ * 0.08f) * 0.05f;
-            if (caveNoise > 0.24f) {
-              volume.set(x, y, z, new Bloxel(4, 0));
-            }
-            continue;
-          }
-          if (globalY < WATER_LEVEL_Y && globalY > 0) {
-            // Ocean
-            volume.set(x, y, z, new Bloxel(6));
-          }
-          // perlin noise based rules ...
-          if (!densityDataInitialized) {
-            densityData = createDensityData(sizeX, sizeY, sizeZ, vx, vy, vz);
-            densityDataInitialized = true;
-          }
-          final float dens = densityData[x][y][z];
-          if (dens >= 0.01f && dens < 0.012f) {
-            // The outer layer is made of dirt and grass.
-            if (firstBlockHeight == -1) {
-              volume.set(x, y, z, bloxel(getBlockTailpiece(getBlockTypeForPosition(globalY, 1.0f), globalY), dens));
-              // Generate lakes
-              final float lakeIntensity = calcLakeIntensity(x + vx, z + vy);
-              if (lakeIntensity < 0.1) {
-                volume.set(x, y, z, new Bloxel(7, dens));
-              }
-              firstBlockHeight = globalY;
-            } else {
-              volume.set(
-                  x,
-                  y,
-                  z,
-                  bloxel(getBlockTypeForPosition(globalY, 1.0f - (firstBlockHeight - globalY) / SAMPLE_RATE_3D_VERT),
-                      dens));
-            }
-          } else if (dens >= 0.012f) {
-            volume.set(x, y, z, bloxel(getBlockTailpiece(getBlockTypeForPosition(globalY, 0.2f), globalY), dens));
-            if (firstBlockHeight == -1) {
-              firstBlockHeight = globalY;
-            }
-          }
-        }
-      }
+  /**
+   * Bounds of the density of the samples of the box: <code>|height - mountain| / |(y + 1) * factor|</code>, the
+   * density of an interpolated cell is between its samples.
+   */
+  @Override
+  public Interval getDensityBounds(final int x, final int y, final int z, final int sizeX, final int sizeY,
+      final int sizeZ) {
+    final int y2 = y + DensitySampler.sampleExtent(sizeY, SAMPLE_RATE_3D_VERT);
+    if (y <= -1 && y2 >= -1) {
+      return Interval.of(0, Float.POSITIVE_INFINITY);
+    }
+    final Interval height = _pGen1.getRange().add(1).multiply(0.5f)
+        .add(_pGen2.getMultiFractalRange(7, 2.151421f).add(1).multiply(0.5f));
+    float weights = 0;
+    for (final double weight : MOUNTAIN_WEIGHTS) {
+      weights += weight;
     }
+    final Interval mountain = _pGen2.getRange().multiply(weights);
+    final float difference = Math.max(height.getMax() - mountain.getMin(), mountain.getMax() - height.getMin());
+    final float divisor = y > -1 ? (y + 1) * (y < 120 ? 1.7f : 2.0f) : -(y2 + 1) * 1.7f;
+    return Interval.of(0, difference / divisor).expand(1e-3f);
+  }
 
-    final float duration = System.currentTimeMillis() - startTime;
-    LOG.debug("Fill time was " + duration + "ms");
+  /**
+   * @return the cached (or new computed) x/z dependent data of the chunk column
+   */
+  Column getColumn(final int x, final int z, final int sizeX, final int sizeZ) {
+    return columns.getUnchecked(new ColumnKey(x, z, sizeX, sizeZ));
+  }
+
+  /**
+   * @return number of chunk columns computed since the creation of this loader
+   */
+  public long getColumnCount() {
+    return columnCount.get();
+  }
+
+  /**
+   * @return the stages of this loader, e.g. for the stage timings
+   */
+  public TerrainPipeline getPipeline() {
+    return pipeline;
   }
 
   byte getBlockTailpiece(final byte type, final float y) {
@@ -270,27 +560,4 @@ public class BlockmaniaTerrainLoader implements Loader<Bloxel> {
     }
     return 5;
   }
-
-  void triLerpDensityMap(final float[][][] densityMap, final int dimX, final int dimY, final int dimZ) {
-    final int rateX = SAMPLE_RATE_3D_HOR; // / (16 * dimX);
-    final int rateZ = SAMPLE_RATE_3D_HOR; // / (16 * dimZ);
-    final int rateY = SAMPLE_RATE_3D_VERT; // / (128 * dimY);
-    for (int x = 0; x < dimX; x++) {
-      for (int y = 0; y < dimY; y++) {
-        for (int z = 0; z < dimZ; z++) {
-          if (!(x % rateX == 0 && y % rateY == 0 && z % rateZ == 0)) {
-            final int offsetX = x / rateX * rateX;
-            final int offsetY = y / rateY * rateY;
-            final int offsetZ = z / rateZ * rateZ;
-            densityMap[x][y][z] = MathHelper.triLerp(x, y, z, densityMap[offsetX][offsetY][offsetZ],
-                densityMap[offsetX][rateY + offsetY][offsetZ], densityMap[offsetX][offsetY][offsetZ + rateZ],
-                densityMap[offsetX][offsetY + rateY][offsetZ + rateZ], densityMap[rateX + offsetX][offsetY][offsetZ],
-                densityMap[rateX + offsetX][offsetY + rateY][offsetZ], densityMap[rateX + offsetX][offsetY][offsetZ
-                    + rateZ], densityMap[rateX + offsetX][offsetY + rateY][offsetZ + rateZ], offsetX, rateX + offsetX,
-                offsetY, rateY + offsetY, offsetZ, offsetZ + rateZ);
-          }
-        }
-      }
-    }
-  }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import de.bloxel.engine.math.Interval;
+
+/**
+ * A {@link Loader} which can bound the content of a box without sampling it. The bounds are conservative (computed
+ * with interval arithmetic over the terms of the density function), so a box classified as {@link Content#AIR} really
+ * contains only air, but a {@link Content#MIXED} box can be empty too.
+ * 
+ * @param <T>
+ *          type of created elements
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public interface BoundedLoader<T> extends Loader<T> {
+
+  /**
+   * Classification of the content of a box.
+   */
+  enum Content {
+    /**
+     * The loader will not set any element in the box.
+     */
+    AIR,
+    /**
+     * The loader will set all elements of the box.
+     */
+    SOLID,
+    /**
+     * Unknown, the box must be filled.
+     */
+    MIXED
+  }
+
+  /**
+   * @return the content of the box <code>(x,y,z)-(x+sizeX-1,y+sizeY-1,z+sizeZ-1)</code> (world coordinates)
+   */
+  Content classify(int x, int y, int z, int sizeX, int sizeY, int sizeZ);
+
+  /**
+   * @return conservative bounds of the density of all cells in the box
+   *         <code>(x,y,z)-(x+sizeX-1,y+sizeY-1,z+sizeZ-1)</code> (world coordinates)
+   */
+  Interval getDensityBounds(int x, int y, int z, int sizeX, int sizeY, int sizeZ);
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static com.google.common.base.Objects.toStringHelper;
+
+import java.util.Arrays;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.math.Lattice;
+
+/**
+ * Primitive scratch data of one chunk, shared by the {@link TerrainStage}s of a {@link TerrainPipeline}. The cells are
+ * stored x fastest (see {@link #index(int, int, int)}) in plain arrays, the {@link Bloxel}s are only created when the
+ * buffer is copied into the volume.
+ * 
+ * <p>
+ * Besides the cell types a buffer contains a density field (filled by a density stage), the y position of the surface
+ * of each x/z column and empty flags per y layer. A stage which proved that a layer contains nothing (e.g. all
+ * densities are below the surface threshold) marks it empty, later stages skip empty layers.
+ * </p>
+ * 
+ * <p>
+ * If the chunks of a column are filled top down (see {@link #resetBelow()}) the buffer keeps the column state, the y
+ * of the highest set cell of each x/z column in the chunks above.
+ * </p>
+ * 
+ * <p>
+ * A buffer is reused for the next chunk of the same size, so it is only used by one thread at a time.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class ChunkBuffer {
+
+  /**
+   * Surface value of columns without surface.
+   */
+  public static final int NO_SURFACE = Integer.MIN_VALUE;
+
+  private int x;
+  private int y;
+  private int z;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final Lattice cells;
+  private final int[] types;
+  private final float[] values;
+  private final float[] density;
+  private final int[] surface;
+  private final int[] top;
+  private final boolean[] emptyLayers;
+  private boolean hasDensity;
+  private Object attachment;
+
+  public ChunkBuffer(final int sizeX, final int sizeY, final int sizeZ) {
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    cells = new Lattice(0, 0, 0, sizeX, sizeY, sizeZ);
+    types = new int[cells.size()];
+    values = new float[cells.size()];
+    density = new float[cells.size()];
+    surface = new int[sizeX * sizeZ];
+    top = new int[sizeX * sizeZ];
+    emptyLayers = new boolean[sizeY];
+  }
+
+  /**
+   * Copies all non {@link Bloxel#AIR air} cells into the volume.
+   */
+  public void copyTo(final Volume<Bloxel> volume) {
+    for (int k = 0; k < sizeZ; k++) {
+      for (int j = 0; j < sizeY; j++) {
+        for (int i = 0; i < sizeX; i++) {
+          final int index = cells.index(i, j, k);
+          if (types[index] != Bloxel.AIR.getType()) {
+            volume.set(i, j, k, new Bloxel(types[index], values[index]));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the object attached by an earlier stage or <code>null</code>
+   */
+  public Object getAttachment() {
+    return attachment;
+  }
+
+  /**
+   * @return the density field, only valid if {@link #hasDensity()}
+   */
+  public float[] getDensity() {
+    return density;
+  }
+
+  public int getSizeX() {
+    return sizeX;
+  }
+
+  public int getSizeY() {
+    return sizeY;
+  }
+
+  public int getSizeZ() {
+    return sizeZ;
+  }
+
+  /**
+   * @return y (world) of the surface of the column or {@link #NO_SURFACE}
+   */
+  public int getSurface(final int i, final int k) {
+    return surface[i + sizeX * k];
+  }
+
+  /**
+   * @return y (world) of the highest cell of the column set by a stage in this chunk or the chunks above (see
+   *         {@link #resetBelow()}), or {@link #NO_SURFACE}
+   */
+  public int getTop(final int i, final int k) {
+    return top[i + sizeX * k];
+  }
+
+  public int getType(final int i, final int j, final int k) {
+    return types[cells.index(i, j, k)];
+  }
+
+  public float getValue(final int i, final int j, final int k) {
+    return values[cells.index(i, j, k)];
+  }
+
+  /**
+   * @return world x of the chunk
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * @return world y of the chunk
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * @return world z of the chunk
+   */
+  public int getZ() {
+    return z;
+  }
+
+  /**
+   * @return <code>true</code> if a stage filled the density field
+   */
+  public boolean hasDensity() {
+    return hasDensity;
+  }
+
+  /**
+   * @return position of the cell in the arrays of this buffer
+   */
+  public int index(final int i, final int j, final int k) {
+    return cells.index(i, j, k);
+  }
+
+  /**
+   * @return <code>true</code> if all layers are empty
+   */
+  public boolean isEmpty() {
+    for (final boolean empty : emptyLayers) {
+      if (!empty) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if a stage marked the layer as empty
+   */
+  public boolean isEmpty(final int j) {
+    return emptyLayers[j];
+  }
+
+  /**
+   * Marks a layer as empty, later stages don't need to look into it.
+   */
+  public void markEmpty(final int j) {
+    emptyLayers[j] = true;
+  }
+
+  /**
+   * Clears the buffer for a new chunk.
+   */
+  public void reset(final int x, final int y, final int z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    clear();
+    Arrays.fill(top, NO_SURFACE);
+    attachment = null;
+  }
+
+  /**
+   * Clears the buffer for the chunk directly below the current chunk. The column state ({@link #getTop(int, int)})
+   * and the attachment are kept.
+   */
+  public void resetBelow() {
+    y -= sizeY;
+    clear();
+  }
+
+  private void clear() {
+    Arrays.fill(types, Bloxel.AIR.getType());
+    Arrays.fill(values, 0);
+    Arrays.fill(surface, NO_SURFACE);
+    Arrays.fill(emptyLayers, false);
+    hasDensity = false;
+  }
+
+  /**
+   * Attaches stage specific data of the chunk (e.g. data of the chunk column) for the later stages.
+   */
+  public void setAttachment(final Object attachment) {
+    this.attachment = attachment;
+  }
+
+  /**
+   * Marks the density field as filled.
+   */
+  public void setDensity() {
+    hasDensity = true;
+  }
+
+  public void setSurface(final int i, final int k, final int surfaceY) {
+    surface[i + sizeX * k] = surfaceY;
+  }
+
+  public void setTop(final int i, final int k, final int topY) {
+    top[i + sizeX * k] = topY;
+  }
+
+  /**
+   * Sets the type and the density value of the bloxel in the cell.
+   */
+  public void set(final int i, final int j, final int k, final int type, final float value) {
+    final int index = cells.index(i, j, k);
+    types[index] = type;
+    values[index] = value;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(getClass()).add("x", x).add("y", y).add("z", z).add("size-x", sizeX).add("size-y", sizeY)
+        .add("size-z", sizeZ).toString();
+  }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import java.util.List;
+
+import de.bloxel.engine.data.Volume;
+
+/**
+ * A {@link Loader} which can fill a whole vertical stack of chunks in one pass. The chunks of a column share the x/z
+ * dependent data (e.g. height maps) and the loader can carry state from a chunk to the chunk below, e.g. the depth
+ * below the surface for the surface layering.
+ * 
+ * <p>
+ * A chunk filled alone by {@link #fill(Volume)} doesn't know the chunks above, so its content may differ from the
+ * same chunk filled as part of a column.
+ * </p>
+ * 
+ * @param <T>
+ *          type of created elements
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public interface ColumnLoader<T> extends Loader<T> {
+
+  /**
+   * Receives the chunks of a column as soon as they are filled, called by the thread which fills the column.
+   */
+  interface Callback<T> {
+
+    /**
+     * @param volume
+     *          the filled chunk
+     */
+    void filled(Volume<T> volume);
+  }
+
+  /**
+   * Fills the chunks top down. The state of a chunk is only carried to the next chunk if it is directly below (same
+   * x/z position and size).
+   * 
+   * @param volumes
+   *          chunks of one column, in any order
+   * @param callback
+   *          called after each chunk
+   */
+  void fillColumn(List<Volume<T>> volumes, Callback<T> callback);
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static com.google.common.base.Objects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import de.bloxel.engine.math.Lattice;
+
+/**
+ * Computes the density of all cells of a chunk from a sparse set of samples. The {@link Source} is only evaluated at
+ * every <code>rate</code>-th cell per axis (plus one sample behind the last cell), all other cells are trilinear
+ * interpolated.
+ * 
+ * <p>
+ * The interpolation is separable: the sample rows are first interpolated along x, then along y and at last along z.
+ * Each pass uses precomputed weights per cell, so a cell costs three multiply-adds instead of a full
+ * {@link de.bloxel.engine.math.MathHelper#triLerp} call. The result is the same as with
+ * {@link de.bloxel.engine.math.MathHelper#triLerp}, which interpolates x, y and z in the same order. With rate 1 the
+ * source is evaluated for each cell and nothing is interpolated.
+ * </p>
+ * 
+ * <p>
+ * The samples are at world positions <code>chunk-origin + n * rate</code>, so two chunks with the same origin along an
+ * axis share the samples on this axis. Chunk sizes should be multiples of the rates, otherwise neighbour chunks don't
+ * share the samples on their common border.
+ * </p>
+ * 
+ * <p>
+ * A sampler is immutable and can be used by multiple threads.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class DensitySampler {
+
+  /**
+   * A density function which can be evaluated for all points of a {@link Lattice}.
+   */
+  public interface Source {
+
+    /**
+     * @param samples
+     *          points in world coordinates (scale 1, offset 0, frequency 1)
+     * @param result
+     *          for the densities, see {@link Lattice#index(int, int, int)}
+     */
+    void sample(Lattice samples, float[] result);
+  }
+
+  /**
+   * Sampler which evaluates the source for each cell.
+   */
+  public static final DensitySampler EXACT = new DensitySampler(1, 1, 1);
+
+  static int sampleCount(final int size, final int rate) {
+    return rate == 1 ? size : (size - 1) / rate + 2;
+  }
+
+  /**
+   * @return distance between the first and the last sample along an axis, the samples of a chunk can lie behind the
+   *         last cell of the chunk
+   */
+  static int sampleExtent(final int size, final int rate) {
+    return (sampleCount(size, rate) - 1) * rate;
+  }
+
+  /**
+   * Weights for the interpolation along one axis.
+   */
+  private static final class Axis {
+
+    final int[] sample;
+    final float[] weight0;
+    final float[] weight1;
+
+    Axis(final int size, final int rate) {
+      sample = new int[size];
+      weight0 = new float[size];
+      weight1 = new float[size];
+      for (int c = 0; c < size; c++) {
+        final int s = c / rate;
+        final float x1 = s * rate;
+        final float x2 = x1 + rate;
+        sample[c] = s;
+        // same as MathHelper.lerp
+        weight0[c] = (x2 - c) / (x2 - x1);
+        weight1[c] = (c - x1) / (x2 - x1);
+      }
+    }
+  }
+
+  private final int rateX;
+  private final int rateY;
+  private final int rateZ;
+
+  public DensitySampler(final int rateX, final int rateY, final int rateZ) {
+    checkArgument(rateX > 0 && rateY > 0 && rateZ > 0, "Sample rates must be > 0");
+    this.rateX = rateX;
+    this.rateY = rateY;
+    this.rateZ = rateZ;
+  }
+
+  public int getRateX() {
+    return rateX;
+  }
+
+  public int getRateY() {
+    return rateY;
+  }
+
+  public int getRateZ() {
+    return rateZ;
+  }
+
+  /**
+   * @return the lattice of the sample points for the given chunk
+   */
+  public Lattice getSamples(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ) {
+    return new Lattice(x, y, z, sampleCount(sizeX, rateX), sampleCount(sizeY, rateY), sampleCount(sizeZ, rateZ),
+        rateX, rateY, rateZ);
+  }
+
+  /**
+   * Computes the density of all cells of the chunk.
+   * 
+   * @param result
+   *          for the densities, indexed like a {@link Lattice} of the chunk (x fastest)
+   */
+  public void sample(final Source source, final int x, final int y, final int z, final int sizeX, final int sizeY,
+      final int sizeZ, final float[] result) {
+    final Lattice samples = getSamples(x, y, z, sizeX, sizeY, sizeZ);
+    if (rateX == 1 && rateY == 1 && rateZ == 1) {
+      source.sample(samples, result);
+      return;
+    }
+    final float[] sampled = new float[samples.size()];
+    source.sample(samples, sampled);
+    final int nx = samples.getSizeX();
+    final int ny = samples.getSizeY();
+    final int nz = samples.getSizeZ();
+    // x pass: nx * ny * nz -> sizeX * ny * nz
+    final float[] px = interpolateX(sampled, nx, ny * nz, sizeX);
+    // y pass: sizeX * ny * nz -> sizeX * sizeY * nz
+    final float[] py = interpolate(px, sizeX, ny, nz, sizeY, rateY, null);
+    // z pass: sizeX * sizeY * nz -> sizeX * sizeY * sizeZ
+    interpolate(py, sizeX * sizeY, nz, 1, sizeZ, rateZ, result);
+  }
+
+  /**
+   * Interpolates the middle axis of a <code>rowLength * n * count</code> array, rows of the same interpolated cell
+   * are blended as a whole.
+   */
+  private float[] interpolate(final float[] values, final int rowLength, final int n, final int count,
+      final int size, final int rate, final float[] target) {
+    final float[] result = target != null ? target : new float[rowLength * size * count];
+    if (rate == 1) {
+      System.arraycopy(values, 0, result, 0, rowLength * size * count);
+      return result;
+    }
+    final Axis axis = new Axis(size, rate);
+    for (int k = 0; k < count; k++) {
+      final int from = k * n * rowLength;
+      final int to = k * size * rowLength;
+      for (int c = 0; c < size; c++) {
+        final int row0 = from + axis.sample[c] * rowLength;
+        final int row1 = row0 + rowLength;
+        final float w0 = axis.weight0[c];
+        final float w1 = axis.weight1[c];
+        final int row = to + c * rowLength;
+        for (int i = 0; i < rowLength; i++) {
+          result[row + i] = w0 * values[row0 + i] + w1 * values[row1 + i];
+        }
+      }
+    }
+    return result;
+  }
+
+  private float[] interpolateX(final float[] values, final int n, final int rows, final int size) {
+    if (rateX == 1) {
+      return values;
+    }
+    final float[] result = new float[size * rows];
+    final Axis axis = new Axis(size, rateX);
+    for (int r = 0; r < rows; r++) {
+      final int from = r * n;
+      final int to = r * size;
+      for (int c = 0; c < size; c++) {
+        final int s = from + axis.sample[c];
+        result[to + c] = axis.weight0[c] * values[s] + axis.weight1[c] * values[s + 1];
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(getClass()).add("rate-x", rateX).add("rate-y", rateY).add("rate-z", rateZ).toString();
+  }
+}
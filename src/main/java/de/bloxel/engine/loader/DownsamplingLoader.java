@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+import java.util.Arrays;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+import de.bloxel.engine.data.VolumeGrid;
+
+/**
+ * Fills the volumes of a coarse {@link VolumeGrid} (a level of detail) from a source grid. Each element summarizes a
+ * cube of <code>factor x factor x factor</code> source elements:
+ * 
+ * <ul>
+ * <li>the type is the most frequent type of the cube (majority voting, air counts too but a tie goes to the solid
+ * type, so thin surfaces don't vanish)</li>
+ * <li>the density is the average density of the cube</li>
+ * </ul>
+ * 
+ * The coarse grid has the same grid size as the source grid, its volumes are <code>factor</code> times smaller. The
+ * coarse volume with index (x,y,z) summarizes the source volume with the same index, its world position is the world
+ * position of the source volume divided by the factor (see {@link #createGrid(VolumeGrid, int, int, int, int, int,
+ * VolumeFactory)}). Edits of the source after a coarse volume was filled are not seen by the coarse volume.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class DownsamplingLoader implements BloxelLoader {
+
+  private static final int AIR = Bloxel.AIR.getType();
+
+  /**
+   * @param source
+   *          the grid with the full resolution
+   * @param factor
+   *          2, 4, 8 ..., the volume size must be a multiple of it
+   * @return a new coarse grid which is filled on demand from the source grid
+   */
+  public static VolumeGrid<Bloxel> createGrid(final VolumeGrid<Bloxel> source, final int factor, final int gridSizeX,
+      final int gridSizeY, final int gridSizeZ, final int volumeSize, final VolumeFactory<Bloxel> volumeFactory) {
+    checkArgument(volumeSize % factor == 0, "volume size %s is not a multiple of %s", volumeSize, factor);
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(gridSizeX, gridSizeY, gridSizeZ);
+    grid.setVolumeSize(volumeSize / factor);
+    grid.setVolumeFactory(volumeFactory);
+    grid.setVolumeLoader(new DownsamplingLoader(source, factor));
+    grid.init();
+    return grid;
+  }
+
+  private final VolumeGrid<Bloxel> source;
+  private final int factor;
+
+  public DownsamplingLoader(final VolumeGrid<Bloxel> source, final int factor) {
+    checkArgument(factor > 1 && Integer.bitCount(factor) == 1, "factor %s is not a power of two", factor);
+    this.source = checkNotNull(source);
+    this.factor = factor;
+  }
+
+  @Override
+  public void fill(final Volume<Bloxel> volume) {
+    final Volume<Bloxel> v = source.getVolumeWithIndex(volume.getX() / volume.getSizeX(),
+        volume.getY() / volume.getSizeY(), volume.getZ() / volume.getSizeZ());
+    checkArgument(v.getSizeX() == factor * volume.getSizeX() && v.getSizeY() == factor * volume.getSizeY()
+        && v.getSizeZ() == factor * volume.getSizeZ(), format("%s is not %d times larger than %s", v, factor, volume));
+    final int[] types = new int[factor * factor * factor];
+    for (int x = 0; x < volume.getSizeX(); x++) {
+      for (int y = 0; y < volume.getSizeY(); y++) {
+        for (int z = 0; z < volume.getSizeZ(); z++) {
+          float density = 0;
+          int i = 0;
+          for (int dx = 0; dx < factor; dx++) {
+            for (int dy = 0; dy < factor; dy++) {
+              for (int dz = 0; dz < factor; dz++) {
+                final Bloxel b = v.get(factor * x + dx, factor * y + dy, factor * z + dz);
+                types[i++] = b.getType();
+                density += b.getDensity();
+              }
+            }
+          }
+          final int type = majority(types);
+          if (type != AIR) {
+            volume.set(x, y, z, new Bloxel(type, density / types.length));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the most frequent type, a tie between air and a solid type goes to the solid type (the array is sorted)
+   */
+  static int majority(final int[] types) {
+    Arrays.sort(types);
+    int result = AIR;
+    int resultCount = 0;
+    for (int i = 0; i < types.length;) {
+      int j = i + 1;
+      while (j < types.length && types[j] == types[i]) {
+        j++;
+      }
+      if (j - i > resultCount || j - i == resultCount && result == AIR) {
+        result = types[i];
+        resultCount = j - i;
+      }
+      i = j;
+    }
+    return result;
+  }
+}
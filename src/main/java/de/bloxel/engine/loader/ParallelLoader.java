@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+
+/**
+ * A {@link BloxelLoader} which splits a volume into slabs along the x axis and fills the slabs in parallel with the
+ * delegate loader. Each slab is filled into its own volume (with the world position of the slab), afterwards the slabs
+ * are copied into the target volume. So the delegate only needs to be thread safe for concurrent {@link #fill(Volume)}
+ * calls, the target volume is only written by the calling thread.
+ * 
+ * <p>
+ * The result is identical to a serial fill as long as the delegate doesn't depend on the x extent of the volume, i.e.
+ * the slab width must be a multiple of the delegate's sample rate along x (8 for {@link BlockmaniaTerrainLoader}).
+ * </p>
+ * 
+ * <p>
+ * The calling thread works on the slabs too, so the loader can't dead lock even if the executor is busy or is the pool
+ * which calls {@link #fill(Volume)}.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class ParallelLoader implements BloxelLoader {
+
+  private static final Logger LOG = Logger.getLogger(ParallelLoader.class);
+
+  private final BloxelLoader delegate;
+  private final VolumeFactory<Bloxel> volumeFactory;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final int slabWidth;
+
+  /**
+   * @param delegate
+   *          the loader for the slabs, must be thread safe
+   * @param volumeFactory
+   *          for the slab volumes
+   * @param executor
+   *          for the slabs
+   * @param parallelism
+   *          maximum number of threads (including the calling thread) per volume
+   * @param slabWidth
+   *          x size of a slab
+   */
+  public ParallelLoader(final BloxelLoader delegate, final VolumeFactory<Bloxel> volumeFactory,
+      final ExecutorService executor, final int parallelism, final int slabWidth) {
+    checkArgument(parallelism > 0);
+    checkArgument(slabWidth > 0);
+    this.delegate = delegate;
+    this.volumeFactory = volumeFactory;
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.slabWidth = slabWidth;
+  }
+
+  @Override
+  public void fill(final Volume<Bloxel> volume) {
+    final int slabs = (volume.getSizeX() + slabWidth - 1) / slabWidth;
+    if (slabs == 1 || parallelism == 1) {
+      delegate.fill(volume);
+      return;
+    }
+    final long startTime = System.currentTimeMillis();
+    @SuppressWarnings("unchecked")
+    final Volume<Bloxel>[] parts = new Volume[slabs];
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicReference<RuntimeException> error = new AtomicReference<RuntimeException>();
+    final CountDownLatch done = new CountDownLatch(slabs);
+    final Runnable worker = new Runnable() {
+
+      @Override
+      public void run() {
+        int i;
+        while ((i = next.getAndIncrement()) < slabs) {
+          try {
+            final int x0 = i * slabWidth;
+            final Volume<Bloxel> part = volumeFactory.create(volume.getX() + x0, volume.getY(), volume.getZ(),
+                Math.min(slabWidth, volume.getSizeX() - x0), volume.getSizeY(), volume.getSizeZ());
+            delegate.fill(part);
+            parts[i] = part;
+          } catch (final RuntimeException e) {
+            error.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+    for (int i = 1; i < Math.min(parallelism, slabs); i++) {
+      executor.execute(worker);
+    }
+    worker.run();
+    try {
+      done.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(format("Interrupted while filling %s", volume), e);
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+    for (int i = 0; i < slabs; i++) {
+      final Volume<Bloxel> part = parts[i];
+      final int x0 = i * slabWidth;
+      for (int x = 0; x < part.getSizeX(); x++) {
+        for (int z = 0; z < part.getSizeZ(); z++) {
+          for (int y = 0; y < part.getSizeY(); y++) {
+            final Bloxel bloxel = part.get(x, y, z);
+            if (bloxel != null && bloxel != Bloxel.AIR) {
+              volume.set(x0 + x, y, z, bloxel);
+            }
+          }
+        }
+      }
+    }
+    final float duration = System.currentTimeMillis() - startTime;
+    LOG.debug(format("Fill %s with %d slabs in %.0fms", volume, slabs, duration));
+  }
+}
@@ -5,43 +5,170 @@ import org.slf4j.LoggerFactory;
 
 import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.math.Interval;
+import de.bloxel.engine.math.Lattice;
 import de.bloxel.engine.math.SimplexNoise3;
 
-public class PerlinNoiseTerrainLoader implements BloxelLoader {
+public class PerlinNoiseTerrainLoader implements BloxelLoader, BoundedLoader<Bloxel> {
 
   private static final Logger LOG = LoggerFactory.getLogger(PerlinNoiseTerrainLoader.class);
 
+  private static final float SOLID_DENSITY = 3.1f;
+
+  private static float plateauFalloff(final float yf) {
+    if (yf <= 0.8) {
+      return 1.0f;
+    } else if (0.8 < yf && yf < 0.9) {
+      return 1.0f - (yf - 0.8f) * 10.0f;
+    }
+    return 0.0f;
+  }
+
+  /**
+   * @return bounds of <code>((world + 512) / 1024 - 0.5) * factor)^2</code> for the world range
+   */
+  private static Interval square(final int from, final int to, final float center, final float factor) {
+    final float a = ((from + 512) / 1024f - center) * factor;
+    final float b = ((to + 512) / 1024f - center) * factor;
+    final float max = Math.max(a * a, b * b);
+    if (a <= 0 && b >= 0) {
+      return Interval.of(0, max);
+    }
+    return Interval.of(Math.min(a * a, b * b), max);
+  }
+
+  private final SimplexNoise3 noise;
+  private final DensitySampler sampler;
+
+  /**
+   * Terrain of the classic simplex noise permutation.
+   */
+  public PerlinNoiseTerrainLoader() {
+    noise = new SimplexNoise3();
+    sampler = DensitySampler.EXACT;
+  }
+
+  public PerlinNoiseTerrainLoader(final long seed) {
+    this(seed, DensitySampler.EXACT);
+  }
+
+  /**
+   * @param sampler
+   *          to compute the density at a lower sample rate
+   */
+  public PerlinNoiseTerrainLoader(final long seed, final DensitySampler sampler) {
+    noise = new SimplexNoise3(seed);
+    this.sampler = sampler;
+  }
+
   @Override
-  public void fill(final Volume<Bloxel> volume) {
-    final float startTime = System.currentTimeMillis();
-    final int xv = volume.getX();
-    final int yv = volume.getY();
-    final int zv = volume.getZ();
-    for (int z = 0; z < volume.getSizeZ(); z++) {
-      for (int y = 0; y < volume.getSizeY(); y++) {
-        for (int x = 0; x < volume.getSizeX(); x++) {
-          final float xf = (xv + x + 512) / 1024f;
-          final float yf = (yv + y + 512) / 1024f;
-          final float zf = (zv + z + 512) / 1024f;
-          float plateau_falloff;
-          if (yf <= 0.8) {
-            plateau_falloff = 1.0f;
-          } else if (0.8 < yf && yf < 0.9) {
-            plateau_falloff = 1.0f - (yf - 0.8f) * 10.0f;
-          } else {
-            plateau_falloff = 0.0f;
-          }
+  public Content classify(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ) {
+    final Interval bounds = getDensityBounds(x, y, z, sizeX, sizeY, sizeZ);
+    if (bounds.getMax() < SOLID_DENSITY) {
+      return Content.AIR;
+    }
+    // no NaN density (negative detail base) and no caves
+    if (bounds.getMin() >= SOLID_DENSITY && noise.getRange().getMin() + 0.4f >= 0 && !hasCaves()) {
+      return Content.SOLID;
+    }
+    return Content.MIXED;
+  }
+
+  /**
+   * Bounds of the density of the samples of the box, the density of an interpolated cell is between its samples. An
+   * undefined (NaN) density (negative detail noise) produces air, so it is not part of the bounds.
+   */
+  @Override
+  public Interval getDensityBounds(final int x, final int y, final int z, final int sizeX, final int sizeY,
+      final int sizeZ) {
+    final Interval detailBase = noise.getRange().add(0.4f);
+    if (detailBase.getMax() < 0) {
+      return Interval.of(0);
+    }
+    final Interval falloff = getSampleBounds(x, y, z, sizeX, sizeY, sizeZ);
+    final Interval density = noise.getRange(5).multiply(falloff).multiply(detailBase.pow(1.8f)).expand(1e-3f);
+    // the caves set the density to 0
+    return hasCaves() ? density.hull(0) : density;
+  }
+
+  /**
+   * @return <code>true</code> if the cave noise can carve caves (noise^3 &lt; 0.5)
+   */
+  private boolean hasCaves() {
+    return Math.pow(noise.getRange().getMin(), 3) < 0.5;
+  }
+
+  /**
+   * @return bounds of center falloff * plateau falloff of the samples of the box
+   */
+  private Interval getSampleBounds(final int x, final int y, final int z, final int sizeX, final int sizeY,
+      final int sizeZ) {
+    final int x2 = x + DensitySampler.sampleExtent(sizeX, sampler.getRateX());
+    final int y2 = y + DensitySampler.sampleExtent(sizeY, sampler.getRateY());
+    final int z2 = z + DensitySampler.sampleExtent(sizeZ, sampler.getRateZ());
+    final Interval plateau = Interval.of(plateauFalloff((y2 + 512) / 1024f), plateauFalloff((y + 512) / 1024f));
+    if (plateau.getMax() == 0) {
+      return plateau;
+    }
+    final Interval distance = square(x, x2, 0.5f, 1.5f).add(square(y, y2, 1.0f, 0.8f)).add(square(z, z2, 0.5f, 1.5f));
+    final Interval center = Interval.of(0.1f / distance.getMax(), distance.getMin() == 0 ? Float.POSITIVE_INFINITY
+        : 0.1f / distance.getMin());
+    return center.multiply(plateau).expand(1e-3f);
+  }
+
+  /**
+   * Density at the lattice points (world coordinates).
+   */
+  void calcDensity(final Lattice samples, final float[] result) {
+    // noise space position is (world + 512) / 1024
+    final Lattice lattice = samples.scale(1 / 1024f, 1 / 1024f, 1 / 1024f).offset(0.5f, 0.5f, 0.5f);
+    final float[] caveNoise = new float[lattice.size()];
+    final float[] detailNoise = new float[lattice.size()];
+    noise.simplexNoise(1, lattice.frequency(5, 5, 5), caveNoise);
+    noise.simplexNoise(5, lattice.frequency(1, 0.5f, 1), result);
+    // (xf + 1) * 3
+    noise.noise(lattice.offset(1.5f, 1.5f, 1.5f).frequency(3, 3, 3), detailNoise);
+    for (int z = 0; z < lattice.getSizeZ(); z++) {
+      for (int y = 0; y < lattice.getSizeY(); y++) {
+        for (int x = 0; x < lattice.getSizeX(); x++) {
+          final int i = lattice.index(x, y, z);
+          final float xf = (samples.getX(x) + 512) / 1024f;
+          final float yf = (samples.getY(y) + 512) / 1024f;
+          final float zf = (samples.getZ(z) + 512) / 1024f;
+          final float plateau_falloff = plateauFalloff(yf);
           final float center_falloff = (float) (0.1 / (Math.pow((xf - 0.5) * 1.5, 2) + Math.pow((yf - 1.0) * 0.8, 2) + Math
               .pow((zf - 0.5) * 1.5, 2)));
-          final float caves = (float) Math.pow(SimplexNoise3.simplex_noise(1, xf * 5, yf * 5, zf * 5), 3);
-          float density = SimplexNoise3.simplex_noise(5, xf, yf * 0.5f, zf) * center_falloff * plateau_falloff;
-          density *= Math.pow(SimplexNoise3.noise((xf + 1) * 3.0f, (yf + 1) * 3.0f, (zf + 1) * 3.0f) + 0.4f, 1.8f);
+          final float caves = (float) Math.pow(caveNoise[i], 3);
+          float density = result[i] * center_falloff * plateau_falloff;
+          density *= Math.pow(detailNoise[i] + 0.4f, 1.8f);
           if (caves < 0.5) {
             density = 0;
           }
-          // System.out.println(String.format("%d,%d,%d=>%d,%d,%d=%f,%f,%f=%f", xv, yv, zv, x, y, z, xf, yf, zf,
-          // density));
-          if (density >= 3.1f) {
+          result[i] = density;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void fill(final Volume<Bloxel> volume) {
+    final float startTime = System.currentTimeMillis();
+    final Lattice cells = new Lattice(volume.getX(), volume.getY(), volume.getZ(), volume.getSizeX(),
+        volume.getSizeY(), volume.getSizeZ());
+    final float[] densities = new float[cells.size()];
+    sampler.sample(new DensitySampler.Source() {
+
+      @Override
+      public void sample(final Lattice samples, final float[] result) {
+        calcDensity(samples, result);
+      }
+    }, volume.getX(), volume.getY(), volume.getZ(), volume.getSizeX(), volume.getSizeY(), volume.getSizeZ(),
+        densities);
+    for (int z = 0; z < volume.getSizeZ(); z++) {
+      for (int y = 0; y < volume.getSizeY(); y++) {
+        for (int x = 0; x < volume.getSizeX(); x++) {
+          final float density = densities[cells.index(x, y, z)];
+          if (density >= SOLID_DENSITY) {
             volume.set(x, y, z, new Bloxel(1, density));
           }
         }
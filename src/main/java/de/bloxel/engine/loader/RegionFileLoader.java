@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.region.RegionStore;
+
+/**
+ * Loads chunks from a {@link RegionStore} (e.g. written by the pre-generation tool). Chunks which are not stored yet are
+ * filled by the delegate loader and written to the store.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class RegionFileLoader implements BloxelLoader {
+
+  private static final Logger LOG = Logger.getLogger(RegionFileLoader.class);
+
+  private final RegionStore store;
+  private final BloxelLoader delegate;
+
+  public RegionFileLoader(final RegionStore store, final BloxelLoader delegate) {
+    this.store = store;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void fill(final Volume<Bloxel> volume) {
+    try {
+      if (store.read(volume)) {
+        return;
+      }
+    } catch (final IOException e) {
+      LOG.error(format("Can't read chunk %s from region store, generate it", volume), e);
+      volume.clear();
+    }
+    delegate.fill(volume);
+    try {
+      store.write(volume);
+    } catch (final IOException e) {
+      LOG.error(format("Can't write chunk %s to region store", volume), e);
+    }
+  }
+}
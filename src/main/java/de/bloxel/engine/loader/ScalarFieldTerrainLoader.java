@@ -3,35 +3,48 @@ package de.bloxel.engine.loader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import cave3d.ScalarField;
-
-import com.jme3.math.Vector3f;
-
 import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.math.DensityField;
+import de.bloxel.engine.math.Lattice;
 
 public class ScalarFieldTerrainLoader implements BloxelLoader {
 
   private static final Logger LOG = LoggerFactory.getLogger(ScalarFieldTerrainLoader.class);
-  private final ScalarField scalarField;
+  private final DensityField densityField;
+  private final DensitySampler sampler;
 
-  public ScalarFieldTerrainLoader(final ScalarField scalarField) {
-    this.scalarField = scalarField;
+  public ScalarFieldTerrainLoader(final DensityField densityField) {
+    this(densityField, DensitySampler.EXACT);
+  }
+
+  /**
+   * @param sampler
+   *          to compute the density at a lower sample rate
+   */
+  public ScalarFieldTerrainLoader(final DensityField densityField, final DensitySampler sampler) {
+    this.densityField = densityField;
+    this.sampler = sampler;
   }
 
   @Override
   public void fill(final Volume<Bloxel> volume) {
     final float startTime = System.currentTimeMillis();
-    final int xv = volume.getX();
-    final int yv = volume.getY();
-    final int zv = volume.getZ();
+    final Lattice cells = new Lattice(volume.getX(), volume.getY(), volume.getZ(), volume.getSizeX(),
+        volume.getSizeY(), volume.getSizeZ());
+    final float[] densities = new float[cells.size()];
+    sampler.sample(new DensitySampler.Source() {
+
+      @Override
+      public void sample(final Lattice samples, final float[] result) {
+        densityField.sample(samples, result);
+      }
+    }, volume.getX(), volume.getY(), volume.getZ(), volume.getSizeX(), volume.getSizeY(), volume.getSizeZ(),
+        densities);
     for (int z = 0; z < volume.getSizeZ(); z++) {
       for (int y = 0; y < volume.getSizeY(); y++) {
         for (int x = 0; x < volume.getSizeX(); x++) {
-          final float xf = xv + x;
-          final float yf = yv + y;
-          final float zf = zv + z;
-          final float density = scalarField.calculate(new Vector3f(xf, yf, zf));
+          final float density = densities[cells.index(x, y, z)];
           if (density > 0) {
             volume.set(x, y, z, new Bloxel(z % 7 + 1, density));
           }
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+
+/**
+ * A {@link BloxelLoader} which fills a chunk with an ordered list of {@link TerrainStage}s. The stages work on a
+ * {@link ChunkBuffer} (one per thread, reused for chunks of the same size), after the last stage the buffer is copied
+ * into the volume.
+ * 
+ * <p>
+ * A column of chunks is filled top down with the same buffer, so the stages can use the column state of the chunks
+ * above (see {@link ChunkBuffer#resetBelow()}).
+ * </p>
+ * 
+ * <p>
+ * The time of each stage is recorded, see {@link #getTimes()}.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class TerrainPipeline implements BloxelLoader, ColumnLoader<Bloxel> {
+
+  private static final Logger LOG = Logger.getLogger(TerrainPipeline.class);
+
+  private static final Ordering<Volume<Bloxel>> TOP_DOWN = new Ordering<Volume<Bloxel>>() {
+
+    @Override
+    public int compare(final Volume<Bloxel> left, final Volume<Bloxel> right) {
+      return right.getY() - left.getY();
+    }
+  };
+
+  private static boolean isBelow(final Volume<Bloxel> volume, final Volume<Bloxel> above) {
+    return volume.getX() == above.getX() && volume.getZ() == above.getZ() && volume.getSizeX() == above.getSizeX()
+        && volume.getSizeY() == above.getSizeY() && volume.getSizeZ() == above.getSizeZ()
+        && volume.getY() + volume.getSizeY() == above.getY();
+  }
+
+  private final List<TerrainStage> stages;
+  private final AtomicLong[] times;
+  private final AtomicLong chunks = new AtomicLong();
+  private final ThreadLocal<ChunkBuffer> buffers = new ThreadLocal<ChunkBuffer>();
+
+  public TerrainPipeline(final List<? extends TerrainStage> stages) {
+    checkArgument(!stages.isEmpty(), "Pipeline needs at least one stage");
+    this.stages = ImmutableList.copyOf(stages);
+    times = new AtomicLong[stages.size()];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = new AtomicLong();
+    }
+  }
+
+  @Override
+  public void fill(final Volume<Bloxel> volume) {
+    final ChunkBuffer buffer = getBuffer(volume);
+    buffer.reset(volume.getX(), volume.getY(), volume.getZ());
+    fill(buffer, volume);
+  }
+
+  private void fill(final ChunkBuffer buffer, final Volume<Bloxel> volume) {
+    for (int i = 0; i < stages.size(); i++) {
+      final long start = System.nanoTime();
+      stages.get(i).apply(buffer);
+      times[i].addAndGet(System.nanoTime() - start);
+    }
+    buffer.copyTo(volume);
+    if (chunks.incrementAndGet() % 100 == 0 && LOG.isDebugEnabled()) {
+      LOG.debug(format("Stage times after %d chunks: %s", chunks.get(), getTimes()));
+    }
+  }
+
+  @Override
+  public void fillColumn(final List<Volume<Bloxel>> volumes, final Callback<Bloxel> callback) {
+    Volume<Bloxel> above = null;
+    ChunkBuffer buffer = null;
+    for (final Volume<Bloxel> volume : TOP_DOWN.sortedCopy(volumes)) {
+      if (above != null && isBelow(volume, above)) {
+        buffer.resetBelow();
+      } else {
+        buffer = getBuffer(volume);
+        buffer.reset(volume.getX(), volume.getY(), volume.getZ());
+      }
+      fill(buffer, volume);
+      callback.filled(volume);
+      above = volume;
+    }
+  }
+
+  private ChunkBuffer getBuffer(final Volume<Bloxel> volume) {
+    ChunkBuffer buffer = buffers.get();
+    if (buffer == null || buffer.getSizeX() != volume.getSizeX() || buffer.getSizeY() != volume.getSizeY()
+        || buffer.getSizeZ() != volume.getSizeZ()) {
+      buffer = new ChunkBuffer(volume.getSizeX(), volume.getSizeY(), volume.getSizeZ());
+      buffers.set(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * @return number of filled chunks
+   */
+  public long getChunkCount() {
+    return chunks.get();
+  }
+
+  public List<TerrainStage> getStages() {
+    return stages;
+  }
+
+  /**
+   * @return total time (in ms) per stage name, in stage order
+   */
+  public Map<String, Double> getTimes() {
+    final Map<String, Double> result = Maps.newLinkedHashMap();
+    for (int i = 0; i < stages.size(); i++) {
+      result.put(stages.get(i).getName(), times[i].get() / 1e6);
+    }
+    return result;
+  }
+}
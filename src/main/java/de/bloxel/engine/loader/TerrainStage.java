@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+/**
+ * One step of a {@link TerrainPipeline}, e.g. density, surface rules, cave carving, fluids or decoration. A stage
+ * reads and writes the {@link ChunkBuffer} of the chunk, it must be thread safe because the pipeline can fill multiple
+ * chunks concurrently.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public interface TerrainStage {
+
+  /**
+   * @return name of the stage for the timings
+   */
+  String getName();
+
+  /**
+   * @param buffer
+   *          the chunk, already processed by all earlier stages
+   */
+  void apply(ChunkBuffer buffer);
+}
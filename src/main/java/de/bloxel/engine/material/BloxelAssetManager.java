@@ -28,6 +28,16 @@ public interface BloxelAssetManager {
    */
   Material getMaterial(final Integer bloxelType, final BloxelSide side);
 
+  /**
+   * A material for the geometry of all bloxel types together, i.e. for all textures of one image atlas. The bloxel
+   * types are distinguished only by their {@link #getTextureCoordinates(Integer, BloxelSide) texture coordinates}.
+   * 
+   * @param transparent
+   *          <code>true</code> for the material of all transparent bloxel types
+   * @return the shared material or <code>null</code> if the bloxel types need their own materials
+   */
+  Material getAtlasMaterial(boolean transparent);
+
   /**
    * Return the texture coordinates for a bloxel type and a side.
    * 
@@ -105,6 +105,14 @@ public class ColorBloxelAssetManager implements BloxelAssetManager {
     return bloxelMaterial;
   }
 
+  /**
+   * The colors are material parameters, each bloxel type needs its own material.
+   */
+  @Override
+  public Material getAtlasMaterial(final boolean transparent) {
+    return null;
+  }
+
   @Override
   public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide face) {
     return ImmutableList.of(new Vector2f(0, 0), new Vector2f(1, 0), new Vector2f(0, 1), new Vector2f(1, 1));
@@ -17,17 +17,12 @@
 package de.bloxel.engine.material;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.io.Closeables.closeQuietly;
-import static de.bloxel.engine.util.JAXBUtils.unmarschal;
 import static java.lang.String.format;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
-import org.springframework.core.io.ClassPathResource;
 import org.testng.collections.Sets;
 
 import com.google.common.collect.ImmutableList;
@@ -44,6 +39,7 @@ import de.bloxel.engine.types.BloxelType;
 import de.bloxel.engine.types.Side;
 import de.bloxel.engine.types.SideType;
 import de.bloxel.engine.types.Types;
+import de.bloxel.engine.util.BloxelDescriptors;
 
 /**
  * This {@link BloxelAssetManager} return {@link Material textured material} for bloxel types.
@@ -59,9 +55,15 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
   private final Map<Integer, Material> bloxelMaterial = Maps.newHashMap();
   private final Map<Integer, BloxelType> bloxel = Maps.newHashMap();
   private final Set<Integer> transparent = Sets.newHashSet();
+  private final Set<Texture> textures = Sets.newHashSet();
+  private Material atlasMaterial;
+  private Material transparentAtlasMaterial;
   private final TextureAtlasProvider atlasProvider;
   private final AssetManager assetManager;
+  private final Types types;
   private boolean lighting;
+  private boolean tiling;
+  private boolean packed;
 
   /**
    * @param assetManager
@@ -71,6 +73,7 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
     this.assetManager = assetManager;
     this.assetManager.registerLocator("/de/bloxel/engine/resources/", ClasspathLocator.class);
     this.atlasProvider = new TextureAtlasProvider(assetManager);
+    this.types = load();
     loadMaterials();
   }
 
@@ -83,6 +86,14 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
     return sideTextureMaterial.get(getTextureId(bloxelType, side));
   }
 
+  /**
+   * @return the material of the atlas texture if all bloxel types use the same atlas image
+   */
+  @Override
+  public Material getAtlasMaterial(final boolean transparent) {
+    return transparent ? transparentAtlasMaterial : atlasMaterial;
+  }
+
   @Override
   public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
     checkNotNull(bloxelType);
@@ -130,18 +141,25 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
   }
 
   protected Types load() {
-    InputStream inputStream = null;
-    try {
-      inputStream = new ClassPathResource("bloxel-types.xml").getInputStream();
-      return unmarschal(inputStream, Types.class);
-    } catch (final IOException e) {
-      throw new RuntimeException("Can't load bloxel-types.xml", e);
-    } finally {
-      closeQuietly(inputStream);
-    }
+    return BloxelDescriptors.loadTypes();
   }
 
-  private Material loadMaterial(final Texture texture) {
+  /**
+   * @param tileSize
+   *          width and height of an atlas tile in texture coordinates
+   */
+  private Material loadMaterial(final Texture texture, final Vector2f tileSize) {
+    if (packed) {
+      final Material material = new Material(assetManager, "shader/PackedAtlas.j3md");
+      material.setTexture("ColorMap", texture);
+      material.setVector2("TileSize", tileSize);
+      return material;
+    }
+    if (tiling) {
+      final Material material = new Material(assetManager, "shader/TiledAtlas.j3md");
+      material.setTexture("ColorMap", texture);
+      return material;
+    }
     if (lighting) {
       final Material material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
       material.setTexture("DiffuseMap", texture);
@@ -159,23 +177,41 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
     bloxelMaterial.clear();
     sideTextureMaterial.clear();
     transparent.clear();
-    for (final BloxelType b : load().getBloxel()) {
+    textures.clear();
+    Vector2f tileSize = null;
+    for (final BloxelType b : types.getBloxel()) {
       for (final Side side : b.getSide()) {
         bloxel.put(b.getId(), b);
         final String sideTextureId = side.getTextureId();
         final Texture texture = this.atlasProvider.getTexture(sideTextureId);
         checkNotNull(texture,
             format("Missing texture with id '%s' for bloxel '%d', side '%s'", sideTextureId, b.getId(), side.getType()));
-        final Material material = loadMaterial(texture);
+        final ImmutableList<Vector2f> coordinates = atlasProvider.getTextureCoordinates(sideTextureId);
+        // top right minus bottom left, the packed vertex format needs tiles of the same size
+        tileSize = coordinates.get(3).subtract(coordinates.get(0));
+        final Material material = loadMaterial(texture, tileSize);
         if (b.isTransparent()) {
           transparent.add(b.getId());
-          material.setTransparent(true);
-          material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
+          setTransparent(material);
         }
         bloxelMaterial.put(b.getId(), material);
         sideTextureMaterial.put(sideTextureId, material);
+        textures.add(texture);
       }
     }
+    atlasMaterial = null;
+    transparentAtlasMaterial = null;
+    if (textures.size() == 1) {
+      // the asset manager returns the same texture for all tiles of an atlas image
+      atlasMaterial = loadMaterial(textures.iterator().next(), tileSize);
+      transparentAtlasMaterial = loadMaterial(textures.iterator().next(), tileSize);
+      setTransparent(transparentAtlasMaterial);
+    }
+  }
+
+  private void setTransparent(final Material material) {
+    material.setTransparent(true);
+    material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
   }
 
   public void setLightning(final boolean lightning) {
@@ -184,4 +220,28 @@ public class ImageAtlasBloxelAssetManager implements BloxelAssetManager {
       loadMaterials();
     }
   }
+
+  /**
+   * @param packed
+   *          <code>true</code> materials decode the packed vertex format of
+   *          {@link de.bloxel.engine.jme.CubicMeshVolumeNode#setPacked(boolean)}, without lighting
+   */
+  public void setPacked(final boolean packed) {
+    if (packed != this.packed) {
+      this.packed = packed;
+      loadMaterials();
+    }
+  }
+
+  /**
+   * @param tiling
+   *          <code>true</code> materials repeat the atlas tile over greedy merged faces (see
+   *          {@link de.bloxel.engine.jme.CubicMeshVolumeNode.Mode#GREEDY}), without lighting
+   */
+  public void setTiling(final boolean tiling) {
+    if (tiling != this.tiling) {
+      this.tiling = tiling;
+      loadMaterials();
+    }
+  }
 }
\ No newline at end of file
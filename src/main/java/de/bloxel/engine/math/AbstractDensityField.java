@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+/**
+ * A {@link DensityField} which computes the lattice densities point by point.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public abstract class AbstractDensityField implements DensityField {
+
+  @Override
+  public void sample(final Lattice lattice, final float[] result) {
+    for (int k = 0; k < lattice.getSizeZ(); k++) {
+      final float z = lattice.getZ(k);
+      for (int j = 0; j < lattice.getSizeY(); j++) {
+        final float y = lattice.getY(j);
+        final int row = lattice.index(0, j, k);
+        for (int i = 0; i < lattice.getSizeX(); i++) {
+          result[row + i] = sample(lattice.getX(i), y, z);
+        }
+      }
+    }
+  }
+}
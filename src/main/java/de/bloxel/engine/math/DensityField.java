@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+/**
+ * A scalar density function of the world. Implementations must be thread safe and should not allocate objects per
+ * sample.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public interface DensityField {
+
+  /**
+   * @return the density at the point
+   */
+  float sample(float x, float y, float z);
+
+  /**
+   * Computes the density of all points of the lattice, the result must be the same as
+   * {@link #sample(float, float, float)} for each point.
+   * 
+   * @param result
+   *          for the densities, see {@link Lattice#index(int, int, int)}
+   */
+  void sample(Lattice lattice, float[] result);
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static com.google.common.base.Objects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A closed interval <code>[min,max]</code> of floats for conservative bounds (interval arithmetic). The result of an
+ * operation contains all results of the operation for any values of the operand intervals. An interval is immutable.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class Interval {
+
+  /**
+   * All values, the bounds of an unknown term.
+   */
+  public static final Interval ALL = new Interval(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+
+  public static Interval of(final float value) {
+    return new Interval(value, value);
+  }
+
+  public static Interval of(final float min, final float max) {
+    return new Interval(min, max);
+  }
+
+  private static float min(final float a, final float b, final float c, final float d) {
+    return Math.min(Math.min(a, b), Math.min(c, d));
+  }
+
+  private static float max(final float a, final float b, final float c, final float d) {
+    return Math.max(Math.max(a, b), Math.max(c, d));
+  }
+
+  /**
+   * 0 * infinity is 0 for bounds (the factor really is 0).
+   */
+  private static float multiply(final float a, final float b) {
+    return a == 0 || b == 0 ? 0 : a * b;
+  }
+
+  private final float min;
+  private final float max;
+
+  private Interval(final float min, final float max) {
+    checkArgument(min <= max, "Invalid interval [%s,%s]", min, max);
+    this.min = min;
+    this.max = max;
+  }
+
+  public Interval add(final float value) {
+    return new Interval(min + value, max + value);
+  }
+
+  public Interval add(final Interval other) {
+    return new Interval(min + other.min, max + other.max);
+  }
+
+  public boolean contains(final float value) {
+    return min <= value && value <= max;
+  }
+
+  /**
+   * @return this interval widened by the relative error, e.g. to cover float rounding of the bounded computation
+   */
+  public Interval expand(final float relativeError) {
+    return new Interval(min - Math.abs(min) * relativeError, max + Math.abs(max) * relativeError);
+  }
+
+  public float getMax() {
+    return max;
+  }
+
+  public float getMin() {
+    return min;
+  }
+
+  /**
+   * @return the smallest interval which contains this interval and the value
+   */
+  public Interval hull(final float value) {
+    return new Interval(Math.min(min, value), Math.max(max, value));
+  }
+
+  public Interval multiply(final float value) {
+    return multiply(of(value));
+  }
+
+  public Interval multiply(final Interval other) {
+    final float a = multiply(min, other.min);
+    final float b = multiply(min, other.max);
+    final float c = multiply(max, other.min);
+    final float d = multiply(max, other.max);
+    return new Interval(min(a, b, c, d), max(a, b, c, d));
+  }
+
+  /**
+   * @return the interval of <code>Math.pow(x, exponent)</code> for the non negative values x of this interval (the
+   *         power of a negative value is NaN for non integer exponents), only valid for exponents &gt; 0
+   */
+  public Interval pow(final float exponent) {
+    checkArgument(exponent > 0, "Exponent must be > 0 but was %s", exponent);
+    checkArgument(max >= 0, "Interval %s has no non negative values", this);
+    return new Interval((float) Math.pow(Math.max(min, 0), exponent), (float) Math.pow(max, exponent));
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(getClass()).add("min", min).add("max", max).toString();
+  }
+}
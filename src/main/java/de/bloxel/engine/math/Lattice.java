@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static com.google.common.base.Objects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A regular 3d grid of sample points for the batch noise functions. The points are integer world positions
+ * <code>(x + i * stepX, y + j * stepY, z + k * stepZ)</code>, each axis is then mapped into noise space:
+ * 
+ * <pre>
+ * noise-x = (world-x * scaleX + offsetX) * frequencyX
+ * </pre>
+ * 
+ * The mapping is a pure function of the world position, so the samples of a point don't depend on the lattice which
+ * contains the point (e.g. a whole chunk or only a slab of it). A 2d lattice is a lattice with one point along y and
+ * <code>scaleY = 0</code>, its y coordinate is then <code>offsetY * frequencyY</code>.
+ * 
+ * <p>
+ * Results are stored x fastest, see {@link #index(int, int, int)}. A lattice is immutable.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class Lattice {
+
+  private final int x;
+  private final int y;
+  private final int z;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final int stepX;
+  private final int stepY;
+  private final int stepZ;
+  private final float scaleX;
+  private final float scaleY;
+  private final float scaleZ;
+  private final float offsetX;
+  private final float offsetY;
+  private final float offsetZ;
+  private final float frequencyX;
+  private final float frequencyY;
+  private final float frequencyZ;
+
+  /**
+   * Lattice with one point per world position.
+   */
+  public Lattice(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ) {
+    this(x, y, z, sizeX, sizeY, sizeZ, 1, 1, 1);
+  }
+
+  public Lattice(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ,
+      final int stepX, final int stepY, final int stepZ) {
+    this(x, y, z, sizeX, sizeY, sizeZ, stepX, stepY, stepZ, 1, 1, 1, 0, 0, 0, 1, 1, 1);
+  }
+
+  private Lattice(final int x, final int y, final int z, final int sizeX, final int sizeY, final int sizeZ,
+      final int stepX, final int stepY, final int stepZ, final float scaleX, final float scaleY, final float scaleZ,
+      final float offsetX, final float offsetY, final float offsetZ, final float frequencyX, final float frequencyY,
+      final float frequencyZ) {
+    checkArgument(sizeX > 0 && sizeY > 0 && sizeZ > 0, "Lattice must have at least one point");
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    this.stepX = stepX;
+    this.stepY = stepY;
+    this.stepZ = stepZ;
+    this.scaleX = scaleX;
+    this.scaleY = scaleY;
+    this.scaleZ = scaleZ;
+    this.offsetX = offsetX;
+    this.offsetY = offsetY;
+    this.offsetZ = offsetZ;
+    this.frequencyX = frequencyX;
+    this.frequencyY = frequencyY;
+    this.frequencyZ = frequencyZ;
+  }
+
+  /**
+   * @return the same lattice with other frequencies
+   */
+  public Lattice frequency(final float fx, final float fy, final float fz) {
+    return new Lattice(x, y, z, sizeX, sizeY, sizeZ, stepX, stepY, stepZ, scaleX, scaleY, scaleZ, offsetX, offsetY,
+        offsetZ, fx, fy, fz);
+  }
+
+  public int getSizeX() {
+    return sizeX;
+  }
+
+  public int getSizeY() {
+    return sizeY;
+  }
+
+  public int getSizeZ() {
+    return sizeZ;
+  }
+
+  /**
+   * @return x coordinates of the lattice points
+   */
+  float[] getXs() {
+    final float[] xs = new float[sizeX];
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = getX(i);
+    }
+    return xs;
+  }
+
+  /**
+   * @return y coordinates of the lattice rows (<code>index(0, j, k) / sizeX</code>)
+   */
+  float[] getRowYs() {
+    final float[] ys = new float[sizeY * sizeZ];
+    for (int k = 0; k < sizeZ; k++) {
+      for (int j = 0; j < sizeY; j++) {
+        ys[j + sizeY * k] = getY(j);
+      }
+    }
+    return ys;
+  }
+
+  /**
+   * @return z coordinates of the lattice rows (<code>index(0, j, k) / sizeX</code>)
+   */
+  float[] getRowZs() {
+    final float[] zs = new float[sizeY * sizeZ];
+    for (int k = 0; k < sizeZ; k++) {
+      for (int j = 0; j < sizeY; j++) {
+        zs[j + sizeY * k] = getZ(k);
+      }
+    }
+    return zs;
+  }
+
+  /**
+   * @return noise space x coordinate of the points with index <code>i</code>
+   */
+  public float getX(final int i) {
+    return ((x + i * stepX) * scaleX + offsetX) * frequencyX;
+  }
+
+  /**
+   * @return noise space y coordinate of the points with index <code>j</code>
+   */
+  public float getY(final int j) {
+    return ((y + j * stepY) * scaleY + offsetY) * frequencyY;
+  }
+
+  /**
+   * @return noise space z coordinate of the points with index <code>k</code>
+   */
+  public float getZ(final int k) {
+    return ((z + k * stepZ) * scaleZ + offsetZ) * frequencyZ;
+  }
+
+  /**
+   * @return position of the point in the result array
+   */
+  public int index(final int i, final int j, final int k) {
+    return i + sizeX * (j + sizeY * k);
+  }
+
+  /**
+   * @return the same lattice with other offsets
+   */
+  public Lattice offset(final float ox, final float oy, final float oz) {
+    return new Lattice(x, y, z, sizeX, sizeY, sizeZ, stepX, stepY, stepZ, scaleX, scaleY, scaleZ, ox, oy, oz,
+        frequencyX, frequencyY, frequencyZ);
+  }
+
+  /**
+   * @return the same lattice with other scales
+   */
+  public Lattice scale(final float sx, final float sy, final float sz) {
+    return new Lattice(x, y, z, sizeX, sizeY, sizeZ, stepX, stepY, stepZ, sx, sy, sz, offsetX, offsetY, offsetZ,
+        frequencyX, frequencyY, frequencyZ);
+  }
+
+  /**
+   * @return number of points
+   */
+  public int size() {
+    return sizeX * sizeY * sizeZ;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(getClass()).add("x", x).add("y", y).add("z", z).add("size-x", sizeX).add("size-y", sizeY)
+        .add("size-z", sizeZ).add("step-x", stepX).add("step-y", stepY).add("step-z", stepZ).toString();
+  }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+/**
+ * Inner loops of the batch noise functions of {@link PerlinNoise} and {@link SimplexNoise3}. All implementations
+ * must compute exactly the same values as the per point functions, see {@link NoiseKernels} for the selection.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+interface NoiseKernel {
+
+  /**
+   * @return name of the kernel, e.g. for log messages
+   */
+  String getName();
+
+  /**
+   * Computes {@link PerlinNoise#noise(float, float, float)} for all points of a lattice.
+   * 
+   * @param xs
+   *          x coordinates of each row
+   * @param ys
+   *          y coordinates of the rows
+   * @param zs
+   *          z coordinates of the rows
+   * @param add
+   *          <code>false</code> to store the noise values, <code>true</code> to add the noise multiplied with the
+   *          weight to the result
+   * @param result
+   *          for the noise values, the value of point <code>i</code> in row <code>r</code> is at
+   *          <code>r * xs.length + i</code>
+   */
+  void perlinNoise(PerlinNoise noise, float[] xs, float[] ys, float[] zs, boolean add, double weight, float[] result);
+
+  /**
+   * Adds {@link SimplexNoise3#noise(float, float, float)} of all lattice points multiplied with the frequency to the
+   * result, see {@link #perlinNoise(PerlinNoise, float[], float[], float[], boolean, double, float[])} for the layout.
+   */
+  void simplexNoise(SimplexNoise3 noise, float[] xs, float[] ys, float[] zs, float frequency, float[] result);
+}
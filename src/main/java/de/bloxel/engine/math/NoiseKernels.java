@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Selects the {@link NoiseKernel} once per JVM. The <code>VectorNoiseKernel</code> (SIMD via the
+ * <code>jdk.incubator.vector</code> API) exists only in the <code>META-INF/versions/16</code> part of the multi-release
+ * jar, it's used if the JVM is new enough and was started with <code>--add-modules jdk.incubator.vector</code>. In all
+ * other cases the {@link ScalarNoiseKernel} is used. The system property {@value #KERNEL_PROPERTY} forces a kernel
+ * (<code>scalar</code> or <code>vector</code>).
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class NoiseKernels {
+
+  static final String KERNEL_PROPERTY = "bloxel.noise.kernel";
+
+  private static final String VECTOR_KERNEL = "de.bloxel.engine.math.VectorNoiseKernel";
+  private static final String VECTOR_API = "jdk.incubator.vector.FloatVector";
+
+  private static final Logger LOG = Logger.getLogger(NoiseKernels.class);
+
+  private static final NoiseKernel KERNEL = select(System.getProperty(KERNEL_PROPERTY, "auto"));
+
+  /**
+   * @return the vector kernel or <code>null</code> if this JVM can't use it
+   */
+  static NoiseKernel createVectorKernel() {
+    try {
+      Class.forName(VECTOR_API);
+      return (NoiseKernel) Class.forName(VECTOR_KERNEL).newInstance();
+    } catch (final ClassNotFoundException e) {
+      return null;
+    } catch (final LinkageError e) {
+      // classes of the versioned part of the jar on a JVM which can't load them
+      return null;
+    } catch (final UnsupportedOperationException e) {
+      LOG.debug(e.getMessage());
+      return null;
+    } catch (final InstantiationException e) {
+      throw new IllegalStateException(e);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the kernel selected for this JVM
+   */
+  static NoiseKernel get() {
+    return KERNEL;
+  }
+
+  /**
+   * @param name
+   *          <code>scalar</code>, <code>vector</code> or <code>auto</code>
+   */
+  static NoiseKernel select(final String name) {
+    NoiseKernel kernel = null;
+    if (!"scalar".equals(name)) {
+      kernel = createVectorKernel();
+      if (kernel == null && "vector".equals(name)) {
+        LOG.warn(String.format("Vector noise kernel requested by %s but not available", KERNEL_PROPERTY));
+      }
+    }
+    if (kernel == null) {
+      kernel = new ScalarNoiseKernel();
+    }
+    LOG.info(String.format("Using %s noise kernel", kernel.getName()));
+    return kernel;
+  }
+
+  private NoiseKernels() {
+  }
+}
@@ -16,9 +16,28 @@
  *******************************************************************************/
 package de.bloxel.engine.math;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
 import java.util.Random;
 
-public class PerlinNoise {
+/**
+ * Perlin noise with a fixed seed, number of octaves and amplitude falloff. The noise tables are created in the
+ * constructor and never changed afterwards, so one instance can be shared by multiple threads.
+ */
+public final class PerlinNoise {
+
+  /**
+   * Per row (constant y and z) data of all octaves, see {@link PerlinNoise#prepareRow(float, float, Octaves)}.
+   */
+  static final class Octaves {
+
+    int count;
+    int[] offset = new int[0];
+    float[] fadeY = new float[0];
+    float[] fadeZ = new float[0];
+    float[] amplitude = new float[0];
+  }
 
   private static final float PERLIN_MIN_AMPLITUDE = 0.001f;
   protected static final int PERLIN_YWRAPB = 4;
@@ -26,19 +45,89 @@ public class PerlinNoise {
   protected static final int PERLIN_ZWRAPB = 8;
   protected static final int PERLIN_ZWRAP = 1 << PERLIN_ZWRAPB;
   protected static final int PERLIN_SIZE = 4095;
-  protected float perlin_amp_falloff = 0.5f; // 50% reduction/octave
-  protected float[] perlin_cosTable;
-  protected float perlin[];
-  protected Random perlinRandom;
-  protected int perlin_octaves = 4; // default to medium smooth
-  protected int perlin_TWOPI, perlin_PI;
+  /**
+   * The noise table is followed by a copy of its first values, so all 8 corners of a lattice cell can be read from
+   * the masked cell offset without masking each corner again.
+   */
+  static final int PERLIN_PADDING = PERLIN_ZWRAP + PERLIN_YWRAP + 2;
+  // [toxi 031112]
+  // noise broke due to recent change of cos table in PGraphics
+  // this will take care of it
+  private static final float[] perlin_cosTable = SinCosLUT.cosLUT;
+  private static final int perlin_TWOPI = SinCosLUT.SC_PERIOD;
+  private static final int perlin_PI = SinCosLUT.SC_PERIOD >> 1;
+
+  private final float perlin_amp_falloff;
+  private final float perlin[];
+  private final int perlin_octaves;
 
   public PerlinNoise() {
     this(System.nanoTime());
   }
 
+  /**
+   * Noise with 4 octaves (medium smooth) and 50% amplitude reduction per octave.
+   */
   public PerlinNoise(final long seed) {
-    noiseSeed(seed);
+    this(seed, 4, 0.5f);
+  }
+
+  // [toxi 040903]
+  // make perlin noise quality user controlled to allow
+  // for different levels of detail. lower values will produce
+  // smoother results as higher octaves are surpressed
+  public PerlinNoise(final long seed, final int octaves, final float falloff) {
+    checkArgument(octaves > 0, "Octaves must be > 0 but was %s", octaves);
+    checkArgument(falloff > 0, "Falloff must be > 0 but was %s", falloff);
+    perlin_octaves = octaves;
+    perlin_amp_falloff = falloff;
+    final Random perlinRandom = new Random(seed);
+    perlin = new float[PERLIN_SIZE + 1 + PERLIN_PADDING];
+    for (int i = 0; i < PERLIN_SIZE + 1; i++) {
+      perlin[i] = perlinRandom.nextFloat(); // (float)Math.random();
+    }
+    System.arraycopy(perlin, 0, perlin, PERLIN_SIZE + 1, PERLIN_PADDING);
+  }
+
+  private static void scale(final float[] values, final float factor) {
+    for (int i = 0; i < values.length; i++) {
+      values[i] *= factor;
+    }
+  }
+
+  /**
+   * @return the noise table with {@link #PERLIN_PADDING}
+   */
+  float[] getTable() {
+    return perlin;
+  }
+
+  /**
+   * @return bounds of {@link #multiFractalNoise(float, float, float, int, float)}
+   */
+  public Interval getMultiFractalRange(final int octaves, final float lacunarity) {
+    double max = 0;
+    for (int i = 1; i <= octaves; i++) {
+      max += getRange().getMax() * Math.pow(lacunarity, -0.76471 * i);
+    }
+    return Interval.of(0, (float) max);
+  }
+
+  /**
+   * @return bounds of {@link #noise(float, float, float)}, the noise table values are in [0,1) and each octave is an
+   *         interpolation of them, so the noise is in [0, sum of the octave amplitudes]
+   */
+  public Interval getRange() {
+    float max = 0;
+    float ampl = 0.5f;
+    for (int i = 0; i < perlin_octaves; i++) {
+      max += ampl;
+      ampl *= perlin_amp_falloff;
+      if (ampl < PERLIN_MIN_AMPLITUDE) {
+        break;
+      }
+    }
+    return Interval.of(0, max);
   }
 
   public float multiFractalNoise(float x, float y, float z, final int octaves, final float lacunarity) {
@@ -52,6 +141,153 @@ public class PerlinNoise {
     return result;
   }
 
+  /**
+   * Batch version of {@link #multiFractalNoise(float, float, float, int, float)}, computes the noise for all points
+   * of the lattice. The octave weights are computed only once per call.
+   * 
+   * @param result
+   *          for the noise values, see {@link Lattice#index(int, int, int)}
+   */
+  public void multiFractalNoise(final Lattice lattice, final int octaves, final float lacunarity,
+      final float[] result) {
+    final float[] xs = lattice.getXs();
+    final float[] ys = lattice.getRowYs();
+    final float[] zs = lattice.getRowZs();
+    Arrays.fill(result, 0, lattice.size(), 0);
+    for (int o = 1; o <= octaves; o++) {
+      NoiseKernels.get().perlinNoise(this, xs, ys, zs, true, Math.pow(lacunarity, -0.76471 * o), result);
+      scale(xs, lacunarity);
+      scale(ys, lacunarity);
+      scale(zs, lacunarity);
+    }
+  }
+
+  /**
+   * Batch version of {@link #noise(float, float, float)}, computes the noise for all points of the lattice. The
+   * lattice cell offsets and fade values of y and z are computed only once per row and octave.
+   * 
+   * @param result
+   *          for the noise values, see {@link Lattice#index(int, int, int)}
+   */
+  public void noise(final Lattice lattice, final float[] result) {
+    NoiseKernels.get().perlinNoise(this, lattice.getXs(), lattice.getRowYs(), lattice.getRowZs(), false, 1, result);
+  }
+
+  /**
+   * Scalar implementation of {@link NoiseKernel#perlinNoise(PerlinNoise, float[], float[], float[], boolean, double,
+   * float[])}.
+   */
+  void noiseRows(final float[] xs, final float[] ys, final float[] zs, final boolean add, final double weight,
+      final float[] result) {
+    final Octaves rowOctaves = new Octaves();
+    for (int row = 0; row < ys.length; row++) {
+      noiseRow(xs, ys[row], zs[row], rowOctaves, add, weight, result, row * xs.length);
+    }
+  }
+
+  /**
+   * Computes the lattice cell offsets of y and z, their fade values and the amplitudes of all octaves for a row of
+   * points.
+   */
+  void prepareRow(float y, float z, final Octaves octaves) {
+    if (octaves.offset.length < perlin_octaves) {
+      octaves.offset = new int[perlin_octaves];
+      octaves.fadeY = new float[perlin_octaves];
+      octaves.fadeZ = new float[perlin_octaves];
+      octaves.amplitude = new float[perlin_octaves];
+    }
+    if (y < 0) {
+      y = -y;
+    }
+    if (z < 0) {
+      z = -z;
+    }
+    int yi = (int) y, zi = (int) z;
+    float yf = y - yi;
+    float zf = z - zi;
+    float ampl = 0.5f;
+    int count = 0;
+    for (int i = 0; i < perlin_octaves; i++) {
+      octaves.offset[i] = (yi << PERLIN_YWRAPB) + (zi << PERLIN_ZWRAPB);
+      octaves.fadeY[i] = noise_fsc(yf);
+      octaves.fadeZ[i] = noise_fsc(zf);
+      octaves.amplitude[i] = ampl;
+      count++;
+      ampl *= perlin_amp_falloff;
+      if (ampl < PERLIN_MIN_AMPLITUDE) {
+        break;
+      }
+      yi <<= 1;
+      yf *= 2;
+      zi <<= 1;
+      zf *= 2;
+      if (yf >= 1.0f) {
+        yi++;
+        yf--;
+      }
+      if (zf >= 1.0f) {
+        zi++;
+        zf--;
+      }
+    }
+    octaves.count = count;
+  }
+
+  /**
+   * Noise for a row of points, exactly the same computation as {@link #noise(float, float, float)} but the y/z parts
+   * are prepared once for the whole row.
+   * 
+   * @param add
+   *          <code>false</code> to store the noise values, <code>true</code> to add the weighted noise to the result
+   */
+  private void noiseRow(final float[] xs, final float y, final float z, final Octaves octaves, final boolean add,
+      final double weight, final float[] result, final int offset) {
+    prepareRow(y, z, octaves);
+    final int count = octaves.count;
+    final int[] yzOffset = octaves.offset;
+    final float[] fadeY = octaves.fadeY;
+    final float[] fadeZ = octaves.fadeZ;
+    final float[] amplitude = octaves.amplitude;
+    for (int p = 0; p < xs.length; p++) {
+      float x = xs[p];
+      if (x < 0) {
+        x = -x;
+      }
+      int xi = (int) x;
+      float xf = x - xi;
+      float r = 0;
+      for (int i = 0; i < count; i++) {
+        int of = xi + yzOffset[i];
+        final float rxf = noise_fsc(xf);
+        final float ryf = fadeY[i];
+        float n1 = perlin[of & PERLIN_SIZE];
+        n1 += rxf * (perlin[of + 1 & PERLIN_SIZE] - n1);
+        float n2 = perlin[of + PERLIN_YWRAP & PERLIN_SIZE];
+        n2 += rxf * (perlin[of + PERLIN_YWRAP + 1 & PERLIN_SIZE] - n2);
+        n1 += ryf * (n2 - n1);
+        of += PERLIN_ZWRAP;
+        n2 = perlin[of & PERLIN_SIZE];
+        n2 += rxf * (perlin[of + 1 & PERLIN_SIZE] - n2);
+        float n3 = perlin[of + PERLIN_YWRAP & PERLIN_SIZE];
+        n3 += rxf * (perlin[of + PERLIN_YWRAP + 1 & PERLIN_SIZE] - n3);
+        n2 += ryf * (n3 - n2);
+        n1 += fadeZ[i] * (n2 - n1);
+        r += n1 * amplitude[i];
+        xi <<= 1;
+        xf *= 2;
+        if (xf >= 1.0f) {
+          xi++;
+          xf--;
+        }
+      }
+      if (add) {
+        result[offset + p] += r * weight;
+      } else {
+        result[offset + p] = r;
+      }
+    }
+  }
+
   /**
    * Computes the Perlin noise function value at point x.
    */
@@ -71,22 +307,6 @@ public class PerlinNoise {
    * Computes the Perlin noise function value at x, y, z.
    */
   public float noise(float x, float y, float z) {
-    if (perlin == null) {
-      if (perlinRandom == null) {
-        perlinRandom = new Random();
-      }
-      perlin = new float[PERLIN_SIZE + 1];
-      for (int i = 0; i < PERLIN_SIZE + 1; i++) {
-        perlin[i] = perlinRandom.nextFloat(); // (float)Math.random();
-      }
-      // [toxi 031112]
-      // noise broke due to recent change of cos table in PGraphics
-      // this will take care of it
-      perlin_cosTable = SinCosLUT.cosLUT;
-      perlin_TWOPI = perlin_PI = SinCosLUT.SC_PERIOD;
-      perlin_PI >>= 1;
-    }
-
     if (x < 0) {
       x = -x;
     }
@@ -168,34 +388,6 @@ public class PerlinNoise {
     return 0.5f * (1.0f - perlin_cosTable[(int) (i * perlin_PI) % perlin_TWOPI]);
   }
 
-  public void noiseDetail(final int lod) {
-    if (lod > 0) {
-      perlin_octaves = lod;
-    }
-  }
-
-  public void noiseDetail(final int lod, final float falloff) {
-    if (lod > 0) {
-      perlin_octaves = lod;
-    }
-    if (falloff > 0) {
-      perlin_amp_falloff = falloff;
-    }
-  }
-
-  // [toxi 040903]
-  // make perlin noise quality user controlled to allow
-  // for different levels of detail. lower values will produce
-  // smoother results as higher octaves are surpressed
-
-  public void noiseSeed(final long what) {
-    if (perlinRandom == null) {
-      perlinRandom = new Random();
-    }
-    perlinRandom.setSeed(what);
-    perlin = null;
-  }
-
   private float ridge(float n, final float offset) {
     n = Math.abs(n);
     n = offset - n;
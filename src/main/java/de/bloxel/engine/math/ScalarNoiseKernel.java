@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+/**
+ * Plain Java implementation of the noise loops, works on every JVM.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class ScalarNoiseKernel implements NoiseKernel {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void perlinNoise(final PerlinNoise noise, final float[] xs, final float[] ys, final float[] zs,
+      final boolean add, final double weight, final float[] result) {
+    noise.noiseRows(xs, ys, zs, add, weight, result);
+  }
+
+  @Override
+  public void simplexNoise(final SimplexNoise3 noise, final float[] xs, final float[] ys, final float[] zs,
+      final float frequency, final float[] result) {
+    noise.noiseRows(xs, ys, zs, frequency, result);
+  }
+}
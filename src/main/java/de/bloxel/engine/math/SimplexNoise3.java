@@ -21,39 +21,88 @@
  *******************************************************************************/
 package de.bloxel.engine.math;
 
-public class SimplexNoise3 {
-
-  static float grad[][] = new float[][] { { 1, 1, 0 }, { -1, 1, 0 }, { 1, -1, 0 }, { -1, -1, 0 }, { 1, 0, 1 },
-      { -1, 0, 1 }, { 1, 0, -1 }, { -1, 0, -1 }, { 0, 1, 1 }, { 0, -1, 1 }, { 0, 1, -1 }, { 0, -1, -1 } };
-
-  static int perm[] = new int[] { 151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233, 7, 225, 140, 36, 103,
-      30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148, 247, 120, 234, 75, 0, 26, 197, 62, 94, 252, 219, 203, 117,
-      35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136, 171, 168, 68, 175, 74, 165, 71, 134, 139, 48,
-      27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211, 133, 230, 220, 105, 92, 41, 55, 46, 245, 40, 244, 102,
-      143, 54, 65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132, 187, 208, 89, 18, 169, 200, 196, 135, 130, 116, 188, 159,
-      86, 164, 100, 109, 198, 173, 186, 3, 64, 52, 217, 226, 250, 124, 123, 5, 202, 38, 147, 118, 126, 255, 82, 85,
-      212, 207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42, 223, 183, 170, 213, 119, 248, 152, 2, 44, 154, 163, 70,
-      221, 153, 101, 155, 167, 43, 172, 9, 129, 22, 39, 253, 19, 98, 108, 110, 79, 113, 224, 232, 178, 185, 112, 104,
-      218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191, 179, 162, 241, 81, 51, 145, 235, 249, 14, 239, 107,
-      49, 192, 214, 31, 181, 199, 106, 157, 184, 84, 204, 176, 115, 121, 50, 45, 127, 4, 150, 254, 138, 236, 205, 93,
-      222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61, 156, 180, 151, 160, 137, 91, 90, 15, 131, 13, 201,
-      95, 96, 53, 194, 233, 7, 225, 140, 36, 103, 30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148, 247, 120, 234,
-      75, 0, 26, 197, 62, 94, 252, 219, 203, 117, 35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136,
-      171, 168, 68, 175, 74, 165, 71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211, 133, 230,
-      220, 105, 92, 41, 55, 46, 245, 40, 244, 102, 143, 54, 65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132, 187, 208,
-      89, 18, 169, 200, 196, 135, 130, 116, 188, 159, 86, 164, 100, 109, 198, 173, 186, 3, 64, 52, 217, 226, 250, 124,
-      123, 5, 202, 38, 147, 118, 126, 255, 82, 85, 212, 207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42, 223, 183,
-      170, 213, 119, 248, 152, 2, 44, 154, 163, 70, 221, 153, 101, 155, 167, 43, 172, 9, 129, 22, 39, 253, 19, 98, 108,
-      110, 79, 113, 224, 232, 178, 185, 112, 104, 218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191, 179,
-      162, 241, 81, 51, 145, 235, 249, 14, 239, 107, 49, 192, 214, 31, 181, 199, 106, 157, 184, 84, 204, 176, 115, 121,
-      50, 45, 127, 4, 150, 254, 138, 236, 205, 93, 222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61, 156,
-      180 };
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 3D simplex noise. The permutation table is created in the constructor and never changed afterwards, so one
+ * instance can be shared by multiple threads.
+ */
+public final class SimplexNoise3 {
+
+  private static final float grad[][] = new float[][] { { 1, 1, 0 }, { -1, 1, 0 }, { 1, -1, 0 }, { -1, -1, 0 },
+      { 1, 0, 1 }, { -1, 0, 1 }, { 1, 0, -1 }, { -1, 0, -1 }, { 0, 1, 1 }, { 0, -1, 1 }, { 0, 1, -1 }, { 0, -1, -1 } };
+
+  private static final int CLASSIC_PERM[] = new int[] { 151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233,
+      7, 225, 140, 36, 103, 30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148, 247, 120, 234, 75, 0, 26, 197, 62, 94,
+      252, 219, 203, 117, 35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136, 171, 168, 68, 175, 74, 165,
+      71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211, 133, 230, 220, 105, 92, 41, 55, 46, 245,
+      40, 244, 102, 143, 54, 65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132, 187, 208, 89, 18, 169, 200, 196, 135, 130,
+      116, 188, 159, 86, 164, 100, 109, 198, 173, 186, 3, 64, 52, 217, 226, 250, 124, 123, 5, 202, 38, 147, 118, 126,
+      255, 82, 85, 212, 207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42, 223, 183, 170, 213, 119, 248, 152, 2, 44,
+      154, 163, 70, 221, 153, 101, 155, 167, 43, 172, 9, 129, 22, 39, 253, 19, 98, 108, 110, 79, 113, 224, 232, 178,
+      185, 112, 104, 218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191, 179, 162, 241, 81, 51, 145, 235, 249,
+      14, 239, 107, 49, 192, 214, 31, 181, 199, 106, 157, 184, 84, 204, 176, 115, 121, 50, 45, 127, 4, 150, 254, 138,
+      236, 205, 93, 222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61, 156, 180, 151, 160, 137, 91, 90, 15,
+      131, 13, 201, 95, 96, 53, 194, 233, 7, 225, 140, 36, 103, 30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148,
+      247, 120, 234, 75, 0, 26, 197, 62, 94, 252, 219, 203, 117, 35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20,
+      125, 136, 171, 168, 68, 175, 74, 165, 71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211,
+      133, 230, 220, 105, 92, 41, 55, 46, 245, 40, 244, 102, 143, 54, 65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132,
+      187, 208, 89, 18, 169, 200, 196, 135, 130, 116, 188, 159, 86, 164, 100, 109, 198, 173, 186, 3, 64, 52, 217, 226,
+      250, 124, 123, 5, 202, 38, 147, 118, 126, 255, 82, 85, 212, 207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42,
+      223, 183, 170, 213, 119, 248, 152, 2, 44, 154, 163, 70, 221, 153, 101, 155, 167, 43, 172, 9, 129, 22, 39, 253, 19,
+      98, 108, 110, 79, 113, 224, 232, 178, 185, 112, 104, 218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191,
+      179, 162, 241, 81, 51, 145, 235, 249, 14, 239, 107, 49, 192, 214, 31, 181, 199, 106, 157, 184, 84, 204, 176, 115,
+      121, 50, 45, 127, 4, 150, 254, 138, 236, 205, 93, 222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61,
+      156, 180 };
+
+  /**
+   * Bounds of {@link #noise(float, float, float)}: each of the 4 corners adds at most
+   * <code>|g| * r * (0.6 - r^2)^4</code> (|g| = sqrt(2)), which is maximal for <code>r^2 = 0.6 / 9</code>.
+   */
+  private static final Interval RANGE;
+
+  static {
+    final double corner = Math.sqrt(2) * Math.sqrt(0.6 / 9) * Math.pow(0.6 - 0.6 / 9, 4);
+    final float max = (float) (16 * 4 * corner) * 1.001f;
+    RANGE = Interval.of(1 - max, 1 + max);
+  }
 
   static float dot(final float x, final float y, final float z, final float[] g) {
     return x * g[0] + y * g[1] + z * g[2];
   }
 
-  public static float noise(final float xin, final float yin, final float zin) {
+  private final int perm[];
+
+  /**
+   * Noise with the classic permutation of Ken Perlin's reference implementation.
+   */
+  public SimplexNoise3() {
+    perm = CLASSIC_PERM;
+  }
+
+  /**
+   * Noise with a permutation shuffled by the given seed.
+   */
+  public SimplexNoise3(final long seed) {
+    final Random random = new Random(seed);
+    final int[] p = new int[256];
+    for (int i = 0; i < p.length; i++) {
+      p[i] = i;
+    }
+    for (int i = p.length - 1; i > 0; i--) {
+      final int j = random.nextInt(i + 1);
+      final int t = p[i];
+      p[i] = p[j];
+      p[j] = t;
+    }
+    perm = new int[512];
+    for (int i = 0; i < perm.length; i++) {
+      perm[i] = p[i & 255];
+    }
+  }
+
+  public float noise(final float xin, final float yin, final float zin) {
     float F3, G3, t, X0, Y0, Z0, x0, y0, z0, s, x1, y1, z1, x2, y2, z2, x3, y3, z3, t0, t1, t2, t3, n0, n1, n2, n3;
     int i, j, k, ii, jj, kk, i1, j1, k1, i2, j2, k2, gi0, gi1, gi2, gi3;
 
@@ -173,7 +222,67 @@ public class SimplexNoise3 {
     return 16.0f * (n0 + n1 + n2 + n3) + 1.0f;
   }
 
-  public static float simplex_noise(final int octaves, final float x, final float y, final float z) {
+  /**
+   * Batch version of {@link #noise(float, float, float)}, computes the noise for all points of the lattice.
+   * 
+   * @param result
+   *          for the noise values, see {@link Lattice#index(int, int, int)}
+   */
+  public void noise(final Lattice lattice, final float[] result) {
+    simplexNoise(1, lattice, result);
+  }
+
+  /**
+   * Batch version of {@link #simplex_noise(int, float, float, float)}, computes the noise for all points of the
+   * lattice. The octave factors and the y/z coordinates of each row are computed only once.
+   * 
+   * @param result
+   *          for the noise values, see {@link Lattice#index(int, int, int)}
+   */
+  public void simplexNoise(final int octaves, final Lattice lattice, final float[] result) {
+    final float[] xs = lattice.getXs();
+    final float[] ys = lattice.getRowYs();
+    final float[] zs = lattice.getRowZs();
+    Arrays.fill(result, 0, lattice.size(), 0);
+    for (int o = 0; o < octaves; o++) {
+      NoiseKernels.get().simplexNoise(this, xs, ys, zs, (float) Math.pow(2, o), result);
+    }
+  }
+
+  /**
+   * Scalar implementation of {@link NoiseKernel#simplexNoise(SimplexNoise3, float[], float[], float[], float,
+   * float[])}.
+   */
+  void noiseRows(final float[] xs, final float[] ys, final float[] zs, final float frequency, final float[] result) {
+    for (int row = 0; row < ys.length; row++) {
+      final float y = ys[row] * frequency;
+      final float z = zs[row] * frequency;
+      final int offset = row * xs.length;
+      for (int i = 0; i < xs.length; i++) {
+        result[offset + i] += noise(xs[i] * frequency, y, z);
+      }
+    }
+  }
+
+  /**
+   * @return conservative bounds of {@link #noise(float, float, float)}
+   */
+  public Interval getRange() {
+    return RANGE;
+  }
+
+  int[] getPerm() {
+    return perm;
+  }
+
+  /**
+   * @return conservative bounds of {@link #simplex_noise(int, float, float, float)}
+   */
+  public Interval getRange(final int octaves) {
+    return RANGE.multiply(octaves);
+  }
+
+  public float simplex_noise(final int octaves, final float x, final float y, final float z) {
     float value = 0;
     int i;
     for (i = 0; i < octaves; i++) {
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+
+/**
+ * Binary format of one chunk ({@link Volume}) in a {@link RegionFile}. The bloxels are written in the same order as
+ * the engine iterates a volume (x, z, y), each bloxel as type (short) and, if the bloxel is not {@link Bloxel#AIR},
+ * density (float). The whole chunk is deflated.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class ChunkCodec {
+
+  private static final int VERSION = 1;
+
+  /**
+   * Read a chunk into the given volume. The volume must have the same dimension as the written one.
+   * 
+   * @param data
+   *          the encoded chunk
+   * @param volume
+   *          to fill
+   * @throws IOException
+   *           if the data is corrupt
+   */
+  public static void decode(final byte[] data, final Volume<Bloxel> volume) throws IOException {
+    final DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+    if (in.readUnsignedByte() != VERSION) {
+      throw new IOException("Unsupported chunk version");
+    }
+    final int sizeX = in.readUnsignedShort();
+    final int sizeY = in.readUnsignedShort();
+    final int sizeZ = in.readUnsignedShort();
+    if (sizeX != volume.getSizeX() || sizeY != volume.getSizeY() || sizeZ != volume.getSizeZ()) {
+      throw new IOException(format("Chunk size (%d,%d,%d) doesn't match volume %s", sizeX, sizeY, sizeZ, volume));
+    }
+    // the same type/density pair is very common, so we share the instances while reading
+    Bloxel last = Bloxel.AIR;
+    for (int x = 0; x < sizeX; x++) {
+      for (int z = 0; z < sizeZ; z++) {
+        for (int y = 0; y < sizeY; y++) {
+          final int type = in.readShort();
+          if (type == Bloxel.AIR.getType()) {
+            continue;
+          }
+          final float density = in.readFloat();
+          if (last.getType() != type || Float.floatToIntBits(last.getDensity()) != Float.floatToIntBits(density)) {
+            last = new Bloxel(type, density);
+          }
+          volume.set(x, y, z, last);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param volume
+   *          to write
+   * @return the encoded chunk
+   */
+  public static byte[] encode(final Volume<Bloxel> volume) {
+    checkArgument(volume.getSizeX() <= 0xffff && volume.getSizeY() <= 0xffff && volume.getSizeZ() <= 0xffff);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 8192));
+      out.writeByte(VERSION);
+      out.writeShort(volume.getSizeX());
+      out.writeShort(volume.getSizeY());
+      out.writeShort(volume.getSizeZ());
+      for (int x = 0; x < volume.getSizeX(); x++) {
+        for (int z = 0; z < volume.getSizeZ(); z++) {
+          for (int y = 0; y < volume.getSizeY(); y++) {
+            final Bloxel bloxel = volume.get(x, y, z);
+            out.writeShort(bloxel.getType());
+            if (bloxel.getType() != Bloxel.AIR.getType()) {
+              out.writeFloat(bloxel.getDensity());
+            }
+          }
+        }
+      }
+      out.close();
+    } catch (final IOException e) {
+      // can't happen for a byte array
+      throw new IllegalStateException(e);
+    } finally {
+      deflater.end();
+    }
+    return bytes.toByteArray();
+  }
+
+  private ChunkCodec() {
+  }
+}
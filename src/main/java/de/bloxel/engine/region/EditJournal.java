@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Sets;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.data.VolumeListener;
+import de.bloxel.engine.math.Vector3i;
+
+/**
+ * Append-only, memory mapped journal of all bloxel edits since the last save of the edited chunks. Register the
+ * journal as {@link VolumeListener} at the {@link VolumeGrid}, {@link #replay(VolumeGrid) replay} it after startup and
+ * {@link #checkpoint(RegionStore, VolumeGrid) checkpoint} it instead of saving the grid directly.
+ * 
+ * <pre>
+ * header: int magic, int version, int epoch, int start
+ * entry:  int chunk-x, int chunk-y, int chunk-z, int index, int type, float density, int check
+ * </pre>
+ * 
+ * Recording an edit is only a put into the mapped file, so it doesn't block the game thread. The mapped pages survive
+ * a crash of the process, a background thread forces them to the disk every {@link #getCommitInterval() commit
+ * interval} (group commit) to survive an os crash too. Each entry carries a check value over its content and the
+ * current epoch, {@link #replay(VolumeGrid)} stops at the first entry with a wrong check, i.e. at the end of the
+ * journal or at a torn write. A checkpoint copies the edits which are recorded while the chunks are saved to the
+ * beginning of the file with a new random epoch and switches the header to them, all old entries become invalid
+ * without touching them and the file doesn't grow with the number of checkpoints.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class EditJournal implements VolumeListener<Bloxel>, Closeable {
+
+  private static final Logger LOG = Logger.getLogger(EditJournal.class);
+
+  private static final int MAGIC = 0x42584a4c; // BXJL
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int EPOCH_OFFSET = 8;
+  private static final int ENTRY_SIZE = 28;
+  private static final int INITIAL_SIZE = HEADER_SIZE + ENTRY_SIZE * (1 << 16);
+
+  private static int check(final int epoch, final int cx, final int cy, final int cz, final int index,
+      final int type, final int density) {
+    int h = 0x9e3779b9 ^ epoch;
+    h = mix(h, cx);
+    h = mix(h, cy);
+    h = mix(h, cz);
+    h = mix(h, index);
+    h = mix(h, type);
+    h = mix(h, density);
+    return h ^ h >>> 16;
+  }
+
+  private static int floorDiv(final int a, final int b) {
+    return a >= 0 ? a / b : (a - b + 1) / b;
+  }
+
+  private static int mix(final int h, final int value) {
+    int k = value * 0xcc9e2d51;
+    k = Integer.rotateLeft(k, 15) * 0x1b873593;
+    return Integer.rotateLeft(h ^ k, 13) * 5 + 0xe6546b64;
+  }
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int epoch;
+  private int start;
+  private int position;
+  private Set<Vector3i> dirty = Sets.newHashSet();
+  private long commitInterval = 50;
+  private volatile boolean uncommitted;
+  private volatile boolean closed;
+  private final Thread committer;
+  private final Random epochs = new Random();
+
+  /**
+   * Open or create a journal.
+   * 
+   * @param file
+   *          the journal file
+   * @throws IOException
+   *           if the file can't be opened or is not a journal
+   */
+  public EditJournal(final File file) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.channel = raf.getChannel();
+    final boolean created = raf.length() == 0;
+    buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, raf.length()));
+    if (created) {
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, VERSION);
+      writeHeader(0, HEADER_SIZE);
+    } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      close();
+      throw new IOException(format("'%s' is not an edit journal", file));
+    }
+    epoch = buffer.getInt(EPOCH_OFFSET);
+    start = buffer.getInt(EPOCH_OFFSET + 4);
+    position = start;
+    while (position + ENTRY_SIZE <= buffer.capacity() && valid(position)) {
+      position += ENTRY_SIZE;
+    }
+    committer = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+        commitLoop();
+      }
+    }, "bloxel-edit-journal");
+    committer.setDaemon(true);
+    committer.start();
+  }
+
+  /**
+   * Save all chunks which were changed since the last checkpoint into the store and truncate the journal. Edits
+   * which are recorded while the chunks are saved are kept in the journal.
+   * 
+   * @param store
+   *          for the changed chunks
+   * @param grid
+   *          with the changed chunks
+   * @throws IOException
+   *           if the chunks can't be saved, the journal is unchanged in this case
+   */
+  public void checkpoint(final RegionStore store, final VolumeGrid<Bloxel> grid) throws IOException {
+    final Set<Vector3i> chunks;
+    final int mark;
+    synchronized (this) {
+      chunks = dirty;
+      dirty = Sets.newHashSet();
+      mark = position;
+    }
+    try {
+      for (final Vector3i chunk : chunks) {
+        store.write(grid.getVolumeWithIndex(chunk.x, chunk.y, chunk.z));
+      }
+      store.flush();
+    } catch (final IOException e) {
+      synchronized (this) {
+        dirty.addAll(chunks);
+      }
+      throw e;
+    }
+    // the monitor is only held for copying in memory, the forces run outside of it (the game thread records edits
+    // meanwhile)
+    final boolean compact;
+    final int newEpoch;
+    final int tail;
+    MappedByteBuffer current;
+    synchronized (this) {
+      // the edits before the mark are saved, the journal starts at the mark until the copies are done
+      writeHeader(epoch, mark);
+      start = mark;
+      tail = position - mark;
+      current = buffer;
+      // the recent edits must fit in front of the mark, otherwise they stay where they are
+      compact = mark > HEADER_SIZE && HEADER_SIZE + tail <= mark;
+      if (!compact) {
+        newEpoch = epoch;
+      } else {
+        // a random epoch, the copies of an abandoned checkpoint can't become valid later
+        int e = epochs.nextInt();
+        while (e == epoch) {
+          e = epochs.nextInt();
+        }
+        newEpoch = e;
+        copy(mark, position, HEADER_SIZE, newEpoch);
+      }
+    }
+    current.force();
+    if (compact) {
+      synchronized (this) {
+        // copy the edits which were recorded during the force too and switch to the copies
+        final int from = mark + tail;
+        final int to = HEADER_SIZE + tail;
+        final int size = position - from;
+        if (to + size <= mark) {
+          copy(from, position, to, newEpoch);
+          writeHeader(newEpoch, HEADER_SIZE);
+          epoch = newEpoch;
+          start = HEADER_SIZE;
+          position = to + size;
+        }
+        current = buffer;
+      }
+      current.force();
+    }
+    LOG.debug(format("Checkpoint journal '%s' after saving %d chunks, %d edits kept", file, chunks.size(), getSize()));
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    if (committer != null) {
+      committer.interrupt();
+      try {
+        committer.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      buffer.force();
+      channel.close();
+      raf.close();
+    }
+  }
+
+  private void commitLoop() {
+    while (!closed) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(commitInterval);
+      } catch (final InterruptedException e) {
+        break;
+      }
+      if (uncommitted) {
+        uncommitted = false;
+        final MappedByteBuffer current;
+        synchronized (this) {
+          current = buffer;
+        }
+        // force outside of the lock, the game thread can record edits meanwhile
+        current.force();
+      }
+    }
+  }
+
+  /**
+   * Copy the entries <code>from</code> (inclusive) <code>to</code> (exclusive) with a new epoch to the offset.
+   */
+  private void copy(final int from, final int to, final int offset, final int entryEpoch) {
+    for (int i = from, j = offset; i < to; i += ENTRY_SIZE, j += ENTRY_SIZE) {
+      putEntry(j, entryEpoch, buffer.getInt(i), buffer.getInt(i + 4), buffer.getInt(i + 8), buffer.getInt(i + 12),
+          buffer.getInt(i + 16), buffer.getInt(i + 20));
+    }
+  }
+
+  private void ensureCapacity(final int size) throws IOException {
+    if (size <= buffer.capacity()) {
+      return;
+    }
+    // the old mapping isn't forced, its pages are the pages of the new mapping
+    long newSize = buffer.capacity();
+    while (newSize < size) {
+      newSize <<= 1;
+    }
+    buffer = channel.map(MapMode.READ_WRITE, 0, newSize);
+    LOG.debug(format("Grow journal '%s' to %d bytes", file, newSize));
+  }
+
+  /**
+   * @return number of milliseconds between two forced writes of the journal to the disk
+   */
+  public long getCommitInterval() {
+    return commitInterval;
+  }
+
+  /**
+   * @return number of recorded edits since the last checkpoint
+   */
+  public synchronized int getSize() {
+    return (position - start) / ENTRY_SIZE;
+  }
+
+  @Override
+  public void onSet(final Volume<Bloxel> volume, final int x, final int y, final int z, final Bloxel value) {
+    record(floorDiv(volume.getX(), volume.getSizeX()), floorDiv(volume.getY(), volume.getSizeY()),
+        floorDiv(volume.getZ(), volume.getSizeZ()), x + volume.getSizeX() * (y + volume.getSizeY() * z),
+        value == null ? Bloxel.AIR : value);
+  }
+
+  private void putEntry(final int offset, final int entryEpoch, final int cx, final int cy, final int cz,
+      final int index, final int type, final int density) {
+    final ByteBuffer b = buffer;
+    b.putInt(offset, cx);
+    b.putInt(offset + 4, cy);
+    b.putInt(offset + 8, cz);
+    b.putInt(offset + 12, index);
+    b.putInt(offset + 16, type);
+    b.putInt(offset + 20, density);
+    b.putInt(offset + 24, check(entryEpoch, cx, cy, cz, index, type, density));
+  }
+
+  private synchronized void record(final int cx, final int cy, final int cz, final int index, final Bloxel value) {
+    if (closed) {
+      throw new IllegalStateException(format("Journal '%s' is closed", file));
+    }
+    try {
+      ensureCapacity(position + ENTRY_SIZE);
+    } catch (final IOException e) {
+      throw new IllegalStateException(format("Can't grow journal '%s'", file), e);
+    }
+    putEntry(position, epoch, cx, cy, cz, index, value.getType(), Float.floatToIntBits(value.getDensity()));
+    position += ENTRY_SIZE;
+    dirty.add(new Vector3i(cx, cy, cz));
+    uncommitted = true;
+  }
+
+  /**
+   * Apply all recorded edits to the grid. The changed chunks will be saved with the next
+   * {@link #checkpoint(RegionStore, VolumeGrid) checkpoint}.
+   * 
+   * @param grid
+   *          to change, the journal must not be registered as listener yet
+   * @return number of replayed edits
+   */
+  public synchronized int replay(final VolumeGrid<Bloxel> grid) {
+    int count = 0;
+    for (int offset = start; offset < position; offset += ENTRY_SIZE) {
+      final int cx = buffer.getInt(offset);
+      final int cy = buffer.getInt(offset + 4);
+      final int cz = buffer.getInt(offset + 8);
+      final int index = buffer.getInt(offset + 12);
+      final int type = buffer.getInt(offset + 16);
+      final float density = Float.intBitsToFloat(buffer.getInt(offset + 20));
+      final Volume<Bloxel> volume = grid.getVolumeWithIndex(cx, cy, cz);
+      final int x = index % volume.getSizeX();
+      final int y = index / volume.getSizeX() % volume.getSizeY();
+      final int z = index / (volume.getSizeX() * volume.getSizeY());
+      volume.set(x, y, z, type == Bloxel.AIR.getType() ? Bloxel.AIR : new Bloxel(type, density));
+      dirty.add(new Vector3i(cx, cy, cz));
+      count++;
+    }
+    LOG.info(format("Replay %d edits from journal '%s'", count, file));
+    return count;
+  }
+
+  public void setCommitInterval(final long commitInterval) {
+    this.commitInterval = commitInterval;
+  }
+
+  private boolean valid(final int offset) {
+    return buffer.getInt(offset + 24) == check(epoch, buffer.getInt(offset), buffer.getInt(offset + 4),
+        buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getInt(offset + 16), buffer.getInt(offset + 20));
+  }
+
+  private void writeHeader(final int newEpoch, final int newStart) {
+    // epoch and start are written together, so a crash can't leave a half updated header
+    buffer.putLong(EPOCH_OFFSET, (long) newEpoch << 32 | newStart & 0xffffffffL);
+  }
+}
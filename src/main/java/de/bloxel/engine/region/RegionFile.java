@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A region file contains up to <code>regionSize<sup>3</sup></code> encoded chunks (see {@link ChunkCodec}).
+ * 
+ * <pre>
+ * int magic, int version, int regionSize
+ * regionSize^3 * (long offset, int length, int crc32)   offset 0 means "chunk not stored"
+ * chunk data ...
+ * </pre>
+ * 
+ * New chunk data is always appended to the end of the file and the offset table entry is written after the data. A
+ * rewritten chunk leaves its old data as unused space in the file. Without a {@link #flush()} the operating system may
+ * put the table entry on the disk before the data, after a crash the entry can point to missing or incomplete data.
+ * So every entry carries the length and the checksum of its data, both are checked the first time the chunk is
+ * accessed. A chunk with a broken entry counts as not stored.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class RegionFile implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(RegionFile.class);
+
+  private static final int MAGIC = 0x42585247; // BXRG
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 12;
+  private static final int ENTRY_SIZE = 16;
+
+  private static int checksum(final byte[] data) {
+    final CRC32 crc = new CRC32();
+    crc.update(data);
+    return (int) crc.getValue();
+  }
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final int regionSize;
+  private final long[] offsets;
+  private final int[] lengths;
+  private final int[] checksums;
+
+  /**
+   * Entries whose data was checked or written by this instance.
+   */
+  private final BitSet verified;
+
+  /**
+   * Open or create a region file.
+   * 
+   * @param file
+   *          the file
+   * @param regionSize
+   *          number of chunks per axis
+   * @throws IOException
+   *           if the file can't be opened or is not a region file with the given region size
+   */
+  public RegionFile(final File file, final int regionSize) throws IOException {
+    this.file = file;
+    this.regionSize = regionSize;
+    final int entries = regionSize * regionSize * regionSize;
+    this.offsets = new long[entries];
+    this.lengths = new int[entries];
+    this.checksums = new int[entries];
+    this.verified = new BitSet(entries);
+    this.raf = new RandomAccessFile(file, "rw");
+    try {
+      if (raf.length() == 0) {
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        raf.writeInt(regionSize);
+        raf.write(new byte[entries * ENTRY_SIZE]);
+      } else {
+        if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+          throw new IOException(format("'%s' is not a region file", file));
+        }
+        if (raf.readInt() != regionSize) {
+          throw new IOException(format("'%s' has a different region size, expected %d", file, regionSize));
+        }
+        for (int i = 0; i < entries; i++) {
+          offsets[i] = raf.readLong();
+          lengths[i] = raf.readInt();
+          checksums[i] = raf.readInt();
+        }
+      }
+    } catch (final IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    raf.close();
+  }
+
+  /**
+   * @return <code>true</code> if the chunk with the given local position is stored in this region
+   */
+  public synchronized boolean contains(final int x, final int y, final int z) throws IOException {
+    final int i = index(x, y, z);
+    return verified.get(i) || data(i) != null;
+  }
+
+  /**
+   * @return the data of the entry or <code>null</code> if the chunk is not stored or the entry is broken
+   */
+  private byte[] data(final int i) throws IOException {
+    if (offsets[i] == 0) {
+      return null;
+    }
+    if (offsets[i] < HEADER_SIZE || lengths[i] < 0 || offsets[i] + lengths[i] > raf.length()) {
+      return drop(i);
+    }
+    final byte[] data = new byte[lengths[i]];
+    raf.seek(offsets[i]);
+    raf.readFully(data);
+    if (!verified.get(i)) {
+      if (checksum(data) != checksums[i]) {
+        return drop(i);
+      }
+      verified.set(i);
+    }
+    return data;
+  }
+
+  private byte[] drop(final int i) {
+    LOG.warn(format("Broken chunk entry %d in region file '%s', the chunk is not stored", i, file));
+    offsets[i] = 0;
+    return null;
+  }
+
+  /**
+   * Force all written chunks to the disk.
+   */
+  public synchronized void flush() throws IOException {
+    raf.getFD().sync();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  private int index(final int x, final int y, final int z) {
+    checkElementIndex(x, regionSize, "x");
+    checkElementIndex(y, regionSize, "y");
+    checkElementIndex(z, regionSize, "z");
+    return (x * regionSize + y) * regionSize + z;
+  }
+
+  /**
+   * @return the encoded chunk with the given local position or <code>null</code> if the chunk is not stored
+   */
+  public synchronized byte[] read(final int x, final int y, final int z) throws IOException {
+    return data(index(x, y, z));
+  }
+
+  /**
+   * Store the encoded chunk with the given local position.
+   */
+  public synchronized void write(final int x, final int y, final int z, final byte[] data) throws IOException {
+    final int i = index(x, y, z);
+    final long offset = raf.length();
+    raf.seek(offset);
+    raf.write(data);
+    raf.seek(HEADER_SIZE + (long) i * ENTRY_SIZE);
+    raf.writeLong(offset);
+    final int checksum = checksum(data);
+    raf.writeInt(data.length);
+    raf.writeInt(checksum);
+    offsets[i] = offset;
+    lengths[i] = data.length;
+    checksums[i] = checksum;
+    verified.set(i);
+  }
+}
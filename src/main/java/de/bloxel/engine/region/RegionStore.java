@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.log4j.Logger;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.Volume;
+
+/**
+ * Persistent storage of chunks in a directory of {@link RegionFile region files}. A chunk is addressed by its chunk
+ * position, i.e. the volume position divided by the chunk size. Each region file <code>r.x.y.z.region</code> contains
+ * {@link #REGION_SIZE}<sup>3</sup> neighboring chunks.
+ * 
+ * <p>
+ * Only a limited number of region files is open at the same time, the least recently used region file is flushed and
+ * closed if an other one must be opened. A large world doesn't run out of file descriptors.
+ * </p>
+ * 
+ * <p>
+ * A store is safe to use from multiple threads. The chunks are encoded and decoded outside of the store lock, the
+ * region files are read and written under the lock because an other thread could close them.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class RegionStore implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(RegionStore.class);
+
+  /**
+   * Number of chunks per axis in one region file.
+   */
+  public static final int REGION_SIZE = 8;
+
+  /**
+   * Default number of region files which are open at the same time.
+   */
+  public static final int MAX_OPEN_REGIONS = 64;
+
+  private static int floorDiv(final int a, final int b) {
+    return a >= 0 ? a / b : (a - b + 1) / b;
+  }
+
+  private static int floorMod(final int a, final int b) {
+    return a - floorDiv(a, b) * b;
+  }
+
+  private final File directory;
+  private final int chunkSizeX;
+  private final int chunkSizeY;
+  private final int chunkSizeZ;
+  private final int maxOpenRegions;
+
+  /**
+   * The open region files in access order, the first one is the least recently used.
+   */
+  private final LinkedHashMap<String, RegionFile> regions = new LinkedHashMap<String, RegionFile>(16, 0.75f, true);
+
+  /**
+   * @param directory
+   *          for the region files, will be created if necessary
+   * @param chunkSizeX
+   *          size of the stored chunks
+   * @param chunkSizeY
+   *          size of the stored chunks
+   * @param chunkSizeZ
+   *          size of the stored chunks
+   */
+  public RegionStore(final File directory, final int chunkSizeX, final int chunkSizeY, final int chunkSizeZ) {
+    this(directory, chunkSizeX, chunkSizeY, chunkSizeZ, MAX_OPEN_REGIONS);
+  }
+
+  /**
+   * @param directory
+   *          for the region files, will be created if necessary
+   * @param chunkSizeX
+   *          size of the stored chunks
+   * @param chunkSizeY
+   *          size of the stored chunks
+   * @param chunkSizeZ
+   *          size of the stored chunks
+   * @param maxOpenRegions
+   *          number of region files which are open at the same time
+   */
+  public RegionStore(final File directory, final int chunkSizeX, final int chunkSizeY, final int chunkSizeZ,
+      final int maxOpenRegions) {
+    checkArgument(chunkSizeX > 0 && chunkSizeY > 0 && chunkSizeZ > 0);
+    checkArgument(maxOpenRegions > 0, "maxOpenRegions must be positive");
+    directory.mkdirs();
+    checkArgument(directory.isDirectory(), format("'%s' is not a directory", directory));
+    this.directory = directory;
+    this.chunkSizeX = chunkSizeX;
+    this.chunkSizeY = chunkSizeY;
+    this.chunkSizeZ = chunkSizeZ;
+    this.maxOpenRegions = maxOpenRegions;
+  }
+
+  private int chunkX(final Volume<Bloxel> volume) {
+    checkArgument(volume.getSizeX() == chunkSizeX && volume.getSizeY() == chunkSizeY
+        && volume.getSizeZ() == chunkSizeZ, "Volume %s doesn't match the chunk size of the store", volume);
+    return floorDiv(volume.getX(), chunkSizeX);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    IOException error = null;
+    for (final RegionFile region : regions.values()) {
+      try {
+        region.close();
+      } catch (final IOException e) {
+        LOG.error(format("Can't close region file '%s'", region.getFile()), e);
+        error = e;
+      }
+    }
+    regions.clear();
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the chunk with the given chunk position is stored
+   */
+  public synchronized boolean contains(final int cx, final int cy, final int cz) throws IOException {
+    return region(cx, cy, cz).contains(floorMod(cx, REGION_SIZE), floorMod(cy, REGION_SIZE),
+        floorMod(cz, REGION_SIZE));
+  }
+
+  /**
+   * Force all written chunks to the disk.
+   */
+  public synchronized void flush() throws IOException {
+    for (final RegionFile region : regions.values()) {
+      region.flush();
+    }
+  }
+
+  public int getChunkSizeX() {
+    return chunkSizeX;
+  }
+
+  public int getChunkSizeY() {
+    return chunkSizeY;
+  }
+
+  public int getChunkSizeZ() {
+    return chunkSizeZ;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return number of currently open region files
+   */
+  public synchronized int getOpenRegions() {
+    return regions.size();
+  }
+
+  /**
+   * Fill the volume with the stored chunk at the position of the volume.
+   * 
+   * @param volume
+   *          to fill
+   * @return <code>false</code> if the chunk is not stored (the volume is unchanged)
+   */
+  public boolean read(final Volume<Bloxel> volume) throws IOException {
+    final int cx = chunkX(volume);
+    final int cy = floorDiv(volume.getY(), chunkSizeY);
+    final int cz = floorDiv(volume.getZ(), chunkSizeZ);
+    final byte[] data;
+    synchronized (this) {
+      data = region(cx, cy, cz).read(floorMod(cx, REGION_SIZE), floorMod(cy, REGION_SIZE), floorMod(cz, REGION_SIZE));
+    }
+    if (data == null) {
+      return false;
+    }
+    ChunkCodec.decode(data, volume);
+    return true;
+  }
+
+  /**
+   * Must be called with the store lock, the returned region file is closed as soon as too many other region files are
+   * opened.
+   */
+  private RegionFile region(final int cx, final int cy, final int cz) throws IOException {
+    final String name = format("r.%d.%d.%d.region", floorDiv(cx, REGION_SIZE), floorDiv(cy, REGION_SIZE),
+        floorDiv(cz, REGION_SIZE));
+    RegionFile region = regions.get(name);
+    if (region == null) {
+      region = new RegionFile(new File(directory, name), REGION_SIZE);
+      regions.put(name, region);
+      final Iterator<RegionFile> lru = regions.values().iterator();
+      while (regions.size() > maxOpenRegions) {
+        final RegionFile eldest = lru.next();
+        lru.remove();
+        try {
+          // a flush() of the store must cover the chunks of closed region files too
+          eldest.flush();
+        } finally {
+          eldest.close();
+        }
+        LOG.debug(format("Close least recently used region file '%s'", eldest.getFile()));
+      }
+    }
+    return region;
+  }
+
+  /**
+   * Store the volume as chunk at the position of the volume.
+   * 
+   * @param volume
+   *          to store
+   */
+  public void write(final Volume<Bloxel> volume) throws IOException {
+    final int cx = chunkX(volume);
+    final int cy = floorDiv(volume.getY(), chunkSizeY);
+    final int cz = floorDiv(volume.getZ(), chunkSizeZ);
+    // encoding is the expensive part, do it outside of any lock
+    final byte[] data = ChunkCodec.encode(volume);
+    synchronized (this) {
+      region(cx, cy, cz).write(floorMod(cx, REGION_SIZE), floorMod(cy, REGION_SIZE), floorMod(cz, REGION_SIZE), data);
+    }
+  }
+}
@@ -16,21 +16,16 @@
  *******************************************************************************/
 package de.bloxel.engine.resources;
 
-import static com.google.common.io.Closeables.closeQuietly;
-
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.springframework.core.io.ClassPathResource;
 
 import com.beust.jcommander.internal.Maps;
 import com.google.common.collect.ImmutableList;
 import com.jme3.asset.AssetManager;
 import com.jme3.math.Vector2f;
 
-import de.bloxel.engine.util.JAXBUtils;
+import de.bloxel.engine.util.BloxelDescriptors;
 
 /**
  * @author Andreas Höhmann
@@ -67,15 +62,7 @@ public class TextureAtlasProvider {
   }
 
   protected Resources load() {
-    InputStream inputStream = null;
-    try {
-      inputStream = new ClassPathResource("bloxel-resources.xml").getInputStream();
-      return JAXBUtils.unmarschal(inputStream, Resources.class);
-    } catch (final IOException e) {
-      throw new RuntimeException("Can't load bloxel-resources.xml", e);
-    } finally {
-      closeQuietly(inputStream);
-    }
+    return BloxelDescriptors.loadResources();
   }
 
   /**
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.tools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+import de.bloxel.engine.loader.RegionFileLoader;
+import de.bloxel.engine.region.RegionStore;
+
+/**
+ * Headless command line tool which converts an external voxel dataset into region files, which can then be loaded with
+ * a {@link RegionFileLoader}. Each voxel is an unsigned byte, <code>0</code> is {@link Bloxel#AIR} and every other
+ * value <code>n</code> is a bloxel of type <code>n</code>. The voxels are ordered x fastest, then y, then z.
+ * 
+ * <ul>
+ * <li><code>raw</code> dense grid, one byte per voxel</li>
+ * <li><code>rle</code> run length encoded grid, each run is two bytes: count (1-255) and value</li>
+ * </ul>
+ * 
+ * The file is streamed in slabs of one chunk thickness (z). Both formats are read with NIO through a fixed-size direct
+ * window of {@link #WINDOW_SIZE} bytes, which is copied or expanded into the slab. While the chunks of one slab are
+ * converted on the worker pool, the next slab is read, so at most two slabs are in memory. A slab is one byte array of
+ * <code>x * y * size</code> bytes, so a slab must be smaller than 2 GB (e.g. 4096 x 2048 voxels with chunk size 16).
+ * 
+ * <pre>
+ * java de.bloxel.engine.tools.VoxelImporter --in map.raw --format raw --dims 4096,256,4096 --out world
+ * </pre>
+ * 
+ * Options: <code>--in</code>, <code>--out</code>, <code>--dims x,y,z</code> (required), <code>--format</code> (default
+ * <code>raw</code>), <code>--origin x,y,z</code> chunk position of the first voxel (default <code>0,0,0</code>),
+ * <code>--size</code> chunk size (default 16), <code>--threads</code> (default all cores).
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class VoxelImporter {
+
+  /**
+   * Size of the read window in bytes.
+   */
+  static final int WINDOW_SIZE = 1 << 20;
+
+  /**
+   * Reads the voxels of a dataset slab by slab.
+   */
+  interface SlabReader extends Closeable {
+
+    /**
+     * @param slab
+     *          to fill with the next <code>slab.length</code> bytes of the dataset
+     * @param length
+     *          number of bytes to read, the rest of the slab is cleared (end of the dataset)
+     */
+    void read(byte[] slab, int length) throws IOException;
+  }
+
+  /**
+   * Dense dataset, copies the slabs through a fixed-size read window.
+   */
+  static class RawSlabReader implements SlabReader {
+
+    private final FileInputStream in;
+    private final FileChannel channel;
+    private final ByteBuffer window = ByteBuffer.allocateDirect(WINDOW_SIZE);
+    private long position;
+
+    RawSlabReader(final File file) throws IOException {
+      in = new FileInputStream(file);
+      channel = in.getChannel();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    @Override
+    public void read(final byte[] slab, final int length) throws IOException {
+      int offset = 0;
+      while (offset < length) {
+        window.clear();
+        window.limit(Math.min(WINDOW_SIZE, length - offset));
+        while (window.hasRemaining()) {
+          if (channel.read(window) < 0) {
+            throw new EOFException(format("Dataset ends at %d, expected %d bytes more", position + offset
+                + window.position(), length - offset - window.position()));
+          }
+        }
+        window.flip();
+        final int n = window.remaining();
+        window.get(slab, offset, n);
+        offset += n;
+      }
+      position += length;
+      Arrays.fill(slab, length, slab.length, (byte) 0);
+    }
+  }
+
+  /**
+   * Run length encoded dataset, expands the runs through a fixed-size read window. A run may span two slabs.
+   */
+  static class RunLengthSlabReader implements SlabReader {
+
+    private final FileInputStream in;
+    private final FileChannel channel;
+    private final ByteBuffer window = ByteBuffer.allocateDirect(WINDOW_SIZE);
+    private int runCount;
+    private byte runValue;
+
+    RunLengthSlabReader(final File file) throws IOException {
+      in = new FileInputStream(file);
+      channel = in.getChannel();
+      window.limit(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private byte next() throws IOException {
+      if (!window.hasRemaining()) {
+        window.clear();
+        while (window.position() == 0) {
+          if (channel.read(window) < 0) {
+            throw new EOFException("Dataset ends within the voxel grid");
+          }
+        }
+        window.flip();
+      }
+      return window.get();
+    }
+
+    @Override
+    public void read(final byte[] slab, final int length) throws IOException {
+      int offset = 0;
+      while (offset < length) {
+        if (runCount == 0) {
+          runCount = next() & 0xff;
+          runValue = next();
+          if (runCount == 0) {
+            throw new IOException("Invalid run of length 0");
+          }
+          continue;
+        }
+        final int n = Math.min(runCount, length - offset);
+        Arrays.fill(slab, offset, offset + n, runValue);
+        offset += n;
+        runCount -= n;
+      }
+      Arrays.fill(slab, length, slab.length, (byte) 0);
+    }
+  }
+
+  private static final Logger LOG = Logger.getLogger(VoxelImporter.class);
+
+  public static void main(final String[] args) throws Exception {
+    final Map<String, String> options = Maps.newHashMap();
+    for (int i = 0; i < args.length; i += 2) {
+      checkArgument(args[i].startsWith("--") && i + 1 < args.length, format("Invalid argument '%s'", args[i]));
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    if (!options.containsKey("in") || !options.containsKey("out") || !options.containsKey("dims")) {
+      System.err.println("usage: VoxelImporter --in <file> --out <dir> --dims <x,y,z> [--format raw|rle]"
+          + " [--origin <x,y,z>] [--size <n>] [--threads <n>]");
+      System.exit(1);
+    }
+    final int size = options.containsKey("size") ? Integer.parseInt(options.get("size")) : 16;
+    final int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime
+        .getRuntime().availableProcessors();
+    final VoxelImporter importer = new VoxelImporter(new RegionStore(new File(options.get("out")), size, size, size),
+        parse(options.get("dims")), options.containsKey("origin") ? parse(options.get("origin")) : new int[3]);
+    final File in = new File(options.get("in"));
+    final String format = options.containsKey("format") ? options.get("format") : "raw";
+    checkArgument("raw".equals(format) || "rle".equals(format), format("Unknown format '%s'", format));
+    try {
+      importer.run("raw".equals(format) ? new RawSlabReader(in) : new RunLengthSlabReader(in), threads);
+    } finally {
+      importer.store.close();
+    }
+  }
+
+  private static int[] parse(final String value) {
+    final String[] parts = value.split(",");
+    checkArgument(parts.length == 3, format("Expect 'x,y,z' but was '%s'", value));
+    return new int[] { Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+        Integer.parseInt(parts[2].trim()) };
+  }
+
+  private final RegionStore store;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final int[] origin;
+  private final int chunkSize;
+  private final Bloxel[] palette = new Bloxel[256];
+  private final VolumeFactory<Bloxel> volumeFactory = new ColtVolumeFactory<Bloxel>();
+
+  /**
+   * @param store
+   *          for the converted chunks, needs cubic chunks
+   * @param dims
+   *          size of the dataset (x,y,z)
+   * @param origin
+   *          chunk position of the first voxel
+   */
+  public VoxelImporter(final RegionStore store, final int[] dims, final int[] origin) {
+    checkArgument(store.getChunkSizeX() == store.getChunkSizeY() && store.getChunkSizeX() == store.getChunkSizeZ());
+    this.store = store;
+    this.sizeX = dims[0];
+    this.sizeY = dims[1];
+    this.sizeZ = dims[2];
+    this.origin = origin;
+    this.chunkSize = store.getChunkSizeX();
+    checkArgument((long) sizeX * sizeY * chunkSize <= Integer.MAX_VALUE, "A slab of the dataset is too large");
+    palette[0] = Bloxel.AIR;
+    for (int i = 1; i < palette.length; i++) {
+      palette[i] = new Bloxel(i, 1f);
+    }
+  }
+
+  private void convert(final byte[] slab, final int cx, final int cy, final int cz) throws IOException {
+    final Volume<Bloxel> volume = volumeFactory.create((origin[0] + cx) * chunkSize, (origin[1] + cy) * chunkSize,
+        (origin[2] + cz) * chunkSize, chunkSize, chunkSize, chunkSize);
+    final int x0 = cx * chunkSize;
+    final int y0 = cy * chunkSize;
+    final int xn = Math.min(chunkSize, sizeX - x0);
+    final int yn = Math.min(chunkSize, sizeY - y0);
+    for (int z = 0; z < chunkSize; z++) {
+      for (int y = 0; y < yn; y++) {
+        final int row = (z * sizeY + y0 + y) * sizeX + x0;
+        for (int x = 0; x < xn; x++) {
+          final int value = slab[row + x] & 0xff;
+          if (value != 0) {
+            volume.set(x, y, z, palette[value]);
+          }
+        }
+      }
+    }
+    store.write(volume);
+  }
+
+  /**
+   * Convert the whole dataset.
+   * 
+   * @param reader
+   *          for the dataset, will be closed
+   * @param threads
+   *          number of worker threads
+   * @return number of written chunks
+   */
+  public int run(final SlabReader reader, final int threads) throws Exception {
+    final int slabSize = sizeX * sizeY * chunkSize;
+    final int chunksX = (sizeX + chunkSize - 1) / chunkSize;
+    final int chunksY = (sizeY + chunkSize - 1) / chunkSize;
+    final int chunksZ = (sizeZ + chunkSize - 1) / chunkSize;
+    final BlockingQueue<byte[]> free = new ArrayBlockingQueue<byte[]>(2);
+    free.add(new byte[slabSize]);
+    free.add(new byte[slabSize]);
+    final ExecutorService workers = Executors.newFixedThreadPool(threads);
+    final long start = System.currentTimeMillis();
+    int written = 0;
+    try {
+      List<Future<Void>> pending = Lists.newArrayList();
+      byte[] pendingSlab = null;
+      for (int cz = 0; cz < chunksZ; cz++) {
+        final byte[] slab = free.take();
+        reader.read(slab, Math.min(chunkSize, sizeZ - cz * chunkSize) * sizeX * sizeY);
+        // the previous slab must be completely converted before its buffer can be reused
+        written += await(pending);
+        if (pendingSlab != null) {
+          free.add(pendingSlab);
+        }
+        pending = Lists.newArrayList();
+        pendingSlab = slab;
+        for (int cx = 0; cx < chunksX; cx++) {
+          for (int cy = 0; cy < chunksY; cy++) {
+            final int x = cx;
+            final int y = cy;
+            final int z = cz;
+            pending.add(workers.submit(new Callable<Void>() {
+
+              @Override
+              public Void call() throws IOException {
+                convert(slab, x, y, z);
+                return null;
+              }
+            }));
+          }
+        }
+        final long millis = System.currentTimeMillis() - start;
+        LOG.info(format("Read slab %d/%d, %d chunks written, %.1f chunks/s", cz + 1, chunksZ, written,
+            millis > 0 ? written * 1000f / millis : 0));
+      }
+      written += await(pending);
+      store.flush();
+    } finally {
+      workers.shutdownNow();
+      reader.close();
+    }
+    final long millis = System.currentTimeMillis() - start;
+    LOG.info(format("Import %d chunks in %dms", written, millis));
+    return written;
+  }
+
+  private int await(final List<Future<Void>> futures) throws InterruptedException, IOException {
+    for (final Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (final ExecutionException e) {
+        throw new IOException("Can't convert chunk", e.getCause());
+      }
+    }
+    return futures.size();
+  }
+}
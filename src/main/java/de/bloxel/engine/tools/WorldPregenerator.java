@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.tools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+import de.bloxel.engine.loader.BlockmaniaTerrainLoader;
+import de.bloxel.engine.loader.BloxelLoader;
+import de.bloxel.engine.loader.ColumnLoader;
+import de.bloxel.engine.loader.PerlinNoiseTerrainLoader;
+import de.bloxel.engine.loader.ScalarFieldTerrainLoader;
+import de.bloxel.engine.math.DensityField;
+import de.bloxel.engine.region.RegionStore;
+
+/**
+ * Headless command line tool which generates all chunks of a box (in chunk coordinates) and stores them in a
+ * {@link RegionStore}. Chunks which are already stored are skipped, so an interrupted run can simply be started again.
+ * A {@link ColumnLoader} fills the whole y range of a column if one of its chunks is missing, so the chunks don't
+ * depend on the chunks generated by an earlier run.
+ * 
+ * <pre>
+ * java de.bloxel.engine.tools.WorldPregenerator --out world --seed 42 --loader blockmania --from -8,0,-8 --to 7,3,7
+ * </pre>
+ * 
+ * Options:
+ * <ul>
+ * <li><code>--out</code> directory of the region files (required)</li>
+ * <li><code>--loader</code> <code>blockmania</code>, <code>perlin</code>, <code>scalar</code> or the class name of a
+ * {@link BloxelLoader} with a <code>(int seed)</code> or default constructor (default <code>blockmania</code>)</li>
+ * <li><code>--field</code> class name of the {@link DensityField} for <code>scalar</code>, needs a
+ * <code>(long seed)</code> or default constructor</li>
+ * <li><code>--seed</code> world seed (default 0)</li>
+ * <li><code>--from</code>, <code>--to</code> chunk box <code>x,y,z</code>, both inclusive (required)</li>
+ * <li><code>--size</code> chunk size (default 16)</li>
+ * <li><code>--threads</code> number of worker threads (default all cores)</li>
+ * </ul>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class WorldPregenerator {
+
+  private static final Logger LOG = Logger.getLogger(WorldPregenerator.class);
+
+  private static BloxelLoader createLoader(final String loader, final String field, final int seed) throws Exception {
+    if ("blockmania".equals(loader)) {
+      return new BlockmaniaTerrainLoader(seed);
+    }
+    if ("perlin".equals(loader)) {
+      return new PerlinNoiseTerrainLoader(seed);
+    }
+    if ("scalar".equals(loader)) {
+      checkArgument(field != null, "Loader 'scalar' needs a --field class");
+      return new ScalarFieldTerrainLoader((DensityField) newInstance(Class.forName(field), long.class, (long) seed));
+    }
+    return (BloxelLoader) newInstance(Class.forName(loader), int.class, seed);
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final Map<String, String> options = Maps.newHashMap();
+    for (int i = 0; i < args.length; i += 2) {
+      checkArgument(args[i].startsWith("--") && i + 1 < args.length, format("Invalid argument '%s'", args[i]));
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    if (!options.containsKey("out") || !options.containsKey("from") || !options.containsKey("to")) {
+      System.err.println("usage: WorldPregenerator --out <dir> --from <x,y,z> --to <x,y,z> [--seed <n>]"
+          + " [--loader blockmania|perlin|scalar|<class>] [--field <class>] [--size <n>] [--threads <n>]");
+      System.exit(1);
+    }
+    final int size = options.containsKey("size") ? Integer.parseInt(options.get("size")) : 16;
+    final int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime
+        .getRuntime().availableProcessors();
+    final WorldPregenerator generator = new WorldPregenerator(new File(options.get("out")), size,
+        options.containsKey("loader") ? options.get("loader") : "blockmania", options.get("field"),
+        options.containsKey("seed") ? Integer.parseInt(options.get("seed")) : 0);
+    generator.generate(parseChunk(options.get("from")), parseChunk(options.get("to")), threads);
+  }
+
+  private static Object newInstance(final Class<?> clazz, final Class<?> seedType, final Object seed)
+      throws Exception {
+    try {
+      final Constructor<?> constructor = clazz.getConstructor(seedType);
+      return constructor.newInstance(seed);
+    } catch (final NoSuchMethodException e) {
+      LOG.warn(format("%s has no seed constructor, use default constructor", clazz.getName()));
+      return clazz.newInstance();
+    }
+  }
+
+  private static int[] parseChunk(final String value) {
+    final String[] parts = value.split(",");
+    checkArgument(parts.length == 3, format("Chunk position must be 'x,y,z' but was '%s'", value));
+    return new int[] { Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+        Integer.parseInt(parts[2].trim()) };
+  }
+
+  private final File directory;
+  private final int size;
+  private final String loader;
+  private final String field;
+  private final int seed;
+
+  private final VolumeFactory<Bloxel> volumeFactory = new ColtVolumeFactory<Bloxel>();
+
+  public WorldPregenerator(final File directory, final int size, final String loader, final String field,
+      final int seed) {
+    this.directory = directory;
+    this.size = size;
+    this.loader = loader;
+    this.field = field;
+    this.seed = seed;
+  }
+
+  /**
+   * Generate all missing chunks between <code>from</code> and <code>to</code> (both inclusive).
+   * 
+   * @return number of generated chunks
+   */
+  public int generate(final int[] from, final int[] to, final int threads) throws Exception {
+    final RegionStore store = new RegionStore(directory, size, size, size);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    // the loaders are not thread safe, each worker gets its own
+    final ThreadLocal<BloxelLoader> loaders = new ThreadLocal<BloxelLoader>() {
+      @Override
+      protected BloxelLoader initialValue() {
+        try {
+          return createLoader(loader, field, seed);
+        } catch (final Exception e) {
+          throw new IllegalArgumentException(format("Can't create loader '%s'", loader), e);
+        }
+      }
+    };
+    final AtomicInteger generated = new AtomicInteger();
+    final AtomicInteger skipped = new AtomicInteger();
+    final long start = System.currentTimeMillis();
+    try {
+      final List<Future<?>> futures = Lists.newArrayList();
+      // one task per column of chunks, this keeps neighboring chunks in the same region file together
+      for (int cx = Math.min(from[0], to[0]); cx <= Math.max(from[0], to[0]); cx++) {
+        for (int cz = Math.min(from[2], to[2]); cz <= Math.max(from[2], to[2]); cz++) {
+          final int x = cx;
+          final int z = cz;
+          futures.add(executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+              if (loaders.get() instanceof ColumnLoader) {
+                // a BloxelLoader is always a loader of bloxels
+                @SuppressWarnings("unchecked")
+                final ColumnLoader<Bloxel> columnLoader = (ColumnLoader<Bloxel>) loaders.get();
+                try {
+                  generateColumn(store, columnLoader, x, z, Math.min(from[1], to[1]), Math.max(from[1], to[1]),
+                      generated, skipped);
+                } catch (final IOException e) {
+                  throw new IllegalStateException(format("Can't store column (%d,%d)", x, z), e);
+                }
+                return;
+              }
+              for (int y = Math.min(from[1], to[1]); y <= Math.max(from[1], to[1]); y++) {
+                try {
+                  if (store.contains(x, y, z)) {
+                    skipped.incrementAndGet();
+                    continue;
+                  }
+                  final Volume<Bloxel> volume = volumeFactory.create(x * size, y * size, z * size, size, size, size);
+                  loaders.get().fill(volume);
+                  store.write(volume);
+                  generated.incrementAndGet();
+                } catch (final IOException e) {
+                  throw new IllegalStateException(format("Can't store chunk (%d,%d,%d)", x, y, z), e);
+                }
+              }
+            }
+          }));
+        }
+      }
+      final int total = futures.size() * (Math.abs(to[1] - from[1]) + 1);
+      long lastReport = start;
+      for (final Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (final ExecutionException e) {
+          LOG.error("Chunk generation failed", e.getCause());
+          throw e;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - lastReport >= 5000) {
+          lastReport = now;
+          report(generated.get(), skipped.get(), total, now - start);
+        }
+      }
+      report(generated.get(), skipped.get(), total, System.currentTimeMillis() - start);
+      return generated.get();
+    } finally {
+      executor.shutdownNow();
+      store.flush();
+      store.close();
+    }
+  }
+
+  /**
+   * Fills all chunks of the column and stores the missing chunks.
+   */
+  private void generateColumn(final RegionStore store, final ColumnLoader<Bloxel> columnLoader, final int x,
+      final int z, final int fromY, final int toY, final AtomicInteger generated, final AtomicInteger skipped)
+      throws IOException {
+    final List<Volume<Bloxel>> volumes = Lists.newArrayList();
+    final Set<Integer> missing = Sets.newHashSet();
+    for (int y = fromY; y <= toY; y++) {
+      volumes.add(volumeFactory.create(x * size, y * size, z * size, size, size, size));
+      if (!store.contains(x, y, z)) {
+        missing.add(y);
+      }
+    }
+    skipped.addAndGet(volumes.size() - missing.size());
+    if (missing.isEmpty()) {
+      return;
+    }
+    columnLoader.fillColumn(volumes, new ColumnLoader.Callback<Bloxel>() {
+
+      @Override
+      public void filled(final Volume<Bloxel> volume) {
+        final int y = volume.getY() / size;
+        if (!missing.contains(y)) {
+          return;
+        }
+        try {
+          store.write(volume);
+        } catch (final IOException e) {
+          throw new IllegalStateException(format("Can't store chunk (%d,%d,%d)", x, y, z), e);
+        }
+        generated.incrementAndGet();
+      }
+    });
+  }
+
+  private void report(final int generated, final int skipped, final int total, final long millis) {
+    final float chunksPerSecond = millis > 0 ? generated * 1000f / millis : 0;
+    LOG.info(format("%d/%d chunks done (%d generated, %d already stored), %.1f chunks/s", generated + skipped, total,
+        generated, skipped, chunksPerSecond));
+  }
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.util;
+
+import static com.google.common.io.Closeables.closeQuietly;
+import static de.bloxel.engine.util.JAXBUtils.unmarschal;
+import static java.lang.String.format;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.log4j.Logger;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import com.google.common.io.ByteStreams;
+
+import de.bloxel.engine.resources.Resources;
+import de.bloxel.engine.resources.Texture;
+import de.bloxel.engine.resources.TextureAtlas;
+import de.bloxel.engine.types.BloxelType;
+import de.bloxel.engine.types.Side;
+import de.bloxel.engine.types.SideType;
+import de.bloxel.engine.types.Types;
+
+/**
+ * Loads the bloxel type and texture atlas definitions. The XML files (<code>bloxel-types.xml</code>,
+ * <code>bloxel-resources.xml</code>) are the authoring format, at build time they are compiled (see
+ * {@link #main(String[])}) into compact binary descriptors (<code>*.bin</code>) next to them. At runtime the binary
+ * descriptor is read with a single read, the XML is only parsed if there is no binary descriptor on the classpath or if
+ * the XML was changed after the binary descriptor was compiled (see {@link #outdated(Resource, Resource)}).
+ * Optional attributes which are omitted in the XML stay unset in the descriptor, the read types are equal to the
+ * unmarshalled ones.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class BloxelDescriptors {
+
+  private static final Logger LOG = Logger.getLogger(BloxelDescriptors.class);
+
+  public static final String TYPES = "bloxel-types";
+  public static final String RESOURCES = "bloxel-resources";
+
+  private static final int MAGIC = 0x42584453; // BXDS
+  private static final int VERSION = 2;
+
+  // bits of the optional bloxel type attributes which are present in the xml
+  private static final int TRANSPARENT = 1;
+  private static final int LIQUID = 2;
+  private static final int PENETRABLE = 4;
+  private static final int HARDNESS = 8;
+
+  private static DataInputStream binary(final String name) {
+    final ClassPathResource resource = new ClassPathResource(name + ".bin");
+    if (!resource.exists()) {
+      return null;
+    }
+    if (outdated(resource, new ClassPathResource(name + ".xml"))) {
+      LOG.warn(format("Ignore binary descriptor '%s.bin', %s.xml was changed after it was compiled", name, name));
+      return null;
+    }
+    InputStream inputStream = null;
+    try {
+      inputStream = resource.getInputStream();
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(ByteStreams.toByteArray(inputStream)));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.warn(format("Ignore outdated binary descriptor '%s.bin'", name));
+        return null;
+      }
+      return in;
+    } catch (final IOException e) {
+      throw new RuntimeException(format("Can't load %s.bin", name), e);
+    } finally {
+      closeQuietly(inputStream);
+    }
+  }
+
+  public static Resources loadResources() {
+    final long start = System.nanoTime();
+    final DataInputStream in = binary(RESOURCES);
+    final Resources result;
+    try {
+      result = in != null ? readResources(in) : xml(RESOURCES, Resources.class);
+    } catch (final IOException e) {
+      throw new RuntimeException(format("Can't load %s.bin", RESOURCES), e);
+    }
+    LOG.info(format("Load %s from %s in %.2fms", RESOURCES, in != null ? "binary descriptor" : "xml",
+        (System.nanoTime() - start) / 1e6));
+    return result;
+  }
+
+  public static Types loadTypes() {
+    final long start = System.nanoTime();
+    final DataInputStream in = binary(TYPES);
+    final Types result;
+    try {
+      result = in != null ? readTypes(in) : xml(TYPES, Types.class);
+    } catch (final IOException e) {
+      throw new RuntimeException(format("Can't load %s.bin", TYPES), e);
+    }
+    LOG.info(format("Load %s from %s in %.2fms", TYPES, in != null ? "binary descriptor" : "xml",
+        (System.nanoTime() - start) / 1e6));
+    return result;
+  }
+
+  /**
+   * Compile the XML definitions from the classpath into binary descriptors.
+   * 
+   * @param args
+   *          output directory
+   */
+  public static void main(final String[] args) throws IOException {
+    final File directory = new File(args.length > 0 ? args[0] : ".");
+    DataOutputStream out = output(directory, TYPES);
+    try {
+      writeTypes(xml(TYPES, Types.class), out);
+    } finally {
+      out.close();
+    }
+    out = output(directory, RESOURCES);
+    try {
+      writeResources(xml(RESOURCES, Resources.class), out);
+    } finally {
+      out.close();
+    }
+    LOG.info(format("Write binary descriptors to '%s'", directory));
+  }
+
+  private static DataOutputStream output(final File directory, final String name) throws IOException {
+    directory.mkdirs();
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+        directory, name + ".bin"))));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    return out;
+  }
+
+  /**
+   * @return <code>true</code> if the xml source is newer than the binary descriptor
+   */
+  static boolean outdated(final Resource binary, final Resource xml) {
+    if (!xml.exists()) {
+      return false;
+    }
+    try {
+      return xml.lastModified() > binary.lastModified();
+    } catch (final IOException e) {
+      // no modification time for this kind of classpath, trust the binary descriptor
+      LOG.debug(format("Can't compare the modification times of %s and %s", binary, xml), e);
+      return false;
+    }
+  }
+
+  static Resources readResources(final DataInputStream in) throws IOException {
+    final Resources resources = new Resources();
+    for (int i = in.readInt(); i > 0; i--) {
+      final TextureAtlas atlas = new TextureAtlas();
+      atlas.setId(readString(in));
+      atlas.setImage(readString(in));
+      atlas.setAtlasSize(in.readFloat());
+      atlas.setImageSize(in.readFloat());
+      for (int j = in.readInt(); j > 0; j--) {
+        final Texture texture = new Texture();
+        texture.setId(readString(in));
+        texture.setTextureColum(in.readInt());
+        texture.setTextureRow(in.readInt());
+        atlas.getTexture().add(texture);
+      }
+      resources.getTextureAtlas().add(atlas);
+    }
+    return resources;
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  static Types readTypes(final DataInputStream in) throws IOException {
+    final SideType[] sideTypes = SideType.values();
+    final Types types = new Types();
+    for (int i = in.readInt(); i > 0; i--) {
+      final BloxelType type = new BloxelType();
+      type.setId(in.readInt());
+      type.setTitle(readString(in));
+      final int present = in.readUnsignedByte();
+      if ((present & TRANSPARENT) != 0) {
+        type.setTransparent(Boolean.valueOf(in.readBoolean()));
+      }
+      if ((present & LIQUID) != 0) {
+        type.setLiquid(Boolean.valueOf(in.readBoolean()));
+      }
+      if ((present & PENETRABLE) != 0) {
+        type.setPenetrable(Boolean.valueOf(in.readBoolean()));
+      }
+      if ((present & HARDNESS) != 0) {
+        type.setHardness(in.readFloat());
+      }
+      for (int j = in.readInt(); j > 0; j--) {
+        final Side side = new Side();
+        side.setType(sideTypes[in.readUnsignedByte()]);
+        side.setTextureId(readString(in));
+        type.getSide().add(side);
+      }
+      types.getBloxel().add(type);
+    }
+    return types;
+  }
+
+  static void writeResources(final Resources resources, final DataOutputStream out) throws IOException {
+    out.writeInt(resources.getTextureAtlas().size());
+    for (final TextureAtlas atlas : resources.getTextureAtlas()) {
+      writeString(atlas.getId(), out);
+      writeString(atlas.getImage(), out);
+      out.writeFloat(atlas.getAtlasSize());
+      out.writeFloat(atlas.getImageSize());
+      out.writeInt(atlas.getTexture().size());
+      for (final Texture texture : atlas.getTexture()) {
+        writeString(texture.getId(), out);
+        out.writeInt(texture.getTextureColum());
+        out.writeInt(texture.getTextureRow());
+      }
+    }
+  }
+
+  private static void writeString(final String value, final DataOutputStream out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  static void writeTypes(final Types types, final DataOutputStream out) throws IOException {
+    out.writeInt(types.getBloxel().size());
+    for (final BloxelType type : types.getBloxel()) {
+      out.writeInt(type.getId());
+      writeString(type.getTitle(), out);
+      out.writeByte((type.isSetTransparent() ? TRANSPARENT : 0) | (type.isSetLiquid() ? LIQUID : 0)
+          | (type.isSetPenetrable() ? PENETRABLE : 0) | (type.isSetHardness() ? HARDNESS : 0));
+      if (type.isSetTransparent()) {
+        out.writeBoolean(type.isTransparent());
+      }
+      if (type.isSetLiquid()) {
+        out.writeBoolean(type.isLiquid());
+      }
+      if (type.isSetPenetrable()) {
+        out.writeBoolean(type.isPenetrable());
+      }
+      if (type.isSetHardness()) {
+        out.writeFloat(type.getHardness());
+      }
+      out.writeInt(type.getSide().size());
+      for (final Side side : type.getSide()) {
+        out.writeByte(side.getType().ordinal());
+        writeString(side.getTextureId(), out);
+      }
+    }
+  }
+
+  private static <T> T xml(final String name, final Class<T> aClass) {
+    InputStream inputStream = null;
+    try {
+      inputStream = new ClassPathResource(name + ".xml").getInputStream();
+      return unmarschal(inputStream, aClass);
+    } catch (final IOException e) {
+      throw new RuntimeException(format("Can't load %s.xml", name), e);
+    } finally {
+      closeQuietly(inputStream);
+    }
+  }
+
+  private BloxelDescriptors() {
+  }
+}
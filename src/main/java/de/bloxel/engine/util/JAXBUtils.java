@@ -19,6 +19,7 @@ package de.bloxel.engine.util;
 import static org.apache.commons.lang3.ClassUtils.getPackageCanonicalName;
 
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -27,16 +28,36 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import com.google.common.collect.Maps;
+
 /**
  * @author Andreas Höhmann
  * @since 1.0.0
  */
 public class JAXBUtils {
 
+  /**
+   * Creating a {@link JAXBContext} is expensive, the context is thread safe so we create only one per package.
+   */
+  private static final ConcurrentMap<String, JAXBContext> CONTEXTS = Maps.newConcurrentMap();
+
+  private static JAXBContext context(final Class<?> aClass) throws JAXBException {
+    final String packageName = getPackageCanonicalName(aClass);
+    JAXBContext jc = CONTEXTS.get(packageName);
+    if (jc == null) {
+      // http://jaxb.java.net/faq/index.html#classloader
+      jc = JAXBContext.newInstance(packageName);
+      final JAXBContext existing = CONTEXTS.putIfAbsent(packageName, jc);
+      if (existing != null) {
+        jc = existing;
+      }
+    }
+    return jc;
+  }
+
   public static <T> T unmarschal(final InputStream inputStream, final Class<T> aClass) {
     try {
-      // http://jaxb.java.net/faq/index.html#classloader
-      final JAXBContext jc = JAXBContext.newInstance(getPackageCanonicalName(aClass));
+      final JAXBContext jc = context(aClass);
       final Unmarshaller unmarshaller = jc.createUnmarshaller();
       // http://jaxb.java.net/guide/Unmarshalling_is_not_working__Help_.html
       unmarshaller.setEventHandler(new javax.xml.bind.helpers.DefaultValidationEventHandler());
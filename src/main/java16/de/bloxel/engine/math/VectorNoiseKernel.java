@@ -0,0 +1,486 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the noise loops with the <code>jdk.incubator.vector</code> API, computes exactly the same
+ * values as the {@link ScalarNoiseKernel}: each lane does the same float operations in the same order as the scalar
+ * code.
+ * 
+ * <p>
+ * The work is split into short loops over small arrays, one vector operation chain per loop. Long chains hit the
+ * inlining limits of C2 and then every vector is allocated on the heap, which is much slower than the scalar code. The
+ * table lookups are either done by a scalar loop (simplex, 3 dependent lookups per corner) or by gathers (Perlin, 8
+ * lookups around one cell offset and the cosine table). Float to int conversions use the {@link #MAGIC} number
+ * instead of a cast, the cast is not compiled to a vector instruction on AVX2. The vectors have 256 bits (8 floats,
+ * the AVX2 registers), the C2 of JDK 17 crashed with 512 bit gathers. Coordinates beyond the {@link #LIMIT} of these
+ * conversions and the points which don't fill a whole vector are computed by the scalar code.
+ * </p>
+ * 
+ * <p>
+ * Only part of the <code>META-INF/versions/16</code> layer of the jar, {@link NoiseKernels} loads it by name.
+ * </p>
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+final class VectorNoiseKernel implements NoiseKernel {
+
+  /**
+   * Intermediate values of the Perlin noise for one row of points. The integral part of x is kept as float, it stays
+   * exact because the x values of the row are checked against the {@link VectorNoiseKernel#LIMIT} of the last octave.
+   */
+  private static final class PerlinRow {
+
+    final float[] xi;
+    final float[] xf;
+    final int[] cell;
+    final int[] fade;
+    final float[] noise;
+
+    PerlinRow(final int size) {
+      xi = new float[size];
+      xf = new float[size];
+      cell = new int[size];
+      fade = new int[size];
+      noise = new float[size];
+    }
+
+    /**
+     * The cell offsets and the indices of the x fade values for an octave, then the x values of the next octave.
+     */
+    void cells(final int yzOffset, final int n) {
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector i = FloatVector.fromArray(FLOATS, xi, p);
+        final FloatVector f = FloatVector.fromArray(FLOATS, xf, p);
+        i.add(MAGIC).reinterpretAsInts().sub(MAGIC_BITS).add(yzOffset).and(PerlinNoise.PERLIN_SIZE)
+            .intoArray(cell, p);
+        // f is in [0, 1), the index is never bigger than PI and the modulo of the scalar code is not needed
+        final FloatVector v = f.mul((float) PERLIN_PI);
+        final FloatVector r = v.add(MAGIC).sub(MAGIC);
+        r.sub(ones(r.compare(VectorOperators.GT, v))).add(MAGIC).reinterpretAsInts().sub(MAGIC_BITS)
+            .intoArray(fade, p);
+        final FloatVector f2 = f.mul(2.0f);
+        final FloatVector carry = ones(f2.compare(VectorOperators.GE, 1.0f));
+        i.mul(2.0f).add(carry).intoArray(xi, p);
+        f2.sub(carry).intoArray(xf, p);
+      }
+    }
+
+    /**
+     * Interpolates the noise values of the 8 cell corners and adds them with the amplitude of the octave.
+     */
+    void interpolate(final float[] table, final float fadeY, final float fadeZ, final float amplitude, final int n) {
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector cos = FloatVector.fromArray(FLOATS, COS, 0, fade, p);
+        final FloatVector rxf = FloatVector.broadcast(FLOATS, 1.0f).sub(cos).mul(0.5f);
+        FloatVector n1 = FloatVector.fromArray(FLOATS, table, 0, cell, p);
+        n1 = n1.add(rxf.mul(FloatVector.fromArray(FLOATS, table, 1, cell, p).sub(n1)));
+        FloatVector n2 = FloatVector.fromArray(FLOATS, table, Y, cell, p);
+        n2 = n2.add(rxf.mul(FloatVector.fromArray(FLOATS, table, Y + 1, cell, p).sub(n2)));
+        n1 = n1.add(n2.sub(n1).mul(fadeY));
+        n2 = FloatVector.fromArray(FLOATS, table, Z, cell, p);
+        n2 = n2.add(rxf.mul(FloatVector.fromArray(FLOATS, table, Z + 1, cell, p).sub(n2)));
+        FloatVector n3 = FloatVector.fromArray(FLOATS, table, Z + Y, cell, p);
+        n3 = n3.add(rxf.mul(FloatVector.fromArray(FLOATS, table, Z + Y + 1, cell, p).sub(n3)));
+        n2 = n2.add(n3.sub(n2).mul(fadeY));
+        n1 = n1.add(n2.sub(n1).mul(fadeZ));
+        FloatVector.fromArray(FLOATS, noise, p).add(n1.mul(amplitude)).intoArray(noise, p);
+      }
+    }
+
+    /**
+     * Splits the x values of the first <code>n</code> points into integral and fractional part.
+     * 
+     * @return <code>false</code> if the x values are too big for the octaves
+     */
+    boolean load(final float[] xs, final int octaves, final int n) {
+      final float limit = LIMIT / (1 << octaves);
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector x = FloatVector.fromArray(FLOATS, xs, p).abs();
+        if (!x.compare(VectorOperators.LT, limit).allTrue()) {
+          return false;
+        }
+        final FloatVector r = x.add(MAGIC).sub(MAGIC);
+        final FloatVector i = r.sub(ones(r.compare(VectorOperators.GT, x)));
+        i.intoArray(xi, p);
+        x.sub(i).intoArray(xf, p);
+        FloatVector.zero(FLOATS).intoArray(noise, p);
+      }
+      return true;
+    }
+
+    /**
+     * Noise of the first <code>n</code> points of the row.
+     * 
+     * @return <code>false</code> if the points must be computed by the scalar code
+     */
+    boolean noise(final float[] table, final float[] xs, final PerlinNoise.Octaves octaves, final int n) {
+      if (!load(xs, octaves.count, n)) {
+        return false;
+      }
+      for (int i = 0; i < octaves.count; i++) {
+        cells(octaves.offset[i], n);
+        interpolate(table, octaves.fadeY[i], octaves.fadeZ[i], octaves.amplitude[i], n);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Intermediate values of the simplex noise for a block of points.
+   */
+  private static final class SimplexBlock {
+
+    final float[] xin = new float[BLOCK];
+    final float[] yin = new float[BLOCK];
+    final float[] zin = new float[BLOCK];
+    final float[] i = new float[BLOCK];
+    final float[] j = new float[BLOCK];
+    final float[] k = new float[BLOCK];
+    final int[] ii = new int[BLOCK];
+    final int[] jj = new int[BLOCK];
+    final int[] kk = new int[BLOCK];
+    /**
+     * i1, j1, k1, i2, j2, k2 of {@link SimplexNoise3#noise(float, float, float)} as 0 or 1.
+     */
+    final float[][] order = new float[6][BLOCK];
+    final float[][] x = new float[4][BLOCK];
+    final float[][] y = new float[4][BLOCK];
+    final float[][] z = new float[4][BLOCK];
+    final float[][] gradX = new float[4][BLOCK];
+    final float[][] gradY = new float[4][BLOCK];
+    final float[][] gradZ = new float[4][BLOCK];
+    final float[] sum = new float[BLOCK];
+    final int[] permMod12;
+
+    SimplexBlock(final int[] perm) {
+      permMod12 = new int[perm.length];
+      for (int p = 0; p < perm.length; p++) {
+        permMod12[p] = perm[p] % 12;
+      }
+    }
+
+    /**
+     * Adds the noise of the given corner to the sum.
+     */
+    void corner(final int c, final int n) {
+      final float[] xc = x[c];
+      final float[] yc = y[c];
+      final float[] zc = z[c];
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector xv = FloatVector.fromArray(FLOATS, xc, p);
+        final FloatVector yv = FloatVector.fromArray(FLOATS, yc, p);
+        final FloatVector zv = FloatVector.fromArray(FLOATS, zc, p);
+        FloatVector t = FloatVector.broadcast(FLOATS, 0.6f).sub(xv.mul(xv)).sub(yv.mul(yv)).sub(zv.mul(zv));
+        final VectorMask<Float> outside = t.compare(VectorOperators.LT, 0);
+        final FloatVector dot = xv.mul(FloatVector.fromArray(FLOATS, gradX[c], p))
+            .add(yv.mul(FloatVector.fromArray(FLOATS, gradY[c], p)))
+            .add(zv.mul(FloatVector.fromArray(FLOATS, gradZ[c], p)));
+        t = t.mul(t);
+        final FloatVector noise = t.mul(t).mul(dot).blend(0, outside);
+        (c == 0 ? noise : FloatVector.fromArray(FLOATS, sum, p).add(noise)).intoArray(sum, p);
+      }
+    }
+
+    /**
+     * Coordinates of the corners 1 to 3 relative to the corner 0.
+     */
+    void corners(final int n) {
+      offset(x[1], x[0], order[0], G3, n);
+      offset(y[1], y[0], order[1], G3, n);
+      offset(z[1], z[0], order[2], G3, n);
+      offset(x[2], x[0], order[3], 2.0f * G3, n);
+      offset(y[2], y[0], order[4], 2.0f * G3, n);
+      offset(z[2], z[0], order[5], 2.0f * G3, n);
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        FloatVector.fromArray(FLOATS, x[0], p).sub(1.0f).add(3.0f * G3).intoArray(x[3], p);
+        FloatVector.fromArray(FLOATS, y[0], p).sub(1.0f).add(3.0f * G3).intoArray(y[3], p);
+        FloatVector.fromArray(FLOATS, z[0], p).sub(1.0f).add(3.0f * G3).intoArray(z[3], p);
+      }
+    }
+
+    /**
+     * The scalar part: gradients of the 4 corners via the permutation table.
+     */
+    void gradients(final int[] perm, final int n) {
+      final float[] i1 = order[0], j1 = order[1], k1 = order[2], i2 = order[3], j2 = order[4], k2 = order[5];
+      for (int p = 0; p < n; p++) {
+        final int i = ii[p], j = jj[p], k = kk[p];
+        gradient(0, p, permMod12[i + perm[j + perm[k]]]);
+        gradient(1, p, permMod12[i + (int) i1[p] + perm[j + (int) j1[p] + perm[k + (int) k1[p]]]]);
+        gradient(2, p, permMod12[i + (int) i2[p] + perm[j + (int) j2[p] + perm[k + (int) k2[p]]]]);
+        gradient(3, p, permMod12[i + 1 + perm[j + 1 + perm[k + 1]]]);
+      }
+    }
+
+    private void gradient(final int c, final int p, final int gi) {
+      gradX[c][p] = GRAD_X[gi];
+      gradY[c][p] = GRAD_Y[gi];
+      gradZ[c][p] = GRAD_Z[gi];
+    }
+
+    /**
+     * Loads the scaled coordinates and the skewed coordinates.
+     * 
+     * @return <code>false</code> if a coordinate is out of the {@link #LIMIT}
+     */
+    boolean load(final float[] px, final float[] py, final float[] pz, final float frequency, final int offset,
+        final int n) {
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector xv = FloatVector.fromArray(FLOATS, px, offset + p).mul(frequency);
+        final FloatVector yv = FloatVector.fromArray(FLOATS, py, offset + p).mul(frequency);
+        final FloatVector zv = FloatVector.fromArray(FLOATS, pz, offset + p).mul(frequency);
+        if (!xv.abs().max(yv.abs()).max(zv.abs()).compare(VectorOperators.LT, LIMIT).allTrue()) {
+          return false;
+        }
+        final FloatVector s = xv.add(yv).add(zv).mul(F3);
+        xv.intoArray(xin, p);
+        yv.intoArray(yin, p);
+        zv.intoArray(zin, p);
+        xv.add(s).intoArray(i, p);
+        yv.add(s).intoArray(j, p);
+        zv.add(s).intoArray(k, p);
+      }
+      return true;
+    }
+
+    /**
+     * Adds the noise of <code>n</code> points (a multiple of the lanes) to the result.
+     * 
+     * @return <code>false</code> if the points must be computed by the scalar code
+     */
+    boolean noise(final int[] perm, final float[] px, final float[] py, final float[] pz, final float frequency,
+        final float[] result, final int offset, final int n) {
+      if (!load(px, py, pz, frequency, offset, n)) {
+        return false;
+      }
+      trunc(i, n);
+      trunc(j, n);
+      trunc(k, n);
+      unskew(n);
+      wrap(i, ii, n);
+      wrap(j, jj, n);
+      wrap(k, kk, n);
+      order(n);
+      corners(n);
+      gradients(perm, n);
+      for (int c = 0; c < 4; c++) {
+        corner(c, n);
+      }
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        FloatVector.fromArray(FLOATS, result, offset + p)
+            .add(FloatVector.fromArray(FLOATS, sum, p).mul(16.0f).add(1.0f)).intoArray(result, offset + p);
+      }
+      return true;
+    }
+
+    /**
+     * The branches of {@link SimplexNoise3#noise(float, float, float)} which select the corners 1 and 2, with 0/1
+     * vectors instead of masks.
+     */
+    void order(final int n) {
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector x0 = FloatVector.fromArray(FLOATS, x[0], p);
+        final FloatVector y0 = FloatVector.fromArray(FLOATS, y[0], p);
+        final FloatVector z0 = FloatVector.fromArray(FLOATS, z[0], p);
+        final FloatVector xy = ones(x0.compare(VectorOperators.GE, y0));
+        final FloatVector yx = FloatVector.broadcast(FLOATS, 1.0f).sub(xy);
+        final FloatVector a = ones(y0.compare(VectorOperators.GE, z0));
+        final FloatVector c = ones(y0.compare(VectorOperators.LT, z0));
+        final FloatVector ab = a.max(ones(x0.compare(VectorOperators.GE, z0)));
+        final FloatVector cd = c.max(ones(x0.compare(VectorOperators.LT, z0)));
+        xy.mul(ab).intoArray(order[0], p);
+        yx.mul(c.neg().add(1.0f)).intoArray(order[1], p);
+        xy.mul(ab.neg().add(1.0f)).add(yx.mul(c)).intoArray(order[2], p);
+        xy.max(cd.neg().add(1.0f)).intoArray(order[3], p);
+        yx.max(a).intoArray(order[4], p);
+        xy.mul(a.neg().add(1.0f)).add(yx.mul(cd)).intoArray(order[5], p);
+      }
+    }
+
+    /**
+     * Coordinates of corner 0.
+     */
+    void unskew(final int n) {
+      for (int p = 0; p < n; p += FLOATS.length()) {
+        final FloatVector iv = FloatVector.fromArray(FLOATS, i, p);
+        final FloatVector jv = FloatVector.fromArray(FLOATS, j, p);
+        final FloatVector kv = FloatVector.fromArray(FLOATS, k, p);
+        // the sum of the cell coordinates is exact, they are below the limit
+        final FloatVector t = iv.add(jv).add(kv).mul(G3);
+        FloatVector.fromArray(FLOATS, xin, p).sub(iv.sub(t)).intoArray(x[0], p);
+        FloatVector.fromArray(FLOATS, yin, p).sub(jv.sub(t)).intoArray(y[0], p);
+        FloatVector.fromArray(FLOATS, zin, p).sub(kv.sub(t)).intoArray(z[0], p);
+      }
+    }
+  }
+
+  private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_256;
+
+  /**
+   * Integral floats below this limit are exact, also the sum of 3 of them and after adding {@link #MAGIC}.
+   */
+  private static final float LIMIT = 1 << 21;
+
+  /**
+   * <code>1.5 * 2^23</code>, the lowest mantissa bits of <code>v + MAGIC</code> are <code>v</code> rounded to the
+   * nearest integer (as two's complement).
+   */
+  private static final float MAGIC = 12582912f;
+  private static final int MAGIC_BITS = Float.floatToRawIntBits(MAGIC);
+
+  private static final int BLOCK = 64 * 8;
+
+  private static final float F3 = 1.0f / 3.0f;
+  private static final float G3 = 1.0f / 6.0f;
+  private static final float[] GRAD_X = new float[] { 1, -1, 1, -1, 1, -1, 1, -1, 0, 0, 0, 0 };
+  private static final float[] GRAD_Y = new float[] { 1, 1, -1, -1, 0, 0, 0, 0, 1, -1, 1, -1 };
+  private static final float[] GRAD_Z = new float[] { 0, 0, 0, 0, 1, 1, -1, -1, 1, 1, -1, -1 };
+
+  private static final float[] COS = SinCosLUT.cosLUT;
+  private static final int PERLIN_PI = SinCosLUT.SC_PERIOD >> 1;
+  private static final int Y = PerlinNoise.PERLIN_YWRAP;
+  private static final int Z = PerlinNoise.PERLIN_ZWRAP;
+
+  /**
+   * Coordinates of all lattice points, see {@link NoiseKernel} for the layout.
+   */
+  private static void flatten(final float[] xs, final float[] ys, final float[] zs, final float[] px,
+      final float[] py, final float[] pz) {
+    for (int row = 0; row < ys.length; row++) {
+      final int offset = row * xs.length;
+      System.arraycopy(xs, 0, px, offset, xs.length);
+      Arrays.fill(py, offset, offset + xs.length, ys[row]);
+      Arrays.fill(pz, offset, offset + xs.length, zs[row]);
+    }
+  }
+
+  private static void offset(final float[] dst, final float[] src, final float[] offset, final float g, final int n) {
+    for (int p = 0; p < n; p += FLOATS.length()) {
+      FloatVector.fromArray(FLOATS, src, p).sub(FloatVector.fromArray(FLOATS, offset, p)).add(g).intoArray(dst, p);
+    }
+  }
+
+  /**
+   * @return 1 for the set lanes, 0 for the others
+   */
+  private static FloatVector ones(final VectorMask<Float> mask) {
+    return FloatVector.zero(FLOATS).blend(1.0f, mask);
+  }
+
+  /**
+   * Rounds the values towards zero like a <code>(int)</code> cast does, without a float to int conversion (AVX2 has
+   * no vector instruction for it).
+   */
+  private static void trunc(final float[] values, final int n) {
+    for (int p = 0; p < n; p += FLOATS.length()) {
+      final FloatVector v = FloatVector.fromArray(FLOATS, values, p);
+      final FloatVector a = v.abs();
+      final FloatVector r = a.add(MAGIC).sub(MAGIC);
+      final FloatVector f = r.sub(ones(r.compare(VectorOperators.GT, a)));
+      f.blend(f.neg(), v.compare(VectorOperators.LT, 0)).intoArray(values, p);
+    }
+  }
+
+  /**
+   * <code>(int) v &amp; 255</code> of integral values.
+   */
+  private static void wrap(final float[] values, final int[] wrapped, final int n) {
+    for (int p = 0; p < n; p += FLOATS.length()) {
+      FloatVector.fromArray(FLOATS, values, p).add(MAGIC).reinterpretAsInts().sub(MAGIC_BITS).and(255)
+          .intoArray(wrapped, p);
+    }
+  }
+
+  public VectorNoiseKernel() {
+    if (FloatVector.SPECIES_PREFERRED.vectorBitSize() < FLOATS.vectorBitSize()) {
+      // would be emulated by much slower java code
+      throw new UnsupportedOperationException(String.format("CPU supports only %d bit vectors",
+          FloatVector.SPECIES_PREFERRED.vectorBitSize()));
+    }
+  }
+
+  @Override
+  public String getName() {
+    return String.format("vector (%d lanes)", FLOATS.length());
+  }
+
+  @Override
+  public void perlinNoise(final PerlinNoise noise, final float[] xs, final float[] ys, final float[] zs,
+      final boolean add, final double weight, final float[] result) {
+    final float[] table = noise.getTable();
+    final int n = FLOATS.loopBound(xs.length);
+    final PerlinRow row = new PerlinRow(n);
+    final PerlinNoise.Octaves octaves = new PerlinNoise.Octaves();
+    for (int r = 0; r < ys.length; r++) {
+      final int offset = r * xs.length;
+      int p = 0;
+      if (n > 0) {
+        noise.prepareRow(ys[r], zs[r], octaves);
+        if (row.noise(table, xs, octaves, n)) {
+          for (; p < n; p++) {
+            if (add) {
+              result[offset + p] += row.noise[p] * weight;
+            } else {
+              result[offset + p] = row.noise[p];
+            }
+          }
+        }
+      }
+      for (; p < xs.length; p++) {
+        final float v = noise.noise(xs[p], ys[r], zs[r]);
+        if (add) {
+          result[offset + p] += v * weight;
+        } else {
+          result[offset + p] = v;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void simplexNoise(final SimplexNoise3 noise, final float[] xs, final float[] ys, final float[] zs,
+      final float frequency, final float[] result) {
+    final int size = xs.length * ys.length;
+    final float[] px = new float[size];
+    final float[] py = new float[size];
+    final float[] pz = new float[size];
+    flatten(xs, ys, zs, px, py, pz);
+    final int bound = FLOATS.loopBound(size);
+    final int[] perm = noise.getPerm();
+    final SimplexBlock block = new SimplexBlock(perm);
+    int p = 0;
+    while (p < bound) {
+      final int n = Math.min(BLOCK, bound - p);
+      if (!block.noise(perm, px, py, pz, frequency, result, p, n)) {
+        break;
+      }
+      p += n;
+    }
+    for (; p < size; p++) {
+      result[p] += noise.noise(px[p] * frequency, py[p] * frequency, pz[p] * frequency);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+uniform mat4 g_WorldViewProjectionMatrix;
+uniform vec2 m_TileSize;
+
+// unsigned bytes: x, y, z in the volume and the index of the normal
+attribute vec4 inPosition;
+// unsigned bytes: face coordinates in bloxels and the column and row of the atlas tile
+attribute vec4 inTexCoord;
+
+varying vec2 texCoord;
+varying vec4 tile;
+
+void main(){
+    texCoord = inTexCoord.xy;
+    tile = vec4(inTexCoord.zw * m_TileSize, m_TileSize);
+    gl_Position = g_WorldViewProjectionMatrix * vec4(inPosition.xyz, 1.0);
+}
@@ -0,0 +1,13 @@
+uniform sampler2D m_ColorMap;
+
+varying vec2 texCoord;
+varying vec4 tile;
+
+void main(){
+    // repeat the tile across merged faces
+    vec4 color = texture2D(m_ColorMap, tile.xy + fract(texCoord) * tile.zw);
+    if (color.a <= 0.0) {
+        discard;
+    }
+    gl_FragColor = color;
+}
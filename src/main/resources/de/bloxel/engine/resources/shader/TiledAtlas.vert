@@ -0,0 +1,16 @@
+uniform mat4 g_WorldViewProjectionMatrix;
+
+attribute vec3 inPosition;
+// face coordinates in bloxels, 0..width and 0..height
+attribute vec2 inTexCoord;
+// atlas tile of the face: u, v, width, height
+attribute vec4 inTexCoord2;
+
+varying vec2 texCoord;
+varying vec4 tile;
+
+void main(){
+    texCoord = inTexCoord;
+    tile = inTexCoord2;
+    gl_Position = g_WorldViewProjectionMatrix * vec4(inPosition, 1.0);
+}
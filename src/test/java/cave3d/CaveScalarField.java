@@ -6,16 +6,16 @@ import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 
+import de.bloxel.engine.math.AbstractDensityField;
+
 /**
+ * The field has no mutable state, so it can be used by multiple threads.
+ * 
  * @author mazander
  */
-public final class CaveScalarField implements ScalarField {
-
-  private final Vector3f tmp = new Vector3f();
+public final class CaveScalarField extends AbstractDensityField implements ScalarField {
 
   private final float d;
-  private float u;
-  private float v;
 
   private final Noise3D[] noises;
 
@@ -23,6 +23,10 @@ public final class CaveScalarField implements ScalarField {
 
   private final int voxelCount;
 
+  public CaveScalarField(final long seed) {
+    this(seed, 128f, 2f);
+  }
+
   public CaveScalarField(final long seed, final float size, final float voxelsize) {
     final long time = System.currentTimeMillis();
     final Random random = new Random(seed);
@@ -43,10 +47,12 @@ public final class CaveScalarField implements ScalarField {
 
   @Override
   public float calculate(final Vector3f point) {
+    return sample(point.x, point.y, point.z);
+  }
+
+  @Override
+  public float sample(final float x, final float y, final float z) {
     float density = 0;
-    final float x = point.x;
-    final float y = point.y;
-    final float z = point.z;
     for (int i = noises.length - 1; i >= 0; i--) {
       density += noises[i].getNoise(x, y, z);
     }
@@ -63,29 +69,20 @@ public final class CaveScalarField implements ScalarField {
    */
   @Override
   public void normal(final Vector3f point, final Vector3f result) {
-    // x
-    tmp.set(point.x - d, point.y, point.z);
-    result.x = calculate(tmp);
-    tmp.set(point.x + d, point.y, point.z);
-    result.x -= calculate(tmp);
-    // y
-    tmp.set(point.x, point.y - d, point.z);
-    result.y = calculate(tmp);
-    tmp.set(point.x, point.y + d, point.z);
-    result.y -= calculate(tmp);
-    // z
-    tmp.set(point.x, point.y, point.z - d);
-    result.z = calculate(tmp);
-    tmp.set(point.x, point.y, point.z + d);
-    result.z -= calculate(tmp);
+    final float x = point.x;
+    final float y = point.y;
+    final float z = point.z;
+    result.x = sample(x - d, y, z) - sample(x + d, y, z);
+    result.y = sample(x, y - d, z) - sample(x, y + d, z);
+    result.z = sample(x, y, z - d) - sample(x, y, z + d);
 
     result.normalizeLocal();
   }
 
   @Override
   public void textureCoords(final Vector3f point, final Vector2f result) {
-    u = (float) Math.atan2(-point.x, point.z) * 3;
-    v = (float) Math.atan(point.y / Math.sqrt(point.x * point.x + point.z * point.z)) * 3;
+    final float u = (float) Math.atan2(-point.x, point.z) * 3;
+    final float v = (float) Math.atan(point.y / Math.sqrt(point.x * point.x + point.z * point.z)) * 3;
     result.set((float) (u - Math.floor(u)), v);
     // System.out.println(result.toString());
   }
@@ -0,0 +1,34 @@
+package cave3d;
+
+import com.jme3.math.Vector3f;
+
+import de.bloxel.engine.math.AbstractDensityField;
+import de.bloxel.engine.math.DensityField;
+
+/**
+ * Adapts a {@link ScalarField} to a {@link DensityField}. Each thread reuses one point, so the samples don't allocate
+ * objects. The scalar field must be thread safe if the density field is used by multiple threads.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public final class ScalarFieldDensity extends AbstractDensityField {
+
+  private final ScalarField field;
+  private final ThreadLocal<Vector3f> points = new ThreadLocal<Vector3f>() {
+
+    @Override
+    protected Vector3f initialValue() {
+      return new Vector3f();
+    }
+  };
+
+  public ScalarFieldDensity(final ScalarField field) {
+    this.field = field;
+  }
+
+  @Override
+  public float sample(final float x, final float y, final float z) {
+    return field.calculate(points.get().set(x, y, z));
+  }
+}
@@ -18,6 +18,7 @@ package de.bloxel.engine;
 
 import static java.lang.String.format;
 
+import java.io.File;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -48,7 +49,9 @@ import de.bloxel.engine.data.Bloxel;
 import de.bloxel.engine.data.ColtVolumeFactory;
 import de.bloxel.engine.data.VolumeGrid;
 import de.bloxel.engine.jme.AbstractVolumeNode;
+import de.bloxel.engine.jme.BufferPool;
 import de.bloxel.engine.jme.CubicMeshVolumeNode;
+import de.bloxel.engine.jme.MeshCache;
 import de.bloxel.engine.loader.BlockmaniaTerrainLoader;
 import de.bloxel.engine.loader.PerlinNoiseTerrainLoader;
 import de.bloxel.engine.loader.ScalarFieldTerrainLoader;
@@ -78,6 +81,9 @@ public class BloxelEngineTest extends SimpleApplication implements ActionListene
   private boolean lightning = false;
   private VolumeGrid<Bloxel> grid;
   private ImageAtlasBloxelAssetManager bloxelAssetManager;
+  private final MeshCache meshCache = new MeshCache(new File(System.getProperty("java.io.tmpdir"), "bloxel-mesh-cache"),
+      256 * 1024 * 1024);
+  private final BufferPool bufferPool = new BufferPool(64 * 1024 * 1024);
   private SpotLight spot;
   private Vector2f screenCenter;
   private final LinkedBlockingQueue<AbstractVolumeNode> output = new LinkedBlockingQueue<AbstractVolumeNode>();
@@ -97,7 +103,11 @@ public class BloxelEngineTest extends SimpleApplication implements ActionListene
   }
 
   private AbstractVolumeNode node(final VolumeGrid<Bloxel> grid, final int x, final int y, final int z) {
-    return new CubicMeshVolumeNode(grid, grid.getVolumeWithIndex(x, y, z), assetManager, bloxelAssetManager);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, grid.getVolumeWithIndex(x, y, z), assetManager,
+        bloxelAssetManager);
+    node.setMeshCache(meshCache);
+    node.setBufferPool(bufferPool);
+    return node;
     // return new SmoothSurfaceVolumeNode(grid, grid.getVolumeWithIndex(x, y, z), assetManager, bloxelAssetManager);
   }
 
@@ -108,6 +118,7 @@ public class BloxelEngineTest extends SimpleApplication implements ActionListene
       for (final Spatial n : rootNode.getChildren()) {
         ((AbstractVolumeNode) n).debug(debug);
       }
+      bufferPool.logStatistics();
     }
     if (name.equals("lightning") && isPressed) {
       lightning = !lightning;
@@ -18,10 +18,20 @@ package de.bloxel.engine.data;
 
 import static java.lang.Integer.valueOf;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import de.bloxel.engine.loader.ColumnLoader;
 import de.bloxel.engine.loader.Loader;
 
 /**
@@ -69,6 +79,91 @@ public class VolumeGridTest {
     }
   }
 
+  @Test
+  public void testColumnLoading() {
+    final List<Integer> filled = Lists.newArrayList();
+    final VolumeGrid<Integer> grid = new VolumeGrid<Integer>();
+    grid.setGridSize(2, 2, 2);
+    grid.setVolumeSize(8);
+    grid.setVolumeFactory(new ColtVolumeFactory());
+    grid.setVolumeLoader(new ColumnLoader<Integer>() {
+
+      @Override
+      public void fill(final Volume<Integer> volume) {
+        throw new AssertionError("Grid must load columns");
+      }
+
+      @Override
+      public void fillColumn(final List<Volume<Integer>> volumes, final Callback<Integer> callback) {
+        for (final Volume<Integer> volume : volumes) {
+          new TestLoader().fill(volume);
+          filled.add(volume.getY());
+          callback.filled(volume);
+        }
+      }
+    });
+    grid.init();
+    assertAllValues(grid.getVolumeWithIndex(1, 0, -1), 792);
+    assertEquals(filled, ImmutableList.of(8, 0, -8));
+    assertAllValues(grid.getVolumeWithIndex(1, 1, -1), 872);
+    assertAllValues(grid.getVolumeWithIndex(1, -1, -1), 712);
+    assertEquals(filled.size(), 3);
+    assertEquals(grid.getFilledVolumes(), 3);
+  }
+
+  @Test
+  public void testColumnLoadingOutsideOfLock() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch otherColumn = new CountDownLatch(1);
+    final boolean[] locked = new boolean[1];
+    final VolumeGrid<Integer> grid = new VolumeGrid<Integer>();
+    grid.setGridSize(2, 2, 2);
+    grid.setVolumeSize(8);
+    grid.setVolumeFactory(new ColtVolumeFactory());
+    grid.setVolumeLoader(new ColumnLoader<Integer>() {
+
+      @Override
+      public void fill(final Volume<Integer> volume) {
+        throw new AssertionError("Grid must load columns");
+      }
+
+      @Override
+      public void fillColumn(final List<Volume<Integer>> volumes, final Callback<Integer> callback) {
+        if (volumes.get(0).getX() == 0) {
+          // the first column waits until the other column is loaded
+          started.countDown();
+          try {
+            locked[0] = !otherColumn.await(5, TimeUnit.SECONDS);
+          } catch (final InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+        for (final Volume<Integer> volume : volumes) {
+          new TestLoader().fill(volume);
+          callback.filled(volume);
+        }
+      }
+    });
+    grid.init();
+    final List<Volume<Integer>> first = Lists.newArrayList();
+    final Thread thread = new Thread() {
+
+      @Override
+      public void run() {
+        first.add(grid.getVolumeWithIndex(0, 0, 0));
+      }
+    };
+    thread.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertAllValues(grid.getVolumeWithIndex(1, 0, 0), 800);
+    otherColumn.countDown();
+    thread.join();
+    assertFalse(locked[0], "grid is locked while a column is filled");
+    assertAllValues(first.get(0), 0);
+    assertSame(first.get(0), grid.getVolumeWithIndex(0, 0, 0));
+    assertEquals(grid.getFilledVolumes(), 6);
+  }
+
   @Test
   public void testGet() {
     final VolumeGrid<Integer> grid = new VolumeGrid<Integer>();
@@ -103,8 +198,24 @@ public class VolumeGridTest {
     assertEquals(v0.getY(), 0);
     assertEquals(v0.getZ(), 0);
     final Volume<Integer> v1 = grid.getVolumeForWorldPosition(-1, 0, 0);
-    assertAllValues(v1, -800);
-    assertEquals(grid.get(-1f, 0, 0), valueOf(-800));
+    // the neighbor starts at x = -32
+    assertAllValues(v1, -3200);
+    assertEquals(grid.get(-1f, 0, 0), valueOf(-3200));
+  }
+
+  @Test
+  public void testGetNeighborVolume() {
+    final VolumeGrid<Integer> grid = new VolumeGrid<Integer>();
+    grid.setGridSize(2, 2, 2);
+    grid.setVolumeSize(8);
+    grid.setVolumeFactory(new ColtVolumeFactory());
+    grid.setVolumeLoader(new TestLoader());
+    grid.init();
+    final Volume<Integer> v = grid.getVolumeWithIndex(0, -1, 0);
+    assertSame(grid.getNeighbor(v, -1, 0, 0), grid.getVolumeWithIndex(-1, -1, 0));
+    assertSame(grid.getNeighbor(v, 0, 1, 0), grid.getVolumeWithIndex(0, 0, 0));
+    assertAllValues(grid.getNeighbor(v, 0, 0, 1), -72);
+    assertEquals(grid.getNeighbor(v, 0, -1, 0), null);
   }
 
   @Test
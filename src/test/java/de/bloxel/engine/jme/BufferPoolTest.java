@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.testng.annotations.Test;
+
+import com.jme3.util.BufferUtils;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class BufferPoolTest {
+
+  public void testReuseReleasedBuffer() {
+    final BufferPool pool = new BufferPool(1024 * 1024);
+    final FloatBuffer first = pool.floatBuffer(100);
+    assertEquals(first.position(), 0);
+    assertEquals(first.limit(), 100);
+    assertEquals(first.capacity(), 128);
+    first.put(1f);
+    pool.release(first);
+    final FloatBuffer second = pool.floatBuffer(120);
+    assertSame(second, first);
+    assertEquals(second.position(), 0);
+    assertEquals(second.limit(), 120);
+    assertEquals(pool.getHits(), 1);
+    assertEquals(pool.getMisses(), 1);
+  }
+
+  public void testSizeClassesAndTypes() {
+    final BufferPool pool = new BufferPool(1024 * 1024);
+    final FloatBuffer floats = pool.floatBuffer(10);
+    pool.release(floats);
+    assertNotSame(pool.floatBuffer(1000), floats);
+    final IntBuffer ints = pool.intBuffer(10);
+    pool.release(ints);
+    assertSame(pool.intBuffer(64), ints);
+    // the small float buffer is still pooled
+    assertEquals(pool.getPooledBytes(), 64 * 4);
+  }
+
+  public void testIgnoreForeignBuffers() {
+    final BufferPool pool = new BufferPool(1024 * 1024);
+    final FloatBuffer buffer = pool.floatBuffer(64);
+    pool.release(buffer);
+    pool.release(buffer);
+    pool.release(BufferUtils.createFloatBuffer(64));
+    assertEquals(pool.getPooledBytes(), 64 * 4);
+  }
+
+  public void testMaxPooledBytes() {
+    final BufferPool pool = new BufferPool(256);
+    final FloatBuffer a = pool.floatBuffer(64);
+    final FloatBuffer b = pool.floatBuffer(64);
+    pool.release(a);
+    pool.release(b);
+    assertEquals(pool.getPooledBytes(), 256);
+    assertSame(pool.floatBuffer(64), a);
+    assertEquals(pool.getMisses(), 2);
+    assertNotSame(pool.floatBuffer(64), b);
+    assertEquals(pool.getMisses(), 3);
+  }
+}
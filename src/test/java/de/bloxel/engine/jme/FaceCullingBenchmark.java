@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static java.lang.String.format;
+
+import java.util.Arrays;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BlockmaniaTerrainLoader;
+
+/**
+ * Compares the face detection of {@link CubicMeshVolumeNode} bloxel by bloxel with the bitmask {@link FaceCulling}
+ * for a {@link BlockmaniaTerrainLoader} world with 32^3 and 64^3 chunks.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class FaceCullingBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final int HEIGHT = 128;
+
+  public static void main(final String[] args) {
+    for (final int size : new int[] { 32, 64 }) {
+      final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+      // room for the neighbors
+      grid.setGridSize(6, 2 * HEIGHT / size + 4, 6);
+      grid.setVolumeSize(size);
+      grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+      grid.setVolumeLoader(new BlockmaniaTerrainLoader("jme".hashCode()));
+      grid.init();
+      // warm up and check
+      for (int y = 0; y < HEIGHT / size; y++) {
+        final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, y, 0);
+        final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+        final PaddedChunk chunk = PaddedChunk.snapshot(grid, volume);
+        if (!Arrays.equals(node.checkFaces(chunk), node.cullFaces(chunk))) {
+          throw new IllegalStateException("Different faces for " + volume);
+        }
+      }
+      final double checkTime = measure(grid, size, false);
+      final double cullTime = measure(grid, size, true);
+      System.out.println(format("%2d^3 per bloxel %8.2fms bitmask %8.2fms speedup %.2f", size, checkTime, cullTime,
+          checkTime / cullTime));
+    }
+  }
+
+  private static double measure(final VolumeGrid<Bloxel> grid, final int size, final boolean bitmask) {
+    final long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      for (int x = -1; x <= 0; x++) {
+        for (int z = -1; z <= 0; z++) {
+          for (int y = 0; y < HEIGHT / size; y++) {
+            final Volume<Bloxel> volume = grid.getVolumeWithIndex(x, y, z);
+            final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+            final PaddedChunk chunk = PaddedChunk.snapshot(grid, volume);
+            if (bitmask) {
+              node.cullFaces(chunk);
+            } else {
+              node.checkFaces(chunk);
+            }
+          }
+        }
+      }
+    }
+    return (System.nanoTime() - start) / 1e6 / ROUNDS;
+  }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.Loader;
+
+/**
+ * The bitmask face culling must find exactly the faces of the per bloxel check.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class FaceCullingTest {
+
+  /**
+   * Random opaque (1, 2), transparent (6, 8) and air bloxels.
+   */
+  static class RandomLoader implements Loader<Bloxel> {
+
+    private static final int[] TYPES = { 1, 2, 6, 8 };
+
+    @Override
+    public void fill(final Volume<Bloxel> volume) {
+      final Random random = new Random(31 * volume.getX() + 17 * volume.getY() + volume.getZ());
+      for (int x = 0; x < volume.getSizeX(); x++) {
+        for (int y = 0; y < volume.getSizeY(); y++) {
+          for (int z = 0; z < volume.getSizeZ(); z++) {
+            if (random.nextBoolean()) {
+              volume.set(x, y, z, new Bloxel(TYPES[random.nextInt(TYPES.length)]));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void assertSameFaces(final int size) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(size);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new RandomLoader());
+    grid.init();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+    final PaddedChunk chunk = PaddedChunk.snapshot(grid, volume);
+    assertEquals(node.cullFaces(chunk), node.checkFaces(chunk));
+  }
+
+  /**
+   * A solid volume in the air needs all faces at its bounds, a solid neighbor hides them.
+   */
+  public void testBorderFaces() {
+    final int size = 8;
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(size);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new Loader<Bloxel>() {
+
+      @Override
+      public void fill(final Volume<Bloxel> volume) {
+        if (volume.getX() != 0 || volume.getZ() != 0 || volume.getY() < 0) {
+          return;
+        }
+        for (int x = 0; x < volume.getSizeX(); x++) {
+          for (int y = 0; y < volume.getSizeY(); y++) {
+            for (int z = 0; z < volume.getSizeZ(); z++) {
+              volume.set(x, y, z, new Bloxel(1));
+            }
+          }
+        }
+      }
+    });
+    grid.init();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+    final PaddedChunk chunk = PaddedChunk.snapshot(grid, volume);
+    assertEquals(chunk.get(0, size, 0), 1);
+    assertEquals(chunk.get(-1, 0, 0), PaddedChunk.AIR);
+    int faces = 0;
+    for (final int f : node.cullFaces(chunk)) {
+      faces += Integer.bitCount(f);
+    }
+    // the volume above is solid too
+    assertEquals(faces, 5 * size * size);
+    assertEquals(node.checkFaces(chunk), node.cullFaces(chunk));
+  }
+
+  public void testSameFaces16() {
+    assertSameFaces(16);
+  }
+
+  public void testSameFaces64() {
+    assertSameFaces(64);
+  }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class GreedyMesherTest {
+
+  private static final int SIZE = 16;
+
+  private final List<int[]> quads = Lists.newArrayList();
+
+  private final GreedyMesher.Quads collector = new GreedyMesher.Quads() {
+
+    @Override
+    public void quad(final int type, final int face, final int x, final int y, final int z, final int sizeX,
+        final int sizeY, final int sizeZ) {
+      quads.add(new int[] { type, face, x, y, z, sizeX, sizeY, sizeZ });
+    }
+  };
+
+  private static int index(final int x, final int y, final int z) {
+    return x + SIZE * (y + SIZE * z);
+  }
+
+  public void testFlatLayerIsOneQuad() {
+    quads.clear();
+    final int[] types = new int[SIZE * SIZE * SIZE];
+    final int[] faces = new int[types.length];
+    for (int x = 0; x < SIZE; x++) {
+      for (int z = 0; z < SIZE; z++) {
+        types[index(x, 3, z)] = 1;
+        faces[index(x, 3, z)] = CubicMeshVolumeNode.FACE_UP;
+      }
+    }
+    GreedyMesher.mesh(SIZE, SIZE, SIZE, types, faces, collector);
+    assertEquals(quads.size(), 1);
+    final int[] quad = quads.get(0);
+    assertEquals(quad, new int[] { 1, CubicMeshVolumeNode.FACE_UP, 0, 3, 0, SIZE, 1, SIZE });
+  }
+
+  public void testDifferentTypesAreNotMerged() {
+    quads.clear();
+    final int[] types = new int[SIZE * SIZE * SIZE];
+    final int[] faces = new int[types.length];
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        types[index(x, y, 0)] = x < 4 ? 1 : 2;
+        faces[index(x, y, 0)] = CubicMeshVolumeNode.FACE_BACK | CubicMeshVolumeNode.FACE_FRONT;
+      }
+    }
+    GreedyMesher.mesh(SIZE, SIZE, SIZE, types, faces, collector);
+    assertEquals(quads.size(), 4);
+    assertEquals(quads.get(0), new int[] { 1, CubicMeshVolumeNode.FACE_BACK, 0, 0, 0, 4, SIZE, 1 });
+    assertEquals(quads.get(1), new int[] { 2, CubicMeshVolumeNode.FACE_BACK, 4, 0, 0, SIZE - 4, SIZE, 1 });
+  }
+
+  public void testFacesCoverAllVisibleSides() {
+    quads.clear();
+    final int[] types = new int[SIZE * SIZE * SIZE];
+    final int[] faces = new int[types.length];
+    int visible = 0;
+    for (int i = 0; i < types.length; i++) {
+      types[i] = i % 3;
+      faces[i] = (i * 7) % 64;
+      visible += Integer.bitCount(faces[i]);
+    }
+    GreedyMesher.mesh(SIZE, SIZE, SIZE, types, faces, collector);
+    int area = 0;
+    for (final int[] quad : quads) {
+      area += quad[5] * quad[6] * quad[7];
+    }
+    assertEquals(area, visible);
+  }
+}
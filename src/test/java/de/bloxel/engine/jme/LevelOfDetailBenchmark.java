@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static java.lang.String.format;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BloxelLoader;
+
+/**
+ * Counts the triangles of a hilly world around the camera for view distances up to 512 bloxels, all volumes with full
+ * resolution compared with {@link LevelOfDetail} rings (full resolution up to 64 bloxels, then downsampled by 2, 4
+ * and 8 with each doubled distance). The source volumes compute their bloxels from a height function, so the full
+ * resolution world needs no memory.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class LevelOfDetailBenchmark {
+
+  private static final int SIZE = 32;
+  private static final int VIEW = 512;
+  private static final Bloxel STONE = new Bloxel(1, 1);
+
+  /**
+   * Hills between -24 and 24.
+   */
+  private static class HeightVolume implements Volume<Bloxel> {
+
+    private final int x;
+    private final int y;
+    private final int z;
+
+    HeightVolume(final int x, final int y, final int z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bloxel get(final int bx, final int by, final int bz) {
+      final double height = 16 * Math.sin((x + bx) / 23.0) * Math.cos((z + bz) / 17.0) + 8
+          * Math.sin((x + bx + z + bz) / 7.0);
+      return y + by < height ? STONE : Bloxel.AIR;
+    }
+
+    @Override
+    public int getSizeX() {
+      return SIZE;
+    }
+
+    @Override
+    public int getSizeY() {
+      return SIZE;
+    }
+
+    @Override
+    public int getSizeZ() {
+      return SIZE;
+    }
+
+    @Override
+    public int getX() {
+      return x;
+    }
+
+    @Override
+    public int getY() {
+      return y;
+    }
+
+    @Override
+    public int getZ() {
+      return z;
+    }
+
+    @Override
+    public void set(final int bx, final int by, final int bz, final Bloxel bloxel) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static final LevelOfDetail.NodeFactory GREEDY = new LevelOfDetail.NodeFactory() {
+
+    @Override
+    public AbstractVolumeNode create(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
+      final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+      node.setMode(CubicMeshVolumeNode.Mode.GREEDY);
+      return node;
+    }
+  };
+
+  public static void main(final String[] args) {
+    final int gridSize = 2 * VIEW / SIZE + 4;
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(gridSize, 2, gridSize);
+    grid.setVolumeSize(SIZE);
+    grid.setVolumeFactory(new VolumeFactory<Bloxel>() {
+
+      @Override
+      public Volume<Bloxel> create(final int x, final int y, final int z, final int sizeX, final int sizeY,
+          final int sizeZ) {
+        return new HeightVolume(x, y, z);
+      }
+    });
+    grid.setVolumeLoader(new BloxelLoader() {
+
+      @Override
+      public void fill(final Volume<Bloxel> volume) {
+        // computed by the volume
+      }
+    });
+    grid.init();
+    final LevelOfDetail lod = new LevelOfDetail(grid, gridSize, 2, gridSize, SIZE, new ColtVolumeFactory<Bloxel>(), 64,
+        128, 256);
+    final Vector3f camera = new Vector3f(SIZE / 2, 0, SIZE / 2);
+    System.out.println("view    volumes  full triangles   LOD triangles");
+    for (int view = 64; view <= VIEW; view <<= 1) {
+      int volumes = 0;
+      long full = 0;
+      long rings = 0;
+      final int r = view / SIZE;
+      for (int x = -r; x <= r; x++) {
+        for (int z = -r; z <= r; z++) {
+          for (int y = -1; y <= 0; y++) {
+            final Volume<Bloxel> volume = grid.getVolumeWithIndex(x, y, z);
+            if (LevelOfDetail.distance(volume, camera) >= view) {
+              continue;
+            }
+            volumes++;
+            full += triangles(GREEDY.create(grid, volume));
+            lod.remove(volume);
+            rings += triangles(lod.update(volume, camera, GREEDY));
+          }
+        }
+      }
+      System.out.println(format("%4d %10d %15d %15d", view, volumes, full, rings));
+    }
+  }
+
+  private static long triangles(final AbstractVolumeNode node) {
+    node.calculate();
+    node.update();
+    long triangles = 0;
+    for (final Spatial spatial : ((Node) node.getChild("volume")).getChildren()) {
+      triangles += ((Geometry) spatial).getMesh().getTriangleCount();
+    }
+    node.dispose();
+    return triangles;
+  }
+}
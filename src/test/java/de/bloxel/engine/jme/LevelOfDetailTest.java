@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.jme3.material.Material;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BloxelLoader;
+import de.bloxel.engine.material.BloxelAssetManager;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class LevelOfDetailTest {
+
+  private static final int SIZE = 16;
+
+  /**
+   * Materials for the {@link SmoothSurfaceVolumeNode}.
+   */
+  private static final BloxelAssetManager ASSETS = new BloxelAssetManager() {
+
+    @Override
+    public Material getMaterial(final Integer bloxelType, final BloxelSide side) {
+      return new Material();
+    }
+
+    @Override
+    public Material getAtlasMaterial(final boolean transparent) {
+      return null;
+    }
+
+    @Override
+    public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
+      return MeshingBenchmark.ASSETS.getTextureCoordinates(bloxelType, side);
+    }
+
+    @Override
+    public boolean isTransparent(final Integer bloxelType) {
+      return false;
+    }
+  };
+
+  /**
+   * Hills of stone with a positive density.
+   */
+  private static class HillLoader implements BloxelLoader {
+
+    @Override
+    public void fill(final Volume<Bloxel> volume) {
+      for (int x = 0; x < volume.getSizeX(); x++) {
+        for (int z = 0; z < volume.getSizeZ(); z++) {
+          final int wx = volume.getX() + x;
+          final int wz = volume.getZ() + z;
+          final double height = 8 * Math.sin(wx / 7.0) * Math.cos(wz / 5.0);
+          for (int y = 0; y < volume.getSizeY(); y++) {
+            if (volume.getY() + y < height) {
+              volume.set(x, y, z, new Bloxel(1, 1));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static final LevelOfDetail.NodeFactory CUBIC = new LevelOfDetail.NodeFactory() {
+
+    @Override
+    public AbstractVolumeNode create(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
+      return new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+    }
+  };
+
+  private static final LevelOfDetail.NodeFactory SMOOTH = new LevelOfDetail.NodeFactory() {
+
+    @Override
+    public AbstractVolumeNode create(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume) {
+      return new SmoothSurfaceVolumeNode(grid, volume, null, ASSETS);
+    }
+  };
+
+  private static VolumeGrid<Bloxel> grid() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(8, 2, 8);
+    grid.setVolumeSize(SIZE);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new HillLoader());
+    grid.init();
+    return grid;
+  }
+
+  private static LevelOfDetail lod(final VolumeGrid<Bloxel> grid) {
+    return new LevelOfDetail(grid, 8, 2, 8, SIZE, new ColtVolumeFactory<Bloxel>(), 32, 64, 128);
+  }
+
+  public void testLevel() {
+    final LevelOfDetail lod = lod(grid());
+    assertEquals(lod.getLevelCount(), 4);
+    assertEquals(lod.level(0), 0);
+    assertEquals(lod.level(31), 0);
+    assertEquals(lod.level(32), 1);
+    assertEquals(lod.level(127), 2);
+    assertEquals(lod.level(1000), 3);
+    lod.setHysteresis(4);
+    // coarser only 4 bloxels beyond the distance
+    assertEquals(lod.level(34, 0), 0);
+    assertEquals(lod.level(36, 1), 1);
+    assertEquals(lod.level(36, 0), 1);
+    // finer only 4 bloxels before the distance
+    assertEquals(lod.level(30, 1), 1);
+    assertEquals(lod.level(27, 1), 0);
+    assertEquals(lod.level(27, -1), 0);
+    assertEquals(lod.level(200, 0), 3);
+  }
+
+  public void testDistance() {
+    final Volume<Bloxel> volume = grid().getVolumeWithIndex(2, 0, -1);
+    assertEquals(LevelOfDetail.distance(volume, new Vector3f(40, 8, -8)), 0f);
+    assertEquals(LevelOfDetail.distance(volume, new Vector3f(0, 8, -8)), 32f);
+    assertEquals(LevelOfDetail.distance(volume, new Vector3f(40, 8, 20)), 20f);
+  }
+
+  public void testUpdate() {
+    final VolumeGrid<Bloxel> grid = grid();
+    final LevelOfDetail lod = lod(grid);
+    lod.setHysteresis(4);
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(4, 0, 0);
+    final AbstractVolumeNode node = lod.update(volume, new Vector3f(0, 0, 0), CUBIC);
+    assertNotNull(node);
+    assertEquals(lod.getLevel(volume), 2);
+    assertEquals(node.getLocalScale().x, 4f);
+    assertSame(node.getVolume(), lod.getVolume(volume, 2));
+    assertEquals(node.getVolume().getSizeX(), SIZE / 4);
+    assertEquals(node.getVolume().getX() * 4, volume.getX());
+    assertNull(lod.update(volume, new Vector3f(2, 0, 0), CUBIC));
+    final AbstractVolumeNode nearNode = lod.update(volume, new Vector3f(60, 0, 0), CUBIC);
+    assertEquals(lod.getLevel(volume), 0);
+    assertSame(nearNode.getVolume(), volume);
+    assertEquals(nearNode.getLocalScale().x, 1f);
+  }
+
+  private static void assertFewerTriangles(final LevelOfDetail.NodeFactory factory) {
+    final VolumeGrid<Bloxel> grid = grid();
+    final LevelOfDetail lod = lod(grid);
+    int previous = Integer.MAX_VALUE;
+    for (int level = 0; level < lod.getLevelCount(); level++) {
+      int triangles = 0;
+      for (int x = -1; x <= 0; x++) {
+        for (int z = -1; z <= 0; z++) {
+          final Volume<Bloxel> volume = lod.getVolume(grid.getVolumeWithIndex(x, 0, z), level);
+          final AbstractVolumeNode node = factory.create(lod.getGrid(level), volume);
+          for (final Geometry geometry : node.createGeometries(lod.getGrid(level), volume)) {
+            triangles += geometry.getMesh().getTriangleCount();
+          }
+        }
+      }
+      assertTrue(triangles > 0 && triangles < previous, level + ": " + triangles + " after " + previous);
+      previous = triangles;
+    }
+  }
+
+  public void testCubic() {
+    assertFewerTriangles(CUBIC);
+  }
+
+  public void testSmooth() {
+    assertFewerTriangles(SMOOTH);
+  }
+}
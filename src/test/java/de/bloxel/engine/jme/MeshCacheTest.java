@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.jme3.material.Material;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+
+import de.bloxel.engine.material.BloxelAssetManager;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class MeshCacheTest {
+
+  /**
+   * Every bloxel type has the same texture coordinates, shifted by an offset.
+   */
+  private static class Assets implements BloxelAssetManager {
+
+    private final float offset;
+
+    Assets(final float offset) {
+      this.offset = offset;
+    }
+
+    @Override
+    public Material getAtlasMaterial(final boolean transparent) {
+      return null;
+    }
+
+    @Override
+    public Material getMaterial(final Integer bloxelType, final BloxelSide side) {
+      return null;
+    }
+
+    @Override
+    public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
+      return ImmutableList.of(new Vector2f(offset, 0), new Vector2f(offset + 1, 0), new Vector2f(offset, 1),
+          new Vector2f(offset + 1, 1));
+    }
+
+    @Override
+    public boolean isTransparent(final Integer bloxelType) {
+      return false;
+    }
+  }
+
+  private static void assertBuffer(final Mesh actual, final Mesh expected, final Type type) {
+    final VertexBuffer a = actual.getBuffer(type);
+    final VertexBuffer e = expected.getBuffer(type);
+    assertNotNull(a);
+    assertEquals(a.getFormat(), e.getFormat());
+    assertEquals(a.getNumComponents(), e.getNumComponents());
+    final Buffer ad = a.getData();
+    final Buffer ed = e.getData();
+    assertEquals(ad.limit(), ed.limit());
+    for (int i = 0; i < ed.limit(); i++) {
+      assertEquals(value(ad, i), value(ed, i), type + " " + i);
+    }
+  }
+
+  private static void delete(final File directory) {
+    for (final File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * @return one quad with packed (unsigned byte) texture coordinates and indexes from the shared quad indexes
+   */
+  private static Mesh packedMesh() {
+    final Mesh mesh = new Mesh();
+    mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0));
+    mesh.setBuffer(Type.Normal, 3, BufferUtils.createFloatBuffer(0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1));
+    final ByteBuffer packed = BufferUtils.createByteBuffer(16);
+    for (int i = 0; i < 16; i++) {
+      packed.put((byte) (i * 17));
+    }
+    packed.flip();
+    mesh.setBuffer(Type.TexCoord2, 4, Format.UnsignedByte, packed);
+    mesh.setBuffer(Type.Index, 3, Format.UnsignedShort, QuadIndexes.shortBuffer(1));
+    return mesh;
+  }
+
+  private static String hashAssets(final BloxelAssetManager assets, final Set<Integer> types) {
+    final Hasher hasher = Hashing.murmur3_128().newHasher();
+    MeshCache.hashAssets(hasher, assets, types);
+    return hasher.hash().toString();
+  }
+
+  private static File tempDirectory() throws IOException {
+    final File directory = File.createTempFile("bloxel-mesh-cache", "");
+    directory.delete();
+    return directory;
+  }
+
+  private static Object value(final Buffer buffer, final int index) {
+    if (buffer instanceof FloatBuffer) {
+      return ((FloatBuffer) buffer).get(index);
+    }
+    if (buffer instanceof IntBuffer) {
+      return ((IntBuffer) buffer).get(index);
+    }
+    if (buffer instanceof ShortBuffer) {
+      return ((ShortBuffer) buffer).get(index);
+    }
+    return ((ByteBuffer) buffer).get(index);
+  }
+
+  /**
+   * @return two triangles with texture coordinates and int indexes
+   */
+  private static Mesh wideMesh() {
+    final Mesh mesh = new Mesh();
+    mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0));
+    mesh.setBuffer(Type.TexCoord, 2, BufferUtils.createFloatBuffer(0, 0, 1, 0, 0, 1, 1, 1));
+    final IntBuffer indexes = BufferUtils.createIntBuffer(6);
+    QuadIndexes.put(indexes, 0, 1);
+    indexes.flip();
+    mesh.setBuffer(Type.Index, 3, Format.UnsignedInt, indexes);
+    return mesh;
+  }
+
+  @Test
+  public void testCorruptEntry() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      final MeshCache cache = new MeshCache(directory, 1 << 20);
+      final Map<Integer, Mesh> meshes = Maps.newHashMap();
+      meshes.put(1, packedMesh());
+      cache.put("truncated", meshes);
+      cache.put("garbage", meshes);
+      final RandomAccessFile truncated = new RandomAccessFile(new File(directory, "truncated.mesh"), "rw");
+      truncated.setLength(truncated.length() - 10);
+      truncated.close();
+      final RandomAccessFile garbage = new RandomAccessFile(new File(directory, "garbage.mesh"), "rw");
+      garbage.writeInt(0xdeadbeef);
+      garbage.close();
+
+      assertNull(cache.get("truncated"));
+      assertFalse(new File(directory, "truncated.mesh").exists());
+      assertNull(cache.get("garbage"));
+      assertFalse(new File(directory, "garbage.mesh").exists());
+      assertEquals(cache.getSize(), 0);
+      // dropped entries are misses afterwards
+      assertNull(cache.get("truncated"));
+      assertEquals(cache.getMissCount(), 1);
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      final Map<Integer, Mesh> meshes = Maps.newHashMap();
+      meshes.put(1, wideMesh());
+      MeshCache cache = new MeshCache(directory, 1 << 20);
+      cache.put("size", meshes);
+      final long entrySize = cache.getSize();
+      delete(directory);
+
+      // room for two entries
+      cache = new MeshCache(directory, 2 * entrySize + entrySize / 2);
+      cache.put("a", meshes);
+      cache.put("b", meshes);
+      assertNotNull(cache.get("a"));
+      cache.put("c", meshes);
+      // b is the least recently used entry
+      assertEquals(cache.getSize(), 2 * entrySize);
+      assertNull(cache.get("b"));
+      assertFalse(new File(directory, "b.mesh").exists());
+      assertNotNull(cache.get("a"));
+      assertNotNull(cache.get("c"));
+      // the new entry is kept even if it's larger than the quota
+      cache = new MeshCache(directory, entrySize / 2);
+      assertEquals(cache.getSize(), 0);
+      cache.put("d", meshes);
+      assertEquals(cache.getSize(), entrySize);
+      assertNotNull(cache.get("d"));
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testHashAssets() {
+    final Set<Integer> types = ImmutableSet.of(1, 2);
+    assertEquals(hashAssets(new Assets(0), types), hashAssets(new Assets(0), types));
+    // an other texture atlas
+    assertFalse(hashAssets(new Assets(0), types).equals(hashAssets(new Assets(1), types)));
+    // an other bloxel type
+    assertFalse(hashAssets(new Assets(0), types).equals(hashAssets(new Assets(0), ImmutableSet.of(1, 3))));
+  }
+
+  @Test
+  public void testPutGet() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      final Mesh packed = packedMesh();
+      final Mesh wide = wideMesh();
+      final Map<Integer, Mesh> meshes = Maps.newLinkedHashMap();
+      meshes.put(3, packed);
+      meshes.put(7, wide);
+      MeshCache cache = new MeshCache(directory, 1 << 20);
+      assertNull(cache.get("key"));
+      cache.put("key", meshes);
+      assertTrue(new File(directory, "key.mesh").isFile());
+
+      // a new cache finds the entry of the previous run
+      cache = new MeshCache(directory, 1 << 20);
+      final Map<Integer, Mesh> actual = cache.get("key");
+      assertNotNull(actual);
+      assertEquals(actual.keySet(), meshes.keySet());
+      assertBuffer(actual.get(3), packed, Type.Position);
+      assertBuffer(actual.get(3), packed, Type.Normal);
+      assertBuffer(actual.get(3), packed, Type.TexCoord2);
+      assertBuffer(actual.get(3), packed, Type.Index);
+      assertNull(actual.get(3).getBuffer(Type.TexCoord));
+      assertBuffer(actual.get(7), wide, Type.Position);
+      assertBuffer(actual.get(7), wide, Type.TexCoord);
+      assertBuffer(actual.get(7), wide, Type.Index);
+      assertEquals(cache.getHitCount(), 1);
+      assertEquals(cache.getMissCount(), 0);
+    } finally {
+      delete(directory);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static java.lang.String.format;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.jme3.material.Material;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BlockmaniaTerrainLoader;
+import de.bloxel.engine.material.BloxelAssetManager;
+
+/**
+ * Tesselates a view of 5x5x5 chunks of a {@link BlockmaniaTerrainLoader} world with each
+ * {@link CubicMeshVolumeNode.Mode}, one mesh per type and one single mesh per chunk, and prints the draw calls
+ * (geometries), the triangles, the vertex buffer bytes and the tesselation time. Runs headless, the materials are
+ * <code>null</code>.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class MeshingBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final int CHUNKS = 5;
+  private static final int HEIGHT = 5;
+
+  static final BloxelAssetManager ASSETS = new BloxelAssetManager() {
+
+    private final Material atlas = new Material();
+
+    private final ImmutableList<Vector2f> coordinates = ImmutableList.of(new Vector2f(0, 0), new Vector2f(1, 0),
+        new Vector2f(0, 1), new Vector2f(1, 1));
+
+    @Override
+    public Material getMaterial(final Integer bloxelType, final BloxelSide side) {
+      return null;
+    }
+
+    @Override
+    public Material getAtlasMaterial(final boolean transparent) {
+      return atlas;
+    }
+
+    @Override
+    public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
+      return coordinates;
+    }
+
+    @Override
+    public boolean isTransparent(final Integer bloxelType) {
+      return bloxelType == 6 || bloxelType == 8;
+    }
+  };
+
+  public static void main(final String[] args) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    // room for the neighbors
+    grid.setGridSize(CHUNKS + 4, 2 * HEIGHT + 4, CHUNKS + 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new BlockmaniaTerrainLoader("jme".hashCode()));
+    grid.init();
+    final BufferPool pool = new BufferPool(64 * 1024 * 1024);
+    for (final CubicMeshVolumeNode.Mode mode : CubicMeshVolumeNode.Mode.values()) {
+      for (final boolean singleMesh : new boolean[] { false, true }) {
+        run(grid, mode, singleMesh, pool);
+      }
+    }
+    System.out.println(pool);
+  }
+
+  private static void run(final VolumeGrid<Bloxel> grid, final CubicMeshVolumeNode.Mode mode,
+      final boolean singleMesh, final BufferPool pool) {
+    // warm up
+    release(pool, measure(grid, mode, singleMesh, pool));
+    long triangles = 0;
+    long bytes = 0;
+    int drawCalls = 0;
+    final long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      triangles = 0;
+      bytes = 0;
+      final List<Geometry> geometries = measure(grid, mode, singleMesh, pool);
+      drawCalls = geometries.size();
+      for (final Geometry geometry : geometries) {
+        final Mesh mesh = geometry.getMesh();
+        triangles += mesh.getTriangleCount();
+        for (final VertexBuffer.Type type : VertexBuffer.Type.values()) {
+          final VertexBuffer buffer = mesh.getBuffer(type);
+          if (buffer != null) {
+            bytes += buffer.getData().limit() * buffer.getFormat().getComponentSize();
+          }
+        }
+      }
+      release(pool, geometries);
+    }
+    System.out.println(format("%-8s %-8s %6d draw calls %8d triangles %10d bytes %8.2fms", mode,
+        singleMesh ? "single" : "per type", drawCalls, triangles, bytes, (System.nanoTime() - start) / 1e6 / ROUNDS));
+  }
+
+  private static List<Geometry> measure(final VolumeGrid<Bloxel> grid, final CubicMeshVolumeNode.Mode mode,
+      final boolean singleMesh, final BufferPool pool) {
+    final ImmutableList.Builder<Geometry> geometries = ImmutableList.builder();
+    for (int x = -CHUNKS / 2; x < CHUNKS - CHUNKS / 2; x++) {
+      for (int z = -CHUNKS / 2; z < CHUNKS - CHUNKS / 2; z++) {
+        for (int y = 0; y < HEIGHT; y++) {
+          final Volume<Bloxel> volume = grid.getVolumeWithIndex(x, y, z);
+          final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, ASSETS);
+          node.setMode(mode);
+          node.setSingleMesh(singleMesh);
+          node.setBufferPool(pool);
+          geometries.addAll(node.createGeometries(grid, volume));
+        }
+      }
+    }
+    return geometries.build();
+  }
+
+  private static void release(final BufferPool pool, final List<Geometry> geometries) {
+    for (final Geometry geometry : geometries) {
+      pool.release(geometry.getMesh());
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.jme3.material.Material;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.material.BloxelAssetManager;
+
+/**
+ * The packed vertices must decode to the same positions, normals and texture coordinates as the float vertices.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class PackedVertexFormatTest {
+
+  private static final float TILE = 1f / 16;
+
+  private static final Vector2f TILE_SIZE = new Vector2f(TILE, TILE);
+
+  /**
+   * An atlas of 16x16 tiles, each type and side has its own tile.
+   */
+  private static final BloxelAssetManager ASSETS = new BloxelAssetManager() {
+
+    private final Material atlas = new Material();
+
+    @Override
+    public Material getMaterial(final Integer bloxelType, final BloxelSide side) {
+      return null;
+    }
+
+    @Override
+    public Material getAtlasMaterial(final boolean transparent) {
+      return atlas;
+    }
+
+    @Override
+    public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
+      final float x = bloxelType * TILE;
+      final float y = side.ordinal() * TILE;
+      return ImmutableList.of(new Vector2f(x, y), new Vector2f(x + TILE, y), new Vector2f(x, y + TILE), new Vector2f(
+          x + TILE, y + TILE));
+    }
+
+    @Override
+    public boolean isTransparent(final Integer bloxelType) {
+      return bloxelType == 6 || bloxelType == 8;
+    }
+  };
+
+  private static float get(final Mesh mesh, final VertexBuffer.Type type, final int index) {
+    return ((FloatBuffer) mesh.getBuffer(type).getData()).get(index);
+  }
+
+  private static int bytes(final Mesh mesh) {
+    int bytes = 0;
+    for (final VertexBuffer buffer : mesh.getBufferList()) {
+      if (buffer.getBufferType() != VertexBuffer.Type.Index) {
+        bytes += buffer.getData().limit() * buffer.getFormat().getComponentSize();
+      }
+    }
+    return bytes;
+  }
+
+  private static List<Geometry> tesselate(final CubicMeshVolumeNode.Mode mode, final boolean packed) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, ASSETS);
+    node.setMode(mode);
+    node.setPacked(packed);
+    node.setBufferPool(BufferPool.UNPOOLED);
+    return node.createGeometries(grid, volume);
+  }
+
+  private static void assertPacked(final CubicMeshVolumeNode.Mode mode) {
+    final List<Geometry> floats = tesselate(mode, false);
+    final List<Geometry> packed = tesselate(mode, true);
+    assertEquals(packed.size(), floats.size());
+    for (int g = 0; g < floats.size(); g++) {
+      final Mesh expected = floats.get(g).getMesh();
+      final Mesh actual = packed.get(g).getMesh();
+      assertEquals(actual.getVertexCount(), expected.getVertexCount());
+      assertEquals(actual.getTriangleCount(), expected.getTriangleCount());
+      assertTrue(4 * bytes(actual) <= bytes(expected), bytes(actual) + " packed vs " + bytes(expected));
+      for (int v = 0; v < expected.getVertexCount(); v++) {
+        final Vector3f position = PackedVertexFormat.getPosition(actual, v);
+        assertEquals(position.x, get(expected, VertexBuffer.Type.Position, 3 * v));
+        assertEquals(position.y, get(expected, VertexBuffer.Type.Position, 3 * v + 1));
+        assertEquals(position.z, get(expected, VertexBuffer.Type.Position, 3 * v + 2));
+        final Vector3f normal = PackedVertexFormat.getNormal(actual, v);
+        assertEquals(normal.x, get(expected, VertexBuffer.Type.Normal, 3 * v));
+        assertEquals(normal.y, get(expected, VertexBuffer.Type.Normal, 3 * v + 1));
+        assertEquals(normal.z, get(expected, VertexBuffer.Type.Normal, 3 * v + 2));
+        final Vector2f texCoord = PackedVertexFormat.getTexCoord(actual, v);
+        final float[] tile = PackedVertexFormat.getTile(actual, v, TILE_SIZE);
+        if (mode == CubicMeshVolumeNode.Mode.GREEDY) {
+          assertEquals(texCoord.x, get(expected, VertexBuffer.Type.TexCoord, 2 * v));
+          assertEquals(texCoord.y, get(expected, VertexBuffer.Type.TexCoord, 2 * v + 1));
+          for (int i = 0; i < 4; i++) {
+            assertEquals(tile[i], get(expected, VertexBuffer.Type.TexCoord2, 4 * v + i), 1e-6f);
+          }
+        } else {
+          // per face the float vertices have the atlas coordinates, the shader computes them from tile and face
+          assertEquals(tile[0] + texCoord.x * tile[2], get(expected, VertexBuffer.Type.TexCoord, 2 * v), 1e-6f);
+          assertEquals(tile[1] + texCoord.y * tile[3], get(expected, VertexBuffer.Type.TexCoord, 2 * v + 1), 1e-6f);
+        }
+      }
+    }
+  }
+
+  public void testGreedy() {
+    assertPacked(CubicMeshVolumeNode.Mode.GREEDY);
+  }
+
+  public void testPerFace() {
+    assertPacked(CubicMeshVolumeNode.Mode.PER_FACE);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooLarge() {
+    PackedVertexFormat.put(ByteBuffer.allocate(4), ByteBuffer.allocate(4), 256, 0, 0, 0, 0, 0,
+        new float[] { 0, 0, 1, 1 }, 0);
+  }
+}
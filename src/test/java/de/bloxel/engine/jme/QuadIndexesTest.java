@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.testng.annotations.Test;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class QuadIndexesTest {
+
+  /**
+   * Every mesh of a tesselated random volume must have the quad indexes in a buffer of the given type.
+   */
+  private static void assertIndexes(final int volumeSize, final Class<?> indexType) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(volumeSize);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+    node.setBufferPool(BufferPool.UNPOOLED);
+    for (final Geometry geometry : node.createGeometries(grid, volume)) {
+      final Mesh mesh = geometry.getMesh();
+      final VertexBuffer indexes = mesh.getBuffer(VertexBuffer.Type.Index);
+      assertTrue(indexType.isInstance(indexes.getData()), indexes.getData().toString());
+      assertEquals(indexes.getData().limit(), 6 * mesh.getVertexCount() / 4);
+      for (int i = 0; i < indexes.getData().limit(); i++) {
+        final int index = indexes.getData() instanceof ShortBuffer ? ((ShortBuffer) indexes.getData()).get(i) & 0xffff
+            : ((IntBuffer) indexes.getData()).get(i);
+        assertEquals(index, 4 * (i / 6) + new int[] { 2, 0, 1, 1, 3, 2 }[i % 6]);
+      }
+    }
+  }
+
+  public void testIntIndexes() {
+    // more than 65536 vertices per mesh
+    assertIndexes(32, IntBuffer.class);
+  }
+
+  public void testSharedIndexes() {
+    assertIndexes(16, ShortBuffer.class);
+  }
+
+  public void testSameIndexes() {
+    final ShortBuffer shorts = QuadIndexes.shortBuffer(QuadIndexes.MAX_QUADS);
+    final IntBuffer ints = IntBuffer.allocate(QuadIndexes.indexCount(QuadIndexes.MAX_QUADS));
+    QuadIndexes.put(ints, 0, 10);
+    QuadIndexes.put(ints, 10, QuadIndexes.MAX_QUADS);
+    ints.flip();
+    assertEquals(shorts.limit(), ints.limit());
+    for (int i = 0; i < ints.limit(); i++) {
+      assertEquals(shorts.get(i) & 0xffff, ints.get(i));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooManyQuads() {
+    QuadIndexes.shortBuffer(QuadIndexes.MAX_QUADS + 1);
+  }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static java.lang.String.format;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BlockmaniaTerrainLoader;
+
+/**
+ * Measures the edit to visible latency of single bloxel edits on 32x32x32 volumes: {@link VolumeGrid#set} and
+ * {@link SectionRemesher#remesh()} (tesselate the changed sections and patch the geometries) compared with a
+ * tesselation of the whole volume. Prints the average and the maximum latency per section height and
+ * {@link CubicMeshVolumeNode.Mode}.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class RemeshBenchmark {
+
+  private static final int SIZE = 32;
+  private static final int EDITS = 2000;
+
+  public static void main(final String[] args) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(6, 6, 6);
+    grid.setVolumeSize(SIZE);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new BlockmaniaTerrainLoader("jme".hashCode()));
+    grid.init();
+    // the surface is in the volumes of the first layer
+    final Volume<Bloxel> center = grid.getVolumeWithIndex(0, 0, 0);
+    final BufferPool pool = new BufferPool(64 * 1024 * 1024);
+    for (final CubicMeshVolumeNode.Mode mode : CubicMeshVolumeNode.Mode.values()) {
+      for (final int sectionHeight : new int[] { SIZE, 8, 4 }) {
+        final SectionRemesher remesher = new SectionRemesher();
+        grid.addVolumeListener(remesher);
+        final List<CubicMeshVolumeNode> nodes = Lists.newArrayList();
+        for (final Volume<Bloxel> volume : Arrays.asList(center, grid.getNeighbor(center, 1, 0, 0),
+            grid.getNeighbor(center, -1, 0, 0), grid.getNeighbor(center, 0, 1, 0), grid.getNeighbor(center, 0, -1, 0),
+            grid.getNeighbor(center, 0, 0, 1), grid.getNeighbor(center, 0, 0, -1))) {
+          if (volume == null) {
+            continue;
+          }
+          final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+          node.setMode(mode);
+          node.setSectionHeight(sectionHeight);
+          node.setBufferPool(pool);
+          node.calculate();
+          node.update();
+          remesher.add(node);
+          nodes.add(node);
+        }
+        final CubicMeshVolumeNode node = nodes.get(0);
+        long full = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+          node.invalidate();
+          node.calculate();
+          node.update();
+        }
+        full = (System.nanoTime() - full) / 20;
+        final Random random = new Random(42);
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < EDITS; i++) {
+          final int x = random.nextInt(SIZE);
+          final int y = random.nextInt(SIZE);
+          final int z = random.nextInt(SIZE);
+          final Bloxel old = center.get(x, y, z);
+          final Bloxel bloxel = old.getType() == Bloxel.AIR.getType() ? new Bloxel(1) : Bloxel.AIR;
+          final long start = System.nanoTime();
+          grid.set(center, x, y, z, bloxel);
+          remesher.remesh();
+          final long latency = System.nanoTime() - start;
+          // undo, all runs see the same terrain
+          grid.set(center, x, y, z, old);
+          remesher.remesh();
+          // the first edits warm up
+          if (i >= EDITS / 10) {
+            total += latency;
+            max = Math.max(max, latency);
+          }
+        }
+        System.out.println(format("%-8s sections %2d: full %7.3fms, edit avg %7.3fms max %7.3fms", mode, sectionHeight,
+            full / 1e6, total / 1e6 / (EDITS - EDITS / 10), max / 1e6));
+        grid.removeVolumeListener(remesher);
+        for (final CubicMeshVolumeNode n : nodes) {
+          n.dispose();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+
+/**
+ * The patched geometries after edits must be the same as a new tesselation of the changed volumes.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class SectionRemesherTest {
+
+  private static final int[] TYPES = { 0, 1, 2, 6, 8 };
+
+  private static String dump(final Buffer data) {
+    if (data instanceof FloatBuffer) {
+      final float[] values = new float[data.limit()];
+      ((FloatBuffer) data.duplicate().rewind()).get(values);
+      return Arrays.toString(values);
+    }
+    if (data instanceof ByteBuffer) {
+      final byte[] values = new byte[data.limit()];
+      ((ByteBuffer) data.duplicate().rewind()).get(values);
+      return Arrays.toString(values);
+    }
+    if (data instanceof ShortBuffer) {
+      final short[] values = new short[data.limit()];
+      ((ShortBuffer) data.duplicate().rewind()).get(values);
+      return Arrays.toString(values);
+    }
+    final int[] values = new int[data.limit()];
+    ((IntBuffer) data.duplicate().rewind()).get(values);
+    return Arrays.toString(values);
+  }
+
+  /**
+   * @return mesh id to the content of all vertex buffers
+   */
+  private static Map<Integer, String> dump(final List<? extends Spatial> geometries) {
+    final Map<Integer, String> result = Maps.newTreeMap();
+    for (final Spatial spatial : geometries) {
+      final Mesh mesh = ((Geometry) spatial).getMesh();
+      final StringBuilder content = new StringBuilder();
+      for (final VertexBuffer.Type type : VertexBuffer.Type.values()) {
+        final VertexBuffer buffer = mesh.getBuffer(type);
+        content.append(type).append('=').append(buffer == null ? "-" : dump(buffer.getData())).append('\n');
+      }
+      result.put(spatial.<Integer> getUserData(AbstractVolumeNode.MESH_ID), content.toString());
+    }
+    return result;
+  }
+
+  private static CubicMeshVolumeNode node(final VolumeGrid<Bloxel> grid, final Volume<Bloxel> volume,
+      final CubicMeshVolumeNode.Mode mode, final boolean packed, final BufferPool pool) {
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, MeshingBenchmark.ASSETS);
+    node.setMode(mode);
+    node.setPacked(packed);
+    node.setSectionHeight(4);
+    node.setBufferPool(pool);
+    return node;
+  }
+
+  private static void assertRemesh(final CubicMeshVolumeNode.Mode mode, final boolean packed) {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final BufferPool pool = new BufferPool(1 << 20);
+    final SectionRemesher remesher = new SectionRemesher();
+    grid.addVolumeListener(remesher);
+    final Volume<Bloxel> center = grid.getVolumeWithIndex(0, 0, 0);
+    final List<CubicMeshVolumeNode> nodes = Lists.newArrayList(node(grid, center, mode, packed, pool));
+    for (final int[] n : new int[][] { { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 },
+        { 0, 0, -1 } }) {
+      final Volume<Bloxel> neighbor = grid.getNeighbor(center, n[0], n[1], n[2]);
+      if (neighbor != null) {
+        nodes.add(node(grid, neighbor, mode, packed, pool));
+      }
+    }
+    for (final CubicMeshVolumeNode node : nodes) {
+      node.calculate();
+      node.update();
+      remesher.add(node);
+    }
+    final Random random = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 5; i++) {
+        // many edits on the border
+        final int x = random.nextBoolean() ? 0 : random.nextInt(16);
+        final int y = random.nextBoolean() ? 15 : random.nextInt(16);
+        final int z = random.nextInt(16);
+        final int type = TYPES[random.nextInt(TYPES.length)];
+        grid.set(center, x, y, z, type == 0 ? Bloxel.AIR : new Bloxel(type));
+      }
+      remesher.remesh();
+      for (final CubicMeshVolumeNode node : nodes) {
+        final CubicMeshVolumeNode fresh = node(grid, node.getVolume(), mode, packed, BufferPool.UNPOOLED);
+        assertEquals(dump(((Node) node.getChild("volume")).getChildren()),
+            dump(fresh.createGeometries(grid, node.getVolume())), mode + " round " + round);
+      }
+    }
+  }
+
+  public void testGreedy() {
+    assertRemesh(CubicMeshVolumeNode.Mode.GREEDY, false);
+  }
+
+  public void testPacked() {
+    assertRemesh(CubicMeshVolumeNode.Mode.GREEDY, true);
+  }
+
+  public void testPerFace() {
+    assertRemesh(CubicMeshVolumeNode.Mode.PER_FACE, false);
+  }
+
+  /**
+   * After a mode change the next edit must tesselate the whole volume in the new mode.
+   */
+  public void testModeChange() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final SectionRemesher remesher = new SectionRemesher();
+    grid.addVolumeListener(remesher);
+    final Volume<Bloxel> center = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = node(grid, center, CubicMeshVolumeNode.Mode.PER_FACE, false,
+        BufferPool.UNPOOLED);
+    node.calculate();
+    node.update();
+    remesher.add(node);
+    node.setMode(CubicMeshVolumeNode.Mode.GREEDY);
+    grid.set(center, 8, 8, 8, new Bloxel(1));
+    remesher.remesh();
+    node.calculate();
+    node.update();
+    final CubicMeshVolumeNode fresh = node(grid, center, CubicMeshVolumeNode.Mode.GREEDY, false, BufferPool.UNPOOLED);
+    assertEquals(dump(((Node) node.getChild("volume")).getChildren()), dump(fresh.createGeometries(grid, center)));
+  }
+
+  /**
+   * An edit inside the volume changes only its node, an edit on the border the neighbor node too.
+   */
+  public void testRemeshNeighbor() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final SectionRemesher remesher = new SectionRemesher();
+    grid.addVolumeListener(remesher);
+    final Volume<Bloxel> center = grid.getVolumeWithIndex(0, 0, 0);
+    final Volume<Bloxel> right = grid.getNeighbor(center, 1, 0, 0);
+    for (final Volume<Bloxel> volume : Arrays.asList(center, right)) {
+      final CubicMeshVolumeNode node = node(grid, volume, CubicMeshVolumeNode.Mode.PER_FACE, false,
+          BufferPool.UNPOOLED);
+      node.calculate();
+      node.update();
+      remesher.add(node);
+    }
+    grid.set(center, 8, 8, 8, new Bloxel(1));
+    assertEquals(remesher.remesh(), 1);
+    grid.set(center, 15, 8, 8, Bloxel.AIR);
+    assertEquals(remesher.remesh(), 2);
+    assertEquals(remesher.remesh(), 0);
+  }
+
+  /**
+   * An edit on the border must not load a neighbor volume, and a removed node gets no edits.
+   */
+  public void testUnloadedNeighbor() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(16);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new FaceCullingTest.RandomLoader());
+    grid.init();
+    final SectionRemesher remesher = new SectionRemesher();
+    grid.addVolumeListener(remesher);
+    final Volume<Bloxel> center = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = node(grid, center, CubicMeshVolumeNode.Mode.PER_FACE, false,
+        BufferPool.UNPOOLED);
+    remesher.add(node);
+    grid.set(center, 0, 0, 15, new Bloxel(1));
+    assertEquals(grid.getFilledVolumes(), 1);
+    assertEquals(remesher.remesh(), 1);
+    remesher.remove(node);
+    grid.set(center, 8, 8, 8, new Bloxel(1));
+    assertEquals(remesher.remesh(), 0);
+  }
+}
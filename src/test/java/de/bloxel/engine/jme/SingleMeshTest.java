@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.jme;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.jme3.material.Material;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BloxelLoader;
+import de.bloxel.engine.material.BloxelAssetManager;
+import de.bloxel.engine.material.BloxelAssetManager.BloxelSide;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class SingleMeshTest {
+
+  /**
+   * Assets with one material per bloxel type and optional atlas materials, like the image atlas (with) and the color
+   * (without) asset manager.
+   */
+  private static class Assets implements BloxelAssetManager {
+
+    private final Map<Integer, Material> materials = Maps.newHashMap();
+    private final Material opaque;
+    private final Material transparent;
+
+    Assets(final boolean atlas) {
+      opaque = atlas ? new Material() : null;
+      transparent = atlas ? new Material() : null;
+      for (final int type : TYPES) {
+        materials.put(type, new Material());
+      }
+    }
+
+    @Override
+    public Material getAtlasMaterial(final boolean transparentMesh) {
+      return transparentMesh ? transparent : opaque;
+    }
+
+    @Override
+    public Material getMaterial(final Integer bloxelType, final BloxelSide side) {
+      return materials.get(bloxelType);
+    }
+
+    @Override
+    public ImmutableList<Vector2f> getTextureCoordinates(final Integer bloxelType, final BloxelSide side) {
+      return ImmutableList.of(new Vector2f(0, 0), new Vector2f(1, 0), new Vector2f(0, 1), new Vector2f(1, 1));
+    }
+
+    @Override
+    public boolean isTransparent(final Integer bloxelType) {
+      return bloxelType == 6;
+    }
+  }
+
+  // several opaque types and one transparent type
+  private static final int[] TYPES = { 1, 2, 3, 6 };
+
+  private static VolumeGrid<Bloxel> grid() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(2, 2, 2);
+    grid.setVolumeSize(8);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new BloxelLoader() {
+
+      @Override
+      public void fill(final Volume<Bloxel> volume) {
+        for (int x = 0; x < volume.getSizeX(); x++) {
+          for (int y = 0; y < volume.getSizeY(); y++) {
+            for (int z = 0; z < volume.getSizeZ(); z++) {
+              if ((x + y + z) % 3 == 0) {
+                volume.set(x, y, z, new Bloxel(TYPES[(x + 2 * z) % TYPES.length]));
+              }
+            }
+          }
+        }
+      }
+    });
+    grid.init();
+    return grid;
+  }
+
+  private static List<Geometry> geometries(final Assets assets, final CubicMeshVolumeNode.Mode mode) {
+    final VolumeGrid<Bloxel> grid = grid();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, volume, null, assets);
+    node.setMode(mode);
+    node.setSingleMesh(true);
+    return node.createGeometries(grid, volume);
+  }
+
+  @Test
+  public void testAtlasMaterial() {
+    final Assets assets = new Assets(true);
+    for (final CubicMeshVolumeNode.Mode mode : CubicMeshVolumeNode.Mode.values()) {
+      final List<Geometry> geometries = geometries(assets, mode);
+      final Set<Integer> meshIds = Sets.newHashSet();
+      for (final Geometry geometry : geometries) {
+        final int meshId = geometry.<Integer> getUserData(AbstractVolumeNode.MESH_ID);
+        meshIds.add(meshId);
+        assertSame(geometry.getMaterial(), meshId == CubicMeshVolumeNode.TRANSPARENT_MESH ? assets.transparent
+            : assets.opaque);
+      }
+      assertEquals(geometries.size(), 2, mode.toString());
+      assertEquals(meshIds, ImmutableSet.of(CubicMeshVolumeNode.OPAQUE_MESH, CubicMeshVolumeNode.TRANSPARENT_MESH));
+    }
+  }
+
+  /**
+   * Cached meshes are only valid for the same effective mode, i.e. atlas meshes only if there is an atlas material.
+   */
+  @Test
+  public void testMesherId() {
+    final VolumeGrid<Bloxel> grid = grid();
+    final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+    final CubicMeshVolumeNode atlas = new CubicMeshVolumeNode(grid, volume, null, new Assets(true));
+    final CubicMeshVolumeNode color = new CubicMeshVolumeNode(grid, volume, null, new Assets(false));
+    final String perType = color.getMesherId();
+    atlas.setSingleMesh(true);
+    color.setSingleMesh(true);
+    assertFalse(atlas.getMesherId().equals(color.getMesherId()));
+    assertEquals(color.getMesherId(), perType);
+  }
+
+  @Test
+  public void testSetSingleMeshInvalidates() {
+    final VolumeGrid<Bloxel> grid = grid();
+    final CubicMeshVolumeNode node = new CubicMeshVolumeNode(grid, grid.getVolumeWithIndex(0, 0, 0), null,
+        new Assets(true));
+    node.calculate();
+    node.update();
+    assertEquals(node.getState(), AbstractVolumeNode.State.UP2DATE);
+    node.setSingleMesh(true);
+    assertEquals(node.getState(), AbstractVolumeNode.State.DIRTY);
+    node.calculate();
+    node.update();
+    assertEquals(((Node) node.getChild("volume")).getChildren().size(), 2);
+  }
+
+  @Test
+  public void testWithoutAtlasMaterial() {
+    final Assets assets = new Assets(false);
+    for (final CubicMeshVolumeNode.Mode mode : CubicMeshVolumeNode.Mode.values()) {
+      final List<Geometry> geometries = geometries(assets, mode);
+      // one mesh per bloxel type
+      final Set<Integer> meshIds = Sets.newHashSet();
+      for (final Geometry geometry : geometries) {
+        final int meshId = geometry.<Integer> getUserData(AbstractVolumeNode.MESH_ID);
+        meshIds.add(meshId);
+        assertSame(geometry.getMaterial(), assets.materials.get(meshId));
+      }
+      assertEquals(geometries.size(), TYPES.length, mode.toString());
+      assertEquals(meshIds, ImmutableSet.of(1, 2, 3, 6));
+    }
+  }
+}
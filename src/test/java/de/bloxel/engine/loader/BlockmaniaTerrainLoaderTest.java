@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static de.bloxel.engine.loader.ParallelLoaderTest.assertSameContent;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class BlockmaniaTerrainLoaderTest {
+
+  @Test
+  public void testColumnCache() {
+    final VolumeFactory<Bloxel> factory = new ColtVolumeFactory<Bloxel>();
+    final BlockmaniaTerrainLoader cached = new BlockmaniaTerrainLoader("jme".hashCode());
+    final BlockmaniaTerrainLoader uncached = new BlockmaniaTerrainLoader("jme".hashCode(), 0);
+    for (int y = 0; y < 128; y += 32) {
+      final Volume<Bloxel> expected = factory.create(-32, y, 64, 32, 32, 32);
+      uncached.fill(expected);
+      final Volume<Bloxel> actual = factory.create(-32, y, 64, 32, 32, 32);
+      cached.fill(actual);
+      assertSameContent(actual, expected);
+    }
+    // all 4 chunks share one column
+    assertEquals(cached.getColumnCount(), 1);
+    assertEquals(uncached.getColumnCount(), 4);
+  }
+
+  @Test
+  public void testFillColumn() {
+    final VolumeFactory<Bloxel> factory = new ColtVolumeFactory<Bloxel>();
+    final BlockmaniaTerrainLoader loader = new BlockmaniaTerrainLoader("jme".hashCode());
+    final Volume<Bloxel> expected = factory.create(128, 0, -256, 32, 128, 32);
+    loader.fill(expected);
+    final List<Volume<Bloxel>> chunks = Lists.newArrayList();
+    for (final int y : new int[] { 32, 96, 0, 64 }) {
+      chunks.add(factory.create(128, y, -256, 32, 32, 32));
+    }
+    final List<Integer> filled = Lists.newArrayList();
+    loader.fillColumn(chunks, new ColumnLoader.Callback<Bloxel>() {
+
+      @Override
+      public void filled(final Volume<Bloxel> volume) {
+        filled.add(volume.getY());
+      }
+    });
+    assertEquals(filled, ImmutableList.of(96, 64, 32, 0));
+    // the stacked chunks have the same surface layers as one high chunk, single chunks have seams
+    int seams = 0;
+    for (final Volume<Bloxel> chunk : chunks) {
+      final Volume<Bloxel> single = factory.create(chunk.getX(), chunk.getY(), chunk.getZ(), 32, 32, 32);
+      loader.fill(single);
+      for (int x = 0; x < chunk.getSizeX(); x++) {
+        for (int z = 0; z < chunk.getSizeZ(); z++) {
+          for (int y = 0; y < chunk.getSizeY(); y++) {
+            final Bloxel bloxel = expected.get(x, chunk.getY() + y, z);
+            assertEquals(chunk.get(x, y, z).getType(), bloxel.getType());
+            assertEquals(chunk.get(x, y, z).getDensity(), bloxel.getDensity());
+            if (single.get(x, y, z).getType() != bloxel.getType()) {
+              seams++;
+            }
+          }
+        }
+      }
+    }
+    assertTrue(seams > 0);
+  }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BoundedLoader.Content;
+
+/**
+ * The classification of the bounded loaders must be conservative.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class BoundedLoaderTest {
+
+  private static final int SIZE = 16;
+
+  /**
+   * @return number of air chunks
+   */
+  private int assertConservative(final BoundedLoader<Bloxel> loader, final int fromY, final int toY) {
+    int air = 0;
+    for (int y = fromY; y <= toY; y += SIZE) {
+      for (int x = -64; x <= 64; x += 64) {
+        final Content content = loader.classify(x, y, x / 2, SIZE, SIZE, SIZE);
+        if (content == Content.MIXED) {
+          continue;
+        }
+        final Volume<Bloxel> volume = new ColtVolumeFactory<Bloxel>().create(x, y, x / 2, SIZE, SIZE, SIZE);
+        loader.fill(volume);
+        for (int i = 0; i < SIZE; i++) {
+          for (int j = 0; j < SIZE; j++) {
+            for (int k = 0; k < SIZE; k++) {
+              if (content == Content.AIR) {
+                assertSame(volume.get(i, j, k), Bloxel.AIR);
+              } else {
+                assertNotSame(volume.get(i, j, k), Bloxel.AIR);
+              }
+            }
+          }
+        }
+        if (content == Content.AIR) {
+          air++;
+        }
+      }
+    }
+    return air;
+  }
+
+  @Test
+  public void testBlockmania() {
+    final BlockmaniaTerrainLoader loader = new BlockmaniaTerrainLoader("jme".hashCode());
+    assertTrue(assertConservative(loader, -32, 320) > 0);
+    assertEquals(loader.classify(0, 16, 0, SIZE, 8, SIZE), Content.SOLID);
+    assertEquals(loader.classify(0, 1024, 0, SIZE, SIZE, SIZE), Content.AIR);
+    assertEquals(loader.classify(0, 0, 0, SIZE, SIZE, SIZE), Content.MIXED);
+  }
+
+  @Test
+  public void testGridSkipsAir() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(2, 64, 2);
+    grid.setVolumeSize(SIZE);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new PerlinNoiseTerrainLoader());
+    grid.init();
+    assertSame(grid.getVolumeWithIndex(0, 30, 0).get(0, 0, 0), Bloxel.AIR);
+    grid.getVolumeWithIndex(0, 0, 0);
+    assertEquals(grid.getSkippedVolumes(), 1);
+    assertEquals(grid.getFilledVolumes(), 1);
+  }
+
+  @Test
+  public void testPerlinNoise() {
+    final PerlinNoiseTerrainLoader loader = new PerlinNoiseTerrainLoader();
+    assertTrue(assertConservative(loader, 320, 480) > 0);
+    assertEquals(loader.classify(0, 512, 0, SIZE, SIZE, SIZE), Content.AIR);
+    assertEquals(loader.classify(0, 0, 0, SIZE, SIZE, SIZE), Content.MIXED);
+    final PerlinNoiseTerrainLoader sampled = new PerlinNoiseTerrainLoader(42, new DensitySampler(4, 4, 4));
+    assertTrue(assertConservative(sampled, 320, 480) > 0);
+  }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static java.lang.String.format;
+
+import cave3d.CaveScalarField;
+
+import de.bloxel.engine.math.Lattice;
+
+/**
+ * Error versus speed of the {@link DensitySampler} rates for the density sources of the loaders. The error is
+ * measured against the exact density (rate 1) of the same chunks.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class DensitySamplerReport {
+
+  private static final int SIZE = 32;
+  private static final int[][] CHUNKS = { { 0, 0, 0 }, { -32, 32, 64 }, { 96, 64, -32 }, { -512, 128, 256 } };
+  private static final int[][] RATES = { { 1, 1, 1 }, { 2, 2, 2 }, { 4, 2, 4 }, { 4, 4, 4 }, { 8, 4, 8 },
+      { 8, 8, 8 }, { 16, 8, 16 } };
+
+  public static void main(final String[] args) {
+    final PerlinNoiseTerrainLoader perlin = new PerlinNoiseTerrainLoader(42);
+    report("perlin", new DensitySampler.Source() {
+
+      @Override
+      public void sample(final Lattice samples, final float[] result) {
+        perlin.calcDensity(samples, result);
+      }
+    }, 3.1f);
+    final CaveScalarField field = new CaveScalarField(42);
+    report("scalar field", new DensitySampler.Source() {
+
+      @Override
+      public void sample(final Lattice samples, final float[] result) {
+        field.sample(samples, result);
+      }
+    }, 0);
+  }
+
+  private static void report(final String name, final DensitySampler.Source source, final float threshold) {
+    System.out.println(name);
+    final float[][] exact = new float[CHUNKS.length][SIZE * SIZE * SIZE];
+    for (int c = 0; c < CHUNKS.length; c++) {
+      DensitySampler.EXACT.sample(source, CHUNKS[c][0], CHUNKS[c][1], CHUNKS[c][2], SIZE, SIZE, SIZE, exact[c]);
+    }
+    for (final int[] rate : RATES) {
+      final DensitySampler sampler = new DensitySampler(rate[0], rate[1], rate[2]);
+      final float[] result = new float[SIZE * SIZE * SIZE];
+      // warm up
+      sampler.sample(source, 0, 0, 0, SIZE, SIZE, SIZE, result);
+      double squareError = 0;
+      double maxError = 0;
+      int wrongCells = 0;
+      long time = 0;
+      for (int c = 0; c < CHUNKS.length; c++) {
+        final long start = System.nanoTime();
+        sampler.sample(source, CHUNKS[c][0], CHUNKS[c][1], CHUNKS[c][2], SIZE, SIZE, SIZE, result);
+        time += System.nanoTime() - start;
+        for (int i = 0; i < result.length; i++) {
+          final double error = Math.abs(result[i] - exact[c][i]);
+          squareError += error * error;
+          maxError = Math.max(maxError, error);
+          if (result[i] > threshold != exact[c][i] > threshold) {
+            wrongCells++;
+          }
+        }
+      }
+      final int cells = CHUNKS.length * result.length;
+      System.out.println(format("  rate %2d/%2d/%2d %8.2fms per chunk, rms error %.5f, max error %.5f, %.2f%% cells"
+          + " with other material", rate[0], rate[1], rate[2], time / 1e6 / CHUNKS.length,
+          Math.sqrt(squareError / cells), maxError, 100.0 * wrongCells / cells));
+    }
+  }
+}
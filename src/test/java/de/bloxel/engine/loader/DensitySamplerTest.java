@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.math.Lattice;
+import de.bloxel.engine.math.MathHelper;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class DensitySamplerTest {
+
+  /**
+   * Random densities, but the same density for the same world position.
+   */
+  private static final DensitySampler.Source RANDOM = new DensitySampler.Source() {
+
+    @Override
+    public void sample(final Lattice samples, final float[] result) {
+      for (int k = 0; k < samples.getSizeZ(); k++) {
+        for (int j = 0; j < samples.getSizeY(); j++) {
+          for (int i = 0; i < samples.getSizeX(); i++) {
+            final long seed = (long) samples.getX(i) * 31 * 31 + (long) samples.getY(j) * 31 + (long) samples.getZ(k);
+            result[samples.index(i, j, k)] = new Random(seed).nextFloat();
+          }
+        }
+      }
+    }
+  };
+
+  private static final DensitySampler.Source LINEAR = new DensitySampler.Source() {
+
+    @Override
+    public void sample(final Lattice samples, final float[] result) {
+      for (int k = 0; k < samples.getSizeZ(); k++) {
+        for (int j = 0; j < samples.getSizeY(); j++) {
+          for (int i = 0; i < samples.getSizeX(); i++) {
+            result[samples.index(i, j, k)] = 0.25f * samples.getX(i) - 0.5f * samples.getY(j) + samples.getZ(k) + 3;
+          }
+        }
+      }
+    }
+  };
+
+  private static float[] sample(final DensitySampler sampler, final DensitySampler.Source source, final int size) {
+    final float[] result = new float[size * size * size];
+    sampler.sample(source, -16, 8, 32, size, size, size, result);
+    return result;
+  }
+
+  @Test
+  public void testExact() {
+    final float[] expected = new float[16 * 16 * 16];
+    RANDOM.sample(new Lattice(-16, 8, 32, 16, 16, 16), expected);
+    final float[] actual = sample(DensitySampler.EXACT, RANDOM, 16);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(actual[i], expected[i]);
+    }
+  }
+
+  @Test
+  public void testLinear() {
+    final float[] expected = sample(DensitySampler.EXACT, LINEAR, 12);
+    for (final DensitySampler sampler : new DensitySampler[] { new DensitySampler(2, 2, 2),
+        new DensitySampler(4, 8, 4), new DensitySampler(8, 1, 3) }) {
+      final float[] actual = sample(sampler, LINEAR, 12);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(actual[i], expected[i], 1e-4f);
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsTriLerp() {
+    final int size = 16;
+    final int rate = 4;
+    final float[] samples = new float[(size + 1) * (size + 1) * (size + 1)];
+    final Lattice lattice = new Lattice(-16, 8, 32, size / rate + 1, size / rate + 1, size / rate + 1, rate, rate, rate);
+    RANDOM.sample(lattice, samples);
+    final float[] actual = sample(new DensitySampler(rate, rate, rate), RANDOM, size);
+    for (int z = 0; z < size; z++) {
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          final int i = x / rate;
+          final int j = y / rate;
+          final int k = z / rate;
+          final float expected = MathHelper.triLerp(x, y, z, samples[lattice.index(i, j, k)],
+              samples[lattice.index(i, j + 1, k)], samples[lattice.index(i, j, k + 1)],
+              samples[lattice.index(i, j + 1, k + 1)], samples[lattice.index(i + 1, j, k)],
+              samples[lattice.index(i + 1, j + 1, k)], samples[lattice.index(i + 1, j, k + 1)],
+              samples[lattice.index(i + 1, j + 1, k + 1)], i * rate, i * rate + rate, j * rate, j * rate + rate, k
+                  * rate, k * rate + rate);
+          assertEquals(Float.floatToIntBits(actual[x + size * (y + size * z)]), Float.floatToIntBits(expected));
+        }
+      }
+    }
+  }
+}
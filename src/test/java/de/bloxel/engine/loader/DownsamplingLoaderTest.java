@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+
+/**
+ * Each element of a coarse volume must summarize its cube of source elements.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class DownsamplingLoaderTest {
+
+  private static final int SIZE = 16;
+
+  /**
+   * Bottom half stone (1), a column of grass (2) in the upper half, densities are the type.
+   */
+  private static class HalfLoader implements BloxelLoader {
+
+    @Override
+    public void fill(final Volume<Bloxel> volume) {
+      for (int x = 0; x < volume.getSizeX(); x++) {
+        for (int y = 0; y < volume.getSizeY(); y++) {
+          for (int z = 0; z < volume.getSizeZ(); z++) {
+            if (y < volume.getSizeY() / 2) {
+              volume.set(x, y, z, new Bloxel(1, 1));
+            } else if (x < 2 && z < 2) {
+              volume.set(x, y, z, new Bloxel(2, 2));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static VolumeGrid<Bloxel> source() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(2, 2, 2);
+    grid.setVolumeSize(SIZE);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new HalfLoader());
+    grid.init();
+    return grid;
+  }
+
+  public void testFill() {
+    final VolumeGrid<Bloxel> source = source();
+    for (final int factor : new int[] { 2, 4, 8 }) {
+      final VolumeGrid<Bloxel> coarse = DownsamplingLoader.createGrid(source, factor, 2, 2, 2, SIZE,
+          new ColtVolumeFactory<Bloxel>());
+      final Volume<Bloxel> volume = coarse.getVolumeWithIndex(-1, 1, 0);
+      assertEquals(volume.getSizeX(), SIZE / factor);
+      assertEquals(volume.getX(), -SIZE / factor);
+      assertEquals(volume.getY(), SIZE / factor);
+      final int half = SIZE / factor / 2;
+      assertEquals(volume.get(0, half - 1, 0).getType(), 1);
+      assertEquals(volume.get(0, half - 1, 0).getDensity(), 1f);
+      assertSame(volume.get(1, half, 1), Bloxel.AIR);
+      if (factor == 2) {
+        // the grass column fills the cube
+        assertEquals(volume.get(0, half, 0).getType(), 2);
+        assertEquals(volume.get(0, half, 0).getDensity(), 2f);
+      } else {
+        // 1/4 (or less) of the cube is grass
+        assertSame(volume.get(0, half, 0), Bloxel.AIR);
+      }
+    }
+  }
+
+  public void testMajority() {
+    final int air = Bloxel.AIR.getType();
+    assertEquals(DownsamplingLoader.majority(new int[] { 3, 1, 3, air, air, air, 1, 3 }), 3);
+    // ties: solid before air, the lower type between solid types
+    assertEquals(DownsamplingLoader.majority(new int[] { air, 5, air, 5 }), 5);
+    assertEquals(DownsamplingLoader.majority(new int[] { 7, 5, 5, 7 }), 5);
+    assertEquals(DownsamplingLoader.majority(new int[] { air, air, air, 5 }), air);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testFactor() {
+    new DownsamplingLoader(source(), 3);
+  }
+}
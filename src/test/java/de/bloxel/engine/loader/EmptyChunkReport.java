@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static java.lang.String.format;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.loader.BoundedLoader.Content;
+
+/**
+ * Counts the chunks of the standard world (the 33x33x33 grid of 16<sup>3</sup> chunks of the engine test) which the
+ * bounded loaders classify without sampling.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class EmptyChunkReport {
+
+  private static final int GRID = 16;
+  private static final int SIZE = 16;
+
+  public static void main(final String[] args) {
+    report("blockmania", new BlockmaniaTerrainLoader("jme".hashCode()));
+    report("perlin", new PerlinNoiseTerrainLoader());
+    report("perlin 4/4/4", new PerlinNoiseTerrainLoader(42, new DensitySampler(4, 4, 4)));
+  }
+
+  private static void report(final String name, final BoundedLoader<Bloxel> loader) {
+    final Map<Content, Integer> counts = new EnumMap<Content, Integer>(Content.class);
+    for (final Content content : Content.values()) {
+      counts.put(content, 0);
+    }
+    final long start = System.nanoTime();
+    for (int x = -GRID; x <= GRID; x++) {
+      for (int y = -GRID; y <= GRID; y++) {
+        for (int z = -GRID; z <= GRID; z++) {
+          final Content content = loader.classify(x * SIZE, y * SIZE, z * SIZE, SIZE, SIZE, SIZE);
+          counts.put(content, counts.get(content) + 1);
+        }
+      }
+    }
+    final int chunks = (2 * GRID + 1) * (2 * GRID + 1) * (2 * GRID + 1);
+    System.out.println(format("%-12s %d chunks: %d air (%.1f%%), %d solid, %d mixed, classified in %.1fms", name,
+        chunks, counts.get(Content.AIR), 100.0 * counts.get(Content.AIR) / chunks, counts.get(Content.SOLID),
+        counts.get(Content.MIXED), (System.nanoTime() - start) / 1e6));
+  }
+}
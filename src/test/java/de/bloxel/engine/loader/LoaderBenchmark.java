@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static java.lang.String.format;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cave3d.CaveScalarField;
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+
+/**
+ * Measures the fill time of the terrain loaders for different chunk sizes, serial and with {@link ParallelLoader}.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class LoaderBenchmark {
+
+  private static final int ROUNDS = 10;
+
+  public static void main(final String[] args) {
+    final int threads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final VolumeFactory<Bloxel> factory = new ColtVolumeFactory<Bloxel>();
+    final BloxelLoader[] loaders = { new BlockmaniaTerrainLoader("jme".hashCode()), new PerlinNoiseTerrainLoader(),
+        new ScalarFieldTerrainLoader(new CaveScalarField("jme".hashCode())) };
+    System.out.println(format("%d threads", threads));
+    try {
+      for (final BloxelLoader loader : loaders) {
+        final BloxelLoader parallel = new ParallelLoader(loader, factory, executor, threads, 8);
+        for (final int size : new int[] { 16, 32, 64 }) {
+          // other chunk columns for the parallel loader, the BlockmaniaTerrainLoader caches the columns
+          final double serialTime = measure(loader, factory, size, 0);
+          final double parallelTime = measure(parallel, factory, size, 1024);
+          System.out.println(format("%-30s %2d^3 serial %8.2fms parallel %8.2fms speedup %.2f", loader.getClass()
+              .getSimpleName(), size, serialTime, parallelTime, serialTime / parallelTime));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @param z
+   *          of the filled chunks, in chunks
+   * @return the fastest of {@link #ROUNDS} fills in ms, the minimum is less disturbed by GC and other processes
+   */
+  private static double measure(final BloxelLoader loader, final VolumeFactory<Bloxel> factory, final int size,
+      final int z) {
+    // warm up, one fill is not enough for the JIT and favours the second (parallel) measurement
+    for (int i = 0; i < ROUNDS; i++) {
+      loader.fill(factory.create(-(i + 1) * size, 0, z * size, size, size, size));
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      final Volume<Bloxel> volume = factory.create(i * size, 0, z * size, size, size, size);
+      final long start = System.nanoTime();
+      loader.fill(volume);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1e6;
+  }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import cave3d.CaveScalarField;
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class ParallelLoaderTest {
+
+  static void assertSameContent(final Volume<Bloxel> actual, final Volume<Bloxel> expected) {
+    for (int x = 0; x < expected.getSizeX(); x++) {
+      for (int z = 0; z < expected.getSizeZ(); z++) {
+        for (int y = 0; y < expected.getSizeY(); y++) {
+          final Bloxel a = actual.get(x, y, z);
+          final Bloxel e = expected.get(x, y, z);
+          assertEquals(a.getType(), e.getType());
+          assertEquals(Float.floatToIntBits(a.getDensity()), Float.floatToIntBits(e.getDensity()));
+        }
+      }
+    }
+  }
+
+  private void assertParallelEqualsSerial(final BloxelLoader loader, final int x, final int y, final int z,
+      final int size) {
+    final VolumeFactory<Bloxel> factory = new ColtVolumeFactory<Bloxel>();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Volume<Bloxel> serial = factory.create(x, y, z, size, size, size);
+      loader.fill(serial);
+      final Volume<Bloxel> parallel = factory.create(x, y, z, size, size, size);
+      new ParallelLoader(loader, factory, executor, 4, 8).fill(parallel);
+      assertSameContent(parallel, serial);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testBlockmania() {
+    assertParallelEqualsSerial(new BlockmaniaTerrainLoader("jme".hashCode()), -32, 16, 32, 32);
+    assertParallelEqualsSerial(new BlockmaniaTerrainLoader("jme".hashCode()), 0, -16, 0, 16);
+  }
+
+  @Test
+  public void testPerlinNoise() {
+    assertParallelEqualsSerial(new PerlinNoiseTerrainLoader(), -16, 0, 16, 32);
+  }
+
+  @Test
+  public void testScalarField() {
+    final CaveScalarField field = new CaveScalarField("jme".hashCode());
+    assertParallelEqualsSerial(new ScalarFieldTerrainLoader(field), -16, 0, 16, 32);
+    // the slices share the samples on their borders
+    assertParallelEqualsSerial(new ScalarFieldTerrainLoader(field, new DensitySampler(4, 4, 4)), -32, 16, 0, 32);
+  }
+}
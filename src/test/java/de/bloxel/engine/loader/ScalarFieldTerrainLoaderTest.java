@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static de.bloxel.engine.loader.ParallelLoaderTest.assertSameContent;
+
+import org.testng.annotations.Test;
+
+import cave3d.CaveScalarField;
+import cave3d.ScalarFieldDensity;
+
+import com.jme3.math.Vector3f;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeFactory;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class ScalarFieldTerrainLoaderTest {
+
+  @Test
+  public void testFill() {
+    final CaveScalarField field = new CaveScalarField(42);
+    final VolumeFactory<Bloxel> factory = new ColtVolumeFactory<Bloxel>();
+    final Volume<Bloxel> expected = factory.create(-8, 16, 24, 16, 16, 16);
+    for (int z = 0; z < 16; z++) {
+      for (int y = 0; y < 16; y++) {
+        for (int x = 0; x < 16; x++) {
+          final float density = field.calculate(new Vector3f(x - 8, y + 16, z + 24));
+          if (density > 0) {
+            expected.set(x, y, z, new Bloxel(z % 7 + 1, density));
+          }
+        }
+      }
+    }
+    final Volume<Bloxel> actual = factory.create(-8, 16, 24, 16, 16, 16);
+    new ScalarFieldTerrainLoader(field).fill(actual);
+    assertSameContent(actual, expected);
+    final Volume<Bloxel> adapted = factory.create(-8, 16, 24, 16, 16, 16);
+    new ScalarFieldTerrainLoader(new ScalarFieldDensity(field)).fill(adapted);
+    assertSameContent(adapted, expected);
+  }
+}
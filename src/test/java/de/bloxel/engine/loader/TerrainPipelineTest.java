@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class TerrainPipelineTest {
+
+  private static final class RecordingStage implements TerrainStage {
+
+    private final String name;
+    private final List<String> calls;
+
+    RecordingStage(final String name, final List<String> calls) {
+      this.name = name;
+      this.calls = calls;
+    }
+
+    @Override
+    public void apply(final ChunkBuffer buffer) {
+      calls.add(name);
+      for (int j = 0; j < buffer.getSizeY(); j++) {
+        if (buffer.isEmpty(j)) {
+          continue;
+        }
+        // top layer is empty, all other layers get the type of the stage
+        if (buffer.getY() + j == 15) {
+          buffer.markEmpty(j);
+          continue;
+        }
+        buffer.set(0, j, 0, calls.size(), j);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  @Test
+  public void testStages() {
+    final List<String> calls = Lists.newArrayList();
+    final TerrainPipeline pipeline = new TerrainPipeline(ImmutableList.of(new RecordingStage("first", calls),
+        new RecordingStage("second", calls)));
+    for (int n = 0; n < 2; n++) {
+      final Volume<Bloxel> volume = new ColtVolumeFactory<Bloxel>().create(0, 0, 0, 4, 16, 4);
+      pipeline.fill(volume);
+      for (int y = 0; y < 15; y++) {
+        assertEquals(volume.get(0, y, 0).getType(), calls.size());
+        assertEquals(volume.get(0, y, 0).getDensity(), (float) y);
+      }
+      assertEquals(volume.get(0, 15, 0), Bloxel.AIR);
+      assertEquals(volume.get(1, 0, 0), Bloxel.AIR);
+    }
+    assertEquals(calls, ImmutableList.of("first", "second", "first", "second"));
+    assertEquals(pipeline.getChunkCount(), 2);
+    assertEquals(ImmutableList.copyOf(pipeline.getTimes().keySet()), ImmutableList.of("first", "second"));
+    // a fast stage can take less than the timer resolution
+    for (final double millis : pipeline.getTimes().values()) {
+      assertTrue(millis >= 0);
+    }
+  }
+
+  @Test
+  public void testBlockmaniaStages() {
+    final BlockmaniaTerrainLoader loader = new BlockmaniaTerrainLoader("jme".hashCode());
+    loader.fill(new ColtVolumeFactory<Bloxel>().create(0, 0, 0, 16, 16, 16));
+    assertEquals(ImmutableList.copyOf(loader.getPipeline().getTimes().keySet()),
+        ImmutableList.of("density", "caves", "fluids", "surface"));
+  }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.loader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.region.RegionStore;
+import de.bloxel.engine.tools.VoxelImporter;
+
+/**
+ * Imports small datasets with the {@link VoxelImporter} and loads them with a {@link RegionFileLoader}.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class VoxelImporterTest {
+
+  private static final int SIZE_X = 20;
+  private static final int SIZE_Y = 10;
+  private static final int SIZE_Z = 18;
+
+  private static void delete(final File file, final File directory) {
+    file.delete();
+    if (directory.exists()) {
+      for (final File f : directory.listFiles()) {
+        f.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * @return the dense dataset, a block of type 5 in the middle spans two slabs (runs longer than 255 voxels)
+   */
+  private static byte[] dataset() {
+    final byte[] voxels = new byte[SIZE_X * SIZE_Y * SIZE_Z];
+    for (int z = 0; z < SIZE_Z; z++) {
+      for (int y = 0; y < SIZE_Y; y++) {
+        for (int x = 0; x < SIZE_X; x++) {
+          voxels[(z * SIZE_Y + y) * SIZE_X + x] = (byte) (z >= 4 && z < 12 ? 5 : (x + y + z) % 4);
+        }
+      }
+    }
+    return voxels;
+  }
+
+  private static void importDataset(final File in, final File out, final String format, final String dims)
+      throws Exception {
+    VoxelImporter.main(new String[] { "--in", in.getPath(), "--out", out.getPath(), "--dims", dims, "--format",
+        format, "--size", "8", "--threads", "2" });
+  }
+
+  private static byte[] runLengthEncoded(final byte[] voxels) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < voxels.length;) {
+      int count = 1;
+      while (count < 255 && i + count < voxels.length && voxels[i + count] == voxels[i]) {
+        count++;
+      }
+      out.write(count);
+      out.write(voxels[i]);
+      i += count;
+    }
+    return out.toByteArray();
+  }
+
+  private static File tempDirectory() throws IOException {
+    final File directory = File.createTempFile("bloxel-region", "");
+    directory.delete();
+    return directory;
+  }
+
+  private static File tempFile(final byte[] content) throws IOException {
+    final File file = File.createTempFile("bloxel", ".voxels");
+    final FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private static void verify(final File directory, final byte[] voxels) throws IOException {
+    final RegionStore store = new RegionStore(directory, 8, 8, 8);
+    try {
+      final RegionFileLoader loader = new RegionFileLoader(store, new BloxelLoader() {
+
+        @Override
+        public void fill(final Volume<Bloxel> volume) {
+          fail("chunk " + volume + " was not imported");
+        }
+      });
+      for (int cz = 0; cz < 3; cz++) {
+        for (int cy = 0; cy < 2; cy++) {
+          for (int cx = 0; cx < 3; cx++) {
+            final Volume<Bloxel> volume = new ColtVolumeFactory<Bloxel>().create(cx * 8, cy * 8, cz * 8, 8, 8, 8);
+            loader.fill(volume);
+            for (int z = 0; z < 8; z++) {
+              for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                  final int vx = cx * 8 + x;
+                  final int vy = cy * 8 + y;
+                  final int vz = cz * 8 + z;
+                  // voxels outside of the dataset are air
+                  final int value = vx < SIZE_X && vy < SIZE_Y && vz < SIZE_Z ? voxels[(vz * SIZE_Y + vy) * SIZE_X
+                      + vx] : 0;
+                  assertEquals(volume.get(x, y, z).getType(), value == 0 ? Bloxel.AIR.getType() : value);
+                }
+              }
+            }
+          }
+        }
+      }
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testRaw() throws Exception {
+    final byte[] voxels = dataset();
+    final File in = tempFile(voxels);
+    final File out = tempDirectory();
+    try {
+      importDataset(in, out, "raw", SIZE_X + "," + SIZE_Y + "," + SIZE_Z);
+      verify(out, voxels);
+    } finally {
+      delete(in, out);
+    }
+  }
+
+  @Test
+  public void testRunLength() throws Exception {
+    final byte[] voxels = dataset();
+    final File in = tempFile(runLengthEncoded(voxels));
+    final File out = tempDirectory();
+    try {
+      importDataset(in, out, "rle", SIZE_X + "," + SIZE_Y + "," + SIZE_Z);
+      verify(out, voxels);
+    } finally {
+      delete(in, out);
+    }
+  }
+
+  @Test(expectedExceptions = EOFException.class)
+  public void testRawTooShort() throws Exception {
+    final File in = tempFile(dataset());
+    final File out = tempDirectory();
+    try {
+      // the dataset has only 18 slices
+      importDataset(in, out, "raw", SIZE_X + "," + SIZE_Y + ",19");
+    } finally {
+      delete(in, out);
+    }
+  }
+
+  @Test(expectedExceptions = EOFException.class)
+  public void testRunLengthTruncated() throws Exception {
+    final byte[] encoded = runLengthEncoded(dataset());
+    final File in = tempFile(Arrays.copyOf(encoded, encoded.length - 2));
+    final File out = tempDirectory();
+    try {
+      importDataset(in, out, "rle", SIZE_X + "," + SIZE_Y + "," + SIZE_Z);
+    } finally {
+      delete(in, out);
+    }
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testRunLengthZeroRun() throws Exception {
+    // complete without the run of length 0
+    final File in = tempFile(new byte[] { 0, 1, 64, 1 });
+    final File out = tempDirectory();
+    try {
+      importDataset(in, out, "rle", "4,4,4");
+    } finally {
+      delete(in, out);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongDimensions() throws Exception {
+    final File in = tempFile(dataset());
+    final File out = tempDirectory();
+    try {
+      importDataset(in, out, "raw", SIZE_X + "," + SIZE_Y);
+    } finally {
+      delete(in, out);
+    }
+  }
+}
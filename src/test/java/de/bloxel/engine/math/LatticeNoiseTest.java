@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+/**
+ * The batch noise functions must return exactly the same values as the per point functions.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class LatticeNoiseTest {
+
+  private static final Lattice LATTICE = new Lattice(-20, -5, 7, 13, 6, 9, 3, 4, 5).scale(0.013f, 0.021f, 0.017f)
+      .offset(0.5f, -1.25f, 3f);
+
+  @Test
+  public void testPerlinMultiFractalNoise() {
+    final PerlinNoise noise = new PerlinNoise(42);
+    final float[] result = new float[LATTICE.size()];
+    noise.multiFractalNoise(LATTICE, 7, 2.151421f, result);
+    for (int k = 0; k < LATTICE.getSizeZ(); k++) {
+      for (int j = 0; j < LATTICE.getSizeY(); j++) {
+        for (int i = 0; i < LATTICE.getSizeX(); i++) {
+          assertEquals(result[LATTICE.index(i, j, k)],
+              noise.multiFractalNoise(LATTICE.getX(i), LATTICE.getY(j), LATTICE.getZ(k), 7, 2.151421f));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPerlinNoise() {
+    final PerlinNoise noise = new PerlinNoise(42, 6, 0.6f);
+    final Lattice lattice = LATTICE.frequency(11.4f, 11.4f, 11.4f);
+    final float[] result = new float[lattice.size()];
+    noise.noise(lattice, result);
+    for (int k = 0; k < lattice.getSizeZ(); k++) {
+      for (int j = 0; j < lattice.getSizeY(); j++) {
+        for (int i = 0; i < lattice.getSizeX(); i++) {
+          assertEquals(result[lattice.index(i, j, k)], noise.noise(lattice.getX(i), lattice.getY(j), lattice.getZ(k)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSimplexNoise() {
+    final SimplexNoise3 noise = new SimplexNoise3(42);
+    final float[] result = new float[LATTICE.size()];
+    noise.simplexNoise(5, LATTICE, result);
+    for (int k = 0; k < LATTICE.getSizeZ(); k++) {
+      for (int j = 0; j < LATTICE.getSizeY(); j++) {
+        for (int i = 0; i < LATTICE.getSizeX(); i++) {
+          assertEquals(result[LATTICE.index(i, j, k)],
+              noise.simplex_noise(5, LATTICE.getX(i), LATTICE.getY(j), LATTICE.getZ(k)));
+        }
+      }
+    }
+  }
+}
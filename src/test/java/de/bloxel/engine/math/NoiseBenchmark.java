@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static java.lang.String.format;
+
+/**
+ * Compares the batch noise functions with the per point functions for a 32<sup>3</sup> lattice.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+public class NoiseBenchmark {
+
+  private interface Run {
+
+    float run();
+  }
+
+  private static final int ROUNDS = 20;
+
+  public static void main(final String[] args) {
+    final PerlinNoise perlin = new PerlinNoise(42);
+    final SimplexNoise3 simplex = new SimplexNoise3(42);
+    final Lattice lattice = new Lattice(-16, 0, 16, 32, 32, 32).scale(0.0007f, 0.0009f, 0.0007f).frequency(22.3f,
+        22.3f, 22.3f);
+    final float[] result = new float[lattice.size()];
+    compare("PerlinNoise.noise", new Run() {
+
+      @Override
+      public float run() {
+        float sum = 0;
+        for (int k = 0; k < lattice.getSizeZ(); k++) {
+          for (int j = 0; j < lattice.getSizeY(); j++) {
+            for (int i = 0; i < lattice.getSizeX(); i++) {
+              sum += perlin.noise(lattice.getX(i), lattice.getY(j), lattice.getZ(k));
+            }
+          }
+        }
+        return sum;
+      }
+    }, new Run() {
+
+      @Override
+      public float run() {
+        perlin.noise(lattice, result);
+        return result[0];
+      }
+    });
+    compare("PerlinNoise.multiFractalNoise", new Run() {
+
+      @Override
+      public float run() {
+        float sum = 0;
+        for (int k = 0; k < lattice.getSizeZ(); k++) {
+          for (int j = 0; j < lattice.getSizeY(); j++) {
+            for (int i = 0; i < lattice.getSizeX(); i++) {
+              sum += perlin.multiFractalNoise(lattice.getX(i), lattice.getY(j), lattice.getZ(k), 7, 2.151421f);
+            }
+          }
+        }
+        return sum;
+      }
+    }, new Run() {
+
+      @Override
+      public float run() {
+        perlin.multiFractalNoise(lattice, 7, 2.151421f, result);
+        return result[0];
+      }
+    });
+    compare("SimplexNoise3.simplex_noise", new Run() {
+
+      @Override
+      public float run() {
+        float sum = 0;
+        for (int k = 0; k < lattice.getSizeZ(); k++) {
+          for (int j = 0; j < lattice.getSizeY(); j++) {
+            for (int i = 0; i < lattice.getSizeX(); i++) {
+              sum += simplex.simplex_noise(5, lattice.getX(i), lattice.getY(j), lattice.getZ(k));
+            }
+          }
+        }
+        return sum;
+      }
+    }, new Run() {
+
+      @Override
+      public float run() {
+        simplex.simplexNoise(5, lattice, result);
+        return result[0];
+      }
+    });
+  }
+
+  private static void compare(final String name, final Run perPoint, final Run batch) {
+    final double perPointTime = measure(perPoint);
+    final double batchTime = measure(batch);
+    System.out.println(format("%-30s per point %8.2fms batch %8.2fms speedup %.2f", name, perPointTime, batchTime,
+        perPointTime / batchTime));
+  }
+
+  private static double measure(final Run run) {
+    float sink = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      sink += run.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      sink += run.run();
+    }
+    if (sink == Float.MIN_VALUE) {
+      System.out.println(sink);
+    }
+    return (System.nanoTime() - start) / 1e6 / ROUNDS;
+  }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Shared noise instances must produce the same values in every thread.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class NoiseDeterminismTest {
+
+  private static final int THREADS = 16;
+
+  private static final Lattice LATTICE = new Lattice(-8, 0, 8, 16, 16, 16).scale(0.021f, 0.017f, 0.023f);
+
+  private static float[] perlin(final PerlinNoise noise) {
+    final float[] result = new float[LATTICE.size()];
+    noise.multiFractalNoise(LATTICE, 4, 2.1836171f, result);
+    for (int k = 0; k < LATTICE.getSizeZ(); k++) {
+      for (int j = 0; j < LATTICE.getSizeY(); j++) {
+        for (int i = 0; i < LATTICE.getSizeX(); i++) {
+          result[LATTICE.index(i, j, k)] += noise.noise(LATTICE.getX(i), LATTICE.getY(j), LATTICE.getZ(k));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static float[] simplex(final SimplexNoise3 noise) {
+    final float[] result = new float[LATTICE.size()];
+    noise.simplexNoise(3, LATTICE, result);
+    for (int k = 0; k < LATTICE.getSizeZ(); k++) {
+      for (int j = 0; j < LATTICE.getSizeY(); j++) {
+        for (int i = 0; i < LATTICE.getSizeX(); i++) {
+          result[LATTICE.index(i, j, k)] += noise.noise(LATTICE.getX(i), LATTICE.getY(j), LATTICE.getZ(k));
+        }
+      }
+    }
+    return result;
+  }
+
+  private void assertSameInAllThreads(final float[] expected, final Callable<float[]> task) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<float[]>> results = Lists.newArrayList();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executor.submit(new Callable<float[]>() {
+
+          @Override
+          public float[] call() throws Exception {
+            start.await();
+            float[] result = null;
+            for (int round = 0; round < 10; round++) {
+              result = task.call();
+            }
+            return result;
+          }
+        }));
+      }
+      start.countDown();
+      for (final Future<float[]> result : results) {
+        assertTrue(Arrays.equals(result.get(), expected));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPerlinNoise() throws Exception {
+    final float[] expected = perlin(new PerlinNoise(4711));
+    final PerlinNoise shared = new PerlinNoise(4711);
+    assertSameInAllThreads(expected, new Callable<float[]>() {
+
+      @Override
+      public float[] call() {
+        return perlin(shared);
+      }
+    });
+    assertFalse(Arrays.equals(perlin(new PerlinNoise(4712)), expected));
+  }
+
+  @Test
+  public void testSimplexNoise() throws Exception {
+    final float[] expected = simplex(new SimplexNoise3(4711));
+    final SimplexNoise3 shared = new SimplexNoise3(4711);
+    assertSameInAllThreads(expected, new Callable<float[]>() {
+
+      @Override
+      public float[] call() {
+        return simplex(shared);
+      }
+    });
+    assertFalse(Arrays.equals(simplex(new SimplexNoise3(4712)), expected));
+    assertFalse(Arrays.equals(simplex(new SimplexNoise3()), expected));
+  }
+}
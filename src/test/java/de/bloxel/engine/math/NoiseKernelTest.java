@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.math;
+
+import static org.testng.Assert.assertTrue;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * The selected {@link NoiseKernel} must compute exactly the same values as the {@link ScalarNoiseKernel}. Run the
+ * tests on a JDK 16+ with the multi-release classes and <code>--add-modules jdk.incubator.vector</code> to check the
+ * vector kernel.
+ * 
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class NoiseKernelTest {
+
+  private static final Lattice LATTICE = new Lattice(-37, -21, 5, 37, 11, 7, 3, 4, 5).scale(0.013f, 0.021f, 0.017f)
+      .offset(0.5f, -1.25f, 3f);
+
+  private final NoiseKernel scalar = NoiseKernels.select("scalar");
+  private final NoiseKernel selected = NoiseKernels.get();
+
+  private static void assertEquals(final float[] actual, final float[] expected, final Lattice lattice) {
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(actual[i], expected[i], String.format("Point %d of %s", i, lattice));
+    }
+  }
+
+  private void assertPerlin(final PerlinNoise noise, final Lattice lattice, final boolean add) {
+    final float[] expected = new float[lattice.size()];
+    final float[] actual = new float[lattice.size()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = actual[i] = i * 0.25f;
+    }
+    scalar.perlinNoise(noise, lattice.getXs(), lattice.getRowYs(), lattice.getRowZs(), add, 0.37, expected);
+    selected.perlinNoise(noise, lattice.getXs(), lattice.getRowYs(), lattice.getRowZs(), add, 0.37, actual);
+    assertEquals(actual, expected, lattice);
+  }
+
+  private void assertSimplex(final SimplexNoise3 noise, final Lattice lattice, final float frequency) {
+    final float[] expected = new float[lattice.size()];
+    final float[] actual = new float[lattice.size()];
+    scalar.simplexNoise(noise, lattice.getXs(), lattice.getRowYs(), lattice.getRowZs(), frequency, expected);
+    selected.simplexNoise(noise, lattice.getXs(), lattice.getRowYs(), lattice.getRowZs(), frequency, actual);
+    assertEquals(actual, expected, lattice);
+  }
+
+  @Test
+  public void testPerlinNoise() {
+    final PerlinNoise noise = new PerlinNoise(42, 6, 0.6f);
+    assertPerlin(noise, LATTICE, false);
+    assertPerlin(noise, LATTICE, true);
+    assertPerlin(noise, LATTICE.frequency(11.4f, 3.3f, 7.9f), false);
+    assertPerlin(new PerlinNoise(7, 12, 0.8f), LATTICE.frequency(11.4f, 3.3f, 7.9f), true);
+  }
+
+  @Test
+  public void testPerlinNoiseOutOfIntRange() {
+    assertPerlin(new PerlinNoise(42), LATTICE.scale(1e8f, 1e8f, 1e8f), false);
+  }
+
+  @Test
+  public void testSelectScalar() {
+    assertTrue(NoiseKernels.select("scalar") instanceof ScalarNoiseKernel);
+  }
+
+  @Test
+  public void testSimplexNoise() {
+    final SimplexNoise3 noise = new SimplexNoise3(42);
+    assertSimplex(noise, LATTICE, 1);
+    assertSimplex(noise, LATTICE, 16);
+    assertSimplex(new SimplexNoise3(), LATTICE.frequency(11.4f, 3.3f, 7.9f), 2);
+  }
+
+  @Test
+  public void testSimplexNoiseOutOfIntRange() {
+    assertSimplex(new SimplexNoise3(42), LATTICE.scale(1e8f, 1e8f, 1e8f), 4);
+  }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+import de.bloxel.engine.data.VolumeGrid;
+import de.bloxel.engine.loader.BloxelLoader;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class EditJournalTest {
+
+  private static VolumeGrid<Bloxel> grid() {
+    final VolumeGrid<Bloxel> grid = new VolumeGrid<Bloxel>();
+    grid.setGridSize(4, 4, 4);
+    grid.setVolumeSize(8);
+    grid.setVolumeFactory(new ColtVolumeFactory<Bloxel>());
+    grid.setVolumeLoader(new BloxelLoader() {
+
+      @Override
+      public void fill(final Volume<Bloxel> volume) {
+      }
+    });
+    grid.init();
+    return grid;
+  }
+
+  /**
+   * @return a store which edits the other volume while the volume is saved
+   */
+  private static RegionStore editingStore(final File directory, final VolumeGrid<Bloxel> grid,
+      final Volume<Bloxel> volume, final Volume<Bloxel> other) {
+    return new RegionStore(directory, 8, 8, 8) {
+
+      @Override
+      public void write(final Volume<Bloxel> v) throws IOException {
+        super.write(v);
+        if (v == volume) {
+          grid.set(other, 1, 1, 1, new Bloxel(3, 0.5f));
+        }
+      }
+    };
+  }
+
+  private static void delete(final File file, final File directory) {
+    file.delete();
+    for (final File f : directory.listFiles()) {
+      f.delete();
+    }
+    directory.delete();
+  }
+
+  private static File directory() throws IOException {
+    final File directory = File.createTempFile("bloxel-region", "");
+    directory.delete();
+    return directory;
+  }
+
+  private static File journalFile() throws IOException {
+    final File file = File.createTempFile("bloxel", ".journal");
+    file.delete();
+    return file;
+  }
+
+  @Test
+  public void testBoundedGrowth() throws IOException {
+    final File file = journalFile();
+    final File directory = directory();
+    try {
+      final VolumeGrid<Bloxel> grid = grid();
+      final EditJournal journal = new EditJournal(file);
+      grid.addVolumeListener(journal);
+      final Volume<Bloxel> volume = grid.getVolumeWithIndex(1, 1, 1);
+      final RegionStore store = editingStore(directory, grid, volume, grid.getVolumeWithIndex(2, 1, 1));
+      final long length = file.length();
+      for (int round = 0; round < 50; round++) {
+        for (int i = 0; i < 10000; i++) {
+          grid.set(volume, i % 8, i / 8 % 8, i / 64 % 8, new Bloxel(1 + round % 5, i));
+        }
+        journal.checkpoint(store, grid);
+        // the edit during the checkpoint is kept
+        assertEquals(journal.getSize(), 1);
+      }
+      assertEquals(file.length(), length);
+      journal.close();
+      store.close();
+    } finally {
+      delete(file, directory);
+    }
+  }
+
+  @Test
+  public void testEditsDuringCheckpoint() throws IOException {
+    final File file = journalFile();
+    final File directory = directory();
+    try {
+      final VolumeGrid<Bloxel> grid = grid();
+      EditJournal journal = new EditJournal(file);
+      grid.addVolumeListener(journal);
+      final Volume<Bloxel> volume = grid.getVolumeWithIndex(0, 0, 0);
+      final Volume<Bloxel> other = grid.getVolumeWithIndex(2, 0, 0);
+      final RegionStore store = editingStore(directory, grid, volume, other);
+      for (int round = 0; round < 3; round++) {
+        for (int i = 0; i < 1000; i++) {
+          grid.set(volume, i % 8, i / 8 % 8, i / 64 % 8, new Bloxel(2, i));
+        }
+        journal.checkpoint(store, grid);
+        assertEquals(journal.getSize(), 1);
+      }
+      journal.close();
+
+      final VolumeGrid<Bloxel> replayed = grid();
+      journal = new EditJournal(file);
+      assertEquals(journal.replay(replayed), 1);
+      assertEquals(replayed.getVolumeWithIndex(2, 0, 0).get(1, 1, 1).getType(), 3);
+      assertSame(replayed.getVolumeWithIndex(0, 0, 0).get(1, 1, 1), Bloxel.AIR);
+      journal.close();
+      store.close();
+    } finally {
+      delete(file, directory);
+    }
+  }
+
+  @Test
+  public void testReplayAndCheckpoint() throws IOException {
+    final File file = journalFile();
+    final File directory = directory();
+    try {
+      final VolumeGrid<Bloxel> grid = grid();
+      EditJournal journal = new EditJournal(file);
+      grid.addVolumeListener(journal);
+      final Volume<Bloxel> volume = grid.getVolumeWithIndex(-1, 0, 2);
+      for (int i = 0; i < 100000; i++) {
+        grid.set(volume, i % 8, i / 8 % 8, i / 64 % 8, new Bloxel(i % 5, i));
+      }
+      grid.set(volume, 1, 2, 3, Bloxel.AIR);
+      assertEquals(journal.getSize(), 100001);
+      // no checkpoint, i.e. the edits are only in the journal
+      journal.close();
+
+      final VolumeGrid<Bloxel> replayed = grid();
+      journal = new EditJournal(file);
+      assertEquals(journal.replay(replayed), 100001);
+      final Volume<Bloxel> volume2 = replayed.getVolumeWithIndex(-1, 0, 2);
+      for (int x = 0; x < 8; x++) {
+        for (int y = 0; y < 8; y++) {
+          for (int z = 0; z < 8; z++) {
+            assertEquals(volume2.get(x, y, z).getType(), volume.get(x, y, z).getType());
+            assertEquals(volume2.get(x, y, z).getDensity(), volume.get(x, y, z).getDensity(), 0f);
+          }
+        }
+      }
+      assertSame(volume2.get(1, 2, 3), Bloxel.AIR);
+
+      final RegionStore store = new RegionStore(directory, 8, 8, 8);
+      journal.checkpoint(store, replayed);
+      assertEquals(journal.getSize(), 0);
+      journal.close();
+      journal = new EditJournal(file);
+      assertEquals(journal.getSize(), 0);
+      journal.close();
+      final Volume<Bloxel> saved = new ColtVolumeFactory<Bloxel>().create(-8, 0, 16, 8, 8, 8);
+      store.read(saved);
+      assertEquals(saved.get(7, 7, 7).getType(), volume.get(7, 7, 7).getType());
+      store.close();
+    } finally {
+      delete(file, directory);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.region;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.data.Bloxel;
+import de.bloxel.engine.data.ColtVolumeFactory;
+import de.bloxel.engine.data.Volume;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class RegionStoreTest {
+
+  private static void delete(final File directory) {
+    for (final File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private static Volume<Bloxel> randomVolume(final int x, final int y, final int z, final long seed) {
+    final Volume<Bloxel> volume = new ColtVolumeFactory<Bloxel>().create(x, y, z, 8, 8, 8);
+    final Random random = new Random(seed);
+    for (int i = 0; i < 200; i++) {
+      volume.set(random.nextInt(8), random.nextInt(8), random.nextInt(8),
+          new Bloxel(random.nextInt(5), random.nextFloat()));
+    }
+    return volume;
+  }
+
+  private static File tempDirectory() throws IOException {
+    final File directory = File.createTempFile("bloxel-region", "");
+    directory.delete();
+    return directory;
+  }
+
+  @Test
+  public void testBrokenEntry() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      RegionStore store = new RegionStore(directory, 8, 8, 8);
+      store.write(randomVolume(0, 0, 0, 1));
+      store.write(randomVolume(8, 0, 0, 2));
+      store.close();
+      // the table entry of the second chunk reached the disk, its data not
+      final RandomAccessFile file = new RandomAccessFile(new File(directory, "r.0.0.0.region"), "rw");
+      file.setLength(file.length() - 1);
+      file.close();
+      store = new RegionStore(directory, 8, 8, 8);
+      assertTrue(store.contains(0, 0, 0));
+      assertFalse(store.contains(1, 0, 0));
+      assertFalse(store.read(new ColtVolumeFactory<Bloxel>().create(8, 0, 0, 8, 8, 8)));
+      // the chunk can be written again
+      store.write(randomVolume(8, 0, 0, 3));
+      assertSame(store, randomVolume(8, 0, 0, 3));
+      store.close();
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testChecksum() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      RegionStore store = new RegionStore(directory, 8, 8, 8);
+      store.write(randomVolume(0, 0, 0, 1));
+      store.close();
+      // the data of the chunk is garbage
+      final RandomAccessFile file = new RandomAccessFile(new File(directory, "r.0.0.0.region"), "rw");
+      file.seek(file.length() - 1);
+      final int last = file.read();
+      file.seek(file.length() - 1);
+      file.write(last ^ 0xff);
+      file.close();
+      store = new RegionStore(directory, 8, 8, 8);
+      assertFalse(store.contains(0, 0, 0));
+      store.close();
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testOpenRegions() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      final RegionStore store = new RegionStore(directory, 8, 8, 8, 2);
+      store.write(randomVolume(0, 0, 0, 1));
+      store.write(randomVolume(64, 0, 0, 2));
+      store.write(randomVolume(128, 0, 0, 3));
+      assertEquals(store.getOpenRegions(), 2);
+      // the least recently used region is opened again
+      assertSame(store, randomVolume(0, 0, 0, 1));
+      assertSame(store, randomVolume(64, 0, 0, 2));
+      assertSame(store, randomVolume(128, 0, 0, 3));
+      assertEquals(store.getOpenRegions(), 2);
+      store.close();
+      assertEquals(store.getOpenRegions(), 0);
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testReadWrite() throws IOException {
+    final File directory = tempDirectory();
+    try {
+      RegionStore store = new RegionStore(directory, 8, 8, 8);
+      // chunks in different regions, also negative positions
+      store.write(randomVolume(0, 0, 0, 1));
+      store.write(randomVolume(-8, 16, -72, 2));
+      store.write(randomVolume(64, -8, 8, 3));
+      store.write(randomVolume(0, 0, 0, 4));
+      store.close();
+      store = new RegionStore(directory, 8, 8, 8);
+      assertTrue(store.contains(0, 0, 0));
+      assertTrue(store.contains(-1, 2, -9));
+      assertTrue(store.contains(8, -1, 1));
+      assertFalse(store.contains(1, 0, 0));
+      assertFalse(store.contains(-8, 0, 0));
+      assertSame(store, randomVolume(0, 0, 0, 4));
+      assertSame(store, randomVolume(-8, 16, -72, 2));
+      assertSame(store, randomVolume(64, -8, 8, 3));
+      assertFalse(store.read(new ColtVolumeFactory<Bloxel>().create(8, 0, 0, 8, 8, 8)));
+      store.close();
+    } finally {
+      delete(directory);
+    }
+  }
+
+  private void assertSame(final RegionStore store, final Volume<Bloxel> expected) throws IOException {
+    final Volume<Bloxel> actual = new ColtVolumeFactory<Bloxel>().create(expected.getX(), expected.getY(),
+        expected.getZ(), 8, 8, 8);
+    assertTrue(store.read(actual));
+    for (int x = 0; x < 8; x++) {
+      for (int z = 0; z < 8; z++) {
+        for (int y = 0; y < 8; y++) {
+          assertEquals(actual.get(x, y, z).getType(), expected.get(x, y, z).getType());
+          assertEquals(actual.get(x, y, z).getDensity(), expected.get(x, y, z).getDensity(), 0f);
+        }
+      }
+    }
+  }
+}
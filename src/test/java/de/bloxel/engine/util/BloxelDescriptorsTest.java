@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Andreas Höhmann
+ *
+ * All rights reserved. Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ *******************************************************************************/
+package de.bloxel.engine.util;
+
+import static de.bloxel.engine.util.JAXBUtils.unmarschal;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.testng.annotations.Test;
+
+import de.bloxel.engine.resources.Resources;
+import de.bloxel.engine.types.BloxelType;
+import de.bloxel.engine.types.Types;
+
+/**
+ * @author Andreas Höhmann
+ * @since 1.0.0
+ */
+@Test
+public class BloxelDescriptorsTest {
+
+  @Test
+  public void testOutdated() throws IOException {
+    final File binary = File.createTempFile("bloxel-types", ".bin");
+    final File xml = File.createTempFile("bloxel-types", ".xml");
+    try {
+      binary.setLastModified(20000);
+      xml.setLastModified(10000);
+      assertFalse(BloxelDescriptors.outdated(new FileSystemResource(binary), new FileSystemResource(xml)));
+      // the xml was edited after the build
+      xml.setLastModified(30000);
+      assertTrue(BloxelDescriptors.outdated(new FileSystemResource(binary), new FileSystemResource(xml)));
+      // only the binary descriptor is deployed
+      xml.delete();
+      assertFalse(BloxelDescriptors.outdated(new FileSystemResource(binary), new FileSystemResource(xml)));
+    } finally {
+      binary.delete();
+      xml.delete();
+    }
+  }
+
+  @Test
+  public void testResources() throws IOException {
+    final Resources expected = unmarschal(new ClassPathResource("bloxel-resources.xml").getInputStream(),
+        Resources.class);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BloxelDescriptors.writeResources(expected, new DataOutputStream(bytes));
+    final Resources actual = BloxelDescriptors.readResources(new DataInputStream(new ByteArrayInputStream(bytes
+        .toByteArray())));
+    assertEquals(actual, expected);
+  }
+
+  @Test
+  public void testOmittedAttributes() throws IOException {
+    final BloxelType type = new BloxelType();
+    type.setId(1);
+    type.setLiquid(Boolean.TRUE);
+    type.setHardness(0.5f);
+    final Types types = new Types();
+    types.getBloxel().add(type);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BloxelDescriptors.writeTypes(types, new DataOutputStream(bytes));
+    final BloxelType actual = BloxelDescriptors.readTypes(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).getBloxel().get(0);
+    assertFalse(actual.isSetTransparent());
+    assertFalse(actual.isSetPenetrable());
+    assertTrue(actual.isSetLiquid());
+    assertTrue(actual.isLiquid());
+    assertTrue(actual.isSetHardness());
+    assertEquals(actual.getHardness(), 0.5f);
+  }
+
+  @Test
+  public void testTypes() throws IOException {
+    final Types expected = unmarschal(new ClassPathResource("bloxel-types.xml").getInputStream(), Types.class);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BloxelDescriptors.writeTypes(expected, new DataOutputStream(bytes));
+    final Types actual = BloxelDescriptors.readTypes(new DataInputStream(new ByteArrayInputStream(bytes
+        .toByteArray())));
+    assertEquals(actual, expected);
+  }
+}